@@ -0,0 +1,996 @@
+package com.lixiangyu.common.migration;
+
+import com.lixiangyu.common.migration.operator.DatabaseOperator;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Binlog 并行应用器
+ * 监听线程只负责解码，按源库事务（XID）组装好的行变更交给应用器，由多个应用线程写入目标库
+ *
+ * 功能特性：
+ * 1. 事务完整：一个源库事务只由一个应用线程在同一个目标库事务中提交
+ * 2. 同键有序：按 表+主键 哈希选择应用线程；事务涉及的键还有未提交的事务时分配给持有这些键的线程，
+ *    持有者不止一个时等待其提交后再分配，同一主键的变更严格按 binlog 顺序应用
+ * 3. 批量提交：应用线程一次取出队列中已就绪的多个事务，在一个目标库事务中提交，
+ *    连续的同表同类变更合并为一次 JDBC 批处理
+ * 4. 长连接：每个应用线程持有一个目标库连接和预编译语句缓存，写入失败时回滚、重连并重试
+ * 5. 失败传播：重试耗尽后应用器进入失败状态，后续提交直接抛出异常，由监听任务停止消费
+ * 6. 位点：配置位点存储时，每次提交在同一个目标库事务中写入已连续提交的位点和位点之后乱序提交的事务，
+ *    重启后从位点重放并跳过已提交的事务
+ * 7. 幂等写入：INSERT 按目标库方言生成 UPSERT（见 {@link UpsertSqlBuilder}），
+ *    崩溃后重放已写入的事务不会产生主键冲突
+ * 8. 合并窗口（可选）：窗口内同一 表+主键 的连续变更合并为净变更（见 {@link ChangeCoalescer}，不改变跨行顺序），
+ *    作为一个事务整体提交；窗口按时间或行数关闭，不拆分源库事务
+ * 9. 指标：排队事务数、提交的行数/事务数、每表批量写入耗时、重试与失败次数写入 {@link CdcMetrics}
+ *
+ * @author lixiangyu
+ */
+@Slf4j
+public class BinlogApplier {
+    
+    /**
+     * 轮询间隔（毫秒），用于在阻塞等待期间检查关闭与失败状态
+     */
+    private static final long POLL_INTERVAL_MS = 100;
+    
+    /**
+     * 单次提交失败后的最大重试次数
+     */
+    private static final int MAX_RETRIES = 3;
+    
+    /**
+     * 关闭时等待应用线程处理完剩余事务的最长时间（毫秒）
+     */
+    private static final long CLOSE_TIMEOUT_MS = 30000;
+    
+    private final String name;
+    
+    private final DataSource targetDataSource;
+    
+    /**
+     * 单次目标库提交合并的最大事务数
+     */
+    private final int batchTransactions;
+    
+    private final Worker[] workers;
+    
+    /**
+     * 键 -> 持有该键的应用线程（只记录还有未提交事务的键），由自身加锁保护
+     */
+    private final Map<Object, KeyOwner> keyOwners = new HashMap<>();
+    
+    /**
+     * 表名 -> 语句模板（表结构变化时重建）
+     */
+    private final Map<String, TablePlan> plans = new ConcurrentHashMap<>();
+    
+    /**
+     * 目标库类型（首个应用线程建立连接时识别），决定 INSERT 使用的幂等写入语法
+     */
+    private volatile MigrationConfig.DataSourceConfig.DatabaseType targetType;
+    
+    /**
+     * 位点存储（为 null 时不记录位点）
+     */
+    private final BinlogOffsetStore offsetStore;
+    
+    /**
+     * 已提交给应用器、尚未连续提交的事务（按序号排序），由自身加锁保护
+     */
+    private final NavigableMap<Long, Transaction> inFlight = new TreeMap<>();
+    
+    /**
+     * 已连续提交的最后一个有位点的事务，由 inFlight 加锁保护
+     */
+    private Transaction committedWatermark;
+    
+    /**
+     * 下一个事务序号（由 coalesceLock 保护）
+     */
+    private long nextSeq = 1;
+    
+    /**
+     * 合并窗口（毫秒），0 表示不合并
+     */
+    private long coalesceWindowMillis = 0;
+    
+    /**
+     * 合并窗口的原始行变更数上限，达到后立即关闭窗口
+     */
+    private int coalesceMaxRows = 5000;
+    
+    /**
+     * 保护合并窗口与事务分派（监听线程与窗口定时关闭线程共用）
+     */
+    private final Object coalesceLock = new Object();
+    
+    private final ChangeCoalescer coalescer = new ChangeCoalescer();
+    
+    /**
+     * 当前窗口内的源库事务数、事务标识、位点和提交回调（由 coalesceLock 保护）
+     */
+    private int windowTransactions;
+    private final List<String> windowTransactionIds = new ArrayList<>();
+    private BinlogOffsetStore.Position windowLastPosition;
+    private final List<Runnable> windowCallbacks = new ArrayList<>();
+    private long windowStartMillis;
+    
+    private Thread coalesceThread;
+    
+    private final AtomicLong coalescedRows = new AtomicLong();
+    
+    /**
+     * 位点越过该序号后删除之前运行留下的事务记录（重放时被跳过的事务已全部遇到）
+     */
+    private volatile long purgePreviousRunsAfterSeq = Long.MAX_VALUE;
+    
+    private volatile boolean previousRunsPurged = false;
+    
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    
+    /**
+     * 失败回调（在失败的应用线程上调用一次）
+     */
+    private volatile Consumer<Throwable> failureListener;
+    
+    private final AtomicLong appliedTransactions = new AtomicLong();
+    
+    private final AtomicLong appliedRows = new AtomicLong();
+    
+    private volatile boolean closing = false;
+    
+    private CdcMetrics metrics = new CdcMetrics();
+    
+    /**
+     * @param name 名称（用于线程命名）
+     * @param targetDataSource 目标数据源
+     * @param threads 应用线程数
+     * @param queueCapacity 每个应用线程的队列容量（事务数）
+     * @param batchTransactions 单次目标库提交合并的最大事务数
+     */
+    public BinlogApplier(String name, DataSource targetDataSource, int threads, int queueCapacity,
+                         int batchTransactions) {
+        this(name, targetDataSource, threads, queueCapacity, batchTransactions, null);
+    }
+    
+    /**
+     * @param name 名称（用于线程命名）
+     * @param targetDataSource 目标数据源
+     * @param threads 应用线程数
+     * @param queueCapacity 每个应用线程的队列容量（事务数）
+     * @param batchTransactions 单次目标库提交合并的最大事务数
+     * @param offsetStore 位点存储，为 null 时不记录位点
+     */
+    public BinlogApplier(String name, DataSource targetDataSource, int threads, int queueCapacity,
+                         int batchTransactions, BinlogOffsetStore offsetStore) {
+        this.name = name;
+        this.targetDataSource = targetDataSource;
+        this.offsetStore = offsetStore;
+        this.batchTransactions = Math.max(1, batchTransactions);
+        this.workers = new Worker[Math.max(1, threads)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(i, Math.max(1, queueCapacity));
+        }
+    }
+    
+    /**
+     * 启用合并窗口（需在 start() 之前调用）
+     *
+     * @param windowMillis 窗口时长（毫秒），0 表示不合并
+     * @param maxRows 窗口的原始行变更数上限
+     */
+    public void setCoalescing(long windowMillis, int maxRows) {
+        this.coalesceWindowMillis = Math.max(0, windowMillis);
+        this.coalesceMaxRows = Math.max(1, maxRows);
+    }
+    
+    /**
+     * 使用外部的指标（需在 start() 之前调用），监听任务借此把解码与应用指标汇总到同一个对象
+     */
+    public void setMetrics(CdcMetrics metrics) {
+        this.metrics = metrics;
+    }
+    
+    public CdcMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * 设置失败回调：应用失败后没有新的事件提交时，监听任务也能及时停止并断开源库连接
+     */
+    public void setFailureListener(Consumer<Throwable> failureListener) {
+        this.failureListener = failureListener;
+    }
+    
+    /**
+     * 启动应用线程
+     */
+    public void start() {
+        metrics.registerQueue("applierQueuedTransactions", this::getQueuedTransactions);
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+        if (coalesceWindowMillis > 0) {
+            coalesceThread = new Thread(this::closeExpiredWindows, "BinlogCoalescer-" + name);
+            coalesceThread.setDaemon(true);
+            coalesceThread.start();
+        }
+        log.info("Binlog 应用器启动: {}, 应用线程数: {}, 合并窗口: {}ms", name, workers.length, coalesceWindowMillis);
+    }
+    
+    /**
+     * 提交一个源库事务（由监听线程按 binlog 顺序调用）
+     * 应用线程队列已满或键的持有者冲突时阻塞
+     *
+     * @param changes 事务内的行变更（按 binlog 顺序）
+     * @throws IllegalStateException 应用器已失败或已关闭
+     */
+    public void submit(List<RowChange> changes) throws InterruptedException {
+        submit(changes, null);
+    }
+    
+    /**
+     * 提交一个源库事务（由监听线程按 binlog 顺序调用）
+     *
+     * @param changes 事务内的行变更（按 binlog 顺序）
+     * @param position 事务提交后的位点，为 null 时（超大事务拆分出的部分）该事务不能作为续传位点
+     * @throws IllegalStateException 应用器已失败或已关闭
+     */
+    public void submit(List<RowChange> changes, BinlogOffsetStore.Position position) throws InterruptedException {
+        submit(changes, position, null);
+    }
+    
+    /**
+     * 提交一个源库事务（由监听线程按 binlog 顺序调用）
+     *
+     * @param changes 事务内的行变更（按 binlog 顺序）
+     * @param position 事务提交后的位点，为 null 时该事务不能作为续传位点
+     * @param onCommitted 事务提交到目标库后由应用线程回调（可为 null），变更为空时不会回调
+     * @throws IllegalStateException 应用器已失败或已关闭
+     */
+    public void submit(List<RowChange> changes, BinlogOffsetStore.Position position, Runnable onCommitted)
+            throws InterruptedException {
+        submit(changes, position, position == null ? null : position.getTransactionId(), onCommitted);
+    }
+    
+    /**
+     * 提交一个源库事务或超大事务拆分出的一部分（由监听线程按 binlog 顺序调用）
+     *
+     * @param changes 事务内的行变更（按 binlog 顺序）
+     * @param position 事务提交后的位点，为 null 时该事务不能作为续传位点
+     * @param transactionId 事务标识（拆分出的部分为 事务标识#序号），提交时记录到位点表，重放时跳过；为 null 时不记录
+     * @param onCommitted 事务提交到目标库后由应用线程回调（可为 null），变更为空时不会回调
+     * @throws IllegalStateException 应用器已失败或已关闭
+     */
+    public void submit(List<RowChange> changes, BinlogOffsetStore.Position position, String transactionId,
+                       Runnable onCommitted) throws InterruptedException {
+        if (changes.isEmpty()) {
+            return;
+        }
+        checkFailure();
+        if (closing) {
+            throw new IllegalStateException("Binlog 应用器已关闭: " + name);
+        }
+        
+        synchronized (coalesceLock) {
+            if (coalesceWindowMillis <= 0) {
+                dispatch(new Transaction(nextSeq++, changes, position,
+                        transactionId == null ? null : java.util.Collections.singletonList(transactionId), 1,
+                        onCommitted));
+                return;
+            }
+            if (windowTransactions == 0) {
+                windowStartMillis = System.currentTimeMillis();
+            }
+            coalescer.add(changes);
+            windowTransactions++;
+            windowLastPosition = position;
+            if (transactionId != null) {
+                windowTransactionIds.add(transactionId);
+            }
+            if (onCommitted != null) {
+                windowCallbacks.add(onCommitted);
+            }
+            if (coalescer.getInputRows() >= coalesceMaxRows) {
+                closeWindow();
+            }
+        }
+    }
+    
+    /**
+     * 关闭合并窗口：窗口内的源库事务合并为一个事务分派（由 coalesceLock 保护）
+     * 净变更为空（例如窗口内插入后又删除）时仍然分派，用于记录位点和触发提交回调
+     */
+    private void closeWindow() throws InterruptedException {
+        if (windowTransactions == 0) {
+            return;
+        }
+        int inputRows = coalescer.getInputRows();
+        List<RowChange> changes = coalescer.drain();
+        coalescedRows.addAndGet(inputRows - changes.size());
+        List<Runnable> callbacks = new ArrayList<>(windowCallbacks);
+        Transaction transaction = new Transaction(nextSeq++, changes, windowLastPosition,
+                new ArrayList<>(windowTransactionIds), windowTransactions,
+                callbacks.isEmpty() ? null : () -> callbacks.forEach(Runnable::run));
+        windowTransactions = 0;
+        windowLastPosition = null;
+        windowTransactionIds.clear();
+        windowCallbacks.clear();
+        if (changes.isEmpty() && offsetStore == null && callbacks.isEmpty()) {
+            return;
+        }
+        dispatch(transaction);
+    }
+    
+    /**
+     * 窗口定时关闭线程：窗口开始后超过 coalesceWindowMillis 仍未因行数关闭时关闭窗口
+     */
+    private void closeExpiredWindows() {
+        long interval = Math.max(1, Math.min(POLL_INTERVAL_MS, coalesceWindowMillis / 2));
+        try {
+            while (!closing && failure.get() == null) {
+                Thread.sleep(interval);
+                synchronized (coalesceLock) {
+                    if (windowTransactions > 0
+                            && System.currentTimeMillis() - windowStartMillis >= coalesceWindowMillis) {
+                        closeWindow();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            fail(e);
+        }
+    }
+    
+    /**
+     * 分派事务到应用线程（由 coalesceLock 保护，按序号顺序调用）
+     */
+    private void dispatch(Transaction transaction) throws InterruptedException {
+        Set<Object> keys = transaction.keys;
+        for (RowChange change : transaction.changes) {
+            change.collectKeys(keys);
+        }
+        if (offsetStore != null) {
+            synchronized (inFlight) {
+                inFlight.put(transaction.seq, transaction);
+            }
+        }
+        Worker worker = assign(keys, transaction.seq);
+        while (!worker.queue.offer(transaction, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+            checkFailure();
+        }
+    }
+    
+    /**
+     * 重放时被跳过的事务已全部遇到（由监听线程调用），位点越过此后提交的事务时删除之前运行留下的事务记录
+     */
+    public void markSkippedTransactionsPassed() {
+        synchronized (coalesceLock) {
+            purgePreviousRunsAfterSeq = nextSeq;
+        }
+    }
+    
+    /**
+     * 关闭应用器：等待应用线程处理完已提交的事务后关闭连接
+     */
+    public void close() {
+        synchronized (coalesceLock) {
+            if (failure.get() == null) {
+                try {
+                    closeWindow();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    log.warn("关闭合并窗口失败: {}", name, e);
+                }
+            }
+            closing = true;
+        }
+        long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT_MS;
+        for (Worker worker : workers) {
+            try {
+                worker.thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (worker.thread.isAlive()) {
+                log.warn("Binlog 应用线程未在超时时间内结束: {}, 剩余事务数: {}", worker.thread.getName(), worker.queue.size());
+                worker.thread.interrupt();
+            }
+        }
+        log.info("Binlog 应用器关闭: {}, 已应用事务数: {}, 已应用行数: {}, 合并消除行数: {}",
+                name, appliedTransactions.get(), appliedRows.get(), coalescedRows.get());
+    }
+    
+    /**
+     * 当前排队的事务数
+     */
+    public int getQueuedTransactions() {
+        int queued = 0;
+        for (Worker worker : workers) {
+            queued += worker.queue.size();
+        }
+        return queued;
+    }
+    
+    /**
+     * 已提交到目标库的事务数
+     */
+    public long getAppliedTransactions() {
+        return appliedTransactions.get();
+    }
+    
+    /**
+     * 已提交到目标库的行数
+     */
+    public long getAppliedRows() {
+        return appliedRows.get();
+    }
+    
+    /**
+     * 合并窗口消除的行变更数（原始行变更数 - 净变更数）
+     */
+    public long getCoalescedRows() {
+        return coalescedRows.get();
+    }
+    
+    /**
+     * 应用器失败原因，未失败时返回 null
+     */
+    public Throwable getFailure() {
+        return failure.get();
+    }
+    
+    /**
+     * 如果应用器已失败则抛出异常
+     */
+    public void checkFailure() {
+        Throwable cause = failure.get();
+        if (cause != null) {
+            throw new IllegalStateException("Binlog 应用器已失败: " + cause.getMessage(), cause);
+        }
+    }
+    
+    /**
+     * 为事务选择应用线程并登记其键
+     * 没有任何键被持有时按首个键哈希；只有一个持有者时交给该持有者（排在同键的前序事务之后）；
+     * 持有者不止一个时等待前序事务提交；没有键（合并后净变更为空）时按序号轮转
+     */
+    private Worker assign(Set<Object> keys, long seq) throws InterruptedException {
+        if (keys.isEmpty()) {
+            return workers[(int) (seq % workers.length)];
+        }
+        synchronized (keyOwners) {
+            while (true) {
+                checkFailure();
+                Worker owner = null;
+                boolean conflict = false;
+                for (Object key : keys) {
+                    KeyOwner keyOwner = keyOwners.get(key);
+                    if (keyOwner == null) {
+                        continue;
+                    }
+                    if (owner == null) {
+                        owner = keyOwner.worker;
+                    } else if (owner != keyOwner.worker) {
+                        conflict = true;
+                        break;
+                    }
+                }
+                
+                if (!conflict) {
+                    Worker worker = owner != null ? owner
+                            : workers[Math.floorMod(keys.iterator().next().hashCode(), workers.length)];
+                    for (Object key : keys) {
+                        keyOwners.computeIfAbsent(key, k -> new KeyOwner(worker)).pending++;
+                    }
+                    return worker;
+                }
+                keyOwners.wait(POLL_INTERVAL_MS);
+            }
+        }
+    }
+    
+    /**
+     * 释放已提交事务持有的键
+     */
+    private void release(List<Transaction> transactions) {
+        synchronized (keyOwners) {
+            for (Transaction transaction : transactions) {
+                for (Object key : transaction.keys) {
+                    KeyOwner keyOwner = keyOwners.get(key);
+                    if (keyOwner != null && --keyOwner.pending == 0) {
+                        keyOwners.remove(key);
+                    }
+                }
+            }
+            keyOwners.notifyAll();
+        }
+    }
+    
+    /**
+     * 在目标库事务中写入位点（不提交）
+     * 位点为假设本组事务提交成功后已连续提交的最后一个有位点的事务；位点之后的本组事务单独记录，重放时跳过
+     *
+     * @return 本次是否删除了之前运行留下的事务记录
+     */
+    private boolean saveOffsets(Connection conn, List<Transaction> group) throws SQLException {
+        Transaction watermark;
+        synchronized (inFlight) {
+            watermark = committedWatermark;
+            for (Transaction transaction : inFlight.values()) {
+                if (!transaction.committed && !group.contains(transaction)) {
+                    break;
+                }
+                if (transaction.position != null) {
+                    watermark = transaction;
+                }
+            }
+        }
+        
+        long watermarkSeq = watermark == null ? 0 : watermark.seq;
+        List<Long> seqs = new ArrayList<>();
+        List<String> transactionIds = new ArrayList<>();
+        for (Transaction transaction : group) {
+            if (transaction.seq > watermarkSeq && transaction.sourceTransactionIds != null) {
+                // 合并的事务记录窗口内全部源库事务（含超大事务拆分出的部分），重放时逐个跳过
+                for (String transactionId : transaction.sourceTransactionIds) {
+                    seqs.add(transaction.seq);
+                    transactionIds.add(transactionId);
+                }
+            }
+        }
+        offsetStore.saveApplied(conn, seqs, transactionIds);
+        
+        if (watermark != null) {
+            offsetStore.saveOffset(conn, watermark.seq, watermark.position);
+            offsetStore.purgeApplied(conn, watermark.seq);
+        }
+        if (!previousRunsPurged && watermarkSeq >= purgePreviousRunsAfterSeq) {
+            offsetStore.purgePreviousRuns(conn);
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * 标记事务已提交，推进连续提交前缀
+     */
+    private void markCommitted(List<Transaction> group) {
+        synchronized (inFlight) {
+            for (Transaction transaction : group) {
+                transaction.committed = true;
+            }
+            while (!inFlight.isEmpty() && inFlight.firstEntry().getValue().committed) {
+                Transaction transaction = inFlight.pollFirstEntry().getValue();
+                if (transaction.position != null) {
+                    committedWatermark = transaction;
+                }
+            }
+        }
+    }
+    
+    private void fail(Throwable cause) {
+        if (failure.compareAndSet(null, cause)) {
+            metrics.recordApplyFailure();
+            log.error("Binlog 应用器失败: {}", name, cause);
+            Consumer<Throwable> listener = failureListener;
+            if (listener != null) {
+                listener.accept(cause);
+            }
+        }
+        synchronized (keyOwners) {
+            keyOwners.notifyAll();
+        }
+    }
+    
+    /**
+     * 获取表的语句模板，表结构对象变化（DDL 后重新加载）时重建
+     */
+    private TablePlan plan(RowChange change) {
+        TablePlan plan = plans.get(change.tableName);
+        if (plan == null || plan.structure != change.structure) {
+            plan = new TablePlan(change.tableName, change.structure, targetType);
+            plans.put(change.tableName, plan);
+        }
+        return plan;
+    }
+    
+    /**
+     * 应用线程：持有一个目标库长连接，按队列顺序分组提交事务
+     */
+    private class Worker implements Runnable {
+        private final BlockingQueue<Transaction> queue;
+        private final Thread thread;
+        private Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+        
+        Worker(int index, int queueCapacity) {
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.thread = new Thread(this, "BinlogApplier-" + name + "-" + index);
+            this.thread.setDaemon(true);
+        }
+        
+        @Override
+        public void run() {
+            List<Transaction> group = new ArrayList<>(batchTransactions);
+            try {
+                while (failure.get() == null) {
+                    Transaction first = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        if (closing) {
+                            break;
+                        }
+                        continue;
+                    }
+                    group.add(first);
+                    queue.drainTo(group, batchTransactions - 1);
+                    
+                    applyWithRetry(group);
+                    if (offsetStore != null) {
+                        markCommitted(group);
+                    }
+                    release(group);
+                    
+                    int groupTransactions = 0;
+                    int groupRows = 0;
+                    for (Transaction transaction : group) {
+                        groupTransactions += transaction.sourceTransactions;
+                        groupRows += transaction.changes.size();
+                        if (transaction.onCommitted != null) {
+                            transaction.onCommitted.run();
+                        }
+                    }
+                    appliedTransactions.addAndGet(groupTransactions);
+                    appliedRows.addAndGet(groupRows);
+                    metrics.recordApplied(groupTransactions, groupRows);
+                    group.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                fail(e);
+            } finally {
+                closeConnection();
+            }
+        }
+        
+        private void applyWithRetry(List<Transaction> group) throws SQLException, InterruptedException {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    if (connection == null) {
+                        connection = targetDataSource.getConnection();
+                        connection.setAutoCommit(false);
+                        if (targetType == null) {
+                            targetType = MigrationConfig.DataSourceConfig.DatabaseType
+                                    .fromProductName(connection.getMetaData().getDatabaseProductName());
+                            if (!UpsertSqlBuilder.supports(targetType)) {
+                                log.warn("目标库类型无法识别，INSERT 不做幂等处理，重放时可能出现主键冲突: {}", name);
+                            }
+                        }
+                    }
+                    apply(group);
+                    boolean purgedPreviousRuns = offsetStore != null && saveOffsets(connection, group);
+                    connection.commit();
+                    if (purgedPreviousRuns) {
+                        previousRunsPurged = true;
+                    }
+                    return;
+                } catch (SQLException e) {
+                    rollbackQuietly();
+                    closeConnection();
+                    if (attempt > MAX_RETRIES) {
+                        throw e;
+                    }
+                    metrics.recordApplyRetry();
+                    log.warn("Binlog 事务应用失败，第 {} 次重试，事务数: {}", attempt, group.size(), e);
+                    Thread.sleep(POLL_INTERVAL_MS * attempt);
+                }
+            }
+        }
+        
+        /**
+         * 按 binlog 顺序写入一组事务，连续的同一语句合并为一次批处理
+         */
+        private void apply(List<Transaction> group) throws SQLException {
+            PreparedStatement current = null;
+            String currentTable = null;
+            int currentRows = 0;
+            for (Transaction transaction : group) {
+                for (RowChange change : transaction.changes) {
+                    TablePlan plan = plan(change);
+                    String sql = plan.sql(change.type);
+                    PreparedStatement stmt = statements.get(sql);
+                    if (stmt == null) {
+                        stmt = connection.prepareStatement(sql);
+                        statements.put(sql, stmt);
+                    }
+                    if (stmt != current) {
+                        if (current != null) {
+                            executeBatch(current, currentTable, currentRows);
+                        }
+                        current = stmt;
+                        currentTable = change.tableName;
+                        currentRows = 0;
+                    }
+                    plan.bind(stmt, change);
+                    stmt.addBatch();
+                    currentRows++;
+                }
+            }
+            if (current != null) {
+                executeBatch(current, currentTable, currentRows);
+            }
+        }
+        
+        /**
+         * 执行批处理并按表记录耗时
+         */
+        private void executeBatch(PreparedStatement stmt, String tableName, int rows) throws SQLException {
+            long start = System.nanoTime();
+            stmt.executeBatch();
+            metrics.recordTableWrite(tableName, rows, System.nanoTime() - start);
+        }
+        
+        private void rollbackQuietly() {
+            if (connection == null) {
+                return;
+            }
+            try {
+                connection.rollback();
+            } catch (SQLException e) {
+                log.debug("回滚 Binlog 应用事务失败", e);
+            }
+        }
+        
+        private void closeConnection() {
+            for (PreparedStatement stmt : statements.values()) {
+                try {
+                    stmt.close();
+                } catch (SQLException e) {
+                    log.debug("关闭预编译语句失败", e);
+                }
+            }
+            statements.clear();
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    log.debug("关闭目标库连接失败", e);
+                }
+                connection = null;
+            }
+        }
+    }
+    
+    /**
+     * 行变更类型
+     */
+    public enum ChangeType {
+        INSERT,
+        UPDATE,
+        DELETE
+    }
+    
+    /**
+     * 解码后的行变更
+     */
+    public static class RowChange {
+        private final ChangeType type;
+        private final String tableName;
+        private final DatabaseOperator.TableStructure structure;
+        
+        /**
+         * 变更前的行（UPDATE/DELETE）
+         */
+        private final Map<String, Object> before;
+        
+        /**
+         * 变更后的行（INSERT/UPDATE）
+         */
+        private final Map<String, Object> after;
+        
+        public RowChange(ChangeType type, String tableName, DatabaseOperator.TableStructure structure,
+                         Map<String, Object> before, Map<String, Object> after) {
+            this.type = type;
+            this.tableName = tableName;
+            this.structure = structure;
+            this.before = before;
+            this.after = after;
+        }
+        
+        public ChangeType getType() {
+            return type;
+        }
+        
+        public String getTableName() {
+            return tableName;
+        }
+        
+        public DatabaseOperator.TableStructure getStructure() {
+            return structure;
+        }
+        
+        public Map<String, Object> getBefore() {
+            return before;
+        }
+        
+        public Map<String, Object> getAfter() {
+            return after;
+        }
+        
+        /**
+         * 行的键（表+主键），没有主键的表返回 null
+         */
+        Object keyOf(Map<String, Object> row) {
+            List<String> primaryKeys = structure.getPrimaryKeys();
+            return primaryKeys == null || primaryKeys.isEmpty() ? null : key(row, primaryKeys);
+        }
+        
+        /**
+         * 收集变更涉及的键（表+主键；UPDATE 修改主键时前后两个键都收集，没有主键的表以表为键）
+         */
+        void collectKeys(Set<Object> keys) {
+            List<String> primaryKeys = structure.getPrimaryKeys();
+            if (primaryKeys == null || primaryKeys.isEmpty()) {
+                keys.add(tableName);
+                return;
+            }
+            if (before != null) {
+                keys.add(key(before, primaryKeys));
+            }
+            if (after != null) {
+                keys.add(key(after, primaryKeys));
+            }
+        }
+        
+        private List<Object> key(Map<String, Object> row, List<String> primaryKeys) {
+            Object[] key = new Object[primaryKeys.size() + 1];
+            key[0] = tableName;
+            for (int i = 0; i < primaryKeys.size(); i++) {
+                Object value = row.get(primaryKeys.get(i));
+                // byte[] 没有按内容比较的 equals
+                key[i + 1] = value instanceof byte[] ? ByteBuffer.wrap((byte[]) value) : value;
+            }
+            return Arrays.asList(key);
+        }
+    }
+    
+    /**
+     * 源库事务（启用合并窗口时为窗口内合并后的多个源库事务）
+     */
+    private static class Transaction {
+        private final long seq;
+        private final List<RowChange> changes;
+        private final Set<Object> keys = new LinkedHashSet<>();
+        
+        /**
+         * 续传位点（最后一个源库事务的位点）
+         */
+        private final BinlogOffsetStore.Position position;
+        
+        /**
+         * 包含的全部源库事务的标识，用于记录位点之后乱序提交的事务
+         */
+        private final List<String> sourceTransactionIds;
+        
+        private final int sourceTransactions;
+        private final Runnable onCommitted;
+        
+        /**
+         * 是否已提交到目标库，由 inFlight 加锁保护
+         */
+        private boolean committed;
+        
+        Transaction(long seq, List<RowChange> changes, BinlogOffsetStore.Position position,
+                    List<String> sourceTransactionIds, int sourceTransactions, Runnable onCommitted) {
+            this.seq = seq;
+            this.changes = changes;
+            this.position = position;
+            this.sourceTransactionIds = sourceTransactionIds;
+            this.sourceTransactions = sourceTransactions;
+            this.onCommitted = onCommitted;
+        }
+    }
+    
+    /**
+     * 键的持有者与未提交的事务数
+     */
+    private static class KeyOwner {
+        private final Worker worker;
+        private int pending;
+        
+        KeyOwner(Worker worker) {
+            this.worker = worker;
+        }
+    }
+    
+    /**
+     * 单表语句模板
+     * INSERT 使用幂等写入语句，重放已应用的插入时覆盖为相同的值；
+     * UPDATE 设置全部列、按变更前的主键定位，主键被修改时也能命中原记录
+     */
+    private static class TablePlan {
+        private final DatabaseOperator.TableStructure structure;
+        private final List<String> columns;
+        private final List<String> primaryKeys;
+        private final String insertSql;
+        private final String updateSql;
+        private final String deleteSql;
+        
+        TablePlan(String tableName, DatabaseOperator.TableStructure structure,
+                  MigrationConfig.DataSourceConfig.DatabaseType targetType) {
+            this.structure = structure;
+            this.columns = structure.getColumns().stream()
+                    .map(DatabaseOperator.TableColumn::getName)
+                    .collect(Collectors.toList());
+            this.primaryKeys = structure.getPrimaryKeys() == null
+                    ? new ArrayList<>() : new ArrayList<>(structure.getPrimaryKeys());
+            
+            String whereClause = primaryKeys.stream()
+                    .map(key -> key + " = ?")
+                    .collect(Collectors.joining(" AND "));
+            this.insertSql = UpsertSqlBuilder.build(targetType, tableName, columns, primaryKeys);
+            this.updateSql = "UPDATE " + tableName + " SET "
+                    + columns.stream().map(c -> c + " = ?").collect(Collectors.joining(", "))
+                    + " WHERE " + whereClause;
+            this.deleteSql = "DELETE FROM " + tableName + " WHERE " + whereClause;
+        }
+        
+        String sql(ChangeType type) {
+            switch (type) {
+                case INSERT:
+                    return insertSql;
+                case UPDATE:
+                    return updateSql;
+                default:
+                    return deleteSql;
+            }
+        }
+        
+        void bind(PreparedStatement stmt, RowChange change) throws SQLException {
+            int paramIndex = 1;
+            if (change.type != ChangeType.DELETE) {
+                for (String column : columns) {
+                    stmt.setObject(paramIndex++, change.after.get(column));
+                }
+            }
+            if (change.type != ChangeType.INSERT) {
+                Map<String, Object> keyRow = change.before != null ? change.before : change.after;
+                for (String primaryKey : primaryKeys) {
+                    Object value = keyRow.get(primaryKey);
+                    if (value == null && change.after != null) {
+                        value = change.after.get(primaryKey);
+                    }
+                    stmt.setObject(paramIndex++, value);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.lixiangyu.common.migration;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ * Binlog 事件适配器
+ * 以 MethodHandle 访问 mysql-binlog-connector 的事件对象，访问器按事件类解析一次并缓存（ClassValue），
+ * 热路径上不再有 getMethod/getMethods 查找，也不依赖编译期的 connector 类型
+ *
+ * 支持的访问：
+ * 1. Event.getData()
+ * 2. TableMapEventData: getTableId/getDatabase/getTable/getColumnTypes
+ * 3. Write/Update/DeleteRowsEventData: getTableId/getRows
+ * 4. QueryEventData: getSql；RotateEventData: getBinlogFilename；GtidEventData: getGtid
+ * 5. 事件头：getHeader().getNextPosition()（事件结束后的 binlog 位置）/getTimestamp()（源库执行时间）
+ * 6. UPDATE 行对：Map.Entry 直接访问，其他 Pair 实现按 getKey/getFirst/getLeft（getValue/getSecond/getRight）或字段解析
+ * 7. 行数据：Object[]（connector 的 Serializable[]）直接按下标访问，其他实现按 getValue(int) 解析
+ * 8. 事件类型：按事件数据类名识别一次并缓存，不在每个事件上做字符串匹配
+ *
+ * @author lixiangyu
+ */
+public final class BinlogEventAdapter {
+    
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    
+    /**
+     * 统一的访问器签名：(Object) -> Object
+     */
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    
+    /**
+     * 事件类 -> 访问器
+     */
+    private static final ClassValue<EventAccessors> EVENT_ACCESSORS = new ClassValue<EventAccessors>() {
+        @Override
+        protected EventAccessors computeValue(Class<?> type) {
+            return new EventAccessors(type);
+        }
+    };
+    
+    /**
+     * 事件数据类 -> 事件类型
+     */
+    private static final ClassValue<EventKind> EVENT_KINDS = new ClassValue<EventKind>() {
+        @Override
+        protected EventKind computeValue(Class<?> type) {
+            return EventKind.of(type.getSimpleName());
+        }
+    };
+    
+    /**
+     * 行对类 -> 访问器
+     */
+    private static final ClassValue<MethodHandle[]> PAIR_ACCESSORS = new ClassValue<MethodHandle[]>() {
+        @Override
+        protected MethodHandle[] computeValue(Class<?> type) {
+            return new MethodHandle[]{
+                    findGetter(type, new String[]{"getKey", "getFirst", "getLeft"}, new String[]{"key", "first", "left"}),
+                    findGetter(type, new String[]{"getValue", "getSecond", "getRight"}, new String[]{"value", "second", "right"})
+            };
+        }
+    };
+    
+    /**
+     * 行类 -> getValue(int) 访问器，签名 (Object, int) -> Object
+     */
+    private static final ClassValue<MethodHandle> ROW_VALUE = new ClassValue<MethodHandle>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+            try {
+                Method method = type.getMethod("getValue", int.class);
+                method.setAccessible(true);
+                return LOOKUP.unreflect(method).asType(MethodType.methodType(Object.class, Object.class, int.class));
+            } catch (NoSuchMethodException | IllegalAccessException | RuntimeException e) {
+                return null;
+            }
+        }
+    };
+    
+    private BinlogEventAdapter() {
+    }
+    
+    /**
+     * 获取事件数据（Event.getData()），传入的已经是事件数据时原样返回
+     */
+    public static Object getData(Object event) {
+        MethodHandle handle = EVENT_ACCESSORS.get(event.getClass()).getData;
+        return handle == null ? event : invoke(handle, event);
+    }
+    
+    /**
+     * 事件数据的类型
+     */
+    public static EventKind kindOf(Object data) {
+        return EVENT_KINDS.get(data.getClass());
+    }
+    
+    public static long getTableId(Object data) {
+        return ((Number) invoke(required(EVENT_ACCESSORS.get(data.getClass()).getTableId, data, "getTableId"), data))
+                .longValue();
+    }
+    
+    public static Object getRows(Object data) {
+        return invoke(required(EVENT_ACCESSORS.get(data.getClass()).getRows, data, "getRows"), data);
+    }
+    
+    public static String getDatabase(Object data) {
+        return (String) invoke(required(EVENT_ACCESSORS.get(data.getClass()).getDatabase, data, "getDatabase"), data);
+    }
+    
+    public static String getTable(Object data) {
+        return (String) invoke(required(EVENT_ACCESSORS.get(data.getClass()).getTable, data, "getTable"), data);
+    }
+    
+    public static byte[] getColumnTypes(Object data) {
+        return (byte[]) invoke(required(EVENT_ACCESSORS.get(data.getClass()).getColumnTypes, data, "getColumnTypes"),
+                data);
+    }
+    
+    public static String getSql(Object data) {
+        return (String) invoke(required(EVENT_ACCESSORS.get(data.getClass()).getSql, data, "getSql"), data);
+    }
+    
+    public static String getBinlogFilename(Object data) {
+        return (String) invoke(required(EVENT_ACCESSORS.get(data.getClass()).getBinlogFilename, data,
+                "getBinlogFilename"), data);
+    }
+    
+    public static String getGtid(Object data) {
+        return (String) invoke(required(EVENT_ACCESSORS.get(data.getClass()).getGtid, data, "getGtid"), data);
+    }
+    
+    /**
+     * 事件结束后的 binlog 位置（Event.getHeader().getNextPosition()）
+     */
+    public static long getNextPosition(Object event) {
+        Object header = invoke(required(EVENT_ACCESSORS.get(event.getClass()).getHeader, event, "getHeader"), event);
+        return ((Number) invoke(required(EVENT_ACCESSORS.get(header.getClass()).getNextPosition, header,
+                "getNextPosition"), header)).longValue();
+    }
+    
+    /**
+     * 事件在源库的执行时间（毫秒，Event.getHeader().getTimestamp()），没有该方法时返回 0
+     */
+    public static long getTimestamp(Object event) {
+        Object header = invoke(required(EVENT_ACCESSORS.get(event.getClass()).getHeader, event, "getHeader"), event);
+        MethodHandle handle = EVENT_ACCESSORS.get(header.getClass()).getTimestamp;
+        return handle == null ? 0 : ((Number) invoke(handle, header)).longValue();
+    }
+    
+    /**
+     * UPDATE 行对的第一个元素（before row），无法解析时返回 null
+     */
+    public static Object pairFirst(Object pair) {
+        if (pair instanceof Map.Entry) {
+            return ((Map.Entry<?, ?>) pair).getKey();
+        }
+        MethodHandle handle = PAIR_ACCESSORS.get(pair.getClass())[0];
+        return handle == null ? null : invoke(handle, pair);
+    }
+    
+    /**
+     * UPDATE 行对的第二个元素（after row），无法解析时返回 null
+     */
+    public static Object pairSecond(Object pair) {
+        if (pair instanceof Map.Entry) {
+            return ((Map.Entry<?, ?>) pair).getValue();
+        }
+        MethodHandle handle = PAIR_ACCESSORS.get(pair.getClass())[1];
+        return handle == null ? null : invoke(handle, pair);
+    }
+    
+    /**
+     * 行数据中指定下标的列值
+     *
+     * @throws IllegalArgumentException 行对象不支持按下标取值
+     */
+    public static Object rowValue(Object row, int index) {
+        if (row instanceof Object[]) {
+            Object[] values = (Object[]) row;
+            return index < values.length ? values[index] : null;
+        }
+        MethodHandle handle = ROW_VALUE.get(row.getClass());
+        if (handle == null) {
+            throw new IllegalArgumentException("不支持的 binlog 行类型: " + row.getClass().getName());
+        }
+        try {
+            return (Object) handle.invokeExact(row, index);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static Object invoke(MethodHandle handle, Object target) {
+        try {
+            return (Object) handle.invokeExact(target);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static MethodHandle required(MethodHandle handle, Object target, String name) {
+        if (handle == null) {
+            throw new IllegalArgumentException("事件类型 " + target.getClass().getName() + " 没有方法 " + name + "()");
+        }
+        return handle;
+    }
+    
+    /**
+     * 解析无参方法（按名称顺序），均不存在时解析字段，返回 (Object) -> Object 签名的访问器
+     */
+    private static MethodHandle findGetter(Class<?> type, String[] methodNames, String[] fieldNames) {
+        for (String name : methodNames) {
+            MethodHandle handle = findMethod(type, name);
+            if (handle != null) {
+                return handle;
+            }
+        }
+        for (String name : fieldNames) {
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                try {
+                    Field field = c.getDeclaredField(name);
+                    field.setAccessible(true);
+                    return LOOKUP.unreflectGetter(field).asType(GETTER_TYPE);
+                } catch (NoSuchFieldException | IllegalAccessException | RuntimeException e) {
+                    // 继续查找父类
+                }
+            }
+        }
+        return null;
+    }
+    
+    private static MethodHandle findMethod(Class<?> type, String name) {
+        try {
+            Method method = type.getMethod(name);
+            method.setAccessible(true);
+            return LOOKUP.unreflect(method).asType(GETTER_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException | RuntimeException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * 事件类型枚举
+     */
+    public enum EventKind {
+        TABLE_MAP("TableMapEvent"),
+        QUERY("QueryEvent"),
+        XID("XidEvent"),
+        ROTATE("RotateEvent"),
+        GTID("GtidEvent"),
+        WRITE_ROWS("WriteRowsEvent"),
+        UPDATE_ROWS("UpdateRowsEvent"),
+        DELETE_ROWS("DeleteRowsEvent"),
+        OTHER(null);
+        
+        private final String classNamePart;
+        
+        EventKind(String classNamePart) {
+            this.classNamePart = classNamePart;
+        }
+        
+        static EventKind of(String simpleName) {
+            for (EventKind kind : values()) {
+                if (kind.classNamePart != null && simpleName.contains(kind.classNamePart)) {
+                    return kind;
+                }
+            }
+            return OTHER;
+        }
+    }
+    
+    /**
+     * 单个事件类的访问器（不存在的方法为 null）
+     */
+    private static final class EventAccessors {
+        private final MethodHandle getData;
+        private final MethodHandle getTableId;
+        private final MethodHandle getRows;
+        private final MethodHandle getDatabase;
+        private final MethodHandle getTable;
+        private final MethodHandle getColumnTypes;
+        private final MethodHandle getSql;
+        private final MethodHandle getBinlogFilename;
+        private final MethodHandle getGtid;
+        private final MethodHandle getHeader;
+        private final MethodHandle getNextPosition;
+        private final MethodHandle getTimestamp;
+        
+        EventAccessors(Class<?> type) {
+            this.getData = findMethod(type, "getData");
+            this.getTableId = findMethod(type, "getTableId");
+            this.getRows = findMethod(type, "getRows");
+            this.getDatabase = findMethod(type, "getDatabase");
+            this.getTable = findMethod(type, "getTable");
+            this.getColumnTypes = findMethod(type, "getColumnTypes");
+            this.getSql = findMethod(type, "getSql");
+            this.getBinlogFilename = findMethod(type, "getBinlogFilename");
+            this.getGtid = findMethod(type, "getGtid");
+            this.getHeader = findMethod(type, "getHeader");
+            this.getNextPosition = findMethod(type, "getNextPosition");
+            this.getTimestamp = findMethod(type, "getTimestamp");
+        }
+    }
+}
@@ -19,7 +19,7 @@ import java.util.concurrent.ConcurrentHashMap;
  * 1. 实时监听 binlog 变更
  * 2. 支持 INSERT/UPDATE/DELETE 操作
  * 3. 自动同步到目标数据库
- * 4. 支持断点续传
+ * 4. 支持断点续传（位点与行变更在同一个目标库事务中提交，重启后从位点继续）
  *
  * TODO 对于增删改查的语句比较粗糙
  *
@@ -32,6 +32,11 @@ import java.util.concurrent.ConcurrentHashMap;
 @Component
 public class BinlogListener {
     
+    /**
+     * 单个源库事务在内存中缓冲的最大行变更数，超过后拆分提交给应用器
+     */
+    private static final int MAX_TRANSACTION_ROWS = 10000;
+    
     /**
      * 监听任务映射（Task ID -> 监听任务）
      * 支持监听多个数据同步任务
@@ -60,16 +65,35 @@ public class BinlogListener {
     }
     
     /**
-     * 停止 binlog 监听
+     * 停止 binlog 监听（断开源库连接，已提交给应用器的事务处理完后关闭应用器）
      *
      * @param taskId 任务ID
+     * @return 停止前的任务状态，任务不存在时返回 null
      */
-    public void stopListening(String taskId) {
+    public ListenerState stopListening(String taskId) {
         BinlogListenerTask task = listenerTasks.remove(taskId);
-        if (task != null) {
-            task.stop();
+        if (task == null) {
+            return null;
+        }
+        ListenerState state = task.getState();
+        task.stop();
+        if (state == ListenerState.FAILED) {
+            log.warn("停止 Binlog 监听，任务已失败，Task ID: {}, 原因: {}", taskId, task.getFailure());
+        } else {
             log.info("停止 Binlog 监听，Task ID: {}", taskId);
         }
+        return state;
+    }
+    
+    /**
+     * 获取监听任务的运行指标
+     *
+     * @param taskId 任务ID
+     * @return 指标快照，任务不存在时返回 null
+     */
+    public CdcMetrics.Snapshot getMetrics(String taskId) {
+        BinlogListenerTask task = listenerTasks.get(taskId);
+        return task == null ? null : task.metrics.snapshot();
     }
     
     /**
@@ -80,7 +104,49 @@ public class BinlogListener {
      */
     public boolean isRunning(String taskId) {
         BinlogListenerTask task = listenerTasks.get(taskId);
-        return task != null && task.isRunning();
+        return task != null && task.getState() == ListenerState.RUNNING;
+    }
+    
+    /**
+     * 获取监听任务状态
+     *
+     * @param taskId 任务ID
+     * @return 任务状态，任务不存在时返回 null
+     */
+    public ListenerState getState(String taskId) {
+        BinlogListenerTask task = listenerTasks.get(taskId);
+        return task == null ? null : task.getState();
+    }
+    
+    /**
+     * 获取监听任务的失败原因
+     *
+     * @param taskId 任务ID
+     * @return 失败原因，任务不存在或未失败时返回 null
+     */
+    public String getFailure(String taskId) {
+        BinlogListenerTask task = listenerTasks.get(taskId);
+        return task == null ? null : task.getFailure();
+    }
+    
+    /**
+     * 监听任务状态
+     */
+    public enum ListenerState {
+        /**
+         * 运行中
+         */
+        RUNNING,
+        
+        /**
+         * 已停止（未启动、调用了停止或监听库不可用时的轮询同步结束）
+         */
+        STOPPED,
+        
+        /**
+         * 失败：解码或目标库写入失败、连接失败，源库连接已断开，修复后从位点重新启动
+         */
+        FAILED
     }
     
     /**
@@ -119,6 +185,84 @@ public class BinlogListener {
          */
         @lombok.Builder.Default
         private long serverId = 1L;
+        
+        /**
+         * 应用线程数（按 表+主键 哈希分配，同一主键的变更由同一线程按顺序应用）
+         */
+        @lombok.Builder.Default
+        private int applyThreads = 4;
+        
+        /**
+         * 每个应用线程的队列容量（事务数），队列满时监听线程阻塞
+         */
+        @lombok.Builder.Default
+        private int applyQueueCapacity = 1000;
+        
+        /**
+         * 单次目标库提交合并的最大事务数
+         */
+        @lombok.Builder.Default
+        private int applyBatchTransactions = 50;
+        
+        /**
+         * 合并窗口（毫秒）：窗口内同一 表+主键 的连续多次变更合并为一次净变更（其他行的变更隔开的不合并，保持跨行顺序），
+         * 窗口内的源库事务整体提交；0 表示不合并
+         */
+        @lombok.Builder.Default
+        private long coalesceWindowMillis = 0;
+        
+        /**
+         * 合并窗口的行变更数上限，达到后立即提交窗口
+         */
+        @lombok.Builder.Default
+        private int coalesceMaxRows = 5000;
+        
+        /**
+         * 是否持久化 binlog 位点（保存在目标库的位点表中，重启后从位点续传，优先于 binlogFile/binlogPosition）
+         */
+        @lombok.Builder.Default
+        private boolean enableCheckpoint = false;
+        
+        /**
+         * 断点标识（位点表中的任务标识），为空时使用 "server-" + serverId；重启后使用相同标识才能续传
+         */
+        private String checkpointId;
+        
+        /**
+         * 位点表名（位点之后乱序提交的事务记录在 {offsetTable}_applied 表中）
+         */
+        @lombok.Builder.Default
+        private String offsetTable = "binlog_offsets";
+        
+        /**
+         * 是否跟踪 GTID 集合并按 GTID 续传（源库需开启 gtid_mode）
+         */
+        @lombok.Builder.Default
+        private boolean useGtid = false;
+        
+        /**
+         * 轮询同步（降级方案）的并发线程数
+         */
+        @lombok.Builder.Default
+        private int pollThreads = 4;
+        
+        /**
+         * 轮询同步每页读取的最大记录数
+         */
+        @lombok.Builder.Default
+        private int pollBatchSize = 1000;
+        
+        /**
+         * 轮询同步的最小间隔（毫秒），有变更的表按该间隔轮询
+         */
+        @lombok.Builder.Default
+        private long pollMinIntervalMillis = 200L;
+        
+        /**
+         * 轮询同步的最大间隔（毫秒），空闲的表逐次加倍退避到该间隔
+         */
+        @lombok.Builder.Default
+        private long pollMaxIntervalMillis = 30000L;
     }
     
     /**
@@ -131,14 +275,85 @@ public class BinlogListener {
         private volatile boolean stopped = false;
         
         /**
-         * 表ID到表名的映射缓存
+         * binlog 客户端（连接前设置，stop() 和失败处理用它断开连接）
+         */
+        private volatile Object client;
+        
+        /**
+         * 失败原因，null 表示未失败
+         */
+        private volatile String failure;
+        
+        /**
+         * 表结构注册表（TABLE_MAP 事件维护表ID映射，列元数据按表缓存）
+         */
+        private BinlogSchemaRegistry schemaRegistry;
+        
+        /**
+         * binlog_row_image 配置（启动时读取一次）
+         */
+        private volatile String binlogRowImage = "UNKNOWN";
+        
+        /**
+         * 目标库应用器（监听线程只解码，写入由应用线程完成）
+         */
+        private BinlogApplier applier;
+        
+        /**
+         * 当前源库事务中已解码、尚未提交给应用器的行变更（只由监听线程访问）
+         */
+        private List<BinlogApplier.RowChange> pendingChanges = new java.util.ArrayList<>();
+        
+        /**
+         * 位点存储（未启用断点续传时为 null）
+         */
+        private BinlogOffsetStore offsetStore;
+        
+        /**
+         * 续传的位点（启动时从位点表加载）
+         */
+        private BinlogOffsetStore.Offset resumeOffset;
+        
+        /**
+         * 位点之后已经提交过的事务标识，重放时跳过（只由监听线程访问）
+         */
+        private final java.util.Set<String> skipTransactions = new java.util.HashSet<>();
+        
+        /**
+         * 当前 binlog 文件名（由 ROTATE 事件维护）
+         */
+        private String currentBinlogFile;
+        
+        /**
+         * 当前事务的 GTID（由 GTID 事件设置，事务提交后清空）
+         */
+        private String currentGtid;
+        
+        /**
+         * 当前事务的起始标识（GTID，未开启 GTID 时为 BEGIN 事件结束后的 文件:位置），由 BEGIN 事件设置
+         * 超大事务拆分出的部分以 起始标识#序号 作为事务标识，重放时读到相同的 BEGIN 得到相同的标识
          */
-        private final java.util.Map<Long, String> tableIdToNameMap = new java.util.concurrent.ConcurrentHashMap<>();
+        private String currentTransactionStart;
         
         /**
-         * 上次同步时间戳（用于轮询同步）
+         * 当前事务已拆分提交的部分数
          */
-        private final java.util.Map<String, Long> lastSyncTimeMap = new java.util.concurrent.ConcurrentHashMap<>();
+        private int currentPartCount;
+        
+        /**
+         * 已读取事务的 GTID 集合（未跟踪 GTID 时为 null）
+         */
+        private GtidSet gtidSet;
+        
+        /**
+         * 运行指标（解码由监听线程写入，应用由应用线程写入）
+         */
+        private final CdcMetrics metrics = new CdcMetrics();
+        
+        /**
+         * 最近一个事件在源库的执行时间（只由监听线程访问）
+         */
+        private long currentEventTimestamp;
         
         public BinlogListenerTask(String taskId, BinlogListenerConfig config) {
             this.taskId = taskId;
@@ -155,6 +370,10 @@ public class BinlogListener {
                 // 注意：需要添加 mysql-connector-java 依赖
                 listenBinlog();
             } catch (Exception e) {
+                if (!stopped) {
+                    // 连接失败等：停止后断开连接导致的异常不算失败
+                    failure = describe(e);
+                }
                 log.error("Binlog 监听任务异常，Task ID: {}", taskId, e);
             } finally {
                 running = false;
@@ -176,23 +395,42 @@ public class BinlogListener {
                 // 说明：动态加载类，如果类不存在会抛出 ClassNotFoundException
                 // 位置：BinlogListener.java:169
                 Class.forName("com.github.shyiko.mysql.binlog.BinaryLogClient");
+                initSchemaRegistry();
+                initOffsetStore();
                 Object client = createBinaryLogClient();
                 
                 // 设置事件监听器
                 setEventListener(client);
                 
-                // 连接到 MySQL
-                connect(client);
-                
-                // 保持运行
-                // 一直保持连接，一直进行监听
-                while (!stopped && running) {
-                    Thread.sleep(1000);
+                applier = new BinlogApplier(shortId(taskId), config.getTargetDataSource(), config.getApplyThreads(),
+                        config.getApplyQueueCapacity(), config.getApplyBatchTransactions(), offsetStore);
+                applier.setCoalescing(config.getCoalesceWindowMillis(), config.getCoalesceMaxRows());
+                applier.setMetrics(metrics);
+                applier.setFailureListener(this::fail);
+                applier.start();
+                try {
+                    // 连接到 MySQL（阻塞到断开连接为止；stop() 和失败处理在其他线程上断开）
+                    this.client = client;
+                    if (!stopped) {
+                        connect(client);
+                    }
+                    
+                    // 保持运行
+                    // 一直保持连接，一直进行监听
+                    while (!stopped && running) {
+                        Thread.sleep(1000);
+                    }
+                    
+                    // 断开连接
+                    disconnect(client);
+                } finally {
+                    // 未收到提交事件的事务不应用，已提交给应用器的事务处理完后再关闭
+                    if (!pendingChanges.isEmpty()) {
+                        log.warn("丢弃未完成的源库事务，行变更数: {}", pendingChanges.size());
+                    }
+                    applier.close();
                 }
-                
-                // 断开连接
-                disconnect(client);
-                
+            
             } catch (ClassNotFoundException e) {
                 log.warn("Binlog 监听库未找到，使用简化实现。建议添加 mysql-binlog-connector-java 依赖");
                 // 降级方案：使用轮询方式模拟增量同步
@@ -200,6 +438,65 @@ public class BinlogListener {
             }
         }
         
+        /**
+         * 初始化表结构注册表
+         * 列元数据从源库加载，列顺序与 binlog 行数据一致；只接收源库当前库的事件
+         */
+        private void initSchemaRegistry() throws SQLException {
+            String database;
+            try (Connection conn = config.getSourceDataSource().getConnection()) {
+                database = conn.getCatalog();
+            }
+            schemaRegistry = new BinlogSchemaRegistry(config.getSourceDataSource(), this::getTableStructure, database);
+            binlogRowImage = getBinlogRowImage();
+            if (!"FULL".equalsIgnoreCase(binlogRowImage)) {
+                log.warn("binlog_row_image 配置为 {}，UPDATE 事件的 before/after rows 解析可能不完整。建议设置为 FULL", binlogRowImage);
+            }
+        }
+        
+        /**
+         * 初始化位点存储并加载续传位点
+         */
+        private void initOffsetStore() throws SQLException {
+            if (!config.isEnableCheckpoint()) {
+                return;
+            }
+            
+            offsetStore = createOffsetStore();
+            resumeOffset = offsetStore.open();
+            if (resumeOffset != null) {
+                skipTransactions.addAll(resumeOffset.getAppliedTransactions());
+            }
+            
+            if (config.isUseGtid()) {
+                if (resumeOffset != null && resumeOffset.getGtidSet() != null) {
+                    gtidSet = GtidSet.parse(resumeOffset.getGtidSet());
+                } else if (config.getBinlogFile() == null && !hasResumePosition()) {
+                    // 从当前位置开始监听时，以源库已执行的 GTID 集合为起点
+                    gtidSet = GtidSet.parse(queryGtidExecuted());
+                } else {
+                    log.warn("从指定的 binlog 文件开始监听，无法确定起始 GTID 集合，按文件位置续传");
+                }
+            }
+        }
+        
+        private BinlogOffsetStore createOffsetStore() {
+            String checkpointId = config.getCheckpointId() != null ? config.getCheckpointId() : "server-" + config.getServerId();
+            return new BinlogOffsetStore(config.getTargetDataSource(), config.getOffsetTable(), checkpointId);
+        }
+        
+        private boolean hasResumePosition() {
+            return resumeOffset != null && resumeOffset.getBinlogFile() != null && resumeOffset.getBinlogPosition() != null;
+        }
+        
+        private String queryGtidExecuted() throws SQLException {
+            try (java.sql.Connection conn = config.getSourceDataSource().getConnection();
+                 java.sql.Statement stmt = conn.createStatement();
+                 java.sql.ResultSet rs = stmt.executeQuery("SELECT @@GLOBAL.gtid_executed")) {
+                return rs.next() ? rs.getString(1) : "";
+            }
+        }
+        
         /**
          * 创建 BinaryLogClient
          */
@@ -227,6 +524,24 @@ public class BinlogListener {
                 // 参数：username - MySQL 用户名
                 // 位置：BinlogListener.java:208
                 binaryLogClientClass.getMethod("setUsername", String.class).invoke(client, username);
+                
+                // 续传位点优先：GTID 集合 > 位点表中的文件位置 > 配置的文件位置
+                if (gtidSet != null) {
+                    // ========== 反射调用：设置 GTID 集合（按 GTID 续传） ==========
+                    // 方法原型：void setGtidSet(String gtidSet)
+                    // 作用：从该集合之后的第一个事务开始读取
+                    binaryLogClientClass.getMethod("setGtidSet", String.class).invoke(client, gtidSet.toString());
+                    log.info("按 GTID 续传，GTID 集合: {}", gtidSet);
+                    return client;
+                }
+                if (hasResumePosition()) {
+                    currentBinlogFile = resumeOffset.getBinlogFile();
+                    binaryLogClientClass.getMethod("setBinlogFilename", String.class).invoke(client, currentBinlogFile);
+                    binaryLogClientClass.getMethod("setBinlogPosition", long.class)
+                            .invoke(client, resumeOffset.getBinlogPosition());
+                    log.info("从位点续传，文件: {}, 位置: {}", currentBinlogFile, resumeOffset.getBinlogPosition());
+                    return client;
+                }
 
                 // ========== 反射调用：设置 binlog 文件名（用于断点续传） ==========
                 // 方法原型：void setBinlogFilename(String binlogFilename)
@@ -234,6 +549,7 @@ public class BinlogListener {
                 // 参数：binlogFilename - binlog 文件名（如 "mysql-bin.000001"）
                 // 位置：BinlogListener.java:212
                 if (config.getBinlogFile() != null) {
+                    currentBinlogFile = config.getBinlogFile();
                     binaryLogClientClass.getMethod("setBinlogFilename", String.class).invoke(client, config.getBinlogFile());
                 }
                 
@@ -292,22 +608,188 @@ public class BinlogListener {
          * 处理 binlog 事件
          */
         private void handleBinlogEvent(Object event) {
+            if (stopped) {
+                // 已停止：断开连接前仍可能收到事件，不再解码，避免越过失败的事件继续应用
+                return;
+            }
             try {
-                // 解析事件类型
-                String eventType = event.getClass().getSimpleName();
-                log.debug("收到 Binlog 事件: {}", eventType);
+                // Event 只是 header + data 的容器，具体的表ID、行数据在 EventData 中
+                Object data = BinlogEventAdapter.getData(event);
+                if (data == null) {
+                    return;
+                }
+                currentEventTimestamp = BinlogEventAdapter.getTimestamp(event);
+                metrics.recordEvent(currentEventTimestamp);
                 
-                // 处理不同的事件类型
-                if (eventType.contains("WriteRowsEvent")) {
-                    handleInsertEvent(event);
-                } else if (eventType.contains("UpdateRowsEvent")) {
-                    handleUpdateEvent(event);
-                } else if (eventType.contains("DeleteRowsEvent")) {
-                    handleDeleteEvent(event);
+                // 解析事件类型（按事件数据类缓存）
+                BinlogEventAdapter.EventKind eventKind = BinlogEventAdapter.kindOf(data);
+                if (log.isDebugEnabled()) {
+                    log.debug("收到 Binlog 事件: {}", data.getClass().getSimpleName());
                 }
                 
+                // 处理不同的事件类型
+                switch (eventKind) {
+                    case TABLE_MAP:
+                        handleTableMapEvent(data);
+                        break;
+                    case XID:
+                        // InnoDB 事务提交
+                        commitTransaction(event);
+                        break;
+                    case QUERY:
+                        handleQueryEvent(event, data);
+                        break;
+                    case ROTATE:
+                        currentBinlogFile = BinlogEventAdapter.getBinlogFilename(data);
+                        break;
+                    case GTID:
+                        currentGtid = BinlogEventAdapter.getGtid(data);
+                        break;
+                    case WRITE_ROWS:
+                        handleInsertEvent(data);
+                        break;
+                    case UPDATE_ROWS:
+                        handleUpdateEvent(data);
+                        break;
+                    case DELETE_ROWS:
+                        handleDeleteEvent(data);
+                        break;
+                    default:
+                        break;
+                }
+            
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stop();
             } catch (Exception e) {
-                log.error("处理 Binlog 事件失败", e);
+                // 解码失败或目标库写入已失败：继续消费会跳过这个事件所在的事务，停止监听，修复后从位点续传
+                metrics.recordDecodeError();
+                log.error("处理 Binlog 事件失败，停止监听，Task ID: {}", taskId, e);
+                fail(e);
+            }
+        }
+        
+        /**
+         * 处理 TABLE_MAP 事件：每个行事件之前都会有一个 TABLE_MAP 事件描述 tableId 对应的表
+         */
+        private void handleTableMapEvent(Object data) throws Exception {
+            // 表ID与库名、表名的对应关系，以及表的列数
+            long tableId = BinlogEventAdapter.getTableId(data);
+            String database = BinlogEventAdapter.getDatabase(data);
+            String table = BinlogEventAdapter.getTable(data);
+            byte[] columnTypes = BinlogEventAdapter.getColumnTypes(data);
+            
+            cacheTableMapping(tableId, database, table, columnTypes == null ? 0 : columnTypes.length);
+        }
+        
+        /**
+         * 处理 QUERY 事件：DDL 使表结构缓存失效
+         */
+        private void handleQueryEvent(Object event, Object data) throws Exception {
+            // 语句文本（BEGIN、DDL 等）
+            String sql = BinlogEventAdapter.getSql(data);
+            if (sql == null) {
+                return;
+            }
+            if ("BEGIN".equalsIgnoreCase(sql.trim())) {
+                beginTransaction(event);
+                return;
+            }
+            // COMMIT（非事务引擎）提交当前事务；DDL 隐式提交
+            commitTransaction(event);
+            schemaRegistry.onQuery(sql);
+        }
+        
+        /**
+         * 源库事务开始：记录事务起始标识，用于标识超大事务拆分出的部分
+         */
+        private void beginTransaction(Object event) {
+            currentTransactionStart = currentGtid != null && !isAnonymousGtid(currentGtid)
+                    ? currentGtid
+                    : currentBinlogFile + ":" + BinlogEventAdapter.getNextPosition(event);
+            currentPartCount = 0;
+        }
+        
+        /**
+         * 源库事务提交：按提交事件结束后的位点提交给应用器
+         */
+        private void commitTransaction(Object event) throws InterruptedException {
+            // 位置描述在 commitPosition 清空当前 GTID 之前生成
+            String source = currentBinlogFile + ":" + BinlogEventAdapter.getNextPosition(event)
+                    + (currentGtid == null ? "" : " " + currentGtid);
+            BinlogOffsetStore.Position position = commitPosition(event);
+            flushTransaction(position, position == null ? null : position.getTransactionId(), source);
+            currentTransactionStart = null;
+            currentPartCount = 0;
+        }
+        
+        /**
+         * 事务提交事件结束后的位点（未启用断点续传时返回 null）
+         */
+        private BinlogOffsetStore.Position commitPosition(Object event) {
+            String gtid = currentGtid;
+            currentGtid = null;
+            if (offsetStore == null) {
+                return null;
+            }
+            // 未开启 GTID 时源库写入匿名 GTID（server uuid 全 0），不作为事务标识
+            if (gtid != null && isAnonymousGtid(gtid)) {
+                gtid = null;
+            }
+            if (gtid != null && gtidSet != null) {
+                gtidSet.add(gtid);
+            }
+            return new BinlogOffsetStore.Position(currentBinlogFile, BinlogEventAdapter.getNextPosition(event), gtid,
+                    gtidSet == null ? null : gtidSet.toString());
+        }
+        
+        private boolean isAnonymousGtid(String gtid) {
+            return gtid.startsWith("00000000-0000-0000-0000-000000000000");
+        }
+        
+        /**
+         * 将当前源库事务提交给应用器
+         * 
+         * @param position 事务提交后的位点，为 null 时（未启用断点续传或超大事务拆分）不作为续传位点
+         * @param transactionId 事务标识（拆分出的部分为 起始标识#序号），为 null 时（未启用断点续传）不记录、不跳过
+         * @param source 事务提交后的 binlog 位置（文件:位置 GTID，用于指标），超大事务拆分时为 null
+         */
+        private void flushTransaction(BinlogOffsetStore.Position position, String transactionId, String source)
+                throws InterruptedException {
+            metrics.recordDecodedRows(pendingChanges.size());
+            if (transactionId != null && !skipTransactions.isEmpty() && skipTransactions.remove(transactionId)) {
+                // 上次运行已在位点之后提交过该事务（或拆分出的这一部分）
+                log.debug("跳过已应用的事务: {}", transactionId);
+                pendingChanges = new java.util.ArrayList<>();
+                if (skipTransactions.isEmpty()) {
+                    applier.markSkippedTransactionsPassed();
+                }
+                return;
+            }
+            if (pendingChanges.isEmpty()) {
+                return;
+            }
+            List<BinlogApplier.RowChange> changes = pendingChanges;
+            pendingChanges = new java.util.ArrayList<>();
+            long timestamp = currentEventTimestamp;
+            metrics.recordTransactionDecoded(timestamp);
+            applier.submit(changes, position, transactionId,
+                    () -> metrics.recordTransactionCommitted(timestamp, source));
+        }
+        
+        /**
+         * 追加行变更到当前源库事务
+         * 超大事务按 MAX_TRANSACTION_ROWS 拆分提交，避免整个事务驻留内存（拆分后各部分分别提交，拆分出的部分不作为续传位点，
+         * 以 起始标识#序号 记录到位点表，重放时跳过已提交的部分）
+         */
+        private void appendChange(BinlogApplier.RowChange change) throws InterruptedException {
+            pendingChanges.add(change);
+            if (pendingChanges.size() >= MAX_TRANSACTION_ROWS) {
+                log.warn("源库事务行变更数达到 {}，拆分提交", MAX_TRANSACTION_ROWS);
+                currentPartCount++;
+                String partId = offsetStore == null || currentTransactionStart == null
+                        ? null : currentTransactionStart + "#" + currentPartCount;
+                flushTransaction(null, partId, null);
             }
         }
         
@@ -315,19 +797,8 @@ public class BinlogListener {
          * 处理 INSERT 事件
          */
         private void handleInsertEvent(Object event) throws Exception {
-            // ========== 反射调用：获取 binlog 事件中的表ID ==========
-            // 方法原型：long getTableId()
-            // 作用：获取 binlog 事件对应的表ID（MySQL 内部表标识符）
-            // 返回：表ID（long 类型）
-            // 位置：BinlogListener.java:272
-            long tableId = (Long) event.getClass().getMethod("getTableId").invoke(event);
-            
-            // ========== 反射调用：获取 binlog 事件中的行数据 ==========
-            // 方法原型：List<Row> getRows()
-            // 作用：获取 binlog 事件中包含的所有行数据（INSERT 事件包含插入的行）
-            // 返回：行数据列表（List<Row> 类型）
-            // 位置：BinlogListener.java:273
-            Object rows = event.getClass().getMethod("getRows").invoke(event);
+            long tableId = BinlogEventAdapter.getTableId(event);
+            Object rows = BinlogEventAdapter.getRows(event);
             
             // 获取表名
             String tableName = getTableName(tableId);
@@ -335,190 +806,115 @@ public class BinlogListener {
                 return;
             }
             
-            // 同步到目标数据库
-            syncInsertToTarget(tableName, rows);
+            decodeInsert(tableName, rows);
         }
         
         /**
          * 处理 UPDATE 事件
          */
         private void handleUpdateEvent(Object event) throws Exception {
-            // ========== 反射调用：获取 binlog UPDATE 事件中的表ID ==========
-            // 方法原型：long getTableId()
-            // 作用：获取 UPDATE 事件对应的表ID
-            // 位置：BinlogListener.java:289
-            long tableId = (Long) event.getClass().getMethod("getTableId").invoke(event);
-            
-            // ========== 反射调用：获取 binlog UPDATE 事件中的行数据 ==========
-            // 方法原型：List<Pair<Row, Row>> getRows()
-            // 作用：获取 UPDATE 事件中包含的行数据对（Pair<beforeRow, afterRow>）
-            // 说明：在 binlog_row_image = FULL 模式下，包含完整的 before 和 after rows
-            // 位置：BinlogListener.java:290
-            Object rows = event.getClass().getMethod("getRows").invoke(event);
+            long tableId = BinlogEventAdapter.getTableId(event);
+            Object rows = BinlogEventAdapter.getRows(event);
             
             String tableName = getTableName(tableId);
             if (tableName == null || !shouldListenTable(tableName)) {
                 return;
             }
             
-            // 检查 binlog_row_image 配置
-            String binlogRowImage = getBinlogRowImage();
-            if (!"FULL".equalsIgnoreCase(binlogRowImage)) {
-                log.warn("binlog_row_image 配置为 {}，UPDATE 事件的 before/after rows 解析可能不完整。建议设置为 FULL", binlogRowImage);
-            }
-            
-            syncUpdateToTarget(tableName, rows, binlogRowImage);
+            // binlog_row_image 在启动时读取一次，不在每个事件上查询
+            decodeUpdate(tableName, rows, binlogRowImage);
         }
         
         /**
          * 处理 DELETE 事件
          */
         private void handleDeleteEvent(Object event) throws Exception {
-            // ========== 反射调用：获取 binlog DELETE 事件中的表ID ==========
-            // 方法原型：long getTableId()
-            // 作用：获取 DELETE 事件对应的表ID
-            // 位置：BinlogListener.java:310
-            long tableId = (Long) event.getClass().getMethod("getTableId").invoke(event);
-            
-            // ========== 反射调用：获取 binlog DELETE 事件中的行数据 ==========
-            // 方法原型：List<Row> getRows()
-            // 作用：获取 DELETE 事件中包含的所有行数据（被删除的行）
-            // 位置：BinlogListener.java:311
-            Object rows = event.getClass().getMethod("getRows").invoke(event);
+            long tableId = BinlogEventAdapter.getTableId(event);
+            Object rows = BinlogEventAdapter.getRows(event);
             
             String tableName = getTableName(tableId);
             if (tableName == null || !shouldListenTable(tableName)) {
                 return;
             }
             
-            syncDeleteToTarget(tableName, rows);
+            decodeDelete(tableName, rows);
         }
         
         /**
-         * 同步 INSERT 到目标数据库
+         * 解码 INSERT 行变更
          */
-        private void syncInsertToTarget(String tableName, Object rows) throws SQLException {
-            log.debug("同步 INSERT 到目标表: {}", tableName);
+        private void decodeInsert(String tableName, Object rows) throws InterruptedException {
+            DatabaseOperator.TableStructure structure = schemaRegistry.getTableStructure(tableName);
+            if (structure == null) {
+                log.warn("表 {} 不存在，跳过 INSERT 同步", tableName);
+                return;
+            }
             
-            try (java.sql.Connection conn = config.getTargetDataSource().getConnection()) {
-                // 获取表结构
-                DatabaseOperator.TableStructure structure = getTableStructure(conn, tableName);
-                if (structure == null) {
-                    log.warn("表 {} 不存在，跳过 INSERT 同步", tableName);
-                    return;
-                }
-                
-                // 解析 rows（binlog 事件中的行数据）
-                List<Map<String, Object>> rowDataList = parseRows(rows, structure);
-                
-                // 构建 INSERT SQL
-                String insertSql = buildInsertSql(tableName, structure);
-                
-                // 批量插入
-                try (java.sql.PreparedStatement stmt = conn.prepareStatement(insertSql)) {
-                    for (Map<String, Object> rowData : rowDataList) {
-                        setInsertParameters(stmt, rowData, structure);
-                        stmt.addBatch();
-                    }
-                    stmt.executeBatch();
-                    log.debug("成功同步 {} 条 INSERT 记录到表: {}", rowDataList.size(), tableName);
-                }
-            } catch (Exception e) {
-                log.error("同步 INSERT 到目标表 {} 失败", tableName, e);
-                throw new SQLException("同步 INSERT 失败", e);
+            // 解析 rows（binlog 事件中的行数据）
+            for (Map<String, Object> rowData : parseRows(rows, structure)) {
+                appendChange(new BinlogApplier.RowChange(
+                        BinlogApplier.ChangeType.INSERT, tableName, structure, null, rowData));
             }
         }
         
         /**
-         * 同步 UPDATE 到目标数据库
+         * 解码 UPDATE 行变更
          * 
          * @param tableName 表名
          * @param rows UPDATE 事件的 rows（List<Pair<Row, Row>> 或 List<Row>）
          * @param binlogRowImage binlog_row_image 配置值（FULL/MINIMAL/NOBLOB）
          */
-        private void syncUpdateToTarget(String tableName, Object rows, String binlogRowImage) throws SQLException {
-            log.debug("同步 UPDATE 到目标表: {}, binlog_row_image: {}", tableName, binlogRowImage);
+        private void decodeUpdate(String tableName, Object rows, String binlogRowImage) throws InterruptedException {
+            DatabaseOperator.TableStructure structure = schemaRegistry.getTableStructure(tableName);
+            if (structure == null) {
+                log.warn("表 {} 不存在，跳过 UPDATE 同步", tableName);
+                return;
+            }
+            if (structure.getPrimaryKeys().isEmpty()) {
+                log.warn("表 {} 没有主键，无法执行 UPDATE 同步", tableName);
+                return;
+            }
             
-            try (java.sql.Connection conn = config.getTargetDataSource().getConnection()) {
-                // 获取表结构
-                DatabaseOperator.TableStructure structure = getTableStructure(conn, tableName);
-                if (structure == null) {
-                    log.warn("表 {} 不存在，跳过 UPDATE 同步", tableName);
-                    return;
-                }
-                
-                // 只有在 FULL 模式下才能正确解析 before 和 after rows
-                if (!"FULL".equalsIgnoreCase(binlogRowImage)) {
-                    log.warn("binlog_row_image 为 {}，UPDATE 事件可能不包含完整的 before/after rows，同步可能不准确", binlogRowImage);
-                }
-                
-                // 解析 rows（binlog UPDATE 事件在 FULL 模式下包含 before 和 after 两行）
-                List<Map<String, Object>> beforeRows = parseRowsBefore(rows, structure, binlogRowImage);
-                List<Map<String, Object>> afterRows = parseRowsAfter(rows, structure, binlogRowImage);
-                
-                if (afterRows.isEmpty()) {
-                    log.warn("UPDATE 事件未解析到 after rows，跳过同步");
-                    return;
-                }
-                
-                // 构建 UPDATE SQL（基于主键更新非主键列）
-                String updateSql = buildUpdateSql(tableName, structure);
-                
-                // 批量更新
-                try (java.sql.PreparedStatement stmt = conn.prepareStatement(updateSql)) {
-                    for (int i = 0; i < afterRows.size(); i++) {
-                        Map<String, Object> afterRow = afterRows.get(i);
-                        Map<String, Object> beforeRow = i < beforeRows.size() ? beforeRows.get(i) : null;
-                        
-                        setUpdateParameters(stmt, afterRow, beforeRow, structure);
-                        stmt.addBatch();
-                    }
-                    stmt.executeBatch();
-                    log.debug("成功同步 {} 条 UPDATE 记录到表: {}", afterRows.size(), tableName);
-                }
-            } catch (Exception e) {
-                log.error("同步 UPDATE 到目标表 {} 失败", tableName, e);
-                throw new SQLException("同步 UPDATE 失败", e);
+            // 只有在 FULL 模式下才能正确解析 before 和 after rows
+            if (!"FULL".equalsIgnoreCase(binlogRowImage)) {
+                log.warn("binlog_row_image 为 {}，UPDATE 事件可能不包含完整的 before/after rows，同步可能不准确", binlogRowImage);
+            }
+            
+            // 解析 rows（binlog UPDATE 事件在 FULL 模式下包含 before 和 after 两行）
+            List<Map<String, Object>> beforeRows = parseRowsBefore(rows, structure, binlogRowImage);
+            List<Map<String, Object>> afterRows = parseRowsAfter(rows, structure, binlogRowImage);
+            
+            if (afterRows.isEmpty()) {
+                log.warn("UPDATE 事件未解析到 after rows，跳过同步");
+                return;
+            }
+            
+            for (int i = 0; i < afterRows.size(); i++) {
+                Map<String, Object> beforeRow = i < beforeRows.size() ? beforeRows.get(i) : null;
+                appendChange(new BinlogApplier.RowChange(
+                        BinlogApplier.ChangeType.UPDATE, tableName, structure, beforeRow, afterRows.get(i)));
             }
         }
         
         /**
-         * 同步 DELETE 到目标数据库
+         * 解码 DELETE 行变更
          */
-        private void syncDeleteToTarget(String tableName, Object rows) throws SQLException {
-            log.debug("同步 DELETE 到目标表: {}", tableName);
+        private void decodeDelete(String tableName, Object rows) throws InterruptedException {
+            DatabaseOperator.TableStructure structure = schemaRegistry.getTableStructure(tableName);
+            if (structure == null) {
+                log.warn("表 {} 不存在，跳过 DELETE 同步", tableName);
+                return;
+            }
             
-            try (java.sql.Connection conn = config.getTargetDataSource().getConnection()) {
-                // 获取表结构
-                DatabaseOperator.TableStructure structure = getTableStructure(conn, tableName);
-                if (structure == null) {
-                    log.warn("表 {} 不存在，跳过 DELETE 同步", tableName);
-                    return;
-                }
-                
-                // 解析 rows
-                List<Map<String, Object>> rowDataList = parseRows(rows, structure);
-                
-                // 构建 DELETE SQL（基于主键）
-                if (structure.getPrimaryKeys().isEmpty()) {
-                    log.warn("表 {} 没有主键，无法执行 DELETE 同步", tableName);
-                    return;
-                }
-                
-                String deleteSql = buildDeleteSql(tableName, structure);
-                
-                // 批量删除
-                try (java.sql.PreparedStatement stmt = conn.prepareStatement(deleteSql)) {
-                    for (Map<String, Object> rowData : rowDataList) {
-                        setDeleteParameters(stmt, rowData, structure);
-                        stmt.addBatch();
-                    }
-                    stmt.executeBatch();
-                    log.debug("成功同步 {} 条 DELETE 记录到表: {}", rowDataList.size(), tableName);
-                }
-            } catch (Exception e) {
-                log.error("同步 DELETE 到目标表 {} 失败", tableName, e);
-                throw new SQLException("同步 DELETE 失败", e);
+            // 基于主键删除
+            if (structure.getPrimaryKeys().isEmpty()) {
+                log.warn("表 {} 没有主键，无法执行 DELETE 同步", tableName);
+                return;
+            }
+            
+            for (Map<String, Object> rowData : parseRows(rows, structure)) {
+                appendChange(new BinlogApplier.RowChange(
+                        BinlogApplier.ChangeType.DELETE, tableName, structure, rowData, null));
             }
         }
         
@@ -560,22 +956,10 @@ public class BinlogListener {
             Map<String, Object> rowData = new java.util.HashMap<>();
             
             try {
-                // ========== 反射调用：获取 binlog Row 对象中的列值 ==========
-                // 方法原型：Object getValue(int columnIndex)
-                // 作用：从 binlog Row 对象中获取指定索引位置的列值
-                // 参数：columnIndex - 列索引（从 0 开始）
-                // 返回：列值（Object 类型，可能是 String、Long、Date 等）
-                // 说明：binlog 事件中的 Row 对象包含行的所有列值
-                // 位置：BinlogListener.java:489-492
-                if (row.getClass().getMethod("getValue", int.class) != null) {
-                    for (int i = 0; i < structure.getColumns().size(); i++) {
-                        DatabaseOperator.TableColumn column = structure.getColumns().get(i);
-                        Object value = row.getClass().getMethod("getValue", int.class).invoke(row, i);
-                        rowData.put(column.getName(), value);
-                    }
-                } else {
-                    // 降级方案：尝试其他方法
-                    log.warn("无法解析 row，使用降级方案");
+                // connector 的行数据是 Serializable[]，按下标直接取值；其他 Row 实现走缓存的 getValue(int)
+                List<DatabaseOperator.TableColumn> columns = structure.getColumns();
+                for (int i = 0; i < columns.size(); i++) {
+                    rowData.put(columns.get(i).getName(), BinlogEventAdapter.rowValue(row, i));
                 }
             } catch (Exception e) {
                 log.error("解析 row 失败", e);
@@ -681,74 +1065,11 @@ public class BinlogListener {
          * @return before row 对象
          */
         private Object extractPairFirst(Object pair) {
-            try {
-                // ========== 反射调用：获取 Pair 对象的所有方法 ==========
-                // 方法：Class.getMethods()
-                // 作用：获取 Pair 对象的所有公共方法，用于查找获取第一个元素的方法
-                // 返回：Method[] - 方法数组
-                // 位置：BinlogListener.java:606
-                java.lang.reflect.Method[] methods = pair.getClass().getMethods();
-                
-                // ========== 反射调用：尝试通过 getKey() 方法获取 Pair 的第一个元素 ==========
-                // 方法原型：Object getKey() 或 K getKey()
-                // 作用：获取 Pair 对象的第一个元素（before row）
-                // 说明：某些 Pair 实现（如 Map.Entry）使用 getKey() 方法
-                // 位置：BinlogListener.java:609-613
-                for (java.lang.reflect.Method method : methods) {
-                    if ("getKey".equals(method.getName()) && method.getParameterCount() == 0) {
-                        return method.invoke(pair);
-                    }
-                }
-                
-                // ========== 反射调用：尝试通过 getFirst() 方法获取 Pair 的第一个元素 ==========
-                // 方法原型：Object getFirst() 或 K getFirst()
-                // 作用：获取 Pair 对象的第一个元素（before row）
-                // 说明：某些 Pair 实现（如 Apache Commons Pair）使用 getFirst() 方法
-                // 位置：BinlogListener.java:616-620
-                for (java.lang.reflect.Method method : methods) {
-                    if ("getFirst".equals(method.getName()) && method.getParameterCount() == 0) {
-                        return method.invoke(pair);
-                    }
-                }
-                
-                // ========== 反射调用：尝试通过 getLeft() 方法获取 Pair 的第一个元素 ==========
-                // 方法原型：Object getLeft() 或 K getLeft()
-                // 作用：获取 Pair 对象的第一个元素（before row）
-                // 说明：某些 Pair 实现使用 getLeft() 方法
-                // 位置：BinlogListener.java:623-627
-                for (java.lang.reflect.Method method : methods) {
-                    if ("getLeft".equals(method.getName()) && method.getParameterCount() == 0) {
-                        return method.invoke(pair);
-                    }
-                }
-                
-                // ========== 反射调用：尝试通过字段访问获取 Pair 的第一个元素 ==========
-                // 字段名：key 或 first
-                // 作用：如果 Pair 使用字段存储第一个元素，直接访问字段
-                // 方法：getDeclaredField(String name) - 获取字段，setAccessible(true) - 设置可访问
-                // 位置：BinlogListener.java:631-644
-                try {
-                    java.lang.reflect.Field field = pair.getClass().getDeclaredField("key");
-                    field.setAccessible(true);
-                    return field.get(pair);
-                } catch (NoSuchFieldException e) {
-                    // 忽略
-                }
-                
-                try {
-                    java.lang.reflect.Field field = pair.getClass().getDeclaredField("first");
-                    field.setAccessible(true);
-                    return field.get(pair);
-                } catch (NoSuchFieldException e) {
-                    // 忽略
-                }
-                
+            Object first = BinlogEventAdapter.pairFirst(pair);
+            if (first == null) {
                 log.warn("无法从 Pair 对象中提取第一个元素，Pair 类型: {}", pair.getClass().getName());
-            } catch (Exception e) {
-                log.error("提取 Pair 第一个元素失败", e);
             }
-            
-            return null;
+            return first;
         }
         
         /**
@@ -758,73 +1079,11 @@ public class BinlogListener {
          * @return after row 对象
          */
         private Object extractPairSecond(Object pair) {
-            try {
-                // ========== 反射调用：获取 Pair 对象的所有方法 ==========
-                // 方法：Class.getMethods()
-                // 作用：获取 Pair 对象的所有公共方法，用于查找获取第二个元素的方法
-                // 位置：BinlogListener.java:664
-                java.lang.reflect.Method[] methods = pair.getClass().getMethods();
-                
-                // ========== 反射调用：尝试通过 getValue() 方法获取 Pair 的第二个元素 ==========
-                // 方法原型：Object getValue() 或 V getValue()
-                // 作用：获取 Pair 对象的第二个元素（after row）
-                // 说明：某些 Pair 实现（如 Map.Entry）使用 getValue() 方法
-                // 位置：BinlogListener.java:667-671
-                for (java.lang.reflect.Method method : methods) {
-                    if ("getValue".equals(method.getName()) && method.getParameterCount() == 0) {
-                        return method.invoke(pair);
-                    }
-                }
-                
-                // ========== 反射调用：尝试通过 getSecond() 方法获取 Pair 的第二个元素 ==========
-                // 方法原型：Object getSecond() 或 V getSecond()
-                // 作用：获取 Pair 对象的第二个元素（after row）
-                // 说明：某些 Pair 实现（如 Apache Commons Pair）使用 getSecond() 方法
-                // 位置：BinlogListener.java:674-678
-                for (java.lang.reflect.Method method : methods) {
-                    if ("getSecond".equals(method.getName()) && method.getParameterCount() == 0) {
-                        return method.invoke(pair);
-                    }
-                }
-                
-                // ========== 反射调用：尝试通过 getRight() 方法获取 Pair 的第二个元素 ==========
-                // 方法原型：Object getRight() 或 V getRight()
-                // 作用：获取 Pair 对象的第二个元素（after row）
-                // 说明：某些 Pair 实现使用 getRight() 方法
-                // 位置：BinlogListener.java:681-685
-                for (java.lang.reflect.Method method : methods) {
-                    if ("getRight".equals(method.getName()) && method.getParameterCount() == 0) {
-                        return method.invoke(pair);
-                    }
-                }
-                
-                // ========== 反射调用：尝试通过字段访问获取 Pair 的第二个元素 ==========
-                // 字段名：value 或 second
-                // 作用：如果 Pair 使用字段存储第二个元素，直接访问字段
-                // 方法：getDeclaredField(String name) - 获取字段，setAccessible(true) - 设置可访问
-                // 位置：BinlogListener.java:689-702
-                try {
-                    java.lang.reflect.Field field = pair.getClass().getDeclaredField("value");
-                    field.setAccessible(true);
-                    return field.get(pair);
-                } catch (NoSuchFieldException e) {
-                    // 忽略
-                }
-                
-                try {
-                    java.lang.reflect.Field field = pair.getClass().getDeclaredField("second");
-                    field.setAccessible(true);
-                    return field.get(pair);
-                } catch (NoSuchFieldException e) {
-                    // 忽略
-                }
-                
+            Object second = BinlogEventAdapter.pairSecond(pair);
+            if (second == null) {
                 log.warn("无法从 Pair 对象中提取第二个元素，Pair 类型: {}", pair.getClass().getName());
-            } catch (Exception e) {
-                log.error("提取 Pair 第二个元素失败", e);
             }
-            
-            return null;
+            return second;
         }
         
         /**
@@ -850,118 +1109,6 @@ public class BinlogListener {
             return "UNKNOWN";
         }
         
-        /**
-         * 构建 INSERT SQL
-         * 这里是预编译SQL
-         */
-        private String buildInsertSql(String tableName, DatabaseOperator.TableStructure structure) {
-            StringBuilder sql = new StringBuilder("INSERT INTO ");
-            sql.append(tableName).append(" (");
-            
-            String columns = structure.getColumns().stream()
-                    .map(DatabaseOperator.TableColumn::getName)
-                    .collect(java.util.stream.Collectors.joining(", "));
-            sql.append(columns).append(") VALUES (");
-            
-            String placeholders = structure.getColumns().stream()
-                    .map(c -> "?")
-                    .collect(java.util.stream.Collectors.joining(", "));
-            sql.append(placeholders).append(")");
-            
-            return sql.toString();
-        }
-        
-        /**
-         * 构建 UPDATE SQL
-         * 基于主键进行更新
-         */
-        private String buildUpdateSql(String tableName, DatabaseOperator.TableStructure structure) {
-            StringBuilder sql = new StringBuilder("UPDATE ");
-            sql.append(tableName).append(" SET ");
-            
-            String setClause = structure.getColumns().stream()
-                    .filter(c -> !structure.getPrimaryKeys().contains(c.getName()))
-                    .map(c -> c.getName() + " = ?")
-                    .collect(java.util.stream.Collectors.joining(", "));
-            sql.append(setClause).append(" WHERE ");
-            
-            String whereClause = structure.getPrimaryKeys().stream()
-                    .map(key -> key + " = ?")
-                    .collect(java.util.stream.Collectors.joining(" AND "));
-            sql.append(whereClause);
-            
-            return sql.toString();
-        }
-        
-        /**
-         * 构建 DELETE SQL
-         * 基于主键进行删除操作
-         */
-        private String buildDeleteSql(String tableName, DatabaseOperator.TableStructure structure) {
-            StringBuilder sql = new StringBuilder("DELETE FROM ");
-            sql.append(tableName).append(" WHERE ");
-            
-            String whereClause = structure.getPrimaryKeys().stream()
-                    .map(key -> key + " = ?")
-                    .collect(java.util.stream.Collectors.joining(" AND "));
-            sql.append(whereClause);
-            
-            return sql.toString();
-        }
-        
-        /**
-         * 设置 INSERT 参数
-         */
-        private void setInsertParameters(java.sql.PreparedStatement stmt, 
-                                       Map<String, Object> rowData, 
-                                       DatabaseOperator.TableStructure structure) throws SQLException {
-            int paramIndex = 1;
-            for (DatabaseOperator.TableColumn column : structure.getColumns()) {
-                Object value = rowData.get(column.getName());
-                stmt.setObject(paramIndex++, value);
-            }
-        }
-        
-        /**
-         * 设置 UPDATE 参数
-         */
-        private void setUpdateParameters(java.sql.PreparedStatement stmt,
-                                       Map<String, Object> afterRow,
-                                       Map<String, Object> beforeRow,
-                                       DatabaseOperator.TableStructure structure) throws SQLException {
-            int paramIndex = 1;
-            
-            // SET 子句参数（非主键列）
-            for (DatabaseOperator.TableColumn column : structure.getColumns()) {
-                if (!structure.getPrimaryKeys().contains(column.getName())) {
-                    Object value = afterRow.get(column.getName());
-                    stmt.setObject(paramIndex++, value);
-                }
-            }
-            
-            // WHERE 子句参数（主键列）
-            for (String primaryKey : structure.getPrimaryKeys()) {
-                Object value = afterRow.get(primaryKey);
-                if (value == null && beforeRow != null) {
-                    value = beforeRow.get(primaryKey);
-                }
-                stmt.setObject(paramIndex++, value);
-            }
-        }
-        
-        /**
-         * 设置 DELETE 参数
-         */
-        private void setDeleteParameters(java.sql.PreparedStatement stmt,
-                                        Map<String, Object> rowData,
-                                        DatabaseOperator.TableStructure structure) throws SQLException {
-            int paramIndex = 1;
-            for (String primaryKey : structure.getPrimaryKeys()) {
-                Object value = rowData.get(primaryKey);
-                stmt.setObject(paramIndex++, value);
-            }
-        }
-        
         /**
          * 获取表结构
          */
@@ -1001,51 +1148,32 @@ public class BinlogListener {
         
         /**
          * 轮询同步（降级方案）
+         * 各表由轮询引擎按 (时间字段, 主键) 分页并发同步，启用断点续传时高水位保存在目标库
          */
         private void pollingSync() {
             log.info("使用轮询方式同步增量数据，Task ID: {}", taskId);
             
-            // 轮询间隔（秒）
-            long pollingInterval = 5;
-            
-            while (!stopped && running) {
-                try {
-                    // 获取要同步的表列表
-                    List<String> tables = config.getTables();
-                    if (tables == null || tables.isEmpty()) {
-                        // 获取所有表
-                        tables = getAllTables();
-                    }
-                    
-                    // 对每个表进行增量同步
-                    for (String tableName : tables) {
-                        if (stopped || !running) {
-                            break;
-                        }
-                        
-                        try {
-                            syncIncrementalData(tableName);
-                        } catch (Exception e) {
-                            log.error("轮询同步表 {} 失败", tableName, e);
-                        }
-                    }
-                    
-                    // 等待下次轮询
-                    Thread.sleep(pollingInterval * 1000);
-                    
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    log.warn("轮询同步被中断");
-                    break;
-                } catch (Exception e) {
-                    log.error("轮询同步异常", e);
-                    try {
-                        Thread.sleep(pollingInterval * 1000);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        break;
-                    }
+            PollingSyncEngine engine = new PollingSyncEngine(shortId(taskId), config, this::getTableStructure,
+                    config.isEnableCheckpoint() ? createOffsetStore() : null);
+            try {
+                // 获取要同步的表列表
+                List<String> tables = config.getTables();
+                if (tables == null || tables.isEmpty()) {
+                    // 获取所有表
+                    tables = getAllTables();
                 }
+                engine.start(tables);
+                
+                while (!stopped && running) {
+                    Thread.sleep(1000);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("轮询同步被中断");
+            } catch (Exception e) {
+                log.error("轮询同步异常", e);
+            } finally {
+                engine.stop();
             }
         }
         
@@ -1070,104 +1198,6 @@ public class BinlogListener {
             return tables;
         }
         
-        /**
-         * 同步增量数据（基于时间戳）
-         */
-        private void syncIncrementalData(String tableName) throws Exception {
-            // 获取上次同步时间
-            Long lastSyncTime = lastSyncTimeMap.get(tableName);
-            if (lastSyncTime == null) {
-                lastSyncTime = System.currentTimeMillis() - 3600000; // 默认1小时前
-            }
-            
-            // 获取表结构
-            DatabaseOperator.TableStructure structure = getTableStructure(
-                    config.getSourceDataSource().getConnection(), tableName);
-            if (structure == null) {
-                return;
-            }
-            
-            // 查找更新时间字段（假设有 updateTime 或 update_time 字段）
-            String timeColumn = findTimeColumn(structure);
-            if (timeColumn == null) {
-                log.warn("表 {} 没有时间字段，无法进行增量同步", tableName);
-                return;
-            }
-            
-            // 查询增量数据
-            String selectSql = String.format(
-                    "SELECT * FROM %s WHERE %s > ? ORDER BY %s",
-                    tableName, timeColumn, timeColumn);
-            
-            try (java.sql.Connection sourceConn = config.getSourceDataSource().getConnection();
-                 java.sql.Connection targetConn = config.getTargetDataSource().getConnection();
-                 java.sql.PreparedStatement selectStmt = sourceConn.prepareStatement(selectSql)) {
-                
-                selectStmt.setTimestamp(1, new java.sql.Timestamp(lastSyncTime));
-                
-                try (java.sql.ResultSet rs = selectStmt.executeQuery()) {
-                    String insertSql = buildInsertSql(tableName, structure);
-                    long maxTime = lastSyncTime;
-                    int count = 0;
-                    
-                    try (java.sql.PreparedStatement insertStmt = targetConn.prepareStatement(insertSql)) {
-                        while (rs.next()) {
-                            // 设置 INSERT 参数
-                            Map<String, Object> rowData = new java.util.HashMap<>();
-                            for (int i = 0; i < structure.getColumns().size(); i++) {
-                                DatabaseOperator.TableColumn column = structure.getColumns().get(i);
-                                Object value = rs.getObject(column.getName());
-                                rowData.put(column.getName(), value);
-                                
-                                // 更新最大时间
-                                if (timeColumn.equals(column.getName()) && value instanceof java.sql.Timestamp) {
-                                    long time = ((java.sql.Timestamp) value).getTime();
-                                    if (time > maxTime) {
-                                        maxTime = time;
-                                    }
-                                }
-                            }
-                            
-                            setInsertParameters(insertStmt, rowData, structure);
-                            insertStmt.addBatch();
-                            count++;
-                            
-                            // 批量执行
-                            if (count % 100 == 0) {
-                                insertStmt.executeBatch();
-                            }
-                        }
-                        
-                        // 执行剩余的批次
-                        if (count % 100 != 0) {
-                            insertStmt.executeBatch();
-                        }
-                    }
-                    
-                    // 更新同步时间
-                    lastSyncTimeMap.put(tableName, maxTime);
-                    
-                    if (count > 0) {
-                        log.info("轮询同步表 {} 完成，同步 {} 条记录", tableName, count);
-                    }
-                }
-            }
-        }
-        
-        /**
-         * 查找时间字段
-         */
-        private String findTimeColumn(DatabaseOperator.TableStructure structure) {
-            for (DatabaseOperator.TableColumn column : structure.getColumns()) {
-                String name = column.getName().toLowerCase();
-                if (name.contains("updatetime") || name.contains("update_time") ||
-                    name.contains("modifytime") || name.contains("modify_time")) {
-                    return column.getName();
-                }
-            }
-            return null;
-        }
-        
         /**
          * 连接 BinaryLogClient
          */
@@ -1195,58 +1225,22 @@ public class BinlogListener {
         }
         
         /**
-         * 获取表名
+         * 获取表名（由 TABLE_MAP 事件维护的映射解析）
          */
         private String getTableName(long tableId) {
-            // 先从缓存获取
-            String tableName = tableIdToNameMap.get(tableId);
-            if (tableName != null) {
-                return tableName;
-            }
-            
-            // 从数据库查询表名
-            try (java.sql.Connection conn = config.getSourceDataSource().getConnection()) {
-                // MySQL 中可以通过 information_schema 查询表ID对应的表名
-                // 注意：tableId 是 binlog 中的表ID，需要通过 binlog 元数据查询
-                String sql = "SELECT TABLE_SCHEMA, TABLE_NAME FROM information_schema.TABLES " +
-                            "WHERE TABLE_SCHEMA = DATABASE()";
-                
-                try (java.sql.Statement stmt = conn.createStatement();
-                     java.sql.ResultSet rs = stmt.executeQuery(sql)) {
-                    
-                // 遍历所有表，通过表结构匹配（简化实现）
-                // 实际应该通过 binlog 的 TableMapEvent 获取表名
-                int currentId = 0;
-                while (rs.next()) {
-                    currentId++;
-                    if (currentId == tableId) {
-                        String name = rs.getString("TABLE_NAME");
-                        tableName = name;
-                        tableIdToNameMap.put(tableId, tableName);
-                        return tableName;
-                    }
-                }
-                }
-                
-                // 如果通过 ID 无法匹配，尝试从 binlog 事件中获取
-                // 这需要在 handleBinlogEvent 中保存 TableMapEvent
-                log.warn("无法通过 tableId {} 找到表名，可能需要从 TableMapEvent 获取", tableId);
-                
-            } catch (Exception e) {
-                log.error("查询表名失败，tableId: {}", tableId, e);
-            }
-            
-            return null;
+            return schemaRegistry.getTableName(tableId);
         }
         
         /**
          * 缓存表ID到表名的映射（从 TableMapEvent 获取）
-         * 在 handleBinlogEvent 中调用，用于缓存表映射关系
+         * 在 handleTableMapEvent 中调用，用于缓存表映射关系
          */
-        @SuppressWarnings("unused")
-        private void cacheTableMapping(long tableId, String tableName) {
-            tableIdToNameMap.put(tableId, tableName);
-            log.debug("缓存表映射: tableId={}, tableName={}", tableId, tableName);
+        private void cacheTableMapping(long tableId, String database, String tableName, int columnCount) {
+            schemaRegistry.onTableMap(tableId, database, tableName, columnCount);
+        }
+        
+        private String shortId(String id) {
+            return id.length() > 8 ? id.substring(0, 8) : id;
         }
         
         /**
@@ -1290,11 +1284,57 @@ public class BinlogListener {
         
         public void stop() {
             stopped = true;
+            disconnectAsync();
+        }
+        
+        /**
+         * 标记任务失败并断开连接：connect() 随之返回，监听线程关闭应用器后退出
+         */
+        private void fail(Throwable cause) {
+            if (failure == null) {
+                failure = describe(cause);
+            }
+            stop();
+        }
+        
+        /**
+         * 在单独的线程上断开连接：事件回调运行在 connect() 所在的线程上，应用器失败回调运行在应用线程上，
+         * 在这两个线程上同步断开会等待自身或阻塞应用器关闭
+         */
+        private void disconnectAsync() {
+            Object current = client;
+            if (current == null) {
+                return;
+            }
+            Thread disconnectThread = new Thread(() -> {
+                try {
+                    disconnect(current);
+                } catch (Exception e) {
+                    log.warn("断开 Binlog 连接失败，Task ID: {}", taskId, e);
+                }
+            }, "BinlogListener-disconnect-" + shortId(taskId));
+            disconnectThread.setDaemon(true);
+            disconnectThread.start();
+        }
+        
+        private String describe(Throwable cause) {
+            return cause.getClass().getSimpleName() + ": " + cause.getMessage();
         }
         
         public boolean isRunning() {
             return running;
         }
+        
+        public ListenerState getState() {
+            if (failure != null) {
+                return ListenerState.FAILED;
+            }
+            return running && !stopped ? ListenerState.RUNNING : ListenerState.STOPPED;
+        }
+        
+        public String getFailure() {
+            return failure;
+        }
     }
 }
 
@@ -0,0 +1,373 @@
+package com.lixiangyu.common.migration;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Binlog 位点存储
+ * 位点保存在目标库的位点表中，与应用的行变更在同一个目标库事务中提交，重启后从最后一个已提交的位点继续
+ *
+ * 位点表：
+ * 1. {offsetTable}：每个任务一行，记录已连续提交的最后一个源库事务的位点（binlog 文件名、位置、GTID 集合）
+ * 2. {offsetTable}_applied：位点之后已经提交的事务（多个应用线程乱序提交），重启重放时跳过，保证每个事务只应用一次；
+ *    超大事务拆分出的部分以 事务标识#序号 记录，重放时同样逐个跳过
+ * 3. {offsetTable}_polling：轮询增量同步每张表的高水位（时间字段、主键），与该页写入在同一个目标库事务中提交
+ *
+ * 位点行只允许前进：同一次运行内按事务序号比较，新的运行（run_id 不同）第一次写入时覆盖
+ *
+ * @author lixiangyu
+ */
+@Slf4j
+public class BinlogOffsetStore {
+    
+    private final DataSource dataSource;
+    
+    private final String offsetTable;
+    
+    private final String appliedTable;
+    
+    private final String pollingTable;
+    
+    private final String checkpointId;
+    
+    /**
+     * 本次运行的标识，事务序号只在同一次运行内可比较
+     */
+    private final String runId = UUID.randomUUID().toString();
+    
+    private final String updateOffsetSql;
+    
+    private final String insertAppliedSql;
+    
+    private final String purgeAppliedSql;
+    
+    private final String purgePreviousRunsSql;
+    
+    /**
+     * @param dataSource 目标数据源（位点表所在库）
+     * @param offsetTable 位点表名
+     * @param checkpointId 任务的断点标识，重启后使用相同标识才能续传
+     */
+    public BinlogOffsetStore(DataSource dataSource, String offsetTable, String checkpointId) {
+        this.dataSource = dataSource;
+        this.offsetTable = offsetTable;
+        this.appliedTable = offsetTable + "_applied";
+        this.pollingTable = offsetTable + "_polling";
+        this.checkpointId = checkpointId;
+        this.updateOffsetSql = "UPDATE " + offsetTable
+                + " SET run_id = ?, seq = ?, binlog_file = ?, binlog_pos = ?, gtid_set = ?, update_time = ?"
+                + " WHERE task_id = ? AND (run_id IS NULL OR run_id <> ? OR seq < ?)";
+        this.insertAppliedSql = "INSERT INTO " + appliedTable + " (task_id, tx_id, run_id, seq) VALUES (?, ?, ?, ?)";
+        this.purgeAppliedSql = "DELETE FROM " + appliedTable + " WHERE task_id = ? AND run_id = ? AND seq <= ?";
+        this.purgePreviousRunsSql = "DELETE FROM " + appliedTable + " WHERE task_id = ? AND run_id <> ?";
+    }
+    
+    /**
+     * 创建位点表（不存在时）并加载任务的位点
+     *
+     * @return 位点，任务第一次运行时返回 null；位点尚未前进过时文件名与 GTID 集合均为 null
+     */
+    public Offset open() throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            createTableIfAbsent(conn, offsetTable, "CREATE TABLE " + offsetTable + " ("
+                    + "task_id VARCHAR(128) NOT NULL, "
+                    + "run_id VARCHAR(64), "
+                    + "seq BIGINT, "
+                    + "binlog_file VARCHAR(255), "
+                    + "binlog_pos BIGINT, "
+                    + "gtid_set VARCHAR(4000), "
+                    + "update_time TIMESTAMP NULL, "
+                    + "PRIMARY KEY (task_id))");
+            createTableIfAbsent(conn, appliedTable, "CREATE TABLE " + appliedTable + " ("
+                    + "task_id VARCHAR(128) NOT NULL, "
+                    + "tx_id VARCHAR(255) NOT NULL, "
+                    + "run_id VARCHAR(64) NOT NULL, "
+                    + "seq BIGINT NOT NULL, "
+                    + "PRIMARY KEY (task_id, tx_id))");
+            
+            Offset offset = null;
+            String lastRunId = null;
+            long lastSeq = 0;
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT run_id, seq, binlog_file, binlog_pos, gtid_set FROM "
+                    + offsetTable + " WHERE task_id = ?")) {
+                stmt.setString(1, checkpointId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        lastRunId = rs.getString("run_id");
+                        lastSeq = rs.getLong("seq");
+                        long position = rs.getLong("binlog_pos");
+                        Long binlogPosition = rs.wasNull() ? null : position;
+                        offset = new Offset(rs.getString("binlog_file"), binlogPosition, rs.getString("gtid_set"),
+                                new HashSet<>());
+                    }
+                }
+            }
+            
+            if (offset == null) {
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "INSERT INTO " + offsetTable + " (task_id) VALUES (?)")) {
+                    stmt.setString(1, checkpointId);
+                    stmt.executeUpdate();
+                }
+                commitIfNeeded(conn);
+                return null;
+            }
+            
+            // 上次运行中已被位点覆盖的已提交事务记录不再需要
+            if (lastRunId != null) {
+                try (PreparedStatement stmt = conn.prepareStatement(purgeAppliedSql)) {
+                    stmt.setString(1, checkpointId);
+                    stmt.setString(2, lastRunId);
+                    stmt.setLong(3, lastSeq);
+                    stmt.executeUpdate();
+                }
+                commitIfNeeded(conn);
+            }
+            
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT tx_id FROM " + appliedTable + " WHERE task_id = ?")) {
+                stmt.setString(1, checkpointId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        offset.getAppliedTransactions().add(rs.getString(1));
+                    }
+                }
+            }
+            
+            log.info("加载 Binlog 位点: {}, 文件: {}, 位置: {}, GTID: {}, 位点后已应用事务数: {}", checkpointId,
+                    offset.getBinlogFile(), offset.getBinlogPosition(), offset.getGtidSet(),
+                    offset.getAppliedTransactions().size());
+            return offset;
+        }
+    }
+    
+    /**
+     * 在目标库事务中前进位点（不提交）
+     *
+     * @param seq 位点对应事务在本次运行中的序号
+     * @param position 位点
+     */
+    void saveOffset(Connection conn, long seq, Position position) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(updateOffsetSql)) {
+            stmt.setString(1, runId);
+            stmt.setLong(2, seq);
+            stmt.setString(3, position.getBinlogFile());
+            stmt.setLong(4, position.getBinlogPosition());
+            stmt.setString(5, position.getGtidSet());
+            stmt.setTimestamp(6, new Timestamp(System.currentTimeMillis()));
+            stmt.setString(7, checkpointId);
+            stmt.setString(8, runId);
+            stmt.setLong(9, seq);
+            stmt.executeUpdate();
+        }
+    }
+    
+    /**
+     * 在目标库事务中记录位点之后已提交的事务（不提交）
+     *
+     * @param seqs 事务序号
+     * @param transactionIds 事务标识（与 seqs 一一对应，超大事务拆分出的部分为 事务标识#序号）
+     */
+    void saveApplied(Connection conn, List<Long> seqs, List<String> transactionIds) throws SQLException {
+        if (seqs.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(insertAppliedSql)) {
+            for (int i = 0; i < seqs.size(); i++) {
+                stmt.setString(1, checkpointId);
+                stmt.setString(2, transactionIds.get(i));
+                stmt.setString(3, runId);
+                stmt.setLong(4, seqs.get(i));
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+    
+    /**
+     * 在目标库事务中删除已被位点覆盖的事务记录（不提交）
+     */
+    void purgeApplied(Connection conn, long seq) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(purgeAppliedSql)) {
+            stmt.setString(1, checkpointId);
+            stmt.setString(2, runId);
+            stmt.setLong(3, seq);
+            stmt.executeUpdate();
+        }
+    }
+    
+    /**
+     * 在目标库事务中删除之前运行留下的事务记录（不提交），位点越过所有被跳过的事务后调用
+     */
+    void purgePreviousRuns(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(purgePreviousRunsSql)) {
+            stmt.setString(1, checkpointId);
+            stmt.setString(2, runId);
+            stmt.executeUpdate();
+        }
+    }
+    
+    /**
+     * 创建轮询高水位表（不存在时）并加载任务各表的高水位
+     *
+     * @return 表名 -> 高水位
+     */
+    public Map<String, PollingOffset> loadPollingOffsets() throws SQLException {
+        Map<String, PollingOffset> offsets = new HashMap<>();
+        try (Connection conn = dataSource.getConnection()) {
+            createTableIfAbsent(conn, pollingTable, "CREATE TABLE " + pollingTable + " ("
+                    + "task_id VARCHAR(128) NOT NULL, "
+                    + "table_name VARCHAR(255) NOT NULL, "
+                    + "last_time TIMESTAMP NULL, "
+                    + "last_key VARCHAR(1000), "
+                    + "update_time TIMESTAMP NULL, "
+                    + "PRIMARY KEY (task_id, table_name))");
+            
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT table_name, last_time, last_key FROM "
+                    + pollingTable + " WHERE task_id = ?")) {
+                stmt.setString(1, checkpointId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        offsets.put(rs.getString("table_name"),
+                                new PollingOffset(rs.getTimestamp("last_time"), rs.getString("last_key")));
+                    }
+                }
+            }
+        }
+        log.info("加载轮询高水位: {}, 表数: {}", checkpointId, offsets.size());
+        return offsets;
+    }
+    
+    /**
+     * 在目标库事务中保存一张表的轮询高水位（不提交）
+     */
+    void savePollingOffset(Connection conn, String tableName, Timestamp lastTime, String lastKey) throws SQLException {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        try (PreparedStatement stmt = conn.prepareStatement("UPDATE " + pollingTable
+                + " SET last_time = ?, last_key = ?, update_time = ? WHERE task_id = ? AND table_name = ?")) {
+            stmt.setTimestamp(1, lastTime);
+            stmt.setString(2, lastKey);
+            stmt.setTimestamp(3, now);
+            stmt.setString(4, checkpointId);
+            stmt.setString(5, tableName);
+            if (stmt.executeUpdate() > 0) {
+                return;
+            }
+        }
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO " + pollingTable
+                + " (task_id, table_name, last_time, last_key, update_time) VALUES (?, ?, ?, ?, ?)")) {
+            stmt.setString(1, checkpointId);
+            stmt.setString(2, tableName);
+            stmt.setTimestamp(3, lastTime);
+            stmt.setString(4, lastKey);
+            stmt.setTimestamp(5, now);
+            stmt.executeUpdate();
+        }
+    }
+    
+    private void createTableIfAbsent(Connection conn, String table, String ddl) throws SQLException {
+        DatabaseMetaData metaData = conn.getMetaData();
+        for (String name : new String[]{table, table.toUpperCase(), table.toLowerCase()}) {
+            try (ResultSet rs = metaData.getTables(conn.getCatalog(), conn.getSchema(), name, new String[]{"TABLE"})) {
+                if (rs.next()) {
+                    return;
+                }
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(ddl);
+        }
+        commitIfNeeded(conn);
+        log.info("创建 Binlog 位点表: {}", table);
+    }
+    
+    private void commitIfNeeded(Connection conn) throws SQLException {
+        if (!conn.getAutoCommit()) {
+            conn.commit();
+        }
+    }
+    
+    /**
+     * 源库事务的位点（事务提交事件结束后的位置）
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Position {
+        /**
+         * binlog 文件名
+         */
+        private String binlogFile;
+        
+        /**
+         * 下一个事件的起始位置
+         */
+        private long binlogPosition;
+        
+        /**
+         * 事务的 GTID（未开启 GTID 时为 null）
+         */
+        private String gtid;
+        
+        /**
+         * 包含该事务在内的 GTID 集合（未跟踪 GTID 时为 null）
+         */
+        private String gtidSet;
+        
+        /**
+         * 事务标识：优先使用 GTID，否则为 文件名:位置
+         */
+        public String getTransactionId() {
+            return gtid != null ? gtid : binlogFile + ":" + binlogPosition;
+        }
+    }
+    
+    /**
+     * 加载的位点
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Offset {
+        private String binlogFile;
+        
+        private Long binlogPosition;
+        
+        private String gtidSet;
+        
+        /**
+         * 位点之后已经提交的事务标识
+         */
+        private Set<String> appliedTransactions;
+    }
+    
+    /**
+     * 轮询增量同步的单表高水位
+     */
+    @Data
+    @AllArgsConstructor
+    public static class PollingOffset {
+        /**
+         * 已同步的最后一条记录的时间字段值
+         */
+        private Timestamp lastTime;
+        
+        /**
+         * 已同步的最后一条记录的主键值（多列以 U+0001 分隔）
+         */
+        private String lastKey;
+    }
+}
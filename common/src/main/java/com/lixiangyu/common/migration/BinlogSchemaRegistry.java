@@ -0,0 +1,211 @@
+package com.lixiangyu.common.migration;
+
+import com.lixiangyu.common.migration.operator.DatabaseOperator;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Binlog 表结构注册表
+ * 由 TABLE_MAP 事件维护 tableId -> 表名 的映射，按表缓存列元数据，收到 DDL（QUERY 事件）时失效
+ *
+ * 功能特性：
+ * 1. 行事件之前必有对应的 TABLE_MAP 事件，tableId 只从 TABLE_MAP 解析，不再查询 information_schema
+ * 2. 列元数据每张表只加载一次（包括不存在的表），行事件热路径不访问数据库元数据
+ * 3. ALTER/CREATE/DROP/RENAME/TRUNCATE TABLE 使对应表的缓存失效，无法识别表名的 DDL 使全部缓存失效
+ * 4. TABLE_MAP 中的列数与缓存不一致时（DDL 在监听开始前或其他库执行）重新加载
+ *
+ * @author lixiangyu
+ */
+@Slf4j
+public class BinlogSchemaRegistry {
+    
+    /**
+     * 识别 DDL 语句中的表名：ALTER/CREATE/DROP/TRUNCATE TABLE [IF [NOT] EXISTS] [db.]table
+     */
+    private static final Pattern TABLE_DDL = Pattern.compile(
+            "^(?:ALTER|CREATE|DROP|TRUNCATE)\\s+(?:TEMPORARY\\s+)?TABLE\\s+(?:IF\\s+(?:NOT\\s+)?EXISTS\\s+)?"
+                    + "(?:`?[\\w$]+`?\\.)?`?([\\w$]+)`?",
+            Pattern.CASE_INSENSITIVE);
+    
+    /**
+     * 可能改变表结构的语句前缀
+     */
+    private static final Pattern SCHEMA_CHANGE = Pattern.compile(
+            "^(?:ALTER|CREATE|DROP|RENAME|TRUNCATE)\\s", Pattern.CASE_INSENSITIVE);
+    
+    /**
+     * 表结构加载器
+     */
+    @FunctionalInterface
+    public interface TableStructureLoader {
+        /**
+         * 加载表结构
+         *
+         * @return 表结构，表不存在时返回 null
+         */
+        DatabaseOperator.TableStructure load(Connection conn, String tableName) throws SQLException;
+    }
+    
+    private final DataSource metadataDataSource;
+    
+    private final TableStructureLoader loader;
+    
+    /**
+     * 只接收该库的事件（为空时不过滤）
+     */
+    private final String database;
+    
+    /**
+     * tableId -> 表引用（由 TABLE_MAP 事件维护）
+     */
+    private final Map<Long, TableRef> tablesById = new ConcurrentHashMap<>();
+    
+    /**
+     * 表名 -> 表结构（Optional.empty() 表示表不存在）
+     */
+    private final Map<String, Optional<DatabaseOperator.TableStructure>> structures = new ConcurrentHashMap<>();
+    
+    /**
+     * @param metadataDataSource 加载列元数据的数据源
+     * @param loader 表结构加载器
+     * @param database 只接收该库的事件，为空时不过滤
+     */
+    public BinlogSchemaRegistry(DataSource metadataDataSource, TableStructureLoader loader, String database) {
+        this.metadataDataSource = metadataDataSource;
+        this.loader = loader;
+        this.database = database;
+    }
+    
+    /**
+     * 处理 TABLE_MAP 事件
+     *
+     * @param tableId binlog 表ID
+     * @param databaseName 库名
+     * @param tableName 表名
+     * @param columnCount 列数
+     */
+    public void onTableMap(long tableId, String databaseName, String tableName, int columnCount) {
+        TableRef previous = tablesById.put(tableId, new TableRef(databaseName, tableName));
+        if (previous == null || !previous.tableName.equals(tableName)) {
+            log.debug("缓存表映射: tableId={}, table={}.{}", tableId, databaseName, tableName);
+        }
+        
+        // 表结构按表名缓存，只对应监听库；其他库的同名表列数不同时不能淘汰缓存
+        if (!isWatched(databaseName)) {
+            return;
+        }
+        Optional<DatabaseOperator.TableStructure> cached = structures.get(tableName);
+        if (cached != null && cached.isPresent() && cached.get().getColumns().size() != columnCount) {
+            log.info("表 {} 列数变化（缓存 {}，binlog {}），重新加载表结构",
+                    tableName, cached.get().getColumns().size(), columnCount);
+            structures.remove(tableName);
+        }
+    }
+    
+    /**
+     * 根据 tableId 获取表名
+     *
+     * @return 表名；未收到 TABLE_MAP 或不属于监听库时返回 null
+     */
+    public String getTableName(long tableId) {
+        TableRef ref = tablesById.get(tableId);
+        if (ref == null) {
+            log.warn("未找到 tableId {} 的 TABLE_MAP 事件，跳过", tableId);
+            return null;
+        }
+        return isWatched(ref.database) ? ref.tableName : null;
+    }
+    
+    /**
+     * 库是否属于监听范围（未指定监听库或事件没有库名时视为属于）
+     */
+    private boolean isWatched(String databaseName) {
+        return database == null || databaseName == null || database.equalsIgnoreCase(databaseName);
+    }
+    
+    /**
+     * 获取表结构（首次访问时加载并缓存）
+     *
+     * @return 表结构，表不存在时返回 null
+     */
+    public DatabaseOperator.TableStructure getTableStructure(String tableName) throws SQLException {
+        Optional<DatabaseOperator.TableStructure> cached = structures.get(tableName);
+        if (cached == null) {
+            try (Connection conn = metadataDataSource.getConnection()) {
+                cached = Optional.ofNullable(loader.load(conn, tableName));
+            }
+            structures.put(tableName, cached);
+            log.debug("加载表结构: {}, 存在: {}", tableName, cached.isPresent());
+        }
+        return cached.orElse(null);
+    }
+    
+    /**
+     * 处理 QUERY 事件：DDL 语句使相关表结构失效
+     *
+     * @param sql 语句
+     */
+    public void onQuery(String sql) {
+        if (sql == null) {
+            return;
+        }
+        String statement = stripLeadingComments(sql);
+        if (!SCHEMA_CHANGE.matcher(statement).find()) {
+            return;
+        }
+        
+        Matcher matcher = TABLE_DDL.matcher(statement);
+        if (matcher.find()) {
+            invalidate(matcher.group(1));
+        } else {
+            // RENAME TABLE、多表 DROP 等无法可靠识别，全部失效
+            invalidateAll();
+        }
+    }
+    
+    /**
+     * 使表结构失效
+     */
+    public void invalidate(String tableName) {
+        structures.remove(tableName);
+        log.info("DDL 变更，表结构缓存失效: {}", tableName);
+    }
+    
+    /**
+     * 使全部表结构失效
+     */
+    public void invalidateAll() {
+        structures.clear();
+        log.info("DDL 变更，全部表结构缓存失效");
+    }
+    
+    private String stripLeadingComments(String sql) {
+        String statement = sql.trim();
+        while (statement.startsWith("/*")) {
+            int end = statement.indexOf("*/");
+            if (end < 0) {
+                return "";
+            }
+            statement = statement.substring(end + 2).trim();
+        }
+        return statement;
+    }
+    
+    private static class TableRef {
+        private final String database;
+        private final String tableName;
+        
+        TableRef(String database, String tableName) {
+            this.database = database;
+            this.tableName = tableName;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.lixiangyu.common.migration;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Canal 消息适配器
+ * 以 MethodHandle 访问 canal-protocol 的 Message/Entry/RowChange/Column 对象，访问器按类解析一次并缓存（ClassValue），
+ * 热路径上不再有 Class.forName/getMethod 查找，也不依赖编译期的 canal 类型
+ *
+ * 支持的访问：
+ * 1. Message: getId/getEntries
+ * 2. Entry: getEntryType/getHeader/getStoreValue；Header: getTableName/getEventType/getExecuteTime
+ * 3. RowChange: parseFrom(ByteString)/getIsDdl/getSql/getRowDatasList
+ * 4. RowData: getBeforeColumnsList/getAfterColumnsList
+ * 5. Column: getIndex/getName/getValue/getIsNull
+ *
+ * @author lixiangyu
+ */
+public final class CanalEntryAdapter {
+    
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    
+    /**
+     * 统一的访问器签名：(Object) -> Object
+     */
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    
+    /**
+     * 类 -> 访问器
+     */
+    private static final ClassValue<Accessors> ACCESSORS = new ClassValue<Accessors>() {
+        @Override
+        protected Accessors computeValue(Class<?> type) {
+            return new Accessors(type);
+        }
+    };
+    
+    private CanalEntryAdapter() {
+    }
+    
+    /**
+     * 消息的批次 ID（没有数据时为 -1）
+     */
+    public static long getId(Object message) {
+        return ((Number) invoke(accessors(message).getId, message, "getId")).longValue();
+    }
+    
+    public static List<?> getEntries(Object message) {
+        return (List<?>) invoke(accessors(message).getEntries, message, "getEntries");
+    }
+    
+    /**
+     * Entry 类型名称（ROWDATA、TRANSACTIONBEGIN、TRANSACTIONEND 等）
+     */
+    public static String getEntryType(Object entry) {
+        return String.valueOf(invoke(accessors(entry).getEntryType, entry, "getEntryType"));
+    }
+    
+    public static Object getHeader(Object entry) {
+        return invoke(accessors(entry).getHeader, entry, "getHeader");
+    }
+    
+    public static String getTableName(Object header) {
+        return (String) invoke(accessors(header).getTableName, header, "getTableName");
+    }
+    
+    /**
+     * 事件类型名称（INSERT、UPDATE、DELETE、ALTER 等）
+     */
+    public static String getEventType(Object header) {
+        return String.valueOf(invoke(accessors(header).getEventType, header, "getEventType"));
+    }
+    
+    /**
+     * 事件在源库的执行时间（毫秒），没有该方法时返回 0
+     */
+    public static long getExecuteTime(Object header) {
+        MethodHandle handle = accessors(header).getExecuteTime;
+        return handle == null ? 0 : ((Number) invoke(handle, header, "getExecuteTime")).longValue();
+    }
+    
+    /**
+     * 解析 Entry 的存储值为 RowChange
+     */
+    public static Object parseRowChange(Object entry) {
+        Object storeValue = invoke(accessors(entry).getStoreValue, entry, "getStoreValue");
+        try {
+            return (Object) RowChangeParser.PARSE_FROM.invokeExact(storeValue);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("解析 Canal RowChange 失败", e);
+        }
+    }
+    
+    public static boolean isDdl(Object rowChange) {
+        return (Boolean) invoke(accessors(rowChange).getIsDdl, rowChange, "getIsDdl");
+    }
+    
+    public static String getSql(Object rowChange) {
+        return (String) invoke(accessors(rowChange).getSql, rowChange, "getSql");
+    }
+    
+    public static List<?> getRowDatas(Object rowChange) {
+        return (List<?>) invoke(accessors(rowChange).getRowDatasList, rowChange, "getRowDatasList");
+    }
+    
+    public static List<?> getBeforeColumns(Object rowData) {
+        return (List<?>) invoke(accessors(rowData).getBeforeColumnsList, rowData, "getBeforeColumnsList");
+    }
+    
+    public static List<?> getAfterColumns(Object rowData) {
+        return (List<?>) invoke(accessors(rowData).getAfterColumnsList, rowData, "getAfterColumnsList");
+    }
+    
+    /**
+     * 列在源表中的序号，没有该方法时返回 -1
+     */
+    public static int getColumnIndex(Object column) {
+        MethodHandle handle = accessors(column).getIndex;
+        return handle == null ? -1 : ((Number) invoke(handle, column, "getIndex")).intValue();
+    }
+    
+    public static String getColumnName(Object column) {
+        return (String) invoke(accessors(column).getName, column, "getName");
+    }
+    
+    /**
+     * 列值（字符串格式）
+     */
+    public static String getColumnValue(Object column) {
+        return (String) invoke(accessors(column).getValue, column, "getValue");
+    }
+    
+    public static boolean isColumnNull(Object column) {
+        return (Boolean) invoke(accessors(column).getIsNull, column, "getIsNull");
+    }
+    
+    private static Accessors accessors(Object target) {
+        return ACCESSORS.get(target.getClass());
+    }
+    
+    private static Object invoke(MethodHandle handle, Object target, String name) {
+        if (handle == null) {
+            throw new IllegalArgumentException("Canal 类型 " + target.getClass().getName() + " 没有方法 " + name + "()");
+        }
+        try {
+            return (Object) handle.invokeExact(target);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static MethodHandle findMethod(Class<?> type, String name) {
+        try {
+            Method method = type.getMethod(name);
+            method.setAccessible(true);
+            return LOOKUP.unreflect(method).asType(GETTER_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException | RuntimeException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * RowChange.parseFrom(ByteString)，首次解析 RowChange 时加载
+     */
+    private static final class RowChangeParser {
+        private static final MethodHandle PARSE_FROM;
+        
+        static {
+            try {
+                Class<?> rowChangeClass = Class.forName("com.alibaba.otter.canal.protocol.CanalEntry$RowChange");
+                Class<?> byteStringClass = Class.forName("com.google.protobuf.ByteString");
+                PARSE_FROM = LOOKUP.unreflect(rowChangeClass.getMethod("parseFrom", byteStringClass))
+                        .asType(GETTER_TYPE);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+    }
+    
+    /**
+     * 单个类的访问器（不存在的方法为 null）
+     */
+    private static final class Accessors {
+        private final MethodHandle getId;
+        private final MethodHandle getEntries;
+        private final MethodHandle getEntryType;
+        private final MethodHandle getHeader;
+        private final MethodHandle getStoreValue;
+        private final MethodHandle getTableName;
+        private final MethodHandle getEventType;
+        private final MethodHandle getExecuteTime;
+        private final MethodHandle getIsDdl;
+        private final MethodHandle getSql;
+        private final MethodHandle getRowDatasList;
+        private final MethodHandle getBeforeColumnsList;
+        private final MethodHandle getAfterColumnsList;
+        private final MethodHandle getIndex;
+        private final MethodHandle getName;
+        private final MethodHandle getValue;
+        private final MethodHandle getIsNull;
+        
+        Accessors(Class<?> type) {
+            this.getId = findMethod(type, "getId");
+            this.getEntries = findMethod(type, "getEntries");
+            this.getEntryType = findMethod(type, "getEntryType");
+            this.getHeader = findMethod(type, "getHeader");
+            this.getStoreValue = findMethod(type, "getStoreValue");
+            this.getTableName = findMethod(type, "getTableName");
+            this.getEventType = findMethod(type, "getEventType");
+            this.getExecuteTime = findMethod(type, "getExecuteTime");
+            this.getIsDdl = findMethod(type, "getIsDdl");
+            this.getSql = findMethod(type, "getSql");
+            this.getRowDatasList = findMethod(type, "getRowDatasList");
+            this.getBeforeColumnsList = findMethod(type, "getBeforeColumnsList");
+            this.getAfterColumnsList = findMethod(type, "getAfterColumnsList");
+            this.getIndex = findMethod(type, "getIndex");
+            this.getName = findMethod(type, "getName");
+            this.getValue = findMethod(type, "getValue");
+            this.getIsNull = findMethod(type, "getIsNull");
+        }
+    }
+}
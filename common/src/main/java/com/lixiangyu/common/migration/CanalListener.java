@@ -7,9 +7,17 @@ import org.springframework.stereotype.Component;
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Canal 监听器
@@ -27,6 +35,16 @@ import java.util.concurrent.ConcurrentHashMap;
 @Component
 public class CanalListener {
     
+    /**
+     * 单个源库事务在内存中累积的最大行变更数，超过后拆分提交
+     */
+    private static final int MAX_TRANSACTION_ROWS = 10000;
+    
+    /**
+     * 阻塞等待的轮询间隔（毫秒），用于在等待期间检查停止与失败状态
+     */
+    private static final long POLL_INTERVAL_MS = 100;
+    
     /**
      * 监听任务映射（Task ID -> 监听任务）
      */
@@ -66,6 +84,17 @@ public class CanalListener {
         }
     }
     
+    /**
+     * 获取监听任务的运行指标
+     *
+     * @param taskId 任务ID
+     * @return 指标快照，任务不存在时返回 null
+     */
+    public CdcMetrics.Snapshot getMetrics(String taskId) {
+        CanalListenerTask task = listenerTasks.get(taskId);
+        return task == null ? null : task.metrics.snapshot();
+    }
+    
     /**
      * 获取监听状态
      *
@@ -133,10 +162,65 @@ public class CanalListener {
          */
         @lombok.Builder.Default
         private int batchSize = 1000;
+        
+        /**
+         * 应用线程数（同一主键的变更由同一线程按 binlog 顺序应用）
+         */
+        @lombok.Builder.Default
+        private int applyThreads = 4;
+        
+        /**
+         * 每个应用线程的队列容量（事务数）
+         */
+        @lombok.Builder.Default
+        private int applyQueueCapacity = 1000;
+        
+        /**
+         * 单次目标库提交合并的最大事务数
+         */
+        @lombok.Builder.Default
+        private int applyBatchTransactions = 50;
+        
+        /**
+         * 合并窗口（毫秒）：窗口内同一 表+主键 的多次变更合并为一次净变更，窗口内的源库事务整体提交；0 表示不合并
+         */
+        @lombok.Builder.Default
+        private long coalesceWindowMillis = 0;
+        
+        /**
+         * 合并窗口的行变更数上限，达到后立即提交窗口
+         */
+        @lombok.Builder.Default
+        private int coalesceMaxRows = 5000;
+        
+        /**
+         * 预取批次数上限（已拉取、尚未确认的批次数），达到上限时等待已拉取的批次应用完成
+         */
+        @lombok.Builder.Default
+        private int prefetchBatches = 4;
+        
+        /**
+         * 批次不满时的服务端长轮询等待时间（毫秒）
+         */
+        @lombok.Builder.Default
+        private long minFetchWaitMillis = 100;
+        
+        /**
+         * 连续空批次时长轮询等待时间加倍的上限（毫秒）
+         */
+        @lombok.Builder.Default
+        private long maxFetchWaitMillis = 1000;
     }
     
     /**
      * Canal 监听任务
+     * 拉取与应用解耦：监听线程只负责拉取批次和按序确认，解码线程将批次解码为源库事务交给 BinlogApplier 并行应用
+     *
+     * 功能特性：
+     * 1. 预取：已拉取、尚未确认的批次数不超过 prefetchBatches，应用期间继续拉取后续批次
+     * 2. 按序确认：批次内开始的事务全部提交到目标库后批次才算完成，按 batchId 顺序逐个确认已完成的批次
+     * 3. 自适应等待：上一批次读满时立即拉取，批次不满或为空时使用服务端长轮询，连续空批次时等待时间加倍
+     * 4. 失败处理：拉取、解码或应用失败时停止任务，回滚未确认的批次，由 Canal 在下次连接时重新投递
      */
     private static class CanalListenerTask implements Runnable {
         private final String taskId;
@@ -144,6 +228,54 @@ public class CanalListener {
         private volatile boolean running = false;
         private volatile boolean stopped = false;
         
+        private BinlogSchemaRegistry schemaRegistry;
+        
+        private BinlogApplier applier;
+        
+        /**
+         * 已拉取、尚未确认的批次（按 batchId 顺序，只由监听线程访问）
+         */
+        private final Deque<CanalBatch> unackedBatches = new ArrayDeque<>();
+        
+        /**
+         * 待解码的批次
+         */
+        private BlockingQueue<CanalBatch> decodeQueue;
+        
+        /**
+         * 批次完成通知
+         */
+        private final Object completionMonitor = new Object();
+        
+        private volatile boolean fetchFinished = false;
+        
+        private final AtomicReference<Throwable> decodeFailure = new AtomicReference<>();
+        
+        /**
+         * 当前源库事务的行变更（只由解码线程访问）
+         */
+        private List<BinlogApplier.RowChange> pendingChanges = new ArrayList<>();
+        
+        /**
+         * 当前源库事务开始时所在的批次，事务提交前该批次不会确认（只由解码线程访问）
+         */
+        private CanalBatch transactionBatch;
+        
+        /**
+         * 表名 -> 行转换器（只由解码线程访问）
+         */
+        private final Map<String, CanalRowConverter> converters = new java.util.HashMap<>();
+        
+        /**
+         * 运行指标（解码由解码线程写入，应用由应用线程写入，确认位点由监听线程写入）
+         */
+        private final CdcMetrics metrics = new CdcMetrics();
+        
+        /**
+         * 最近一个 Entry 在源库的执行时间（只由解码线程访问）
+         */
+        private long currentExecuteTime;
+        
         public CanalListenerTask(String taskId, CanalListenerConfig config) {
             this.taskId = taskId;
             this.config = config;
@@ -176,47 +308,322 @@ public class CanalListener {
                 // 作用：Canal 客户端连接器接口，用于连接 Canal 服务器并获取 binlog 变更数据
                 // 方法：Class.forName(String className)
                 // 说明：动态加载类，如果类不存在会抛出 ClassNotFoundException
-                // 位置：CanalListener.java:174
                 Class.forName("com.alibaba.otter.canal.client.CanalConnector");
-                Object connector = createCanalConnector();
+            } catch (ClassNotFoundException e) {
+                log.warn("Canal 客户端库未找到，使用简化实现。建议添加 canal-client 依赖");
+                // 降级方案：使用轮询方式模拟增量同步
+                pollingSync();
+                return;
+            }
+            
+            Object connector = createCanalConnector();
+            
+            // 连接 Canal
+            connectCanal(connector);
+            
+            // 订阅
+            subscribe(connector);
+            
+            schemaRegistry = new BinlogSchemaRegistry(config.getTargetDataSource(), this::getTableStructure, null);
+            decodeQueue = new ArrayBlockingQueue<>(Math.max(1, config.getPrefetchBatches()));
+            applier = new BinlogApplier(shortId(taskId), config.getTargetDataSource(), config.getApplyThreads(),
+                    config.getApplyQueueCapacity(), config.getApplyBatchTransactions());
+            applier.setCoalescing(config.getCoalesceWindowMillis(), config.getCoalesceMaxRows());
+            applier.setMetrics(metrics);
+            applier.start();
+            BlockingQueue<CanalBatch> batches = decodeQueue;
+            metrics.registerQueue("decodeQueueBatches", batches::size);
+            // 只读取长度，跨线程读到的值可能稍有滞后
+            metrics.registerQueue("unackedBatches", unackedBatches::size);
+            
+            Thread decoder = new Thread(this::decodeLoop, "CanalDecoder-" + shortId(taskId));
+            decoder.setDaemon(true);
+            decoder.start();
+            try {
+                fetchLoop(connector);
+            } catch (Exception e) {
+                log.error("Canal 拉取失败，停止监听，Task ID: {}", taskId, e);
+            } finally {
+                fetchFinished = true;
+                decoder.join();
+                if (!pendingChanges.isEmpty()) {
+                    log.warn("丢弃未完成的源库事务，行变更数: {}", pendingChanges.size());
+                }
+                // 已交给应用器的事务处理完后再确认
+                applier.close();
+                ackCompleted(connector);
+                if (!unackedBatches.isEmpty()) {
+                    log.info("回滚未确认的批次，批次数: {}，下次连接时重新投递", unackedBatches.size());
+                    rollback(connector);
+                }
                 
-                // 连接 Canal
-                connectCanal(connector);
+                // 断开连接
+                disconnectCanal(connector);
+            }
+        }
+        
+        /**
+         * 拉取循环（监听线程）：拉取批次交给解码线程，按序确认已完成的批次
+         */
+        private void fetchLoop(Object connector) throws Exception {
+            int prefetchBatches = Math.max(1, config.getPrefetchBatches());
+            long minWait = Math.max(1, config.getMinFetchWaitMillis());
+            long maxWait = Math.max(minWait, config.getMaxFetchWaitMillis());
+            // 0 表示立即拉取（上一批次读满，服务端可能还有积压）
+            long fetchWait = 0;
+            
+            while (!stopped && running) {
+                checkFailure();
+                ackCompleted(connector);
+                if (unackedBatches.size() >= prefetchBatches) {
+                    awaitCompletion();
+                    continue;
+                }
                 
-                // 订阅
-                subscribe(connector);
+                Object message = getMessage(connector, fetchWait);
+                long batchId = getBatchId(message);
+                List<?> entries = getEntries(message);
                 
-                // 循环获取数据
-                while (!stopped && running) {
-                    try {
-                        // 获取数据
-                        Object message = getMessage(connector);
-                        if (message != null) {
-                            // 处理消息
-                            handleCanalMessage(message);
-                            
-                            // 确认消息
-                            ack(connector, message);
-                        }
-                    } catch (Exception e) {
-                        log.error("处理 Canal 消息失败", e);
-                        // 回滚
-                        rollback(connector);
+                if (batchId == -1 || entries == null || entries.isEmpty()) {
+                    if (batchId != -1) {
+                        // 没有条目的批次也需要按序确认
+                        CanalBatch batch = new CanalBatch(batchId, java.util.Collections.emptyList());
+                        unackedBatches.addLast(batch);
+                        release(batch);
                     }
-                    
-                    Thread.sleep(100);
+                    fetchWait = fetchWait == 0 ? minWait : Math.min(fetchWait * 2, maxWait);
+                    continue;
                 }
                 
-                // 断开连接
-                disconnectCanal(connector);
-                
-            } catch (ClassNotFoundException e) {
-                log.warn("Canal 客户端库未找到，使用简化实现。建议添加 canal-client 依赖");
-                // 降级方案：使用轮询方式模拟增量同步
-                pollingSync();
+                log.debug("收到 Canal 消息，Batch ID: {}, 条目数: {}", batchId, entries.size());
+                CanalBatch batch = new CanalBatch(batchId, entries);
+                unackedBatches.addLast(batch);
+                // 队列容量等于预取上限，这里不会长时间阻塞
+                while (!decodeQueue.offer(batch, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                    checkFailure();
+                }
+                fetchWait = entries.size() >= config.getBatchSize() ? 0 : minWait;
+            }
+        }
+        
+        /**
+         * 按 batchId 顺序确认已完成的批次（Canal 要求按拉取顺序确认）
+         */
+        private void ackCompleted(Object connector) throws Exception {
+            while (!unackedBatches.isEmpty() && unackedBatches.peekFirst().completed) {
+                long batchId = unackedBatches.pollFirst().id;
+                ack(connector, batchId);
+                metrics.recordAppliedPosition("batchId=" + batchId);
+            }
+        }
+        
+        private void awaitCompletion() throws InterruptedException {
+            synchronized (completionMonitor) {
+                if (!unackedBatches.peekFirst().completed) {
+                    completionMonitor.wait(POLL_INTERVAL_MS);
+                }
+            }
+        }
+        
+        private void checkFailure() {
+            Throwable failure = decodeFailure.get();
+            if (failure != null) {
+                throw new IllegalStateException("Canal 批次解码失败: " + taskId, failure);
+            }
+            applier.checkFailure();
+        }
+        
+        /**
+         * 释放批次上的一项未完成工作，全部完成时通知监听线程确认
+         */
+        private void release(CanalBatch batch) {
+            if (batch.pending.decrementAndGet() == 0) {
+                batch.completed = true;
+                synchronized (completionMonitor) {
+                    completionMonitor.notifyAll();
+                }
+            }
+        }
+        
+        /**
+         * 解码循环（解码线程）：按批次顺序将条目组装为源库事务提交给应用器
+         */
+        private void decodeLoop() {
+            try {
+                while (!stopped && decodeFailure.get() == null) {
+                    CanalBatch batch = decodeQueue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    if (batch == null) {
+                        if (fetchFinished) {
+                            break;
+                        }
+                        continue;
+                    }
+                    for (Object entry : batch.entries) {
+                        handleCanalEntry(batch, entry);
+                    }
+                    release(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                metrics.recordDecodeError();
+                decodeFailure.compareAndSet(null, e);
+                log.error("Canal 批次解码失败，Task ID: {}", taskId, e);
+            }
+        }
+        
+        /**
+         * 处理 Canal Entry
+         */
+        private void handleCanalEntry(CanalBatch batch, Object entry) throws Exception {
+            // Entry 类型：ROWDATA、TRANSACTIONBEGIN、TRANSACTIONEND 等
+            String entryTypeName = CanalEntryAdapter.getEntryType(entry);
+            // Header 包含表名、事件类型（INSERT、UPDATE、DELETE、ALTER 等）和源库执行时间
+            Object header = CanalEntryAdapter.getHeader(entry);
+            currentExecuteTime = CanalEntryAdapter.getExecuteTime(header);
+            metrics.recordEvent(currentExecuteTime);
+            
+            if ("TRANSACTIONBEGIN".equals(entryTypeName)) {
+                flushTransaction();
+                beginTransaction(batch);
+                return;
+            } else if ("TRANSACTIONEND".equals(entryTypeName)) {
+                flushTransaction();
+                return;
+            } else if (!"ROWDATA".equals(entryTypeName)) {
+                return;
+            }
+            
+            String tableName = CanalEntryAdapter.getTableName(header);
+            String eventType = CanalEntryAdapter.getEventType(header);
+            
+            // 存储值为 Protobuf 序列化的 RowChange，包含变更前后的行数据
+            Object rowChange = CanalEntryAdapter.parseRowChange(entry);
+            
+            // DDL 语句使相关表结构缓存失效，之后的行变更按新结构解码
+            if (CanalEntryAdapter.isDdl(rowChange)) {
+                schemaRegistry.onQuery(CanalEntryAdapter.getSql(rowChange));
+                return;
+            }
+            
+            // 检查是否应该监听该表
+            if (!shouldListenTable(tableName)) {
+                return;
+            }
+            
+            // 处理 RowChange
+            handleRowChange(batch, tableName, eventType, rowChange);
+        }
+        
+        /**
+         * 处理 RowChange：解码为行变更追加到当前源库事务
+         */
+        private void handleRowChange(CanalBatch batch, String tableName, String eventType, Object rowChange)
+                throws Exception {
+            List<?> rowDatas = CanalEntryAdapter.getRowDatas(rowChange);
+            
+            if (rowDatas == null || rowDatas.isEmpty()) {
+                return;
+            }
+            
+            BinlogApplier.ChangeType type;
+            if ("INSERT".equals(eventType)) {
+                type = BinlogApplier.ChangeType.INSERT;
+            } else if ("UPDATE".equals(eventType)) {
+                type = BinlogApplier.ChangeType.UPDATE;
+            } else if ("DELETE".equals(eventType)) {
+                type = BinlogApplier.ChangeType.DELETE;
+            } else {
+                return;
+            }
+            
+            CanalRowConverter converter = getConverter(tableName);
+            if (converter == null) {
+                log.warn("表 {} 不存在，跳过 {} 同步", tableName, eventType);
+                return;
+            }
+            DatabaseOperator.TableStructure structure = converter.getStructure();
+            if (type != BinlogApplier.ChangeType.INSERT && structure.getPrimaryKeys().isEmpty()) {
+                log.warn("表 {} 没有主键，无法执行 {} 同步", tableName, eventType);
+                return;
+            }
+            
+            for (Object rowData : rowDatas) {
+                // before 列用于 UPDATE/DELETE 定位，after 列用于 INSERT/UPDATE 写入
+                Map<String, Object> before = type == BinlogApplier.ChangeType.INSERT ? null
+                        : converter.convert(CanalEntryAdapter.getBeforeColumns(rowData));
+                Map<String, Object> after = type == BinlogApplier.ChangeType.DELETE ? null
+                        : converter.convert(CanalEntryAdapter.getAfterColumns(rowData));
+                appendChange(batch, new BinlogApplier.RowChange(type, tableName, structure, before, after));
             }
         }
         
+        /**
+         * 获取表的行转换器，表结构对象变化（DDL 后重新加载）时重新编译
+         *
+         * @return 行转换器，表不存在时返回 null
+         */
+        private CanalRowConverter getConverter(String tableName) throws SQLException {
+            DatabaseOperator.TableStructure structure = schemaRegistry.getTableStructure(tableName);
+            if (structure == null) {
+                converters.remove(tableName);
+                return null;
+            }
+            CanalRowConverter converter = converters.get(tableName);
+            if (converter == null || converter.getStructure() != structure) {
+                converter = CanalRowConverter.compile(structure);
+                converters.put(tableName, converter);
+            }
+            return converter;
+        }
+        
+        /**
+         * 开始一个源库事务，事务提交前其开始所在的批次不会确认
+         */
+        private void beginTransaction(CanalBatch batch) {
+            if (transactionBatch == null) {
+                transactionBatch = batch;
+                batch.pending.incrementAndGet();
+            }
+        }
+        
+        /**
+         * 追加行变更到当前源库事务
+         * 超大事务按 MAX_TRANSACTION_ROWS 拆分提交，避免整个事务驻留内存
+         */
+        private void appendChange(CanalBatch batch, BinlogApplier.RowChange change) throws InterruptedException {
+            beginTransaction(batch);
+            pendingChanges.add(change);
+            if (pendingChanges.size() >= MAX_TRANSACTION_ROWS) {
+                log.warn("源库事务行变更数达到 {}，拆分提交", MAX_TRANSACTION_ROWS);
+                flushTransaction();
+            }
+        }
+        
+        /**
+         * 将当前源库事务提交给应用器，提交到目标库后释放其开始所在的批次
+         */
+        private void flushTransaction() throws InterruptedException {
+            CanalBatch batch = transactionBatch;
+            if (batch == null) {
+                return;
+            }
+            transactionBatch = null;
+            if (pendingChanges.isEmpty()) {
+                release(batch);
+                return;
+            }
+            List<BinlogApplier.RowChange> changes = pendingChanges;
+            pendingChanges = new ArrayList<>();
+            long executeTime = currentExecuteTime;
+            metrics.recordDecodedRows(changes.size());
+            metrics.recordTransactionDecoded(executeTime);
+            applier.submit(changes, null, () -> {
+                metrics.recordTransactionCommitted(executeTime, null);
+                release(batch);
+            });
+        }
+        
         /**
          * 创建 Canal 连接器
          * TODO 默认端口为11111
@@ -287,409 +694,54 @@ public class CanalListener {
         
         /**
          * 获取消息
+         *
+         * @param waitMillis 服务端长轮询等待时间（毫秒），0 表示立即返回
          */
-        private Object getMessage(Object connector) throws Exception {
+        private Object getMessage(Object connector, long waitMillis) throws Exception {
             Class<?> connectorClass = connector.getClass();
-            // ========== 反射调用：获取 Canal 消息（不立即确认） ==========
-            // 类名：com.alibaba.otter.canal.client.CanalConnector
-            // 方法原型：Message getWithoutAck(int batchSize)
-            // 作用：从 Canal 服务器批量拉取 binlog 变更数据，但不立即发送 Ack 确认
-            // 参数：batchSize - 批量大小（每次拉取的消息数量）
-            // 返回：Message 对象，包含 binlog 变更数据
-            // 说明：拉取成功后不会立即向服务端发送 Ack，需要手动调用 ack() 确认
-            // 位置：CanalListener.java:267-268
-            Object message = connectorClass.getMethod("getWithoutAck", int.class)
-                    .invoke(connector, config.getBatchSize());
-            return message;
-        }
-        
-        /**
-         * 处理 Canal 消息
-         */
-        private void handleCanalMessage(Object message) throws Exception {
-            // ========== 反射调用：获取 Canal Message 的 ID ==========
-            // 类名：com.alibaba.otter.canal.protocol.Message
-            // 方法原型：long getId()
-            // 作用：获取消息的批次 ID，用于后续确认消息
-            // 返回：批次 ID（long 类型）
-            // 位置：CanalListener.java:279
-            Class<?> messageClass = message.getClass();
-            Long batchId = (Long) messageClass.getMethod("getId").invoke(message);
-            
-            // ========== 反射调用：获取 Canal Message 的 Entry 列表 ==========
-            // 类名：com.alibaba.otter.canal.protocol.Message
-            // 方法原型：List<Entry> getEntries()
-            // 作用：获取消息中包含的所有 Entry（binlog 变更条目）
-            // 返回：Entry 列表，每个 Entry 代表一个 binlog 变更事件
-            // 位置：CanalListener.java:280
-            List<?> entries = (List<?>) messageClass.getMethod("getEntries").invoke(message);
-            
-            if (entries == null || entries.isEmpty()) {
-                return;
-            }
-            
-            log.debug("收到 Canal 消息，Batch ID: {}, 条目数: {}", batchId, entries.size());
-            
-            // 处理每个 Entry
-            for (Object entry : entries) {
-                handleCanalEntry(entry);
-            }
-        }
-        
-        /**
-         * 处理 Canal Entry
-         */
-        private void handleCanalEntry(Object entry) throws Exception {
-            Class<?> entryClass = entry.getClass();
-            
-            // ========== 反射调用：获取 Canal Entry 的类型 ==========
-            // 类名：com.alibaba.otter.canal.protocol.CanalEntry$Entry
-            // 方法原型：EntryType getEntryType()
-            // 作用：获取 Entry 的类型（ROWDATA、TRANSACTIONBEGIN、TRANSACTIONEND 等）
-            // 返回：EntryType 枚举对象
-            // 位置：CanalListener.java:301
-            Object entryType = entryClass.getMethod("getEntryType").invoke(entry);
-            
-            // ========== 反射调用：获取枚举的名称 ==========
-            // 方法原型：String name()
-            // 作用：获取枚举常量的名称（如 "ROWDATA"）
-            // 位置：CanalListener.java:302
-            String entryTypeName = entryType.getClass().getMethod("name").invoke(entryType).toString();
-            
-            // 只处理 ROWDATA 类型
-            if (!"ROWDATA".equals(entryTypeName)) {
-                return;
-            }
-            
-            // ========== 反射调用：获取 Canal Entry 的 Header ==========
-            // 类名：com.alibaba.otter.canal.protocol.CanalEntry$Entry
-            // 方法原型：Header getHeader()
-            // 作用：获取 Entry 的元数据头信息（包含数据库名、表名、事件类型等）
-            // 返回：Header 对象
-            // 位置：CanalListener.java:310
-            Object header = entryClass.getMethod("getHeader").invoke(entry);
-            Class<?> headerClass = header.getClass();
-            
-            // ========== 反射调用：获取 Header 中的数据库名 ==========
-            // 类名：com.alibaba.otter.canal.protocol.CanalEntry$Header
-            // 方法原型：String getSchemaName()
-            // 作用：获取变更数据所属的数据库名
-            // 位置：CanalListener.java:313
-            @SuppressWarnings("unused")
-            String schemaName = (String) headerClass.getMethod("getSchemaName").invoke(header);
-            
-            // ========== 反射调用：获取 Header 中的表名 ==========
-            // 方法原型：String getTableName()
-            // 作用：获取变更数据所属的表名
-            // 位置：CanalListener.java:314
-            String tableName = (String) headerClass.getMethod("getTableName").invoke(header);
-            
-            // ========== 反射调用：获取 Header 中的事件类型 ==========
-            // 方法原型：String getEventType()
-            // 作用：获取 binlog 事件类型（INSERT、UPDATE、DELETE）
-            // 位置：CanalListener.java:315
-            String eventType = (String) headerClass.getMethod("getEventType").invoke(header);
-            
-            // 检查是否应该监听该表
-            if (!shouldListenTable(tableName)) {
-                return;
-            }
-            
-            // ========== 反射调用：获取 Canal Entry 的存储值 ==========
-            // 类名：com.alibaba.otter.canal.protocol.CanalEntry$Entry
-            // 方法原型：byte[] getStoreValue()
-            // 作用：获取 Entry 的序列化数据（Protobuf 格式）
-            // 返回：字节数组
-            // 位置：CanalListener.java:323
-            Object storeValue = entryClass.getMethod("getStoreValue").invoke(entry);
-            
-            // ========== 反射调用：解析 RowChange 对象 ==========
-            // 类名：com.alibaba.otter.canal.protocol.CanalEntry$RowChange
-            // 方法原型：static RowChange parseFrom(byte[] data)
-            // 作用：从 Protobuf 字节数组解析 RowChange 对象
-            // 参数：data - Protobuf 序列化的字节数组
-            // 返回：RowChange 对象，包含行变更数据
-            // 说明：RowChange 包含变更前后的行数据（before/after columns）
-            // 位置：CanalListener.java:324-326
-            Class<?> rowChangeClass = Class.forName("com.alibaba.otter.canal.protocol.CanalEntry$RowChange");
-            Object rowChange = rowChangeClass.getMethod("parseFrom", byte[].class)
-                    .invoke(null, storeValue);
-            
-            // 处理 RowChange
-            handleRowChange(tableName, eventType, rowChange);
-        }
-        
-        /**
-         * 处理 RowChange
-         */
-        private void handleRowChange(String tableName, String eventType, Object rowChange) throws Exception {
-            // ========== 反射调用：获取 RowChange 中的行数据列表 ==========
-            // 类名：com.alibaba.otter.canal.protocol.CanalEntry$RowChange
-            // 方法原型：List<RowData> getRowDatasList()
-            // 作用：获取 RowChange 中包含的所有行数据
-            // 返回：RowData 列表，每个 RowData 代表一行的变更数据
-            // 说明：RowData 包含 beforeColumns 和 afterColumns，分别表示变更前后的列数据
-            // 位置：CanalListener.java:337
-            Class<?> rowChangeClass = rowChange.getClass();
-            List<?> rowDatas = (List<?>) rowChangeClass.getMethod("getRowDatasList").invoke(rowChange);
-            
-            if (rowDatas == null || rowDatas.isEmpty()) {
-                return;
-            }
-            
-            // 根据事件类型处理
-            if ("INSERT".equals(eventType)) {
-                syncInsertToTarget(tableName, rowDatas);
-            } else if ("UPDATE".equals(eventType)) {
-                syncUpdateToTarget(tableName, rowDatas);
-            } else if ("DELETE".equals(eventType)) {
-                syncDeleteToTarget(tableName, rowDatas);
-            }
-        }
-        
-        /**
-         * 同步 INSERT 到目标数据库
-         */
-        private void syncInsertToTarget(String tableName, List<?> rowDatas) throws SQLException {
-            log.debug("同步 INSERT 到目标表: {}, 记录数: {}", tableName, rowDatas.size());
-            
-            try (Connection conn = config.getTargetDataSource().getConnection()) {
-                // 获取表结构
-                DatabaseOperator.TableStructure structure = getTableStructure(conn, tableName);
-                if (structure == null) {
-                    log.warn("表 {} 不存在，跳过 INSERT 同步", tableName);
-                    return;
-                }
-                
-                // 构建 INSERT SQL
-                String insertSql = buildInsertSql(tableName, structure);
-                
-                // 批量插入
-                try (java.sql.PreparedStatement stmt = conn.prepareStatement(insertSql)) {
-                    for (Object rowData : rowDatas) {
-                        Map<String, Object> rowMap = parseCanalRowData(rowData, structure, true);
-                        setInsertParameters(stmt, rowMap, structure);
-                        stmt.addBatch();
-                    }
-                    stmt.executeBatch();
-                    log.debug("成功同步 {} 条 INSERT 记录到表: {}", rowDatas.size(), tableName);
-                }
-            } catch (Exception e) {
-                log.error("同步 INSERT 到目标表 {} 失败", tableName, e);
-                throw new SQLException("同步 INSERT 失败", e);
-            }
-        }
-        
-        /**
-         * 同步 UPDATE 到目标数据库
-         */
-        private void syncUpdateToTarget(String tableName, List<?> rowDatas) throws SQLException {
-            log.debug("同步 UPDATE 到目标表: {}, 记录数: {}", tableName, rowDatas.size());
-            
-            try (Connection conn = config.getTargetDataSource().getConnection()) {
-                DatabaseOperator.TableStructure structure = getTableStructure(conn, tableName);
-                if (structure == null) {
-                    log.warn("表 {} 不存在，跳过 UPDATE 同步", tableName);
-                    return;
-                }
-                
-                String updateSql = buildUpdateSql(tableName, structure);
-                
-                try (java.sql.PreparedStatement stmt = conn.prepareStatement(updateSql)) {
-                    for (Object rowData : rowDatas) {
-                        // Canal UPDATE 事件包含 before 和 after
-                        Map<String, Object> afterRow = parseCanalRowData(rowData, structure, false);
-                        Map<String, Object> beforeRow = parseCanalRowDataBefore(rowData, structure);
-                        
-                        setUpdateParameters(stmt, afterRow, beforeRow, structure);
-                        stmt.addBatch();
-                    }
-                    stmt.executeBatch();
-                    log.debug("成功同步 {} 条 UPDATE 记录到表: {}", rowDatas.size(), tableName);
-                }
-            } catch (Exception e) {
-                log.error("同步 UPDATE 到目标表 {} 失败", tableName, e);
-                throw new SQLException("同步 UPDATE 失败", e);
-            }
-        }
-        
-        /**
-         * 同步 DELETE 到目标数据库
-         */
-        private void syncDeleteToTarget(String tableName, List<?> rowDatas) throws SQLException {
-            log.debug("同步 DELETE 到目标表: {}, 记录数: {}", tableName, rowDatas.size());
-            
-            try (Connection conn = config.getTargetDataSource().getConnection()) {
-                DatabaseOperator.TableStructure structure = getTableStructure(conn, tableName);
-                if (structure == null) {
-                    log.warn("表 {} 不存在，跳过 DELETE 同步", tableName);
-                    return;
-                }
-                
-                if (structure.getPrimaryKeys().isEmpty()) {
-                    log.warn("表 {} 没有主键，无法执行 DELETE 同步", tableName);
-                    return;
-                }
-                
-                String deleteSql = buildDeleteSql(tableName, structure);
-                
-                try (java.sql.PreparedStatement stmt = conn.prepareStatement(deleteSql)) {
-                    for (Object rowData : rowDatas) {
-                        Map<String, Object> rowMap = parseCanalRowData(rowData, structure, true);
-                        setDeleteParameters(stmt, rowMap, structure);
-                        stmt.addBatch();
-                    }
-                    stmt.executeBatch();
-                    log.debug("成功同步 {} 条 DELETE 记录到表: {}", rowDatas.size(), tableName);
-                }
-            } catch (Exception e) {
-                log.error("同步 DELETE 到目标表 {} 失败", tableName, e);
-                throw new SQLException("同步 DELETE 失败", e);
-            }
-        }
-        
-        /**
-         * 解析 Canal RowData
-         */
-        private Map<String, Object> parseCanalRowData(Object rowData, DatabaseOperator.TableStructure structure, boolean useAfter) {
-            Map<String, Object> rowMap = new java.util.HashMap<>();
-            
-            try {
-                Class<?> rowDataClass = rowData.getClass();
-                
-                // ========== 反射调用：获取 RowData 中的 after 列列表 ==========
-                // 类名：com.alibaba.otter.canal.protocol.CanalEntry$RowData
-                // 方法原型：List<Column> getAfterColumnsList()
-                // 作用：获取变更后的列数据列表（INSERT/UPDATE 事件使用）
-                // 返回：Column 列表
-                // 位置：CanalListener.java:466
-                List<?> columns;
-                if (useAfter) {
-                    columns = (List<?>) rowDataClass.getMethod("getAfterColumnsList").invoke(rowData);
-                } else {
-                    columns = (List<?>) rowDataClass.getMethod("getAfterColumnsList").invoke(rowData);
-                }
-                
-                // ========== 反射调用：解析 Canal Column 对象 ==========
-                // 类名：com.alibaba.otter.canal.protocol.CanalEntry$Column
-                // 方法原型：
-                //   - String getName() - 获取列名
-                //   - String getValue() - 获取列值（字符串格式）
-                //   - boolean getIsNull() - 判断列值是否为 NULL
-                // 作用：从 Column 对象中提取列名、列值和是否为 NULL 的信息
-                // 位置：CanalListener.java:473-476
-                for (Object column : columns) {
-                    Class<?> columnClass = column.getClass();
-                    String name = (String) columnClass.getMethod("getName").invoke(column);
-                    String value = (String) columnClass.getMethod("getValue").invoke(column);
-                    boolean isNull = (Boolean) columnClass.getMethod("getIsNull").invoke(column);
-                    
-                    // 根据列类型转换值
-                    Object convertedValue = convertValue(value, name, structure, isNull);
-                    rowMap.put(name, convertedValue);
-                }
-            } catch (Exception e) {
-                log.error("解析 Canal RowData 失败", e);
+            if (waitMillis <= 0) {
+                // ========== 反射调用：获取 Canal 消息（不立即确认） ==========
+                // 类名：com.alibaba.otter.canal.client.CanalConnector
+                // 方法原型：Message getWithoutAck(int batchSize)
+                // 作用：从 Canal 服务器批量拉取 binlog 变更数据，但不立即发送 Ack 确认
+                // 参数：batchSize - 批量大小（每次拉取的消息数量）
+                // 返回：Message 对象，包含 binlog 变更数据
+                // 说明：有多少取多少，立即返回；拉取成功后需要手动调用 ack() 确认
+                return connectorClass.getMethod("getWithoutAck", int.class)
+                        .invoke(connector, config.getBatchSize());
             }
-            
-            return rowMap;
+            // ========== 反射调用：长轮询获取 Canal 消息（不立即确认） ==========
+            // 方法原型：Message getWithoutAck(int batchSize, Long timeout, TimeUnit unit)
+            // 作用：服务端等待到凑满 batchSize 或超时后返回
+            // 说明：没有数据时阻塞在服务端，代替客户端固定间隔的休眠
+            return connectorClass.getMethod("getWithoutAck", int.class, Long.class, TimeUnit.class)
+                    .invoke(connector, config.getBatchSize(), waitMillis, TimeUnit.MILLISECONDS);
         }
         
         /**
-         * 解析 Canal RowData Before（UPDATE 事件）
+         * 获取消息的批次 ID（没有数据时为 -1）
          */
-        private Map<String, Object> parseCanalRowDataBefore(Object rowData, DatabaseOperator.TableStructure structure) {
-            Map<String, Object> rowMap = new java.util.HashMap<>();
-            
-            try {
-                // ========== 反射调用：获取 RowData 中的 before 列列表 ==========
-                // 类名：com.alibaba.otter.canal.protocol.CanalEntry$RowData
-                // 方法原型：List<Column> getBeforeColumnsList()
-                // 作用：获取变更前的列数据列表（UPDATE/DELETE 事件使用）
-                // 返回：Column 列表
-                // 说明：UPDATE 事件包含 before 和 after 两套列数据
-                // 位置：CanalListener.java:497
-                Class<?> rowDataClass = rowData.getClass();
-                List<?> columns = (List<?>) rowDataClass.getMethod("getBeforeColumnsList").invoke(rowData);
-                
-                // ========== 反射调用：解析 Canal Column 对象（before 列） ==========
-                // 类名：com.alibaba.otter.canal.protocol.CanalEntry$Column
-                // 方法原型：同 after 列的解析方法
-                // 作用：从 before 列的 Column 对象中提取列名、列值和是否为 NULL 的信息
-                // 位置：CanalListener.java:500-503
-                for (Object column : columns) {
-                    Class<?> columnClass = column.getClass();
-                    String name = (String) columnClass.getMethod("getName").invoke(column);
-                    String value = (String) columnClass.getMethod("getValue").invoke(column);
-                    boolean isNull = (Boolean) columnClass.getMethod("getIsNull").invoke(column);
-                    
-                    Object convertedValue = convertValue(value, name, structure, isNull);
-                    rowMap.put(name, convertedValue);
-                }
-            } catch (Exception e) {
-                log.error("解析 Canal RowData Before 失败", e);
-            }
-            
-            return rowMap;
+        private long getBatchId(Object message) {
+            return CanalEntryAdapter.getId(message);
         }
         
         /**
-         * 转换值类型
+         * 获取消息的 Entry 列表
          */
-        private Object convertValue(String value, String columnName, DatabaseOperator.TableStructure structure, boolean isNull) {
-            if (isNull || value == null) {
-                return null;
-            }
-            
-            // 查找列类型
-            for (DatabaseOperator.TableColumn column : structure.getColumns()) {
-                if (column.getName().equals(columnName)) {
-                    // 根据类型转换
-                    String typeName = column.getTypeName().toUpperCase();
-                    if (typeName.contains("INT")) {
-                        try {
-                            return Long.parseLong(value);
-                        } catch (NumberFormatException e) {
-                            return value;
-                        }
-                    } else if (typeName.contains("DECIMAL") || typeName.contains("NUMERIC")) {
-                        try {
-                            return java.math.BigDecimal.valueOf(Double.parseDouble(value));
-                        } catch (NumberFormatException e) {
-                            return value;
-                        }
-                    } else if (typeName.contains("DATE") || typeName.contains("TIME")) {
-                        try {
-                            return java.sql.Timestamp.valueOf(value);
-                        } catch (Exception e) {
-                            return value;
-                        }
-                    }
-                    return value;
-                }
-            }
-            
-            return value;
+        private List<?> getEntries(Object message) {
+            return CanalEntryAdapter.getEntries(message);
         }
         
         /**
          * 确认消息
          */
-        private void ack(Object connector, Object message) throws Exception {
-            // ========== 反射调用：获取 Message 的 ID ==========
-            // 方法原型：long getId()
-            // 作用：获取消息的批次 ID
-            // 位置：CanalListener.java:559
-            Class<?> messageClass = message.getClass();
-            Long batchId = (Long) messageClass.getMethod("getId").invoke(message);
-            
+        private void ack(Object connector, long batchId) throws Exception {
             // ========== 反射调用：确认 Canal 消息 ==========
             // 类名：com.alibaba.otter.canal.client.CanalConnector
             // 方法原型：void ack(long batchId)
             // 作用：向 Canal 服务器发送确认消息，表示已成功处理该批次的数据
             // 参数：batchId - 消息批次 ID
-            // 说明：确认后，Canal 服务器会删除该批次的数据，不再重复推送
-            // 位置：CanalListener.java:560
+            // 说明：确认后，Canal 服务器会删除该批次的数据，不再重复推送；必须按拉取顺序确认
             connector.getClass().getMethod("ack", long.class).invoke(connector, batchId);
         }
         
@@ -775,122 +827,36 @@ public class CanalListener {
             return structure.getColumns().isEmpty() ? null : structure;
         }
         
-        /**
-         * 构建 INSERT SQL
-         */
-        private String buildInsertSql(String tableName, DatabaseOperator.TableStructure structure) {
-            StringBuilder sql = new StringBuilder("INSERT INTO ");
-            sql.append(tableName).append(" (");
-            
-            String columns = structure.getColumns().stream()
-                    .map(DatabaseOperator.TableColumn::getName)
-                    .collect(java.util.stream.Collectors.joining(", "));
-            sql.append(columns).append(") VALUES (");
-            
-            String placeholders = structure.getColumns().stream()
-                    .map(c -> "?")
-                    .collect(java.util.stream.Collectors.joining(", "));
-            sql.append(placeholders).append(")");
-            
-            return sql.toString();
-        }
-        
-        /**
-         * 构建 UPDATE SQL
-         */
-        private String buildUpdateSql(String tableName, DatabaseOperator.TableStructure structure) {
-            StringBuilder sql = new StringBuilder("UPDATE ");
-            sql.append(tableName).append(" SET ");
-            
-            String setClause = structure.getColumns().stream()
-                    .filter(c -> !structure.getPrimaryKeys().contains(c.getName()))
-                    .map(c -> c.getName() + " = ?")
-                    .collect(java.util.stream.Collectors.joining(", "));
-            sql.append(setClause).append(" WHERE ");
-            
-            String whereClause = structure.getPrimaryKeys().stream()
-                    .map(key -> key + " = ?")
-                    .collect(java.util.stream.Collectors.joining(" AND "));
-            sql.append(whereClause);
-            
-            return sql.toString();
+        private String shortId(String id) {
+            return id.length() > 8 ? id.substring(0, 8) : id;
         }
         
-        /**
-         * 构建 DELETE SQL
-         */
-        private String buildDeleteSql(String tableName, DatabaseOperator.TableStructure structure) {
-            StringBuilder sql = new StringBuilder("DELETE FROM ");
-            sql.append(tableName).append(" WHERE ");
-            
-            String whereClause = structure.getPrimaryKeys().stream()
-                    .map(key -> key + " = ?")
-                    .collect(java.util.stream.Collectors.joining(" AND "));
-            sql.append(whereClause);
-            
-            return sql.toString();
+        public void stop() {
+            stopped = true;
         }
         
-        /**
-         * 设置 INSERT 参数
-         */
-        private void setInsertParameters(java.sql.PreparedStatement stmt, 
-                                       Map<String, Object> rowData, 
-                                       DatabaseOperator.TableStructure structure) throws SQLException {
-            int paramIndex = 1;
-            for (DatabaseOperator.TableColumn column : structure.getColumns()) {
-                Object value = rowData.get(column.getName());
-                stmt.setObject(paramIndex++, value);
-            }
+        public boolean isRunning() {
+            return running;
         }
         
         /**
-         * 设置 UPDATE 参数
+         * 已拉取的批次
          */
-        private void setUpdateParameters(java.sql.PreparedStatement stmt,
-                                       Map<String, Object> afterRow,
-                                       Map<String, Object> beforeRow,
-                                       DatabaseOperator.TableStructure structure) throws SQLException {
-            int paramIndex = 1;
+        private class CanalBatch {
+            private final long id;
+            private final List<?> entries;
             
-            // SET 子句参数
-            for (DatabaseOperator.TableColumn column : structure.getColumns()) {
-                if (!structure.getPrimaryKeys().contains(column.getName())) {
-                    Object value = afterRow.get(column.getName());
-                    stmt.setObject(paramIndex++, value);
-                }
-            }
+            /**
+             * 未完成的工作数：解码占 1 个，每个在本批次开始、尚未提交到目标库的源库事务占 1 个
+             */
+            private final AtomicInteger pending = new AtomicInteger(1);
             
-            // WHERE 子句参数
-            for (String primaryKey : structure.getPrimaryKeys()) {
-                Object value = afterRow.get(primaryKey);
-                if (value == null && beforeRow != null) {
-                    value = beforeRow.get(primaryKey);
-                }
-                stmt.setObject(paramIndex++, value);
-            }
-        }
-        
-        /**
-         * 设置 DELETE 参数
-         */
-        private void setDeleteParameters(java.sql.PreparedStatement stmt,
-                                        Map<String, Object> rowData,
-                                        DatabaseOperator.TableStructure structure) throws SQLException {
-            int paramIndex = 1;
-            for (String primaryKey : structure.getPrimaryKeys()) {
-                Object value = rowData.get(primaryKey);
-                stmt.setObject(paramIndex++, value);
+            private volatile boolean completed;
+            
+            CanalBatch(long id, List<?> entries) {
+                this.id = id;
+                this.entries = entries;
             }
         }
-        
-        public void stop() {
-            stopped = true;
-        }
-        
-        public boolean isRunning() {
-            return running;
-        }
     }
 }
-
@@ -0,0 +1,231 @@
+package com.lixiangyu.common.migration;
+
+import com.lixiangyu.common.migration.operator.DatabaseOperator;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Canal 行转换器
+ * 按表结构编译一次：每个目标列的名称（绑定槽位）和类型解析器在编译时确定，
+ * 行转换时按 Canal 列序号直接定位槽位，不再逐列扫描表结构、转换类型名大小写
+ *
+ * 功能特性：
+ * 1. 槽位缓存：Canal 列序号 -> 目标列槽位，首次遇到时按列名（忽略大小写）解析，之后只校验列名
+ * 2. 精确解析：DECIMAL/NUMERIC 使用 BigDecimal(String)，不经过 double；超出 long 的无符号整数同样保留为 BigDecimal
+ * 3. 类型解析：DATE/TIME/TIMESTAMP 转为对应的 java.sql 类型，二进制列按 Canal 的 ISO-8859-1 编码还原为字节数组
+ * 4. 解析失败时保留原始字符串，由驱动按目标列类型转换
+ *
+ * 非线程安全，由解码线程独占使用；表结构变化时重新编译
+ *
+ * @author lixiangyu
+ */
+public final class CanalRowConverter {
+    
+    private final DatabaseOperator.TableStructure structure;
+    
+    /**
+     * 槽位 -> 目标列名
+     */
+    private final String[] names;
+    
+    /**
+     * 槽位 -> 值解析器
+     */
+    private final ValueParser[] parsers;
+    
+    /**
+     * 小写列名 -> 槽位
+     */
+    private final Map<String, Integer> slotsByName;
+    
+    /**
+     * Canal 列序号 -> 列名 / 槽位（-1 表示目标表没有该列）
+     */
+    private String[] indexNames = new String[0];
+    private int[] indexSlots = new int[0];
+    
+    private CanalRowConverter(DatabaseOperator.TableStructure structure) {
+        this.structure = structure;
+        List<DatabaseOperator.TableColumn> columns = structure.getColumns();
+        this.names = new String[columns.size()];
+        this.parsers = new ValueParser[columns.size()];
+        this.slotsByName = new HashMap<>(columns.size() * 2);
+        for (int i = 0; i < columns.size(); i++) {
+            DatabaseOperator.TableColumn column = columns.get(i);
+            names[i] = column.getName();
+            parsers[i] = ValueParser.of(column.getType());
+            slotsByName.put(column.getName().toLowerCase(Locale.ROOT), i);
+        }
+    }
+    
+    /**
+     * 按表结构编译转换器
+     */
+    public static CanalRowConverter compile(DatabaseOperator.TableStructure structure) {
+        return new CanalRowConverter(structure);
+    }
+    
+    /**
+     * 编译时使用的表结构（调用方据此判断是否需要重新编译）
+     */
+    public DatabaseOperator.TableStructure getStructure() {
+        return structure;
+    }
+    
+    /**
+     * 转换一行 Canal 列数据
+     *
+     * @param columns Canal Column 列表
+     * @return 目标列名 -> 值（目标表不存在的列被忽略）
+     */
+    public Map<String, Object> convert(List<?> columns) {
+        Map<String, Object> row = new HashMap<>(names.length * 4 / 3 + 1);
+        for (int i = 0, size = columns.size(); i < size; i++) {
+            Object column = columns.get(i);
+            String name = CanalEntryAdapter.getColumnName(column);
+            int slot = slot(CanalEntryAdapter.getColumnIndex(column), name);
+            if (slot < 0) {
+                continue;
+            }
+            String value = CanalEntryAdapter.isColumnNull(column) ? null : CanalEntryAdapter.getColumnValue(column);
+            row.put(names[slot], value == null ? null : parsers[slot].parse(value));
+        }
+        return row;
+    }
+    
+    private int slot(int index, String name) {
+        if (index >= 0 && index < indexNames.length && name.equals(indexNames[index])) {
+            return indexSlots[index];
+        }
+        Integer slot = slotsByName.get(name.toLowerCase(Locale.ROOT));
+        int resolved = slot == null ? -1 : slot;
+        if (index >= 0) {
+            if (index >= indexNames.length) {
+                int length = Math.max(index + 1, names.length);
+                indexNames = Arrays.copyOf(indexNames, length);
+                indexSlots = Arrays.copyOf(indexSlots, length);
+            }
+            indexNames[index] = name;
+            indexSlots[index] = resolved;
+        }
+        return resolved;
+    }
+    
+    /**
+     * 按 JDBC 类型解析 Canal 字符串值
+     */
+    private enum ValueParser {
+        INTEGER {
+            @Override
+            Object parse(String value) {
+                try {
+                    return Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    // BIGINT UNSIGNED 超出 long 范围
+                    return DECIMAL.parse(value);
+                }
+            }
+        },
+        DECIMAL {
+            @Override
+            Object parse(String value) {
+                try {
+                    return new BigDecimal(value);
+                } catch (NumberFormatException e) {
+                    return value;
+                }
+            }
+        },
+        FLOATING {
+            @Override
+            Object parse(String value) {
+                try {
+                    return Double.parseDouble(value);
+                } catch (NumberFormatException e) {
+                    return value;
+                }
+            }
+        },
+        DATE {
+            @Override
+            Object parse(String value) {
+                try {
+                    return java.sql.Date.valueOf(value);
+                } catch (IllegalArgumentException e) {
+                    return value;
+                }
+            }
+        },
+        TIME {
+            @Override
+            Object parse(String value) {
+                try {
+                    return java.sql.Time.valueOf(value);
+                } catch (IllegalArgumentException e) {
+                    return value;
+                }
+            }
+        },
+        TIMESTAMP {
+            @Override
+            Object parse(String value) {
+                try {
+                    return java.sql.Timestamp.valueOf(value);
+                } catch (IllegalArgumentException e) {
+                    return value;
+                }
+            }
+        },
+        BINARY {
+            @Override
+            Object parse(String value) {
+                return value.getBytes(StandardCharsets.ISO_8859_1);
+            }
+        },
+        STRING {
+            @Override
+            Object parse(String value) {
+                return value;
+            }
+        };
+        
+        abstract Object parse(String value);
+        
+        static ValueParser of(int jdbcType) {
+            switch (jdbcType) {
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                case Types.BIGINT:
+                    return INTEGER;
+                case Types.DECIMAL:
+                case Types.NUMERIC:
+                    return DECIMAL;
+                case Types.REAL:
+                case Types.FLOAT:
+                case Types.DOUBLE:
+                    return FLOATING;
+                case Types.DATE:
+                    return DATE;
+                case Types.TIME:
+                    return TIME;
+                case Types.TIMESTAMP:
+                    return TIMESTAMP;
+                case Types.BINARY:
+                case Types.VARBINARY:
+                case Types.LONGVARBINARY:
+                case Types.BLOB:
+                    return BINARY;
+                default:
+                    return STRING;
+            }
+        }
+    }
+}
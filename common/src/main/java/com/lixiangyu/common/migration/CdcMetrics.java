@@ -0,0 +1,452 @@
+package com.lixiangyu.common.migration;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 增量同步（CDC）运行指标
+ * 由解码线程、应用线程并发写入，查询时生成快照（{@link #snapshot()}），写入路径只有原子计数，不加锁
+ *
+ * 功能特性：
+ * 1. 吞吐：解码事件数、解码行数、应用行数、应用事务数，速率按最近 RATE_WINDOW_SECONDS 秒的秒级桶计算
+ * 2. 延迟直方图：按表统计每次目标库批量写入的耗时，固定的对数分桶，快照给出累计分桶计数和 p50/p95/p99
+ * 3. 队列深度：由监听任务注册的队列长度（应用器排队事务、待解码批次等），快照时读取
+ * 4. 同步延迟：源库事件时间与当前时间的差值，分为解码延迟和应用延迟
+ * 5. 位点与错误：最近提交的源库位点，解码错误、应用重试、应用失败计数
+ *
+ * 快照字段即指标名称，接入 Micrometer 等监控系统时按快照注册 Gauge 即可
+ *
+ * @author lixiangyu
+ */
+public class CdcMetrics {
+    
+    /**
+     * 速率统计窗口（秒）
+     */
+    private static final int RATE_WINDOW_SECONDS = 10;
+    
+    /**
+     * 延迟直方图分桶上界（毫秒），最后一个桶为 +Inf
+     */
+    private static final long[] LATENCY_BOUNDS_MILLIS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000};
+    
+    private final Meter events = new Meter();
+    private final Meter decodedRows = new Meter();
+    private final Meter appliedRows = new Meter();
+    private final Meter appliedTransactions = new Meter();
+    
+    /**
+     * 表名 -> 写入延迟直方图
+     */
+    private final Map<String, LatencyHistogram> tableLatencies = new ConcurrentHashMap<>();
+    
+    /**
+     * 队列名称 -> 队列长度
+     */
+    private final Map<String, LongSupplier> queueDepths = new ConcurrentHashMap<>();
+    
+    /**
+     * 最近解码的源库事件时间与解码时的延迟
+     */
+    private volatile long lastEventTimestamp;
+    private volatile long decodeLagMillis;
+    
+    /**
+     * 已解码、已提交的源库事务数，两者之差为未提交的事务数
+     */
+    private final AtomicLong decodedTransactions = new AtomicLong();
+    private final AtomicLong committedTransactions = new AtomicLong();
+    
+    /**
+     * 未提交事务从无到有时第一个事务的源库时间（应用停滞时延迟从这里开始增长）
+     */
+    private volatile long pendingSinceTimestamp;
+    
+    /**
+     * 最近提交的源库事务时间与提交时的延迟
+     */
+    private volatile long lastAppliedTimestamp;
+    private volatile long commitLagMillis;
+    
+    private volatile String lastAppliedPosition;
+    
+    private final LongAdder decodeErrors = new LongAdder();
+    private final LongAdder applyRetries = new LongAdder();
+    private final LongAdder applyFailures = new LongAdder();
+    
+    private final long startTime = System.currentTimeMillis();
+    
+    /**
+     * 注册队列长度（快照时读取）
+     */
+    public void registerQueue(String name, LongSupplier depth) {
+        queueDepths.put(name, depth);
+    }
+    
+    /**
+     * 记录一个解码的源库事件
+     *
+     * @param eventTimestamp 事件在源库的时间（毫秒），未知时传 0
+     */
+    public void recordEvent(long eventTimestamp) {
+        events.mark(1);
+        if (eventTimestamp > 0) {
+            lastEventTimestamp = eventTimestamp;
+            decodeLagMillis = Math.max(0, System.currentTimeMillis() - eventTimestamp);
+        }
+    }
+    
+    /**
+     * 记录解码出的行变更数
+     */
+    public void recordDecodedRows(int rows) {
+        decodedRows.mark(rows);
+    }
+    
+    /**
+     * 记录一个交给应用器的源库事务
+     *
+     * @param eventTimestamp 事务在源库的时间（毫秒），未知时传 0
+     */
+    public void recordTransactionDecoded(long eventTimestamp) {
+        if (decodedTransactions.getAndIncrement() == committedTransactions.get()) {
+            pendingSinceTimestamp = eventTimestamp;
+        }
+    }
+    
+    /**
+     * 记录一个源库事务已提交到目标库（与 {@link #recordTransactionDecoded} 一一对应）
+     * 多个应用线程的提交顺序与源库不完全一致，只保留源库时间最新的事务，位点为近似值
+     *
+     * @param eventTimestamp 事务在源库的时间（毫秒），未知时传 0
+     * @param position 事务的源库位点，未知时传 null
+     */
+    public void recordTransactionCommitted(long eventTimestamp, String position) {
+        committedTransactions.incrementAndGet();
+        if (eventTimestamp > 0 && eventTimestamp >= lastAppliedTimestamp) {
+            lastAppliedTimestamp = eventTimestamp;
+            commitLagMillis = Math.max(0, System.currentTimeMillis() - eventTimestamp);
+            if (position != null) {
+                lastAppliedPosition = position;
+            }
+        }
+    }
+    
+    /**
+     * 记录已确认的源库位点（binlog 文件:位置、GTID 或 Canal 批次等）
+     */
+    public void recordAppliedPosition(String position) {
+        lastAppliedPosition = position;
+    }
+    
+    /**
+     * 记录一次目标库批量写入
+     *
+     * @param tableName 表名
+     * @param rows 行数
+     * @param elapsedNanos 耗时（纳秒）
+     */
+    public void recordTableWrite(String tableName, int rows, long elapsedNanos) {
+        LatencyHistogram histogram = tableLatencies.get(tableName);
+        if (histogram == null) {
+            histogram = tableLatencies.computeIfAbsent(tableName, name -> new LatencyHistogram());
+        }
+        histogram.record(rows, elapsedNanos);
+    }
+    
+    /**
+     * 记录一组已提交到目标库的事务
+     */
+    public void recordApplied(int transactions, int rows) {
+        appliedTransactions.mark(transactions);
+        appliedRows.mark(rows);
+    }
+    
+    public void recordDecodeError() {
+        decodeErrors.increment();
+    }
+    
+    public void recordApplyRetry() {
+        applyRetries.increment();
+    }
+    
+    public void recordApplyFailure() {
+        applyFailures.increment();
+    }
+    
+    /**
+     * 生成当前指标快照
+     */
+    public Snapshot snapshot() {
+        long now = System.currentTimeMillis();
+        
+        Map<String, Long> queues = new TreeMap<>();
+        for (Map.Entry<String, LongSupplier> entry : queueDepths.entrySet()) {
+            queues.put(entry.getKey(), entry.getValue().getAsLong());
+        }
+        Map<String, TableLatency> latencies = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : tableLatencies.entrySet()) {
+            latencies.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        
+        long pending = Math.max(0, decodedTransactions.get() - committedTransactions.get());
+        long applyLag = commitLagMillis;
+        if (pending > 0) {
+            // 有未提交的事务：延迟至少是最早未提交事务已等待的时间
+            long since = Math.max(lastAppliedTimestamp, pendingSinceTimestamp);
+            if (since > 0) {
+                applyLag = Math.max(applyLag, now - since);
+            }
+        }
+        
+        return Snapshot.builder()
+                .uptimeMillis(now - startTime)
+                .eventsDecoded(events.total())
+                .eventsPerSecond(events.rate(now))
+                .rowsDecoded(decodedRows.total())
+                .rowsDecodedPerSecond(decodedRows.rate(now))
+                .rowsApplied(appliedRows.total())
+                .rowsAppliedPerSecond(appliedRows.rate(now))
+                .transactionsApplied(appliedTransactions.total())
+                .transactionsAppliedPerSecond(appliedTransactions.rate(now))
+                .pendingTransactions(pending)
+                .queueDepths(queues)
+                .lastEventTimestamp(lastEventTimestamp)
+                .lastAppliedTimestamp(lastAppliedTimestamp)
+                .decodeLagMillis(decodeLagMillis)
+                .applyLagMillis(applyLag)
+                .lastAppliedPosition(lastAppliedPosition)
+                .decodeErrors(decodeErrors.sum())
+                .applyRetries(applyRetries.sum())
+                .applyFailures(applyFailures.sum())
+                .tableLatencies(latencies)
+                .build();
+    }
+    
+    /**
+     * 指标快照
+     */
+    @Data
+    @Builder
+    public static class Snapshot {
+        private long uptimeMillis;
+        
+        /**
+         * 解码的源库事件数（Binlog 事件或 Canal Entry）及速率
+         */
+        private long eventsDecoded;
+        private double eventsPerSecond;
+        
+        /**
+         * 解码的行变更数及速率
+         */
+        private long rowsDecoded;
+        private double rowsDecodedPerSecond;
+        
+        /**
+         * 提交到目标库的行数及速率（合并窗口消除的行不计入）
+         */
+        private long rowsApplied;
+        private double rowsAppliedPerSecond;
+        
+        /**
+         * 提交到目标库的源库事务数及速率
+         */
+        private long transactionsApplied;
+        private double transactionsAppliedPerSecond;
+        
+        /**
+         * 已交给应用器、尚未提交的源库事务数
+         */
+        private long pendingTransactions;
+        
+        /**
+         * 队列名称 -> 当前长度
+         */
+        private Map<String, Long> queueDepths;
+        
+        /**
+         * 最近解码 / 最近提交的源库事件时间（毫秒）
+         */
+        private long lastEventTimestamp;
+        private long lastAppliedTimestamp;
+        
+        /**
+         * 解码延迟：最近解码事件的源库时间到解码时的差值
+         */
+        private long decodeLagMillis;
+        
+        /**
+         * 应用延迟：源库事件时间到提交到目标库的差值；有未提交事务时按最早未提交事务持续增长
+         */
+        private long applyLagMillis;
+        
+        private String lastAppliedPosition;
+        
+        private long decodeErrors;
+        private long applyRetries;
+        private long applyFailures;
+        
+        /**
+         * 表名 -> 写入延迟
+         */
+        private Map<String, TableLatency> tableLatencies;
+    }
+    
+    /**
+     * 单表写入延迟快照
+     */
+    @Data
+    @Builder
+    public static class TableLatency {
+        /**
+         * 批量写入次数与行数
+         */
+        private long count;
+        private long rows;
+        
+        private double meanMillis;
+        private long maxMillis;
+        
+        /**
+         * 分位数（所在分桶的上界，不超过最大值）
+         */
+        private long p50Millis;
+        private long p95Millis;
+        private long p99Millis;
+        
+        /**
+         * 分桶上界（le，毫秒；+Inf 为最后一个桶）-> 累计次数
+         */
+        private Map<String, Long> buckets;
+    }
+    
+    /**
+     * 计数器 + 秒级滑动窗口速率
+     */
+    private static final class Meter {
+        private final LongAdder total = new LongAdder();
+        
+        /**
+         * 环形秒级桶：下标为 秒 % 长度，stamps 记录桶所属的秒
+         */
+        private final AtomicLongArray counts = new AtomicLongArray(RATE_WINDOW_SECONDS + 2);
+        private final AtomicLongArray stamps = new AtomicLongArray(RATE_WINDOW_SECONDS + 2);
+        
+        void mark(long n) {
+            if (n <= 0) {
+                return;
+            }
+            total.add(n);
+            long second = System.currentTimeMillis() / 1000;
+            int index = (int) (second % counts.length());
+            long stamp = stamps.get(index);
+            if (stamp != second) {
+                // 桶属于更早的秒：第一个进入的线程重置，并发重置时少量计数可能落入旧桶
+                if (stamps.compareAndSet(index, stamp, second)) {
+                    counts.set(index, 0);
+                }
+            }
+            counts.addAndGet(index, n);
+        }
+        
+        long total() {
+            return total.sum();
+        }
+        
+        /**
+         * 最近 RATE_WINDOW_SECONDS 个完整秒的平均速率
+         */
+        double rate(long now) {
+            long current = now / 1000;
+            long sum = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                long stamp = stamps.get(i);
+                if (stamp < current && stamp >= current - RATE_WINDOW_SECONDS) {
+                    sum += counts.get(i);
+                }
+            }
+            return (double) sum / RATE_WINDOW_SECONDS;
+        }
+    }
+    
+    /**
+     * 固定分桶的延迟直方图（双写指标共用，见 {@link DualWriteMetrics}）
+     */
+    static final class LatencyHistogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(LATENCY_BOUNDS_MILLIS.length + 1);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        
+        void record(int rowCount, long elapsedNanos) {
+            long millis = elapsedNanos / 1_000_000;
+            int index = 0;
+            while (index < LATENCY_BOUNDS_MILLIS.length && millis >= LATENCY_BOUNDS_MILLIS[index]) {
+                index++;
+            }
+            buckets.incrementAndGet(index);
+            count.increment();
+            rows.add(rowCount);
+            totalNanos.add(elapsedNanos);
+            long max;
+            while (elapsedNanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, elapsedNanos)) {
+                // 重试直到更新成功或已有更大的值
+            }
+        }
+        
+        TableLatency snapshot() {
+            long[] counts = new long[buckets.length()];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            long maxMillis = maxNanos.get() / 1_000_000;
+            
+            Map<String, Long> cumulative = new LinkedHashMap<>();
+            long running = 0;
+            for (int i = 0; i < counts.length; i++) {
+                running += counts[i];
+                cumulative.put(i < LATENCY_BOUNDS_MILLIS.length ? String.valueOf(LATENCY_BOUNDS_MILLIS[i]) : "+Inf",
+                        running);
+            }
+            long writes = count.sum();
+            return TableLatency.builder()
+                    .count(writes)
+                    .rows(rows.sum())
+                    .meanMillis(writes == 0 ? 0 : totalNanos.sum() / 1_000_000.0 / writes)
+                    .maxMillis(maxMillis)
+                    .p50Millis(percentile(counts, total, 0.50, maxMillis))
+                    .p95Millis(percentile(counts, total, 0.95, maxMillis))
+                    .p99Millis(percentile(counts, total, 0.99, maxMillis))
+                    .buckets(cumulative)
+                    .build();
+        }
+        
+        private static long percentile(long[] counts, long total, double quantile, long maxMillis) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * quantile);
+            long running = 0;
+            for (int i = 0; i < counts.length; i++) {
+                running += counts[i];
+                if (running >= rank) {
+                    return i < LATENCY_BOUNDS_MILLIS.length ? Math.min(LATENCY_BOUNDS_MILLIS[i], maxMillis) : maxMillis;
+                }
+            }
+            return maxMillis;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.lixiangyu.common.migration;
+
+import com.lixiangyu.common.migration.operator.DatabaseOperator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 行变更合并器
+ * 把窗口内多个源库事务的行变更按 表+主键 合并为净变更，合并结果作为一个整体在同一个目标库事务中提交，
+ * 目标库从窗口前的状态直接到达窗口后的状态，不会出现半个源库事务
+ *
+ * 合并规则（同一 表+主键 的连续变更）：
+ * 1. INSERT + UPDATE... -> INSERT 最终镜像；INSERT + ... + DELETE -> 无操作
+ * 2. UPDATE + UPDATE... -> 一次 UPDATE（按最初的 before 定位，写入最终镜像）；UPDATE + ... + DELETE -> DELETE
+ * 3. DELETE + INSERT... -> DELETE 后 INSERT 最终镜像（目标行可能缺失时仍能写入）
+ * 4. 修改主键的 UPDATE 和没有主键的表不合并，原样输出
+ *
+ * 只合并紧邻的同键变更：键在其他键的变更之后再次出现时另起一项，不并入之前的净变更。
+ * 并入会把后面的变更提前到中间其他行的变更之前，而外键（子行插入依赖父行）、唯一值复用（另一行先释放该值）
+ * 依赖跨行顺序，提前后目标库会拒绝语句。净变更因此与原始变更的顺序一致。非线程安全
+ *
+ * @author lixiangyu
+ */
+public class ChangeCoalescer {
+    
+    /**
+     * 输出项：净变更槽位或原样输出的变更，按出现顺序排列
+     */
+    private final List<Object> items = new ArrayList<>();
+    
+    /**
+     * 最后一项为净变更槽位时的槽位（只有它可以继续合并），否则为 null
+     */
+    private Slot last;
+    
+    /**
+     * 已合并的原始变更数
+     */
+    private int inputRows;
+    
+    /**
+     * 追加一个源库事务的行变更（按 binlog 顺序）
+     */
+    public void add(List<BinlogApplier.RowChange> changes) {
+        for (BinlogApplier.RowChange change : changes) {
+            add(change);
+        }
+    }
+    
+    private void add(BinlogApplier.RowChange change) {
+        inputRows++;
+        Object beforeKey = change.getBefore() == null ? null : change.keyOf(change.getBefore());
+        Object afterKey = change.getAfter() == null ? null : change.keyOf(change.getAfter());
+        Object key = beforeKey != null ? beforeKey : afterKey;
+        if (key == null || (beforeKey != null && afterKey != null && !beforeKey.equals(afterKey))) {
+            last = null;
+            items.add(change);
+            return;
+        }
+        
+        Slot slot = last;
+        if (slot == null || !slot.key.equals(key)) {
+            last = new Slot(key, change);
+            items.add(last);
+            return;
+        }
+        slot.changes++;
+        slot.structure = change.getStructure();
+        switch (change.getType()) {
+            case INSERT:
+                if (slot.current == null && slot.existed) {
+                    slot.reinserted = true;
+                }
+                slot.current = change.getAfter();
+                break;
+            case UPDATE:
+                slot.current = change.getAfter();
+                break;
+            default:
+                slot.current = null;
+                break;
+        }
+    }
+    
+    /**
+     * 已合并的原始变更数
+     */
+    public int getInputRows() {
+        return inputRows;
+    }
+    
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+    
+    /**
+     * 输出净变更并清空
+     */
+    public List<BinlogApplier.RowChange> drain() {
+        List<BinlogApplier.RowChange> result = new ArrayList<>(items.size());
+        for (Object item : items) {
+            if (item instanceof BinlogApplier.RowChange) {
+                result.add((BinlogApplier.RowChange) item);
+            } else {
+                ((Slot) item).emit(result);
+            }
+        }
+        items.clear();
+        last = null;
+        inputRows = 0;
+        return result;
+    }
+    
+    /**
+     * 单个键的净变更
+     */
+    private static class Slot {
+        private final Object key;
+        private final String tableName;
+        private final BinlogApplier.RowChange first;
+        private DatabaseOperator.TableStructure structure;
+        
+        /**
+         * 合并的变更数
+         */
+        private int changes = 1;
+        
+        /**
+         * 窗口开始前目标行是否存在（首个变更为 UPDATE/DELETE）
+         */
+        private final boolean existed;
+        
+        /**
+         * 窗口开始前的行（existed 时用于定位）
+         */
+        private final Map<String, Object> originalBefore;
+        
+        /**
+         * 当前镜像，null 表示当前已删除
+         */
+        private Map<String, Object> current;
+        
+        /**
+         * 窗口内是否删除后重新插入
+         */
+        private boolean reinserted;
+        
+        Slot(Object key, BinlogApplier.RowChange change) {
+            this.key = key;
+            this.tableName = change.getTableName();
+            this.first = change;
+            this.structure = change.getStructure();
+            this.existed = change.getType() != BinlogApplier.ChangeType.INSERT;
+            this.originalBefore = existed
+                    ? (change.getBefore() != null ? change.getBefore() : change.getAfter()) : null;
+            this.current = change.getAfter();
+        }
+        
+        void emit(List<BinlogApplier.RowChange> result) {
+            if (changes == 1) {
+                // 只有一个变更，原样输出
+                result.add(first);
+                return;
+            }
+            if (!existed) {
+                if (current != null) {
+                    result.add(new BinlogApplier.RowChange(BinlogApplier.ChangeType.INSERT, tableName, structure,
+                            null, current));
+                }
+            } else if (current == null) {
+                result.add(new BinlogApplier.RowChange(BinlogApplier.ChangeType.DELETE, tableName, structure,
+                        originalBefore, null));
+            } else if (reinserted) {
+                result.add(new BinlogApplier.RowChange(BinlogApplier.ChangeType.DELETE, tableName, structure,
+                        originalBefore, null));
+                result.add(new BinlogApplier.RowChange(BinlogApplier.ChangeType.INSERT, tableName, structure,
+                        null, current));
+            } else {
+                result.add(new BinlogApplier.RowChange(BinlogApplier.ChangeType.UPDATE, tableName, structure,
+                        originalBefore, current));
+            }
+        }
+    }
+}
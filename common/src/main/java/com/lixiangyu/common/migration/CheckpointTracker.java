@@ -0,0 +1,136 @@
+package com.lixiangyu.common.migration;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 分片断点跟踪器
+ * 读线程按主键顺序登记批次，写线程写入完成后确认；只有连续前缀的批次全部确认后才推进“最后提交主键”，
+ * 流水线模式下多个写线程乱序完成也不会越过未写入的批次。已迁移记录数每增加 checkpointInterval 条刷一次盘
+ *
+ * @author lixiangyu
+ */
+@Slf4j
+public class CheckpointTracker {
+    
+    private final MigrationCheckpointStore store;
+    
+    private final String tableName;
+    
+    private final DataMigrationService.KeyRange range;
+    
+    /**
+     * 主键在行数据中的下标
+     */
+    private final int keyIndex;
+    
+    private final int interval;
+    
+    /**
+     * 已登记、尚未连续确认的批次（按读取顺序）
+     */
+    private final Deque<PendingBatch> pending = new ArrayDeque<>();
+    
+    private Long committedKey;
+    
+    private long committedRecords;
+    
+    private long flushedRecords;
+    
+    /**
+     * @param baseRecords 续传前已迁移的记录数
+     * @param baseKey 续传前最后提交的主键
+     */
+    public CheckpointTracker(MigrationCheckpointStore store, String tableName, DataMigrationService.KeyRange range,
+                             int keyIndex, int interval, long baseRecords, Long baseKey) {
+        this.store = store;
+        this.tableName = tableName;
+        this.range = range;
+        this.keyIndex = keyIndex;
+        this.interval = Math.max(1, interval);
+        this.committedRecords = baseRecords;
+        this.flushedRecords = baseRecords;
+        this.committedKey = baseKey;
+    }
+    
+    /**
+     * 登记一个批次（读线程，在放入写入队列之前调用）
+     */
+    public synchronized void register(List<Object[]> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Object key = batch.get(batch.size() - 1)[keyIndex];
+        pending.addLast(new PendingBatch(batch, ((Number) key).longValue(), batch.size()));
+    }
+    
+    /**
+     * 确认批次已写入（写线程，写入成功后调用）
+     */
+    public synchronized void complete(List<Object[]> batch) {
+        for (PendingBatch pendingBatch : pending) {
+            if (pendingBatch.batch == batch) {
+                pendingBatch.done = true;
+                break;
+            }
+        }
+        while (!pending.isEmpty() && pending.peekFirst().done) {
+            PendingBatch head = pending.pollFirst();
+            committedKey = head.lastKey;
+            committedRecords += head.size;
+        }
+        if (committedRecords - flushedRecords >= interval) {
+            flush(false);
+        }
+    }
+    
+    /**
+     * 分片复制完成，写入完成标记
+     */
+    public synchronized void finish() {
+        flush(true);
+    }
+    
+    /**
+     * 续传前后累计的已迁移记录数
+     */
+    public synchronized long getCommittedRecords() {
+        return committedRecords;
+    }
+    
+    private void flush(boolean completed) {
+        try {
+            store.save(MigrationTaskManager.MigrationCheckpoint.builder()
+                    .tableName(tableName)
+                    .chunkIndex(range.getChunkIndex())
+                    .lowerBound(range.getLowerBound())
+                    .upperBound(range.getUpperBound())
+                    .lastKey(committedKey)
+                    .position(committedKey == null ? null : committedKey.toString())
+                    .migratedRecords(committedRecords)
+                    .completed(completed)
+                    .build());
+            flushedRecords = committedRecords;
+        } catch (IOException e) {
+            throw new UncheckedIOException("保存迁移断点失败，表: " + tableName, e);
+        }
+    }
+    
+    private static class PendingBatch {
+        private final List<Object[]> batch;
+        private final long lastKey;
+        private final int size;
+        private boolean done;
+        
+        PendingBatch(List<Object[]> batch, long lastKey, int size) {
+            this.batch = batch;
+            this.lastKey = lastKey;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.lixiangyu.common.migration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 数据复制流水线
+ * 读线程将源表记录按批次放入有界队列，写线程从队列取出批次写入目标表，读写两端的网络往返相互重叠
+ *
+ * 功能特性：
+ * 1. 有界队列：队列满时读线程阻塞，形成背压，内存占用上限为 队列容量 × 批量大小
+ * 2. 失败传播：任意一端失败后另一端在下一次轮询时退出，不会永久阻塞
+ * 3. 队列指标：记录最大队列深度、读线程被背压阻塞的时间、写线程空闲等待的时间
+ *
+ * @author lixiangyu
+ */
+public class CopyPipeline {
+    
+    /**
+     * 结束标记（按引用比较）
+     */
+    private static final List<Object[]> END = new ArrayList<>(0);
+    
+    /**
+     * 轮询间隔（毫秒），用于在阻塞等待期间检查对端是否失败
+     */
+    private static final long POLL_INTERVAL_MS = 100;
+    
+    private final BlockingQueue<List<Object[]>> queue;
+    
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    
+    private final AtomicLong readerBlockedNanos = new AtomicLong();
+    
+    private final AtomicLong writerIdleNanos = new AtomicLong();
+    
+    private final AtomicLong batchCount = new AtomicLong();
+    
+    public CopyPipeline(int capacity) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    }
+    
+    /**
+     * 放入一个批次（队列满时阻塞）
+     *
+     * @param batch 记录批次
+     * @throws IllegalStateException 写线程已失败
+     */
+    public void put(List<Object[]> batch) throws InterruptedException {
+        long start = System.nanoTime();
+        while (!queue.offer(batch, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+            checkFailure();
+        }
+        readerBlockedNanos.addAndGet(System.nanoTime() - start);
+        batchCount.incrementAndGet();
+        
+        int depth = queue.size();
+        int max;
+        while (depth > (max = maxQueueDepth.get()) && !maxQueueDepth.compareAndSet(max, depth)) {
+            // 自旋更新最大深度
+        }
+    }
+    
+    /**
+     * 取出一个批次（队列空时阻塞）
+     *
+     * @return 记录批次，读取结束或流水线失败时返回 null
+     */
+    public List<Object[]> take() throws InterruptedException {
+        long start = System.nanoTime();
+        try {
+            while (true) {
+                List<Object[]> batch = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (batch == END) {
+                    return null;
+                }
+                if (batch != null) {
+                    return batch;
+                }
+                if (failure.get() != null) {
+                    return null;
+                }
+            }
+        } finally {
+            writerIdleNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+    
+    /**
+     * 通知写线程读取结束
+     *
+     * @param writerCount 写线程数
+     */
+    public void finish(int writerCount) throws InterruptedException {
+        for (int i = 0; i < writerCount; i++) {
+            while (!queue.offer(END, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                if (failure.get() != null) {
+                    return;
+                }
+            }
+        }
+    }
+    
+    /**
+     * 标记流水线失败
+     */
+    public void fail(Throwable cause) {
+        failure.compareAndSet(null, cause);
+    }
+    
+    /**
+     * 如果流水线已失败则抛出异常
+     */
+    public void checkFailure() {
+        Throwable cause = failure.get();
+        if (cause != null) {
+            throw new IllegalStateException("数据复制流水线已失败: " + cause.getMessage(), cause);
+        }
+    }
+    
+    /**
+     * 当前队列深度
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+    
+    /**
+     * 获取流水线指标快照
+     */
+    public MigrationResult.PipelineMetrics snapshot() {
+        return MigrationResult.PipelineMetrics.builder()
+                .batchCount(batchCount.get())
+                .maxQueueDepth(maxQueueDepth.get())
+                .readerBlockedMillis(TimeUnit.NANOSECONDS.toMillis(readerBlockedNanos.get()))
+                .writerIdleMillis(TimeUnit.NANOSECONDS.toMillis(writerIdleNanos.get()))
+                .build();
+    }
+}
@@ -1,10 +1,15 @@
 package com.lixiangyu.common.migration;
 
+import com.lixiangyu.common.migration.writer.BulkWriter;
+import com.lixiangyu.common.migration.writer.BulkWriterFactory;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.*;
@@ -30,8 +35,15 @@ import java.util.stream.Collectors;
  */
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class DataMigrationService {
     
+    private final MigrationDataSourceFactory dataSourceFactory;
+    
+    private final BulkWriterFactory bulkWriterFactory;
+    
+    private final MigrationTaskManager taskManager;
+    
     /**
      * 执行数据迁移
      *
@@ -39,7 +51,17 @@ public class DataMigrationService {
      * @return 迁移结果
      */
     public MigrationResult migrate(MigrationConfig config) {
-        String taskId = UUID.randomUUID().toString();
+        return migrate(UUID.randomUUID().toString(), config);
+    }
+    
+    /**
+     * 执行数据迁移（使用调用方指定的任务ID，进度会上报到 MigrationTaskManager 中同名任务）
+     *
+     * @param taskId 任务ID
+     * @param config 迁移配置
+     * @return 迁移结果
+     */
+    public MigrationResult migrate(String taskId, MigrationConfig config) {
         log.info("开始数据迁移任务，Task ID: {}", taskId);
         
         MigrationResult.MigrationStatus status = MigrationResult.MigrationStatus.RUNNING;
@@ -53,11 +75,22 @@ public class DataMigrationService {
         
         DataSource sourceDataSource = null;
         DataSource targetDataSource = null;
+        ExecutorService chunkPool = null;
+        MigrationCheckpointStore checkpointStore = null;
         
         try {
-            // 1. 创建数据源
-            sourceDataSource = createDataSource(config.getSource());
-            targetDataSource = createDataSource(config.getTarget());
+            // 1. 创建数据源（任务级连接池，大小由表线程池和分片线程池的并发复制数推算）
+            sourceDataSource = dataSourceFactory.createSourceDataSource(taskId, config);
+            targetDataSource = dataSourceFactory.createTargetDataSource(taskId, config);
+            warnIfCursorFetchDisabled(sourceDataSource, config);
+            
+            // 断点存储：回放同一断点标识的历史日志，已完成的表和分片不再复制
+            if (config.isEnableCheckpoint()) {
+                String checkpointId = StringUtils.hasText(config.getCheckpointId()) ? config.getCheckpointId() : taskId;
+                checkpointStore = new MigrationCheckpointStore(
+                        Paths.get(config.getCheckpointDir()), checkpointId, taskId, taskManager);
+            }
+            final MigrationCheckpointStore finalCheckpointStore = checkpointStore;
             
             // 2. 获取要迁移的表列表
             List<String> tables = getTablesToMigrate(sourceDataSource, config);
@@ -68,13 +101,20 @@ public class DataMigrationService {
             final DataSource finalSourceDataSource = sourceDataSource;
             final DataSource finalTargetDataSource = targetDataSource;
             ExecutorService executor = Executors.newFixedThreadPool(config.getThreadCount());
+            // 分片共享的工作窃取线程池：大表的分片可以被空闲线程窃取执行（断点续传时可能按上次的分片计划续传）
+            // 与表线程池同时复制，启用条件须与 MigrationDataSourceFactory#concurrentCopies 保持一致
+            chunkPool = config.isEnableChunking() || config.isEnableCheckpoint()
+                    ? Executors.newWorkStealingPool(config.getThreadCount())
+                    : null;
+            final ExecutorService finalChunkPool = chunkPool;
             List<Future<MigrationResult.TableMigrationDetail>> futures = new ArrayList<>();
 
             // 每个表对应一个线程
             for (String table : tables) {
                 final String tableName = table;
                 Future<MigrationResult.TableMigrationDetail> future = executor.submit(() -> 
-                    migrateTable(finalSourceDataSource, finalTargetDataSource, tableName, config)
+                    migrateTable(finalSourceDataSource, finalTargetDataSource, tableName, config, finalChunkPool,
+                            finalCheckpointStore)
                 );
                 futures.add(future);
             }
@@ -118,7 +158,7 @@ public class DataMigrationService {
             // 5. 数据校验
             if (config.isEnableValidation()) {
                 log.info("开始数据校验");
-                MigrationResult.ValidationResult validationResult = validateData(
+                MigrationResult.ValidationResult validationResult = validateData(taskId,
                         finalSourceDataSource, finalTargetDataSource, tables, config);
                 result.setValidationResult(validationResult);
             }
@@ -138,9 +178,16 @@ public class DataMigrationService {
             result.setErrorMessage(e.getMessage());
             result.setStackTrace(getStackTrace(e));
         } finally {
+            if (chunkPool != null) {
+                chunkPool.shutdown();
+            }
+            
+            // 全部成功后删除断点日志，否则保留供下次续传
+            closeCheckpointStore(checkpointStore, status == MigrationResult.MigrationStatus.SUCCESS);
+            
             // 关闭数据源
-            closeDataSource(sourceDataSource);
-            closeDataSource(targetDataSource);
+            dataSourceFactory.closeDataSource(sourceDataSource);
+            dataSourceFactory.closeDataSource(targetDataSource);
             
             LocalDateTime endTime = LocalDateTime.now();
             result.setStatus(status);
@@ -161,7 +208,9 @@ public class DataMigrationService {
             DataSource sourceDataSource, 
             DataSource targetDataSource, 
             String tableName, 
-            MigrationConfig config) {
+            MigrationConfig config,
+            ExecutorService chunkPool,
+            MigrationCheckpointStore checkpointStore) {
         
         LocalDateTime startTime = LocalDateTime.now();
         MigrationResult.TableMigrationDetail detail = MigrationResult.TableMigrationDetail.builder()
@@ -173,6 +222,18 @@ public class DataMigrationService {
         try {
             log.info("开始迁移表: {}", tableName);
             
+            // 断点续传：上次已完成的表直接跳过
+            if (checkpointStore != null && checkpointStore.isTableCompleted(tableName)) {
+                long migrated = checkpointStore.get(tableName, MigrationCheckpointStore.TABLE_CHUNK).getMigratedRecords();
+                detail.setTotalRecords(migrated);
+                detail.setSuccessRecords(migrated);
+                detail.setFailedRecords(0L);
+                detail.setStatus(MigrationResult.MigrationStatus.SUCCESS);
+                log.info("表 {} 已在上次迁移中完成，跳过，记录数: {}", tableName, migrated);
+                return detail;
+            }
+            boolean resuming = checkpointStore != null && checkpointStore.hasCheckpoints(tableName);
+            
             // 1. 获取表结构
             TableStructure sourceStructure = getTableStructure(sourceDataSource, tableName);
             TableStructure targetStructure = getTableStructure(targetDataSource, tableName);
@@ -183,20 +244,46 @@ public class DataMigrationService {
                 targetStructure = getTableStructure(targetDataSource, tableName);
             }
             
-            // 3. 如果配置了清空目标表
-            if (config.isTruncateTarget()) {
+            // 3. 如果配置了清空目标表（续传时保留已复制的数据）
+            if (config.isTruncateTarget() && !resuming) {
                 truncateTable(targetDataSource, tableName);
+            } else if (config.isTruncateTarget()) {
+                log.info("表 {} 从断点续传，跳过清空目标表", tableName);
             }
             
             // 4. 迁移数据
             long totalRecords = getRecordCount(sourceDataSource, tableName);
             detail.setTotalRecords(totalRecords);
 
-            // TODO 迁移过程一定不能是一次性迁移所有记录， 一定要分批次分线程
             if (totalRecords > 0) {
-                long successRecords = copyData(
-                        sourceDataSource, targetDataSource, 
-                        tableName, sourceStructure, targetStructure, config);
+                List<KeyRange> ranges = resuming
+                        ? restoreKeyRanges(checkpointStore, tableName, sourceStructure)
+                        : Collections.emptyList();
+                if (ranges.isEmpty()) {
+                    ranges = config.isEnableChunking()
+                            ? splitKeyRanges(sourceDataSource, tableName, sourceStructure, totalRecords, config)
+                            : Collections.emptyList();
+                    if (checkpointStore != null) {
+                        // 不分片时按整表一个范围记录断点；分片计划写入断点日志，重启后按相同范围续传
+                        if (ranges.isEmpty()) {
+                            ranges = wholeTableRange(sourceStructure);
+                        }
+                        saveKeyRanges(checkpointStore, tableName, ranges);
+                    }
+                }
+                
+                long successRecords;
+                if (ranges.size() > 1) {
+                    successRecords = copyDataInChunks(
+                            sourceDataSource, targetDataSource,
+                            tableName, sourceStructure, targetStructure, config, ranges, chunkPool, detail,
+                            checkpointStore);
+                } else {
+                    successRecords = copyData(
+                            sourceDataSource, targetDataSource, 
+                            tableName, sourceStructure, targetStructure, config,
+                            ranges.isEmpty() ? null : ranges.get(0), detail, checkpointStore);
+                }
                 detail.setSuccessRecords(successRecords);
                 detail.setFailedRecords(totalRecords - successRecords);
             } else {
@@ -204,6 +291,25 @@ public class DataMigrationService {
                 detail.setFailedRecords(0L);
             }
             
+            long failedChunks = detail.getChunkDetails() == null ? 0 : detail.getChunkDetails().stream()
+                    .filter(chunk -> chunk.getStatus() == MigrationResult.MigrationStatus.FAILED)
+                    .count();
+            if (failedChunks > 0) {
+                detail.setStatus(MigrationResult.MigrationStatus.FAILED);
+                detail.setErrorMessage(failedChunks + " 个分片迁移失败");
+                log.error("表 {} 分片迁移失败，失败分片数: {}", tableName, failedChunks);
+                return detail;
+            }
+            
+            if (checkpointStore != null) {
+                checkpointStore.save(MigrationTaskManager.MigrationCheckpoint.builder()
+                        .tableName(tableName)
+                        .chunkIndex(MigrationCheckpointStore.TABLE_CHUNK)
+                        .migratedRecords(detail.getSuccessRecords())
+                        .completed(true)
+                        .build());
+            }
+            
             detail.setStatus(MigrationResult.MigrationStatus.SUCCESS);
             log.info("表 {} 迁移完成，总记录数: {}, 成功: {}", 
                     tableName, totalRecords, detail.getSuccessRecords());
@@ -221,8 +327,279 @@ public class DataMigrationService {
         return detail;
     }
     
+    /**
+     * 按主键范围切分表
+     * 仅支持单列整型主键：读取 MIN/MAX 后按区间均分，不满足条件时返回空列表（整表复制）
+     */
+    private List<KeyRange> splitKeyRanges(
+            DataSource dataSource,
+            String tableName,
+            TableStructure structure,
+            long totalRecords,
+            MigrationConfig config) throws SQLException {
+        
+        if (totalRecords < config.getChunkThreshold() || config.getChunkCount() <= 1
+                || structure.getPrimaryKeys() == null || structure.getPrimaryKeys().size() != 1) {
+            return Collections.emptyList();
+        }
+        
+        String keyColumn = structure.getPrimaryKeys().get(0);
+        boolean integralKey = structure.getColumns().stream()
+                .filter(column -> column.getName().equalsIgnoreCase(keyColumn))
+                .anyMatch(column -> isIntegralType(column.getType()));
+        if (!integralKey) {
+            log.info("表 {} 主键 {} 不是整型，跳过分片", tableName, keyColumn);
+            return Collections.emptyList();
+        }
+        
+        long minKey;
+        long maxKey;
+        String sql = "SELECT MIN(" + keyColumn + "), MAX(" + keyColumn + ") FROM " + tableName;
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            if (!rs.next() || rs.getObject(1) == null) {
+                return Collections.emptyList();
+            }
+            minKey = rs.getLong(1);
+            maxKey = rs.getLong(2);
+        }
+        
+        // 主键跨度超出 long 范围（如负数到很大的正数）时不分片，整表作为一个分片复制
+        long span;
+        try {
+            span = Math.addExact(Math.subtractExact(maxKey, minKey), 1);
+        } catch (ArithmeticException e) {
+            log.info("表 {} 主键 {} 跨度超出范围 [{}, {}]，跳过分片", tableName, keyColumn, minKey, maxKey);
+            return Collections.emptyList();
+        }
+        
+        // 主键跨度小于分片数时不再细分
+        int chunkCount = (int) Math.min(config.getChunkCount(), span);
+        if (span <= 0 || chunkCount <= 1) {
+            return Collections.emptyList();
+        }
+        
+        long step = span / chunkCount + (span % chunkCount == 0 ? 0 : 1);
+        List<KeyRange> ranges = new ArrayList<>(chunkCount);
+        long lowerBound = minKey;
+        for (int i = 0; i < chunkCount && lowerBound <= maxKey; i++) {
+            // 最后一个分片不设上界，兜底复制期间新写入的大主键记录
+            boolean last = i == chunkCount - 1 || step > maxKey - lowerBound;
+            ranges.add(KeyRange.builder()
+                    .chunkIndex(i)
+                    .keyColumn(keyColumn)
+                    .lowerBound(lowerBound)
+                    .upperBound(last ? null : lowerBound + step)
+                    .build());
+            if (last) {
+                break;
+            }
+            lowerBound += step;
+        }
+        
+        log.info("表 {} 按主键 {} 切分为 {} 个分片，范围: [{}, {}]", 
+                tableName, keyColumn, ranges.size(), minKey, maxKey);
+        return ranges;
+    }
+    
+    /**
+     * 整表主键范围（单列整型主键），用于未分片的表按主键记录断点
+     */
+    private List<KeyRange> wholeTableRange(TableStructure structure) {
+        if (structure.getPrimaryKeys() == null || structure.getPrimaryKeys().size() != 1) {
+            return Collections.emptyList();
+        }
+        String keyColumn = structure.getPrimaryKeys().get(0);
+        boolean integralKey = structure.getColumns().stream()
+                .filter(column -> column.getName().equalsIgnoreCase(keyColumn))
+                .anyMatch(column -> isIntegralType(column.getType()));
+        if (!integralKey) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(KeyRange.builder()
+                .chunkIndex(0)
+                .keyColumn(keyColumn)
+                .lowerBound(Long.MIN_VALUE)
+                .build());
+    }
+    
+    /**
+     * 将分片计划写入断点日志
+     */
+    private void saveKeyRanges(MigrationCheckpointStore checkpointStore, String tableName, List<KeyRange> ranges)
+            throws IOException {
+        for (KeyRange range : ranges) {
+            checkpointStore.save(MigrationTaskManager.MigrationCheckpoint.builder()
+                    .tableName(tableName)
+                    .chunkIndex(range.getChunkIndex())
+                    .lowerBound(range.getLowerBound())
+                    .upperBound(range.getUpperBound())
+                    .migratedRecords(0)
+                    .build());
+        }
+    }
+    
+    /**
+     * 从断点日志恢复上次的分片计划
+     */
+    private List<KeyRange> restoreKeyRanges(MigrationCheckpointStore checkpointStore, String tableName,
+                                            TableStructure structure) {
+        List<MigrationTaskManager.MigrationCheckpoint> checkpoints = checkpointStore.getChunkCheckpoints(tableName);
+        if (checkpoints.isEmpty() || structure.getPrimaryKeys() == null || structure.getPrimaryKeys().size() != 1) {
+            return Collections.emptyList();
+        }
+        
+        List<KeyRange> ranges = new ArrayList<>(checkpoints.size());
+        for (MigrationTaskManager.MigrationCheckpoint checkpoint : checkpoints) {
+            ranges.add(KeyRange.builder()
+                    .chunkIndex(checkpoint.getChunkIndex())
+                    .keyColumn(structure.getPrimaryKeys().get(0))
+                    .lowerBound(checkpoint.getLowerBound())
+                    .upperBound(checkpoint.getUpperBound())
+                    .build());
+        }
+        log.info("表 {} 从断点续传，恢复分片数: {}", tableName, ranges.size());
+        return ranges;
+    }
+    
+    /**
+     * 关闭断点存储
+     *
+     * @param delete 是否删除断点日志（任务全部成功时）
+     */
+    private void closeCheckpointStore(MigrationCheckpointStore checkpointStore, boolean delete) {
+        if (checkpointStore == null) {
+            return;
+        }
+        try {
+            if (delete) {
+                checkpointStore.delete();
+            } else {
+                checkpointStore.close();
+            }
+        } catch (IOException e) {
+            log.warn("关闭迁移断点存储失败", e);
+        }
+    }
+    
+    /**
+     * 判断是否为整型 JDBC 类型
+     */
+    private boolean isIntegralType(int jdbcType) {
+        return jdbcType == Types.TINYINT || jdbcType == Types.SMALLINT
+                || jdbcType == Types.INTEGER || jdbcType == Types.BIGINT;
+    }
+    
+    /**
+     * 分片复制数据
+     * 分片提交到共享的工作窃取线程池，通过信号量限制单表同时运行的分片数
+     */
+    private long copyDataInChunks(
+            DataSource sourceDataSource,
+            DataSource targetDataSource,
+            String tableName,
+            TableStructure sourceStructure,
+            TableStructure targetStructure,
+            MigrationConfig config,
+            List<KeyRange> ranges,
+            ExecutorService chunkPool,
+            MigrationResult.TableMigrationDetail detail,
+            MigrationCheckpointStore checkpointStore) throws InterruptedException {
+        
+        Semaphore permits = new Semaphore(Math.max(1, config.getChunkParallelism()));
+        List<Future<MigrationResult.ChunkMigrationDetail>> futures = new ArrayList<>(ranges.size());
+        
+        for (KeyRange range : ranges) {
+            permits.acquire();
+            try {
+                futures.add(chunkPool.submit(() -> {
+                    try {
+                        return copyChunk(sourceDataSource, targetDataSource,
+                                tableName, sourceStructure, targetStructure, config, range, detail, checkpointStore);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+        }
+        
+        long successRecords = 0;
+        List<MigrationResult.ChunkMigrationDetail> chunkDetails = new ArrayList<>(futures.size());
+        // 分片结果与分片一一对应，失败的分片记录序号和主键范围，便于只重试该范围
+        for (int i = 0; i < futures.size(); i++) {
+            KeyRange range = ranges.get(i);
+            try {
+                MigrationResult.ChunkMigrationDetail chunkDetail = futures.get(i).get();
+                chunkDetails.add(chunkDetail);
+                successRecords += chunkDetail.getSuccessRecords() != null ? chunkDetail.getSuccessRecords() : 0;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                log.error("获取分片迁移结果失败，表: {}, 分片: {}", tableName, range.getChunkIndex(), cause);
+                chunkDetails.add(MigrationResult.ChunkMigrationDetail.builder()
+                        .chunkIndex(range.getChunkIndex())
+                        .lowerBound(range.getLowerBound())
+                        .upperBound(range.getUpperBound())
+                        .status(MigrationResult.MigrationStatus.FAILED)
+                        .successRecords(0L)
+                        .errorMessage(cause != null ? cause.getMessage() : e.getMessage())
+                        .build());
+            }
+        }
+        
+        detail.setChunkDetails(chunkDetails);
+        return successRecords;
+    }
+    
+    /**
+     * 复制单个分片
+     */
+    private MigrationResult.ChunkMigrationDetail copyChunk(
+            DataSource sourceDataSource,
+            DataSource targetDataSource,
+            String tableName,
+            TableStructure sourceStructure,
+            TableStructure targetStructure,
+            MigrationConfig config,
+            KeyRange range,
+            MigrationResult.TableMigrationDetail detail,
+            MigrationCheckpointStore checkpointStore) {
+        
+        long start = System.currentTimeMillis();
+        MigrationResult.ChunkMigrationDetail chunkDetail = MigrationResult.ChunkMigrationDetail.builder()
+                .chunkIndex(range.getChunkIndex())
+                .lowerBound(range.getLowerBound())
+                .upperBound(range.getUpperBound())
+                .successRecords(0L)
+                .build();
+        
+        try {
+            long successRecords = copyData(sourceDataSource, targetDataSource,
+                    tableName, sourceStructure, targetStructure, config, range, detail, checkpointStore);
+            chunkDetail.setSuccessRecords(successRecords);
+            chunkDetail.setStatus(MigrationResult.MigrationStatus.SUCCESS);
+            log.debug("表 {} 分片 {} 迁移完成，记录数: {}", tableName, range.getChunkIndex(), successRecords);
+        } catch (Exception e) {
+            log.error("表 {} 分片 {} 迁移失败", tableName, range.getChunkIndex(), e);
+            chunkDetail.setStatus(MigrationResult.MigrationStatus.FAILED);
+            chunkDetail.setErrorMessage(e.getMessage());
+        } finally {
+            chunkDetail.setDuration(System.currentTimeMillis() - start);
+        }
+        
+        return chunkDetail;
+    }
+    
     /**
      * 复制数据
+     *
+     * @param range 主键范围，为空时复制整表
+     * @param detail 表迁移详情（用于汇总流水线指标）
+     * @param checkpointStore 断点存储，为空时不记录断点
+     * @return 成功记录数（续传时包含上次已复制的记录数）
      */
     private long copyData(
             DataSource sourceDataSource, 
@@ -230,68 +607,424 @@ public class DataMigrationService {
             String tableName,
             TableStructure sourceStructure,
             TableStructure targetStructure,
-            MigrationConfig config) throws SQLException {
+            MigrationConfig config,
+            KeyRange range,
+            MigrationResult.TableMigrationDetail detail,
+            MigrationCheckpointStore checkpointStore) throws SQLException {
+        
+        // 获取列映射
+        List<ColumnMapping> columnMappings = mapColumns(sourceStructure, targetStructure);
+        
+        // 断点续传：已完成的分片直接跳过，未完成的分片从最后提交的主键之后继续
+        CheckpointTracker tracker = null;
+        KeyRange readRange = range;
+        long resumedRecords = 0;
+        if (checkpointStore != null && range != null) {
+            MigrationTaskManager.MigrationCheckpoint saved = checkpointStore.get(tableName, range.getChunkIndex());
+            if (saved != null && saved.isCompleted()) {
+                log.info("表 {} 分片 {} 已在上次迁移中完成，跳过", tableName, range.getChunkIndex());
+                return saved.getMigratedRecords();
+            }
+            
+            int keyIndex = indexOfSourceColumn(columnMappings, range.getKeyColumn());
+            if (keyIndex >= 0) {
+                Long lastKey = saved == null ? null : saved.getLastKey();
+                resumedRecords = saved == null ? 0 : saved.getMigratedRecords();
+                if (lastKey != null) {
+                    readRange = KeyRange.builder()
+                            .chunkIndex(range.getChunkIndex())
+                            .keyColumn(range.getKeyColumn())
+                            .lowerBound(lastKey + 1)
+                            .upperBound(range.getUpperBound())
+                            .build();
+                    log.info("表 {} 分片 {} 从主键 {} 之后续传，已迁移: {}",
+                            tableName, range.getChunkIndex(), lastKey, resumedRecords);
+                }
+                tracker = new CheckpointTracker(checkpointStore, tableName, range, keyIndex,
+                        config.getCheckpointInterval(), resumedRecords, lastKey);
+                
+                // 断点每 checkpointInterval 条才刷盘，上次运行在最后提交主键之后可能已写入部分批次，
+                // 续传前先删除目标表中这部分记录，否则重新插入时主键冲突
+                if (checkpointStore.isRestored(tableName)) {
+                    deleteKeyRange(targetDataSource, tableName, columnMappings.get(keyIndex).getTargetColumn(),
+                            readRange);
+                }
+            }
+        }
+        
+        // 记录断点时按主键顺序读取，最后提交的主键之前的记录都已写入
+        String selectSql = buildSelectSql(tableName, sourceStructure, readRange, tracker != null);
+        
+        long successCount;
+        if (config.isEnablePipeline()) {
+            successCount = copyDataPipelined(sourceDataSource, targetDataSource,
+                    tableName, columnMappings, selectSql, config, readRange, detail, tracker);
+        } else {
+            successCount = copyDataSequential(sourceDataSource, targetDataSource,
+                    tableName, columnMappings, selectSql, config, readRange, tracker);
+        }
+        
+        if (tracker != null) {
+            tracker.finish();
+        }
+        return resumedRecords + successCount;
+    }
+    
+    /**
+     * 删除目标表主键范围内的记录（续传前清理上次运行在断点之后写入的记录）
+     */
+    private void deleteKeyRange(DataSource targetDataSource, String tableName, String keyColumn, KeyRange range)
+            throws SQLException {
+        String sql = "DELETE FROM " + tableName + " WHERE " + keyColumn + " >= ?"
+                + (range.getUpperBound() != null ? " AND " + keyColumn + " < ?" : "");
+        try (Connection conn = targetDataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            bindKeyRange(stmt, range);
+            int deleted = stmt.executeUpdate();
+            if (deleted > 0) {
+                log.info("表 {} 分片 {} 续传前删除断点之后已写入的记录: {} 条",
+                        tableName, range.getChunkIndex(), deleted);
+            }
+        }
+    }
+    
+    /**
+     * 单线程复制数据：读取一批、写入一批
+     */
+    private long copyDataSequential(
+            DataSource sourceDataSource,
+            DataSource targetDataSource,
+            String tableName,
+            List<ColumnMapping> columnMappings,
+            String selectSql,
+            MigrationConfig config,
+            KeyRange range,
+            CheckpointTracker tracker) throws SQLException {
         
         long successCount = 0;
         
         try (Connection sourceConn = sourceDataSource.getConnection();
              Connection targetConn = targetDataSource.getConnection()) {
             
-            // 获取列映射
-            List<ColumnMapping> columnMappings = mapColumns(sourceStructure, targetStructure);
-            
-            // 构建 SELECT 语句
-            String selectSql = buildSelectSql(tableName, sourceStructure);
+            int batchSize = Math.max(1, config.getBatchSize());
             
-            // 构建 INSERT 语句
-            String insertSql = buildInsertSql(tableName, targetStructure, columnMappings);
-            
-            try (PreparedStatement selectStmt = sourceConn.prepareStatement(selectSql);
-                 PreparedStatement insertStmt = targetConn.prepareStatement(insertSql)) {
+            // 流式/游标模式下只在内存中保留当前批次，写入器每 batchSize 条刷新一次
+            try (PreparedStatement selectStmt = prepareSelectStatement(sourceConn, selectSql, config);
+                 BulkWriter writer = createBulkWriter(targetConn, tableName, columnMappings, config)) {
+                
+                bindKeyRange(selectStmt, range);
                 
                 ResultSet rs = selectStmt.executeQuery();
-                int batchCount = 0;
+                List<Object[]> batch = new ArrayList<>(batchSize);
                 
                 while (rs.next()) {
-                    // 设置 INSERT 参数
-                    setInsertParameters(insertStmt, rs, columnMappings, sourceStructure, targetStructure);
-                    insertStmt.addBatch();
-                    batchCount++;
+                    batch.add(readRow(rs, columnMappings));
                     
                     // 批量执行
-                    if (batchCount >= config.getBatchSize()) {
-                        int[] results = insertStmt.executeBatch();
-                        for (int result : results) {
-                            if (result > 0) {
-                                successCount += result;
-                            }
-                        }
-                        insertStmt.clearBatch();
-                        batchCount = 0;
+                    if (batch.size() >= batchSize) {
+                        successCount += writeBatch(writer, batch, tracker);
+                        batch.clear();
                     }
                 }
                 
                 // 执行剩余的批次
-                if (batchCount > 0) {
-                    int[] results = insertStmt.executeBatch();
-                    for (int result : results) {
-                        if (result > 0) {
-                            successCount += result;
-                        }
+                if (!batch.isEmpty()) {
+                    successCount += writeBatch(writer, batch, tracker);
+                }
+            }
+        }
+        
+        return successCount;
+    }
+    
+    /**
+     * 写入一个批次，写入成功后确认断点
+     */
+    private long writeBatch(BulkWriter writer, List<Object[]> batch, CheckpointTracker tracker) throws SQLException {
+        if (tracker != null) {
+            tracker.register(batch);
+        }
+        long count = writer.write(batch);
+        if (tracker != null) {
+            tracker.complete(batch);
+        }
+        return count;
+    }
+    
+    /**
+     * 查找源列在列映射中的下标
+     */
+    private int indexOfSourceColumn(List<ColumnMapping> columnMappings, String column) {
+        for (int i = 0; i < columnMappings.size(); i++) {
+            if (columnMappings.get(i).getSourceColumn().equalsIgnoreCase(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * 流水线复制数据
+     * 当前线程读取源表并按批次放入有界队列，多个写线程各自持有目标库连接并行执行批量插入
+     */
+    private long copyDataPipelined(
+            DataSource sourceDataSource,
+            DataSource targetDataSource,
+            String tableName,
+            List<ColumnMapping> columnMappings,
+            String selectSql,
+            MigrationConfig config,
+            KeyRange range,
+            MigrationResult.TableMigrationDetail detail,
+            CheckpointTracker tracker) throws SQLException {
+        
+        int writerCount = Math.max(1, config.getWriterThreads());
+        int batchSize = Math.max(1, config.getBatchSize());
+        CopyPipeline pipeline = new CopyPipeline(config.getPipelineQueueCapacity());
+        ExecutorService writerPool = Executors.newFixedThreadPool(writerCount);
+        List<Future<Long>> writerFutures = new ArrayList<>(writerCount);
+        for (int i = 0; i < writerCount; i++) {
+            writerFutures.add(writerPool.submit(() ->
+                    drainPipeline(targetDataSource, tableName, columnMappings, config, pipeline, tracker)));
+        }
+        
+        try (Connection sourceConn = sourceDataSource.getConnection();
+             PreparedStatement selectStmt = prepareSelectStatement(sourceConn, selectSql, config)) {
+            
+            bindKeyRange(selectStmt, range);
+            
+            try (ResultSet rs = selectStmt.executeQuery()) {
+                List<Object[]> batch = new ArrayList<>(batchSize);
+                while (rs.next()) {
+                    batch.add(readRow(rs, columnMappings));
+                    
+                    // 队列已满时在此阻塞，读取速度受写入速度约束
+                    if (batch.size() >= batchSize) {
+                        putBatch(pipeline, batch, tracker);
+                        batch = new ArrayList<>(batchSize);
                     }
                 }
+                if (!batch.isEmpty()) {
+                    putBatch(pipeline, batch, tracker);
+                }
             }
+            pipeline.finish(writerCount);
+        } catch (SQLException | RuntimeException e) {
+            pipeline.fail(e);
+            throw e;
+        } catch (InterruptedException e) {
+            pipeline.fail(e);
+            Thread.currentThread().interrupt();
+            throw new SQLException("读取表 " + tableName + " 时线程被中断", e);
+        } finally {
+            writerPool.shutdown();
         }
         
+        long successCount = 0;
+        try {
+            for (Future<Long> future : writerFutures) {
+                successCount += future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new SQLException("写入表 " + tableName + " 失败: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("等待表 " + tableName + " 写入完成时线程被中断", e);
+        }
+        
+        MigrationResult.PipelineMetrics metrics = pipeline.snapshot();
+        mergePipelineMetrics(detail, metrics);
+        log.debug("表 {} 流水线复制完成，批次数: {}, 最大队列深度: {}, 读阻塞: {}ms, 写空闲: {}ms",
+                tableName, metrics.getBatchCount(), metrics.getMaxQueueDepth(),
+                metrics.getReaderBlockedMillis(), metrics.getWriterIdleMillis());
         return successCount;
     }
     
+    /**
+     * 登记批次后放入流水线（登记顺序即主键顺序）
+     */
+    private void putBatch(CopyPipeline pipeline, List<Object[]> batch, CheckpointTracker tracker)
+            throws InterruptedException {
+        if (tracker != null) {
+            tracker.register(batch);
+        }
+        pipeline.put(batch);
+    }
+    
+    /**
+     * 写线程：从流水线取出批次写入目标表，直到读取结束或流水线失败
+     */
+    private long drainPipeline(
+            DataSource targetDataSource,
+            String tableName,
+            List<ColumnMapping> columnMappings,
+            MigrationConfig config,
+            CopyPipeline pipeline,
+            CheckpointTracker tracker) throws Exception {
+        
+        long successCount = 0;
+        try (Connection targetConn = targetDataSource.getConnection();
+             BulkWriter writer = createBulkWriter(targetConn, tableName, columnMappings, config)) {
+            
+            List<Object[]> batch;
+            while ((batch = pipeline.take()) != null) {
+                successCount += writer.write(batch);
+                // 写线程可能乱序完成，由跟踪器按读取顺序推进最后提交的主键
+                if (tracker != null) {
+                    tracker.complete(batch);
+                }
+            }
+            pipeline.checkFailure();
+        } catch (Exception e) {
+            pipeline.fail(e);
+            throw e;
+        }
+        return successCount;
+    }
+    
+    /**
+     * 汇总流水线指标（分片并行时多个线程同时写入同一个表详情）
+     */
+    private void mergePipelineMetrics(MigrationResult.TableMigrationDetail detail, MigrationResult.PipelineMetrics metrics) {
+        synchronized (detail) {
+            MigrationResult.PipelineMetrics merged = detail.getPipelineMetrics();
+            if (merged == null) {
+                detail.setPipelineMetrics(metrics);
+                return;
+            }
+            merged.setBatchCount(merged.getBatchCount() + metrics.getBatchCount());
+            merged.setMaxQueueDepth(Math.max(merged.getMaxQueueDepth(), metrics.getMaxQueueDepth()));
+            merged.setReaderBlockedMillis(merged.getReaderBlockedMillis() + metrics.getReaderBlockedMillis());
+            merged.setWriterIdleMillis(merged.getWriterIdleMillis() + metrics.getWriterIdleMillis());
+        }
+    }
+    
+    /**
+     * 绑定主键范围参数
+     */
+    private void bindKeyRange(PreparedStatement stmt, KeyRange range) throws SQLException {
+        if (range != null) {
+            stmt.setLong(1, range.getLowerBound());
+            if (range.getUpperBound() != null) {
+                stmt.setLong(2, range.getUpperBound());
+            }
+        }
+    }
+    
+    /**
+     * 读取一行记录（值顺序与列映射一致）
+     */
+    private Object[] readRow(ResultSet rs, List<ColumnMapping> columnMappings) throws SQLException {
+        Object[] row = new Object[columnMappings.size()];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = rs.getObject(columnMappings.get(i).getSourceColumn());
+        }
+        return row;
+    }
+    
+    /**
+     * 按目标库类型和写入策略创建批量写入器
+     */
+    private BulkWriter createBulkWriter(
+            Connection targetConn,
+            String tableName,
+            List<ColumnMapping> columnMappings,
+            MigrationConfig config) throws SQLException {
+        
+        List<String> targetColumns = columnMappings.stream()
+                .map(ColumnMapping::getTargetColumn)
+                .collect(Collectors.toList());
+        return bulkWriterFactory.createWriter(targetConn, detectDatabaseType(targetConn, config.getTarget()),
+                tableName, targetColumns, config);
+    }
+    
+    /**
+     * 按读取模式创建源表查询语句
+     * 统一使用只进只读游标，STREAMING/CURSOR 模式下根据数据库类型设置 fetchSize，避免驱动缓冲整个结果集
+     * MySQL 系连接未开启 useCursorFetch 时 CURSOR 模式改用 STREAMING，否则驱动会忽略 fetchSize 一次性读取整个结果集
+     */
+    private PreparedStatement prepareSelectStatement(
+            Connection conn, String sql, MigrationConfig config) throws SQLException {
+        
+        PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        if (config.getReadMode() == MigrationConfig.ReadMode.BUFFERED) {
+            return stmt;
+        }
+        
+        MigrationConfig.DataSourceConfig.DatabaseType databaseType = detectDatabaseType(conn, config.getSource());
+        boolean mysqlFamily = databaseType == MigrationConfig.DataSourceConfig.DatabaseType.MYSQL
+                || databaseType == MigrationConfig.DataSourceConfig.DatabaseType.MARIADB;
+        
+        boolean streaming = config.getReadMode() == MigrationConfig.ReadMode.STREAMING
+                || (mysqlFamily && !isCursorFetchEnabled(conn, config));
+        if (streaming && mysqlFamily) {
+            // MySQL Connector/J 约定：fetchSize 为 Integer.MIN_VALUE 时逐行流式返回
+            stmt.setFetchSize(Integer.MIN_VALUE);
+        } else {
+            // PostgreSQL 等数据库仅在非自动提交模式下才会使用游标分批拉取
+            if (databaseType == MigrationConfig.DataSourceConfig.DatabaseType.POSTGRESQL && conn.getAutoCommit()) {
+                conn.setAutoCommit(false);
+            }
+            stmt.setFetchSize(Math.max(1, config.getFetchSize()));
+        }
+        return stmt;
+    }
+    
+    /**
+     * 判断 MySQL 系连接是否开启了服务端游标
+     * 工厂创建的连接池会自动追加 useCursorFetch=true，调用方传入的数据源只能从连接 URL 中判断
+     */
+    private boolean isCursorFetchEnabled(Connection conn, MigrationConfig config) throws SQLException {
+        if (config.getSource().getDataSource() == null) {
+            return true;
+        }
+        String url = conn.getMetaData().getURL();
+        return url != null && url.toLowerCase(Locale.ROOT).contains("usecursorfetch=true");
+    }
+    
+    /**
+     * CURSOR 模式使用调用方传入的 MySQL 系数据源且未开启 useCursorFetch 时提示改用 STREAMING 读取
+     */
+    private void warnIfCursorFetchDisabled(DataSource sourceDataSource, MigrationConfig config) throws SQLException {
+        if (config.getReadMode() != MigrationConfig.ReadMode.CURSOR || config.getSource().getDataSource() == null) {
+            return;
+        }
+        try (Connection conn = sourceDataSource.getConnection()) {
+            MigrationConfig.DataSourceConfig.DatabaseType databaseType = detectDatabaseType(conn, config.getSource());
+            boolean mysqlFamily = databaseType == MigrationConfig.DataSourceConfig.DatabaseType.MYSQL
+                    || databaseType == MigrationConfig.DataSourceConfig.DatabaseType.MARIADB;
+            if (mysqlFamily && !isCursorFetchEnabled(conn, config)) {
+                log.warn("源数据源未开启 useCursorFetch=true，CURSOR 读取模式改用 STREAMING，"
+                        + "如需服务端游标请在连接 URL 中添加该参数");
+            }
+        }
+    }
+    
+    /**
+     * 识别数据库类型
+     * 优先使用配置中指定的类型，否则根据连接元数据的产品名称判断
+     */
+    private MigrationConfig.DataSourceConfig.DatabaseType detectDatabaseType(
+            Connection conn, MigrationConfig.DataSourceConfig dataSourceConfig) throws SQLException {
+        
+        if (dataSourceConfig != null && dataSourceConfig.getDatabaseType() != null) {
+            return dataSourceConfig.getDatabaseType();
+        }
+        
+        return MigrationConfig.DataSourceConfig.DatabaseType.fromProductName(
+                conn.getMetaData().getDatabaseProductName());
+    }
+    
     /**
      * 数据校验
      * 通过比较前后数据量的大小进行迁移校验
      * 支持不一致数据的自动修复
+     *
+     * 多表并发校验：最多 validationThreads 张表同时校验，单表内源端和目标端的记录数统计并发执行
+     * （validationQueriesPerTable >= 2 时），每校验完一张表即向 MigrationTaskManager 上报进度
      */
     private MigrationResult.ValidationResult validateData(
+            String taskId,
             DataSource sourceDataSource,
             DataSource targetDataSource,
             List<String> tables,
@@ -302,67 +1035,55 @@ public class DataMigrationService {
         int validatedTables = 0;
         int inconsistentTables = 0;
         
+        int tableParallelism = Math.max(1, Math.min(config.getValidationThreads(), tables.size()));
+        boolean concurrentCounts = config.getValidationQueriesPerTable() >= 2;
+        ExecutorService tableExecutor = Executors.newFixedThreadPool(tableParallelism);
+        // 记录数统计单独使用线程池，避免表级任务等待同一线程池中的子任务造成死锁
+        ExecutorService countExecutor = concurrentCounts ? Executors.newFixedThreadPool(tableParallelism) : null;
+        taskManager.startValidation(taskId, tables.size());
+        
         try {
             // 使用 DataValidator 进行详细校验
             DataValidator validator = new DataValidator();
-
-            // TODO 不同表的校验也可以使用多线程的
+            List<Future<MigrationResult.TableValidationDetail>> futures = new ArrayList<>();
             for (String tableName : tables) {
+                futures.add(tableExecutor.submit(() -> {
+                    MigrationResult.TableValidationDetail detail = validateTable(sourceDataSource, targetDataSource,
+                            tableName, config, validator, countExecutor);
+                    taskManager.updateValidationProgress(taskId, tableName, detail.isConsistent());
+                    return detail;
+                }));
+            }
+            
+            for (int i = 0; i < futures.size(); i++) {
                 try {
-                    // 1. 记录数校验
-                    long sourceCount = getRecordCount(sourceDataSource, tableName);
-                    long targetCount = getRecordCount(targetDataSource, tableName);
-                    
-                    boolean consistent = sourceCount == targetCount;
-                    
-                    // 2. 如果记录数不一致，进行详细校验
-                    List<MigrationResult.InconsistentRecord> inconsistentRecords = null;
-                    if (!consistent) {
-                        log.warn("表 {} 记录数不一致，源: {}, 目标: {}", tableName, sourceCount, targetCount);
-                        
-                        // 获取主键列表
-                        List<String> primaryKeys = getPrimaryKeys(sourceDataSource, tableName);
-                        
-                        // 详细校验（如果有主键）
-                        // TODO 其实就是逐条记录比较，有没有更好的方法
-                        if (primaryKeys != null && !primaryKeys.isEmpty()) {
-                            MigrationResult.TableValidationDetail detail = validator.validateTable(
-                                    sourceDataSource, targetDataSource, tableName, primaryKeys);
-                            inconsistentRecords = detail.getInconsistentRecords();
-                            
-                            // 3. 自动修复不一致数据（可选）
-                            if (config.isAutoFixInconsistent() && inconsistentRecords != null) {
-                                fixInconsistentData(sourceDataSource, targetDataSource, 
-                                        tableName, inconsistentRecords, primaryKeys);
-                            }
-                        }
-                        
+                    MigrationResult.TableValidationDetail detail = futures.get(i).get();
+                    tableDetails.add(detail);
+                    if (!detail.isConsistent()) {
                         inconsistentTables++;
                     }
-                    
-                    tableDetails.add(MigrationResult.TableValidationDetail.builder()
-                            .tableName(tableName)
-                            .consistent(consistent)
-                            .sourceRecordCount(sourceCount)
-                            .targetRecordCount(targetCount)
-                            .inconsistentRecords(inconsistentRecords)
-                            .build());
-                    
                     validatedTables++;
-                    
-                } catch (Exception e) {
-                    log.error("校验表 {} 失败", tableName, e);
+                } catch (ExecutionException e) {
+                    log.error("校验表 {} 失败", tables.get(i), e.getCause());
                 }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("数据校验被中断", e);
         } catch (Exception e) {
             log.error("数据校验失败", e);
+        } finally {
+            tableExecutor.shutdownNow();
+            if (countExecutor != null) {
+                countExecutor.shutdownNow();
+            }
         }
         
         LocalDateTime endTime = LocalDateTime.now();
         long duration = java.time.Duration.between(startTime, endTime).toMillis();
         
         return MigrationResult.ValidationResult.builder()
-                .passed(inconsistentTables == 0)
+                .passed(inconsistentTables == 0 && validatedTables == tables.size())
                 .validatedTables(validatedTables)
                 .inconsistentTables(inconsistentTables)
                 .tableDetails(tableDetails)
@@ -370,86 +1091,314 @@ public class DataMigrationService {
                 .build();
     }
     
+    /**
+     * 校验单个表
+     */
+    private MigrationResult.TableValidationDetail validateTable(
+            DataSource sourceDataSource,
+            DataSource targetDataSource,
+            String tableName,
+            MigrationConfig config,
+            DataValidator validator,
+            ExecutorService countExecutor) throws Exception {
+        
+        // 1. 记录数校验（源端与目标端并发统计）
+        long sourceCount;
+        long targetCount;
+        if (countExecutor != null) {
+            Future<Long> sourceCountFuture = countExecutor.submit(() -> getRecordCount(sourceDataSource, tableName));
+            targetCount = getRecordCount(targetDataSource, tableName);
+            sourceCount = sourceCountFuture.get();
+        } else {
+            sourceCount = getRecordCount(sourceDataSource, tableName);
+            targetCount = getRecordCount(targetDataSource, tableName);
+        }
+        
+        boolean consistent = sourceCount == targetCount;
+        if (!consistent) {
+            log.warn("表 {} 记录数不一致，源: {}, 目标: {}", tableName, sourceCount, targetCount);
+        }
+        
+        // 获取主键列表
+        List<String> primaryKeys = getPrimaryKeys(sourceDataSource, tableName);
+        
+        // 2. 详细校验（如果有主键）
+        // 归并比较：两端各顺序扫描一次；分块校验和：单列整型主键只对不一致的块逐行比较
+        // 两种方式在记录数一致时也能发现内容差异
+        List<MigrationResult.InconsistentRecord> inconsistentRecords = null;
+        boolean mergeJoin = config.getValidationMode() == MigrationConfig.ValidationMode.MERGE_JOIN;
+        boolean checksumCapable = !mergeJoin && validator.supportsChecksum(sourceDataSource, tableName, primaryKeys);
+        if (primaryKeys != null && !primaryKeys.isEmpty() && (!consistent || mergeJoin || checksumCapable)) {
+            MigrationResult.TableValidationDetail detail = null;
+            if (mergeJoin) {
+                try {
+                    detail = new MergeJoinValidator(config.getFetchSize()).validateTable(
+                            sourceDataSource, targetDataSource, tableName, primaryKeys, sourceCount, targetCount);
+                } catch (IllegalStateException e) {
+                    log.warn("表 {} 无法归并比较，回退到分块校验和: {}", tableName, e.getMessage());
+                }
+            }
+            if (detail == null) {
+                detail = validator.validateTable(
+                        sourceDataSource, targetDataSource, tableName, primaryKeys,
+                        config.getValidationChunkSize(), config.getValidationLeafSize(), sourceCount, targetCount);
+            }
+            inconsistentRecords = detail.getInconsistentRecords();
+            consistent = consistent && detail.isConsistent();
+            
+        }
+        
+        MigrationResult.TableValidationDetail tableDetail = MigrationResult.TableValidationDetail.builder()
+                .tableName(tableName)
+                .consistent(consistent)
+                .sourceRecordCount(sourceCount)
+                .targetRecordCount(targetCount)
+                .inconsistentRecords(inconsistentRecords)
+                .build();
+        
+        // 3. 自动修复不一致数据（可选）
+        if (config.isAutoFixInconsistent() && inconsistentRecords != null) {
+            long[] repairCounts = fixInconsistentData(sourceDataSource, targetDataSource,
+                    tableName, inconsistentRecords, primaryKeys, config);
+            tableDetail.setRepairedRecords(repairCounts[0]);
+            tableDetail.setDeletedRecords(repairCounts[1]);
+        }
+        return tableDetail;
+    }
+    
     /**
      * 修复不一致数据
+     * 不一致记录按 repairBatchSize 分批，每批在源库用一条多主键 IN 查询取回完整记录，
+     * 在目标库按目标库方言用批量 UPSERT 写回（单个事务，见 {@link UpsertSqlBuilder}），目标表多出的记录批量删除；
+     * 批次之间最多 repairThreads 个并发，dry-run 模式只统计不写入
+     *
+     * @return 修复结果：[写回记录数, 删除记录数]
      */
-    private void fixInconsistentData(
+    private long[] fixInconsistentData(
             DataSource sourceDataSource,
             DataSource targetDataSource,
             String tableName,
             List<MigrationResult.InconsistentRecord> inconsistentRecords,
-            List<String> primaryKeys) {
+            List<String> primaryKeys,
+            MigrationConfig config) {
         
-        log.info("开始修复表 {} 的不一致数据，共 {} 条", tableName, inconsistentRecords.size());
+        log.info("开始修复表 {} 的不一致数据，共 {} 条{}", tableName, inconsistentRecords.size(),
+                config.isRepairDryRun() ? "（dry-run）" : "");
         
+        long[] totals = new long[2];
+        try {
+            TableStructure sourceStructure = getTableStructure(sourceDataSource, tableName);
+            TableStructure targetStructure = getTableStructure(targetDataSource, tableName);
+            List<ColumnMapping> columnMappings = mapColumns(sourceStructure, targetStructure);
+            
+            int batchSize = Math.max(1, config.getRepairBatchSize());
+            List<List<MigrationResult.InconsistentRecord>> batches = new ArrayList<>();
+            for (int i = 0; i < inconsistentRecords.size(); i += batchSize) {
+                batches.add(inconsistentRecords.subList(i, Math.min(i + batchSize, inconsistentRecords.size())));
+            }
+            
+            int threads = Math.max(1, Math.min(config.getRepairThreads(), batches.size()));
+            ExecutorService repairExecutor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<long[]>> futures = new ArrayList<>();
+                for (List<MigrationResult.InconsistentRecord> batch : batches) {
+                    futures.add(repairExecutor.submit(() -> fixInconsistentBatch(sourceDataSource, targetDataSource,
+                            tableName, batch, primaryKeys, columnMappings, config.isRepairDryRun())));
+                }
+                for (Future<long[]> future : futures) {
+                    try {
+                        long[] counts = future.get();
+                        totals[0] += counts[0];
+                        totals[1] += counts[1];
+                    } catch (ExecutionException e) {
+                        log.error("修复不一致记录批次失败，表: {}", tableName, e.getCause());
+                    }
+                }
+            } finally {
+                repairExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("修复不一致数据被中断，表: {}", tableName, e);
+        } catch (Exception e) {
+            log.error("修复不一致数据失败，表: {}", tableName, e);
+        }
+        
+        log.info("表 {} 修复完成{}，写回: {} 条，删除: {} 条", tableName,
+                config.isRepairDryRun() ? "（dry-run，未写入）" : "", totals[0], totals[1]);
+        return totals;
+    }
+    
+    /**
+     * 修复一批不一致记录
+     *
+     * @return [写回记录数, 删除记录数]
+     */
+    private long[] fixInconsistentBatch(
+            DataSource sourceDataSource,
+            DataSource targetDataSource,
+            String tableName,
+            List<MigrationResult.InconsistentRecord> batch,
+            List<String> primaryKeys,
+            List<ColumnMapping> columnMappings,
+            boolean dryRun) throws SQLException {
+        
+        // 校验器标记为目标表独有的记录直接删除，其余记录从源库取回后写回
+        List<String[]> lookupKeys = new ArrayList<>();
+        List<String[]> deleteKeys = new ArrayList<>();
+        for (MigrationResult.InconsistentRecord record : batch) {
+            String[] keyValues = record.getPrimaryKey().split("\\|", -1);
+            if (keyValues.length != primaryKeys.size()) {
+                log.warn("主键格式不匹配，跳过修复，表: {}, 主键: {}", tableName, record.getPrimaryKey());
+            } else if (record.isTargetOnly()) {
+                deleteKeys.add(keyValues);
+            } else {
+                lookupKeys.add(keyValues);
+            }
+        }
+        
+        // 目标库的主键列名（按列映射转换）
+        List<String> targetPrimaryKeys = new ArrayList<>(primaryKeys.size());
+        for (String primaryKey : primaryKeys) {
+            targetPrimaryKeys.add(columnMappings.stream()
+                    .filter(mapping -> mapping.getSourceColumn().equalsIgnoreCase(primaryKey))
+                    .map(ColumnMapping::getTargetColumn)
+                    .findFirst()
+                    .orElse(primaryKey));
+        }
+        
+        long repaired = 0;
         try (Connection sourceConn = sourceDataSource.getConnection();
              Connection targetConn = targetDataSource.getConnection()) {
             
-            for (MigrationResult.InconsistentRecord record : inconsistentRecords) {
-                try {
-                    // 从源库获取完整数据
-                    String selectSql = buildSelectByPrimaryKeySql(tableName, primaryKeys);
-                    String primaryKeyValue = record.getPrimaryKey();
+            // 查询在源库执行，写回和删除在目标库执行，按各自的方言生成
+            boolean sourceRowConstructor = supportsRowConstructor(detectDatabaseType(sourceConn, null));
+            MigrationConfig.DataSourceConfig.DatabaseType targetType = detectDatabaseType(targetConn, null);
+            boolean targetRowConstructor = supportsRowConstructor(targetType);
+            List<String> targetColumns = columnMappings.stream()
+                    .map(ColumnMapping::getTargetColumn)
+                    .collect(Collectors.toList());
+            String upsertSql = UpsertSqlBuilder.build(targetType, tableName, targetColumns, targetPrimaryKeys);
+            // 无法生成 UPSERT 的目标库：同一事务内先删除再插入
+            boolean deleteBeforeInsert = !UpsertSqlBuilder.supports(targetType);
+            
+            if (!lookupKeys.isEmpty()) {
+                String selectSql = buildSelectByPrimaryKeysSql(tableName, primaryKeys, lookupKeys.size(),
+                        sourceRowConstructor);
+                try (PreparedStatement selectStmt = sourceConn.prepareStatement(selectSql)) {
+                    bindKeys(selectStmt, lookupKeys);
                     
-                    try (PreparedStatement selectStmt = sourceConn.prepareStatement(selectSql)) {
-                        // 设置主键参数
-                        String[] keyValues = primaryKeyValue.split("\\|");
-                        for (int i = 0; i < keyValues.length; i++) {
-                            selectStmt.setObject(i + 1, keyValues[i]);
-                        }
-                        
-                        try (ResultSet rs = selectStmt.executeQuery()) {
-                            if (rs.next()) {
-                                // 获取表结构
-                                TableStructure targetStructure = getTableStructure(targetDataSource, tableName);
-                                
-                                // 构建 REPLACE INTO 或 UPDATE 语句
-                                String replaceSql = buildReplaceSql(tableName, targetStructure);
-                                
-                                try (PreparedStatement replaceStmt = targetConn.prepareStatement(replaceSql)) {
-                                    // 设置参数
-                                    setInsertParameters(replaceStmt, rs, 
-                                            mapColumns(getTableStructure(sourceDataSource, tableName), targetStructure),
-                                            getTableStructure(sourceDataSource, tableName),
-                                            targetStructure);
-                                    
-                                    replaceStmt.executeUpdate();
-                                    log.debug("修复不一致记录，表: {}, 主键: {}", tableName, primaryKeyValue);
+                    boolean autoCommit = targetConn.getAutoCommit();
+                    if (!dryRun) {
+                        targetConn.setAutoCommit(false);
+                    }
+                    try (ResultSet rs = selectStmt.executeQuery();
+                         PreparedStatement upsertStmt = dryRun ? null : targetConn.prepareStatement(upsertSql)) {
+                        List<String[]> fetchedKeys = new ArrayList<>();
+                        while (rs.next()) {
+                            if (!dryRun) {
+                                setInsertParameters(upsertStmt, rs, columnMappings, null, null);
+                                upsertStmt.addBatch();
+                                if (deleteBeforeInsert) {
+                                    String[] keyValues = new String[primaryKeys.size()];
+                                    for (int i = 0; i < keyValues.length; i++) {
+                                        keyValues[i] = rs.getString(primaryKeys.get(i));
+                                    }
+                                    fetchedKeys.add(keyValues);
                                 }
                             }
+                            repaired++;
+                        }
+                        if (!dryRun) {
+                            // 只删除源库中取回的记录，源库中不存在的记录保持不变
+                            deleteByPrimaryKeys(targetConn, tableName, targetPrimaryKeys, fetchedKeys,
+                                    targetRowConstructor);
+                            upsertStmt.executeBatch();
+                            deleteByPrimaryKeys(targetConn, tableName, targetPrimaryKeys, deleteKeys,
+                                    targetRowConstructor);
+                            targetConn.commit();
+                        }
+                    } catch (SQLException e) {
+                        if (!dryRun) {
+                            targetConn.rollback();
+                        }
+                        throw e;
+                    } finally {
+                        if (!dryRun) {
+                            targetConn.setAutoCommit(autoCommit);
                         }
                     }
-                } catch (Exception e) {
-                    log.error("修复不一致记录失败，表: {}, 主键: {}", tableName, record.getPrimaryKey(), e);
                 }
+            } else if (!dryRun) {
+                deleteByPrimaryKeys(targetConn, tableName, targetPrimaryKeys, deleteKeys, targetRowConstructor);
             }
             
-        } catch (Exception e) {
-            log.error("修复不一致数据失败，表: {}", tableName, e);
+            if (repaired < lookupKeys.size()) {
+                log.warn("表 {} 有 {} 条不一致记录在源库中不存在，未修复", tableName, lookupKeys.size() - repaired);
+            }
         }
+        
+        return new long[]{repaired, deleteKeys.size()};
     }
     
     /**
-     * 构建根据主键查询的 SQL
+     * 按主键批量删除目标表记录
      */
-    private String buildSelectByPrimaryKeySql(String tableName, List<String> primaryKeys) {
-        String whereClause = primaryKeys.stream()
-                .map(key -> key + " = ?")
-                .collect(Collectors.joining(" AND "));
-        return "SELECT * FROM " + tableName + " WHERE " + whereClause;
+    private void deleteByPrimaryKeys(Connection conn, String tableName, List<String> primaryKeys,
+                                     List<String[]> keys, boolean rowConstructor) throws SQLException {
+        if (keys.isEmpty()) {
+            return;
+        }
+        String sql = "DELETE FROM " + tableName + " WHERE " + buildKeyCondition(primaryKeys, keys.size(), rowConstructor);
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            bindKeys(stmt, keys);
+            stmt.executeUpdate();
+        }
+    }
+    
+    private void bindKeys(PreparedStatement stmt, List<String[]> keys) throws SQLException {
+        int index = 1;
+        for (String[] key : keys) {
+            for (String value : key) {
+                stmt.setObject(index++, value);
+            }
+        }
     }
     
     /**
-     * 构建 REPLACE INTO SQL
+     * 是否支持行构造器 (a, b) IN ((?, ?), ...)
      */
-    private String buildReplaceSql(String tableName, TableStructure structure) {
-        String columns = structure.getColumns().stream()
-                .map(TableColumn::getName)
-                .collect(Collectors.joining(", "));
-        String values = structure.getColumns().stream()
-                .map(c -> "?")
-                .collect(Collectors.joining(", "));
-        return "REPLACE INTO " + tableName + " (" + columns + ") VALUES (" + values + ")";
+    private boolean supportsRowConstructor(MigrationConfig.DataSourceConfig.DatabaseType databaseType) {
+        return databaseType == MigrationConfig.DataSourceConfig.DatabaseType.MYSQL
+                || databaseType == MigrationConfig.DataSourceConfig.DatabaseType.MARIADB
+                || databaseType == MigrationConfig.DataSourceConfig.DatabaseType.POSTGRESQL
+                || databaseType == MigrationConfig.DataSourceConfig.DatabaseType.H2;
+    }
+    
+    /**
+     * 构建根据多个主键查询的 SQL
+     */
+    private String buildSelectByPrimaryKeysSql(String tableName, List<String> primaryKeys, int keyCount,
+                                               boolean rowConstructor) {
+        return "SELECT * FROM " + tableName + " WHERE " + buildKeyCondition(primaryKeys, keyCount, rowConstructor);
+    }
+    
+    /**
+     * 构建多主键匹配条件：单列主键使用 IN，复合主键使用行构造器，不支持时退化为 OR
+     */
+    private String buildKeyCondition(List<String> primaryKeys, int keyCount, boolean rowConstructor) {
+        if (primaryKeys.size() == 1) {
+            return primaryKeys.get(0) + " IN (" + String.join(", ", Collections.nCopies(keyCount, "?")) + ")";
+        }
+        if (rowConstructor) {
+            String tuple = "(" + String.join(", ", Collections.nCopies(primaryKeys.size(), "?")) + ")";
+            return "(" + String.join(", ", primaryKeys) + ") IN ("
+                    + String.join(", ", Collections.nCopies(keyCount, tuple)) + ")";
+        }
+        String single = "(" + primaryKeys.stream()
+                .map(key -> key + " = ?")
+                .collect(Collectors.joining(" AND ")) + ")";
+        return String.join(" OR ", Collections.nCopies(keyCount, single));
     }
     
     /**
@@ -471,101 +1420,6 @@ public class DataMigrationService {
         return primaryKeys;
     }
     
-    /**
-     * 创建数据源
-     * 基于数据库连接池创建数据源
-     */
-    private DataSource createDataSource(MigrationConfig.DataSourceConfig config) {
-        if (config.getDataSource() != null) {
-            return config.getDataSource();
-        }
-        
-        // 使用反射创建 HikariDataSource，避免直接依赖
-        try {
-            Class<?> hikariConfigClass = Class.forName("com.zaxxer.hikari.HikariConfig");
-            Class<?> hikariDataSourceClass = Class.forName("com.zaxxer.hikari.HikariDataSource");
-            
-            Object hikariConfig = hikariConfigClass.getDeclaredConstructor().newInstance();
-            hikariConfigClass.getMethod("setJdbcUrl", String.class).invoke(hikariConfig, config.getUrl());
-            hikariConfigClass.getMethod("setUsername", String.class).invoke(hikariConfig, config.getUsername());
-            hikariConfigClass.getMethod("setPassword", String.class).invoke(hikariConfig, config.getPassword());
-            
-            if (StringUtils.hasText(config.getDriverClassName())) {
-                hikariConfigClass.getMethod("setDriverClassName", String.class)
-                        .invoke(hikariConfig, config.getDriverClassName());
-            }
-            
-            hikariConfigClass.getMethod("setMaximumPoolSize", int.class).invoke(hikariConfig, 10);
-            hikariConfigClass.getMethod("setMinimumIdle", int.class).invoke(hikariConfig, 2);
-            hikariConfigClass.getMethod("setConnectionTimeout", long.class).invoke(hikariConfig, 30000L);
-            
-            return (DataSource) hikariDataSourceClass.getConstructor(hikariConfigClass).newInstance(hikariConfig);
-            
-        } catch (Exception e) {
-            log.error("创建 HikariDataSource 失败，尝试使用 DriverManager", e);
-            // 降级方案：使用 DriverManager
-            return new DriverManagerDataSource(config.getUrl(), config.getUsername(), config.getPassword());
-        }
-    }
-    
-    /**
-     * 简单的 DriverManager 数据源实现
-     */
-    private static class DriverManagerDataSource implements DataSource {
-        private final String url;
-        private final String username;
-        private final String password;
-        
-        public DriverManagerDataSource(String url, String username, String password) {
-            this.url = url;
-            this.username = username;
-            this.password = password;
-        }
-        
-        @Override
-        public Connection getConnection() throws SQLException {
-            return DriverManager.getConnection(url, username, password);
-        }
-        
-        @Override
-        public Connection getConnection(String username, String password) throws SQLException {
-            return DriverManager.getConnection(url, username, password);
-        }
-        
-        @Override
-        public <T> T unwrap(Class<T> iface) throws SQLException {
-            throw new SQLException("Not supported");
-        }
-        
-        @Override
-        public boolean isWrapperFor(Class<?> iface) throws SQLException {
-            return false;
-        }
-        
-        @Override
-        public java.io.PrintWriter getLogWriter() throws SQLException {
-            return null;
-        }
-        
-        @Override
-        public void setLogWriter(java.io.PrintWriter out) throws SQLException {
-        }
-        
-        @Override
-        public void setLoginTimeout(int seconds) throws SQLException {
-        }
-        
-        @Override
-        public int getLoginTimeout() throws SQLException {
-            return 0;
-        }
-        
-        @Override
-        public java.util.logging.Logger getParentLogger() {
-            return null;
-        }
-    }
-    
     /**
      * 获取要迁移的表列表
      */
@@ -695,26 +1549,24 @@ public class DataMigrationService {
     
     /**
      * 构建 SELECT SQL
-     * TODO 对单次读取进行限制
+     *
+     * @param range 主键范围，为空时查询整表
      */
-    private String buildSelectSql(String tableName, TableStructure structure) {
+    private String buildSelectSql(String tableName, TableStructure structure, KeyRange range, boolean orderByKey) {
         String columns = structure.getColumns().stream()
                 .map(TableColumn::getName)
                 .collect(Collectors.joining(", "));
-        return "SELECT " + columns + " FROM " + tableName;
-    }
-    
-    /**
-     * 构建 INSERT SQL
-     */
-    private String buildInsertSql(String tableName, TableStructure structure, List<ColumnMapping> mappings) {
-        String columns = mappings.stream()
-                .map(m -> m.getTargetColumn())
-                .collect(Collectors.joining(", "));
-        String values = mappings.stream()
-                .map(m -> "?")
-                .collect(Collectors.joining(", "));
-        return "INSERT INTO " + tableName + " (" + columns + ") VALUES (" + values + ")";
+        String sql = "SELECT " + columns + " FROM " + tableName;
+        if (range != null) {
+            sql += " WHERE " + range.getKeyColumn() + " >= ?";
+            if (range.getUpperBound() != null) {
+                sql += " AND " + range.getKeyColumn() + " < ?";
+            }
+            if (orderByKey) {
+                sql += " ORDER BY " + range.getKeyColumn();
+            }
+        }
+        return sql;
     }
     
     /**
@@ -757,24 +1609,6 @@ public class DataMigrationService {
         }
     }
     
-    /**
-     * 关闭数据源
-     */
-    private void closeDataSource(DataSource dataSource) {
-        if (dataSource == null) {
-            return;
-        }
-        
-        try {
-            // 尝试关闭 HikariDataSource
-            if (dataSource.getClass().getName().equals("com.zaxxer.hikari.HikariDataSource")) {
-                dataSource.getClass().getMethod("close").invoke(dataSource);
-            }
-        } catch (Exception e) {
-            log.debug("关闭数据源失败（可能不是 HikariDataSource）", e);
-        }
-    }
-    
     /**
      * 获取异常堆栈
      */
@@ -808,6 +1642,24 @@ public class DataMigrationService {
         private String defaultValue;
     }
     
+    /**
+     * 主键范围分片
+     */
+    @lombok.Data
+    @lombok.Builder
+    public static class KeyRange {
+        private int chunkIndex;
+        private String keyColumn;
+        /**
+         * 下界（包含）
+         */
+        private Long lowerBound;
+        /**
+         * 上界（不包含，为空表示无上界）
+         */
+        private Long upperBound;
+    }
+    
     /**
      * 列映射
      */
@@ -4,16 +4,30 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
 
 /**
  * 数据校验器
  * 用于验证源端和目标端数据的一致性
  *
+ * 校验方式：
+ * 1. 分块校验和（单列整型主键）：按源表主键顺序每 chunkSize 行切一块（主键稀疏时块数也只和行数有关），
+ *    两端分别计算与行顺序无关的校验和（行数 + 各行 CRC32 的异或），
+ *    源端和目标端都是 MySQL/MariaDB 时在服务端用 BIT_XOR(CRC32(CONCAT_WS(...))) 计算，否则在客户端流式计算；
+ *    只对校验和不一致的块继续细分，块内记录数不超过 leafSize 时才逐行比较
+ * 2. 逐条比较（复合主键或非整型主键）：遍历源表，按主键查询目标表逐条比较
+ *
  * 12-31 17:59 数据校验只是逐条记录比较源库和目标库，且全量查询和同步操作，希望分批次以及多线程
  *              或者希望获得更好的校验方法
  * @author lixiangyu
@@ -22,6 +36,21 @@ import java.util.Map;
 @Component
 public class DataValidator {
     
+    /**
+     * 默认校验块的记录数
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 10000;
+    
+    /**
+     * 默认逐行比较阈值（块内记录数）
+     */
+    public static final int DEFAULT_LEAF_SIZE = 500;
+    
+    /**
+     * 不一致块每次细分的子块数
+     */
+    private static final int SPLIT_FANOUT = 4;
+    
     /**
      * 校验表数据一致性
      *
@@ -36,6 +65,54 @@ public class DataValidator {
             DataSource targetDataSource,
             String tableName,
             List<String> primaryKeys) {
+        return validateTable(sourceDataSource, targetDataSource, tableName, primaryKeys,
+                DEFAULT_CHUNK_SIZE, DEFAULT_LEAF_SIZE);
+    }
+    
+    /**
+     * 校验表数据一致性
+     *
+     * @param sourceDataSource 源数据源
+     * @param targetDataSource 目标数据源
+     * @param tableName 表名
+     * @param primaryKeys 主键列名列表
+     * @param chunkSize 校验块的记录数（按源表主键顺序切分）
+     * @param leafSize 逐行比较阈值，块内记录数不超过该值时逐行比较
+     * @return 校验结果
+     */
+    public MigrationResult.TableValidationDetail validateTable(
+            DataSource sourceDataSource,
+            DataSource targetDataSource,
+            String tableName,
+            List<String> primaryKeys,
+            int chunkSize,
+            int leafSize) {
+        return validateTable(sourceDataSource, targetDataSource, tableName, primaryKeys,
+                chunkSize, leafSize, null, null);
+    }
+    
+    /**
+     * 校验表数据一致性（调用方已统计记录数时传入，避免重复 COUNT）
+     *
+     * @param sourceDataSource 源数据源
+     * @param targetDataSource 目标数据源
+     * @param tableName 表名
+     * @param primaryKeys 主键列名列表
+     * @param chunkSize 校验块的记录数（按源表主键顺序切分）
+     * @param leafSize 逐行比较阈值，块内记录数不超过该值时逐行比较
+     * @param knownSourceCount 已知的源表记录数，为空时重新统计
+     * @param knownTargetCount 已知的目标表记录数，为空时重新统计
+     * @return 校验结果
+     */
+    public MigrationResult.TableValidationDetail validateTable(
+            DataSource sourceDataSource,
+            DataSource targetDataSource,
+            String tableName,
+            List<String> primaryKeys,
+            int chunkSize,
+            int leafSize,
+            Long knownSourceCount,
+            Long knownTargetCount) {
         
         log.info("开始校验表: {}", tableName);
         
@@ -45,13 +122,33 @@ public class DataValidator {
         
         try {
             // 1. 校验记录数
-            long sourceCount = getRecordCount(sourceDataSource, tableName);
-            long targetCount = getRecordCount(targetDataSource, tableName);
+            long sourceCount = knownSourceCount != null
+                    ? knownSourceCount : getRecordCount(sourceDataSource, tableName);
+            long targetCount = knownTargetCount != null
+                    ? knownTargetCount : getRecordCount(targetDataSource, tableName);
             
             builder.sourceRecordCount(sourceCount)
                     .targetRecordCount(targetCount)
                     .consistent(sourceCount == targetCount);
             
+            // 单列整型主键：分块校验和，记录数不一致时同样可以定位到具体记录
+            if (primaryKeys != null && primaryKeys.size() == 1) {
+                List<MigrationResult.InconsistentRecord> inconsistentRecords = validateByChecksum(
+                        sourceDataSource, targetDataSource, tableName, primaryKeys.get(0),
+                        Math.max(1, chunkSize), Math.max(1, leafSize));
+                if (inconsistentRecords != null) {
+                    boolean consistent = sourceCount == targetCount && inconsistentRecords.isEmpty();
+                    builder.consistent(consistent)
+                            .inconsistentRecords(inconsistentRecords.isEmpty() ? null : inconsistentRecords);
+                    if (consistent) {
+                        log.info("表 {} 分块校验和校验通过", tableName);
+                    } else {
+                        log.warn("表 {} 分块校验和发现 {} 条不一致记录", tableName, inconsistentRecords.size());
+                    }
+                    return builder.build();
+                }
+            }
+            
             if (sourceCount != targetCount) {
                 log.warn("表 {} 记录数不一致，源: {}, 目标: {}", tableName, sourceCount, targetCount);
                 return builder.build();
@@ -111,8 +208,9 @@ public class DataValidator {
             String sourceSql = "SELECT " + selectColumns + " FROM " + tableName;
             String targetSql = "SELECT " + selectColumns + " FROM " + tableName + " WHERE " + whereClause;
 
-            // TODO 这里一次查源数据库的记录有点太多了吧，分批次分线程
+            // 目标表查询语句只预编译一次，逐条记录复用
             try (PreparedStatement sourceStmt = sourceConn.prepareStatement(sourceSql);
+                 PreparedStatement targetStmt = targetConn.prepareStatement(targetSql);
                  ResultSet sourceRs = sourceStmt.executeQuery()) {
                 
                 while (sourceRs.next()) {
@@ -130,42 +228,40 @@ public class DataValidator {
                     }
                     
                     // 查询目标表中的对应记录
-                    try (PreparedStatement targetStmt = targetConn.prepareStatement(targetSql)) {
-                        for (int i = 0; i < primaryKeyValues.size(); i++) {
-                            targetStmt.setObject(i + 1, primaryKeyValues.get(i));
-                        }
-                        
-                        try (ResultSet targetRs = targetStmt.executeQuery()) {
-                            if (targetRs.next()) {
-                                // 比较字段值
-                                Map<String, MigrationResult.FieldDifference> differences = new HashMap<>();
-                                
-                                for (String column : allColumns) {
-                                    Object sourceValue = sourceRs.getObject(column);
-                                    Object targetValue = targetRs.getObject(column);
-                                    
-                                    if (!equals(sourceValue, targetValue)) {
-                                        differences.put(column, MigrationResult.FieldDifference.builder()
-                                                .fieldName(column)
-                                                .sourceValue(sourceValue)
-                                                .targetValue(targetValue)
-                                                .build());
-                                    }
-                                }
+                    for (int i = 0; i < primaryKeyValues.size(); i++) {
+                        targetStmt.setObject(i + 1, primaryKeyValues.get(i));
+                    }
+                    
+                    try (ResultSet targetRs = targetStmt.executeQuery()) {
+                        if (targetRs.next()) {
+                            // 比较字段值
+                            Map<String, MigrationResult.FieldDifference> differences = new HashMap<>();
+                            
+                            for (String column : allColumns) {
+                                Object sourceValue = sourceRs.getObject(column);
+                                Object targetValue = targetRs.getObject(column);
                                 
-                                if (!differences.isEmpty()) {
-                                    inconsistentRecords.add(MigrationResult.InconsistentRecord.builder()
-                                            .primaryKey(primaryKeyValue.toString())
-                                            .fieldDifferences(differences)
+                                if (!equals(sourceValue, targetValue)) {
+                                    differences.put(column, MigrationResult.FieldDifference.builder()
+                                            .fieldName(column)
+                                            .sourceValue(sourceValue)
+                                            .targetValue(targetValue)
                                             .build());
                                 }
-                            } else {
-                                // 目标表中不存在该记录
+                            }
+                            
+                            if (!differences.isEmpty()) {
                                 inconsistentRecords.add(MigrationResult.InconsistentRecord.builder()
                                         .primaryKey(primaryKeyValue.toString())
-                                        .fieldDifferences(new HashMap<>())
+                                        .fieldDifferences(differences)
                                         .build());
                             }
+                        } else {
+                            // 目标表中不存在该记录
+                            inconsistentRecords.add(MigrationResult.InconsistentRecord.builder()
+                                    .primaryKey(primaryKeyValue.toString())
+                                    .fieldDifferences(new HashMap<>())
+                                    .build());
                         }
                     }
                 }
@@ -175,6 +271,415 @@ public class DataValidator {
         return inconsistentRecords;
     }
     
+    /**
+     * 是否可以使用分块校验和校验（单列整型主键）
+     *
+     * @param dataSource 数据源
+     * @param tableName 表名
+     * @param primaryKeys 主键列名列表
+     * @return 是否支持
+     */
+    public boolean supportsChecksum(DataSource dataSource, String tableName, List<String> primaryKeys) {
+        if (primaryKeys == null || primaryKeys.size() != 1) {
+            return false;
+        }
+        try (Connection conn = dataSource.getConnection()) {
+            return isIntegralKey(conn, tableName, primaryKeys.get(0));
+        } catch (SQLException e) {
+            log.warn("获取表 {} 主键类型失败", tableName, e);
+            return false;
+        }
+    }
+    
+    /**
+     * 分块校验和校验
+     *
+     * @return 不一致记录；主键不是整型时返回 null，由调用方改用逐条比较
+     */
+    private List<MigrationResult.InconsistentRecord> validateByChecksum(
+            DataSource sourceDataSource,
+            DataSource targetDataSource,
+            String tableName,
+            String keyColumn,
+            int chunkSize,
+            int leafSize) throws SQLException {
+        
+        try (Connection sourceConn = sourceDataSource.getConnection();
+             Connection targetConn = targetDataSource.getConnection()) {
+            
+            if (!isIntegralKey(sourceConn, tableName, keyColumn)) {
+                return null;
+            }
+            
+            List<String> columns = getAllColumns(sourceConn, tableName);
+            boolean serverSide = isMysqlFamily(sourceConn) && isMysqlFamily(targetConn);
+            ChecksumContext context = new ChecksumContext(sourceConn, targetConn, tableName, keyColumn,
+                    columns, serverSide, leafSize, supportsLimit(sourceConn));
+            
+            // 取两端主键范围的并集，目标端多出的记录同样能被发现
+            long[] sourceBounds = getKeyBounds(sourceConn, tableName, keyColumn);
+            long[] targetBounds = getKeyBounds(targetConn, tableName, keyColumn);
+            List<MigrationResult.InconsistentRecord> inconsistentRecords = new ArrayList<>();
+            if (sourceBounds == null && targetBounds == null) {
+                return inconsistentRecords;
+            }
+            long minKey = sourceBounds == null ? targetBounds[0]
+                    : targetBounds == null ? sourceBounds[0] : Math.min(sourceBounds[0], targetBounds[0]);
+            long maxKey = sourceBounds == null ? targetBounds[1]
+                    : targetBounds == null ? sourceBounds[1] : Math.max(sourceBounds[1], targetBounds[1]);
+            
+            log.info("表 {} 开始分块校验和校验，主键范围: [{}, {}]，块大小: {}，计算方式: {}",
+                    tableName, minKey, maxKey, chunkSize, serverSide ? "服务端" : "客户端");
+            
+            // 块边界按源表行数确定，雪花 ID 等稀疏主键不会产生大量空块；最后一块延伸到两端最大主键
+            long lower = minKey;
+            while (true) {
+                Long next = nextChunkBoundary(context, lower, chunkSize);
+                long upper = next == null ? maxKey + 1 : next;
+                compareRange(context, lower, upper, inconsistentRecords);
+                if (next == null) {
+                    break;
+                }
+                lower = upper;
+            }
+            return inconsistentRecords;
+        }
+    }
+    
+    /**
+     * 查找下一个块的起始主键：源表中从 lower 开始第 chunkSize + 1 行的主键，不足 chunkSize 行时返回 null
+     * 支持 LIMIT/OFFSET 的数据库在服务端沿主键索引跳过，否则用 setMaxRows 限制读取的行数
+     */
+    private Long nextChunkBoundary(ChecksumContext context, long lower, int chunkSize) throws SQLException {
+        try (PreparedStatement stmt = context.sourceConn.prepareStatement(context.boundarySql)) {
+            stmt.setLong(1, lower);
+            if (context.supportsLimit) {
+                stmt.setInt(2, chunkSize);
+            } else {
+                stmt.setMaxRows(chunkSize + 1);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (context.supportsLimit) {
+                    return rs.next() ? rs.getLong(1) : null;
+                }
+                int rows = 0;
+                while (rs.next()) {
+                    if (++rows > chunkSize) {
+                        return rs.getLong(1);
+                    }
+                }
+                return null;
+            }
+        }
+    }
+    
+    /**
+     * 比较主键范围 [lower, upper) 内的数据，不一致时细分或逐行比较
+     */
+    private void compareRange(ChecksumContext context, long lower, long upper,
+                              List<MigrationResult.InconsistentRecord> inconsistentRecords) throws SQLException {
+        
+        Checksum sourceChecksum = computeChecksum(context, context.sourceConn, lower, upper);
+        Checksum targetChecksum = computeChecksum(context, context.targetConn, lower, upper);
+        if (sourceChecksum.equals(targetChecksum)) {
+            return;
+        }
+        
+        long span = upper - lower;
+        if (Math.max(sourceChecksum.count, targetChecksum.count) <= context.leafSize || span <= 1) {
+            inconsistentRecords.addAll(compareRows(context, lower, upper));
+            return;
+        }
+        
+        long step = span / SPLIT_FANOUT + (span % SPLIT_FANOUT == 0 ? 0 : 1);
+        for (long subLower = lower; subLower < upper; subLower += step) {
+            compareRange(context, subLower, Math.min(upper, subLower + step), inconsistentRecords);
+        }
+    }
+    
+    /**
+     * 计算主键范围 [lower, upper) 的校验和
+     */
+    private Checksum computeChecksum(ChecksumContext context, Connection conn, long lower, long upper)
+            throws SQLException {
+        
+        String sql = context.serverSide ? context.serverChecksumSql : context.rangeSelectSql;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setLong(1, lower);
+            stmt.setLong(2, upper);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (context.serverSide) {
+                    rs.next();
+                    return new Checksum(rs.getLong(1), rs.getLong(2), 0);
+                }
+                
+                // 客户端流式计算：每行 CRC32 做异或与求和，和行顺序无关
+                long count = 0;
+                long xor = 0;
+                long sum = 0;
+                int columnCount = context.columns.size();
+                while (rs.next()) {
+                    long rowHash = hashRow(rs, columnCount);
+                    count++;
+                    xor ^= rowHash;
+                    sum += rowHash;
+                }
+                return new Checksum(count, xor, sum);
+            }
+        }
+    }
+    
+    /**
+     * 计算一行记录的 CRC32（值先规范化，避免不同驱动返回的 Java 类型不同导致误判）
+     */
+    private long hashRow(ResultSet rs, int columnCount) throws SQLException {
+        CRC32 crc = new CRC32();
+        for (int i = 1; i <= columnCount; i++) {
+            Object value = rs.getObject(i);
+            if (value == null) {
+                crc.update(0);
+            } else {
+                crc.update(1);
+                byte[] bytes = value instanceof byte[]
+                        ? (byte[]) value
+                        : normalize(value).getBytes(StandardCharsets.UTF_8);
+                crc.update(bytes, 0, bytes.length);
+            }
+            crc.update(0x1F);
+        }
+        return crc.getValue();
+    }
+    
+    /**
+     * 逐行比较主键范围 [lower, upper) 内的记录
+     */
+    private List<MigrationResult.InconsistentRecord> compareRows(ChecksumContext context, long lower, long upper)
+            throws SQLException {
+        
+        Map<String, Map<String, Object>> sourceRows = loadRows(context, context.sourceConn, lower, upper);
+        Map<String, Map<String, Object>> targetRows = loadRows(context, context.targetConn, lower, upper);
+        List<MigrationResult.InconsistentRecord> inconsistentRecords = new ArrayList<>();
+        
+        for (Map.Entry<String, Map<String, Object>> entry : sourceRows.entrySet()) {
+            Map<String, Object> targetRow = targetRows.remove(entry.getKey());
+            if (targetRow == null) {
+                // 目标表中不存在该记录
+                inconsistentRecords.add(MigrationResult.InconsistentRecord.builder()
+                        .primaryKey(entry.getKey())
+                        .fieldDifferences(new HashMap<>())
+                        .build());
+                continue;
+            }
+            
+            Map<String, MigrationResult.FieldDifference> differences = new HashMap<>();
+            for (String column : context.columns) {
+                Object sourceValue = entry.getValue().get(column);
+                Object targetValue = targetRow.get(column);
+                if (!equals(sourceValue, targetValue)) {
+                    differences.put(column, MigrationResult.FieldDifference.builder()
+                            .fieldName(column)
+                            .sourceValue(sourceValue)
+                            .targetValue(targetValue)
+                            .build());
+                }
+            }
+            if (!differences.isEmpty()) {
+                inconsistentRecords.add(MigrationResult.InconsistentRecord.builder()
+                        .primaryKey(entry.getKey())
+                        .fieldDifferences(differences)
+                        .build());
+            }
+        }
+        
+        // 剩余的是目标表多出的记录：源值全部为 null
+        for (Map.Entry<String, Map<String, Object>> entry : targetRows.entrySet()) {
+            Map<String, MigrationResult.FieldDifference> differences = new HashMap<>();
+            for (String column : context.columns) {
+                differences.put(column, MigrationResult.FieldDifference.builder()
+                        .fieldName(column)
+                        .sourceValue(null)
+                        .targetValue(entry.getValue().get(column))
+                        .build());
+            }
+            inconsistentRecords.add(MigrationResult.InconsistentRecord.builder()
+                    .primaryKey(entry.getKey())
+                    .fieldDifferences(differences)
+                    .targetOnly(true)
+                    .build());
+        }
+        
+        return inconsistentRecords;
+    }
+    
+    /**
+     * 加载主键范围内的记录（主键字符串 -> 列值）
+     */
+    private Map<String, Map<String, Object>> loadRows(ChecksumContext context, Connection conn, long lower, long upper)
+            throws SQLException {
+        
+        Map<String, Map<String, Object>> rows = new LinkedHashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(context.rangeSelectSql)) {
+            stmt.setLong(1, lower);
+            stmt.setLong(2, upper);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Map<String, Object> row = new HashMap<>();
+                    for (int i = 0; i < context.columns.size(); i++) {
+                        row.put(context.columns.get(i), rs.getObject(i + 1));
+                    }
+                    rows.put(String.valueOf(rs.getObject(context.keyColumn)), row);
+                }
+            }
+        }
+        return rows;
+    }
+    
+    /**
+     * 获取主键的最小值和最大值，表为空时返回 null
+     */
+    private long[] getKeyBounds(Connection conn, String tableName, String keyColumn) throws SQLException {
+        String sql = "SELECT MIN(" + keyColumn + "), MAX(" + keyColumn + ") FROM " + tableName;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            if (!rs.next() || rs.getObject(1) == null) {
+                return null;
+            }
+            return new long[]{rs.getLong(1), rs.getLong(2)};
+        }
+    }
+    
+    /**
+     * 判断主键列是否为整型
+     */
+    private boolean isIntegralKey(Connection conn, String tableName, String keyColumn) throws SQLException {
+        DatabaseMetaData metaData = conn.getMetaData();
+        try (ResultSet rs = metaData.getColumns(conn.getCatalog(), conn.getSchema(), tableName, keyColumn)) {
+            if (rs.next()) {
+                int type = rs.getInt("DATA_TYPE");
+                return type == Types.TINYINT || type == Types.SMALLINT
+                        || type == Types.INTEGER || type == Types.BIGINT;
+            }
+        }
+        return false;
+    }
+    
+    private boolean supportsLimit(Connection conn) throws SQLException {
+        MigrationConfig.DataSourceConfig.DatabaseType type = MigrationConfig.DataSourceConfig.DatabaseType
+                .fromProductName(conn.getMetaData().getDatabaseProductName());
+        return type == MigrationConfig.DataSourceConfig.DatabaseType.MYSQL
+                || type == MigrationConfig.DataSourceConfig.DatabaseType.MARIADB
+                || type == MigrationConfig.DataSourceConfig.DatabaseType.POSTGRESQL
+                || type == MigrationConfig.DataSourceConfig.DatabaseType.H2;
+    }
+    
+    private boolean isMysqlFamily(Connection conn) throws SQLException {
+        MigrationConfig.DataSourceConfig.DatabaseType type = MigrationConfig.DataSourceConfig.DatabaseType
+                .fromProductName(conn.getMetaData().getDatabaseProductName());
+        return type == MigrationConfig.DataSourceConfig.DatabaseType.MYSQL
+                || type == MigrationConfig.DataSourceConfig.DatabaseType.MARIADB;
+    }
+    
+    /**
+     * 值规范化：数值去掉多余的 0，日期时间统一为 java.time 格式，布尔值转为 1/0
+     */
+    static String normalize(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value ? "1" : "0";
+        }
+        if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                return value.toString();
+            }
+            return BigDecimal.valueOf(d).stripTrailingZeros().toPlainString();
+        }
+        if (value instanceof Number) {
+            return new BigDecimal(value.toString()).stripTrailingZeros().toPlainString();
+        }
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toLocalDateTime().toString();
+        }
+        if (value instanceof Date) {
+            return ((Date) value).toLocalDate().toString();
+        }
+        if (value instanceof Time) {
+            return ((Time) value).toLocalTime().toString();
+        }
+        return value.toString();
+    }
+    
+    /**
+     * 分块校验上下文（单表校验期间复用两端连接和 SQL）
+     */
+    private static class ChecksumContext {
+        private final Connection sourceConn;
+        private final Connection targetConn;
+        private final String keyColumn;
+        private final List<String> columns;
+        private final boolean serverSide;
+        private final int leafSize;
+        private final String rangeSelectSql;
+        private final String serverChecksumSql;
+        private final boolean supportsLimit;
+        private final String boundarySql;
+        
+        ChecksumContext(Connection sourceConn, Connection targetConn, String tableName, String keyColumn,
+                        List<String> columns, boolean serverSide, int leafSize, boolean supportsLimit) {
+            this.sourceConn = sourceConn;
+            this.targetConn = targetConn;
+            this.keyColumn = keyColumn;
+            this.columns = columns;
+            this.serverSide = serverSide;
+            this.leafSize = leafSize;
+            this.supportsLimit = supportsLimit;
+            this.boundarySql = "SELECT " + keyColumn + " FROM " + tableName + " WHERE " + keyColumn + " >= ?"
+                    + " ORDER BY " + keyColumn + (supportsLimit ? " LIMIT 1 OFFSET ?" : "");
+            
+            String rangeCondition = " WHERE " + keyColumn + " >= ? AND " + keyColumn + " < ?";
+            this.rangeSelectSql = "SELECT " + String.join(", ", columns) + " FROM " + tableName + rangeCondition;
+            
+            // CONCAT_WS 会跳过 NULL，追加 ISNULL 标记区分 NULL 与空字符串
+            String nullFlags = columns.stream()
+                    .map(column -> "ISNULL(" + column + ")")
+                    .collect(Collectors.joining(", "));
+            this.serverChecksumSql = "SELECT COUNT(*), COALESCE(BIT_XOR(CRC32(CONCAT_WS('#', "
+                    + String.join(", ", columns) + ", CONCAT(" + nullFlags + ")))), 0) FROM "
+                    + tableName + rangeCondition;
+        }
+    }
+    
+    /**
+     * 块校验和（行数 + 异或 + 求和）
+     */
+    private static class Checksum {
+        private final long count;
+        private final long xor;
+        private final long sum;
+        
+        Checksum(long count, long xor, long sum) {
+            this.count = count;
+            this.xor = xor;
+            this.sum = sum;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Checksum)) {
+                return false;
+            }
+            Checksum that = (Checksum) o;
+            return count == that.count && xor == that.xor && sum == that.sum;
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(count, xor, sum);
+        }
+    }
+    
     /**
      * 获取所有列名
      */
@@ -210,14 +715,21 @@ public class DataValidator {
     /**
      * 比较两个值是否相等
      */
-    private boolean equals(Object a, Object b) {
+    static boolean equals(Object a, Object b) {
         if (a == null && b == null) {
             return true;
         }
         if (a == null || b == null) {
             return false;
         }
-        return a.equals(b);
+        if (a instanceof byte[] && b instanceof byte[]) {
+            return Arrays.equals((byte[]) a, (byte[]) b);
+        }
+        if (a.equals(b)) {
+            return true;
+        }
+        // 不同驱动可能返回不同的 Java 类型（如 Integer/Long、Timestamp/LocalDateTime），按规范化后的值比较
+        return normalize(a).equals(normalize(b));
     }
 }
 
@@ -81,7 +81,7 @@ public @interface DualWrite {
         TARGET_FIRST,
         
         /**
-         * 并行写入
+         * 并行写入（在调用方事务中时目标库写入推迟到事务提交之后，失败时不回滚源库）
          */
         PARALLEL
     }
@@ -93,6 +93,13 @@ public @interface DualWrite {
      */
     boolean async() default false;
     
+    /**
+     * 是否通过本地发件箱写入目标库（仅 SOURCE_FIRST 生效，优先于 async）
+     * true: 目标库写入追加到本地持久化日志，由后台线程按表批量回放（见 {@link DualWriteOutbox}），
+     *       目标库慢或不可用时不阻塞、不丢失业务写入
+     */
+    boolean outbox() default false;
+    
     /**
      * 失败重试次数
      */
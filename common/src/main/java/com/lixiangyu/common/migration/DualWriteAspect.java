@@ -5,18 +5,38 @@ import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.core.annotation.Order;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.sql.DataSource;
 import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 双写切面
@@ -28,6 +48,12 @@ import java.util.concurrent.Executors;
  * 3. 支持同步和异步写入
  * 4. 支持失败回滚
  * 5. 支持重试机制
+ * 6. 双写计划按 (方法, 首个参数类型) 编译一次并缓存（见 {@link DualWritePlan}），目标库 JdbcTemplate 和数据源按名称缓存
+ * 7. 发件箱模式：目标库写入追加到本地持久化日志后由后台批量回放（见 {@link DualWriteOutbox}）
+ * 8. 并行模式：源库写入留在调用线程（保持事务绑定），目标库写入在有界线程池中执行，等待超时可配置，
+ *    目标库事务等源库写入返回后才提交（源库抛出异常时回滚）；在调用方事务中时目标库写入推迟到事务提交之后，
+ *    按表记录源库/目标库/额外等待的延迟（见 {@link DualWriteMetrics}）
+ * 9. 集合/数组参数（如 batchInsert(List)）按批大小拆分，每批一次目标库往返
  *
  * TODO 改写双写
  * TODO 动态切换数据源，支持多数据源
@@ -48,11 +74,57 @@ public class DualWriteAspect {
     @Autowired
     private DualWriteConfigManager configManager;
     
+    @Autowired
+    private DualWriteOutbox outbox;
+    
+    @Autowired
+    private DualWriteMetrics metrics;
+    
     /**
      * 异步执行器
      */
     private final ExecutorService asyncExecutor = Executors.newFixedThreadPool(10);
     
+    /**
+     * 并行模式目标库写入线程池（有界队列，队列满时拒绝，由调用线程写入）
+     */
+    private ThreadPoolExecutor parallelExecutor;
+    
+    /**
+     * 双写计划缓存（方法 -> 首个参数类型 -> 计划），没有参数或参数为 null 时类型为 Void.class
+     */
+    private final Map<Method, Map<Class<?>, DualWritePlan>> plans = new ConcurrentHashMap<>();
+    
+    /**
+     * 数据源缓存（Bean 名称 -> 数据源，空字符串为默认数据源）
+     */
+    private final Map<String, DataSource> dataSources = new ConcurrentHashMap<>();
+    
+    /**
+     * 目标库 JdbcTemplate 缓存
+     */
+    private final Map<DataSource, JdbcTemplate> jdbcTemplates = new ConcurrentHashMap<>();
+    
+    @PostConstruct
+    public void init() {
+        int poolSize = configManager.getParallelPoolSize();
+        AtomicInteger threadIndex = new AtomicInteger();
+        parallelExecutor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(configManager.getParallelQueueCapacity()), r -> {
+                    Thread thread = new Thread(r, "DualWrite-parallel-" + threadIndex.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        parallelExecutor.allowCoreThreadTimeOut(true);
+        metrics.registerExecutor(parallelExecutor);
+    }
+    
+    @PreDestroy
+    public void destroy() {
+        parallelExecutor.shutdown();
+        asyncExecutor.shutdown();
+    }
+    
     /**
      * 环绕通知：执行双写
      */
@@ -60,28 +132,12 @@ public class DualWriteAspect {
     public Object executeDualWrite(ProceedingJoinPoint joinPoint, DualWrite dualWrite) throws Throwable {
         log.debug("检测到 @DualWrite 注解，开始执行双写");
         
-        // 1. 检查双写开关（从配置中心）
+        // 1. 检查双写开关（从配置中心）：一次读取路由表，本次调用的所有判断使用同一份配置
         String[] tables = dualWrite.tables();
-        if (tables.length > 0) {
-            // 检查表级别的双写开关
-            boolean shouldDualWrite = false;
-            for (String table : tables) {
-                if (configManager.shouldDualWrite(table)) {
-                    shouldDualWrite = true;
-                    break;
-                }
-            }
-            
-            if (!shouldDualWrite) {
-                log.debug("表 {} 的双写功能已关闭，跳过双写", java.util.Arrays.toString(tables));
-                return joinPoint.proceed();
-            }
-        } else {
-            // 检查全局双写开关
-            if (!configManager.shouldDualWrite(null)) {
-                log.debug("全局双写功能已关闭，跳过双写");
-                return joinPoint.proceed();
-            }
+        int route = configManager.getRouting().route(tables);
+        if ((route & DualWriteConfigManager.RoutingTable.DUAL_WRITE) == 0) {
+            log.debug("表 {} 的双写功能已关闭，跳过双写", java.util.Arrays.toString(tables));
+            return joinPoint.proceed();
         }
         
         // 2. 获取数据源
@@ -95,27 +151,26 @@ public class DualWriteAspect {
         
         // 获取方法参数
         Object[] args = joinPoint.getArgs();
-        Method method = getMethod(joinPoint);
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        DualWritePlan plan = getPlan(method, args);
         
         try {
             // 根据写入顺序执行
             switch (dualWrite.order()) {
                 case SOURCE_FIRST:
-                    return executeSourceFirst(joinPoint, dualWrite, sourceDataSource, targetDataSource, method, args);
+                    return executeSourceFirst(joinPoint, dualWrite, route, targetDataSource, method, plan, args);
                 case TARGET_FIRST:
-                    return executeTargetFirst(joinPoint, dualWrite, sourceDataSource, targetDataSource, method, args);
+                    return executeTargetFirst(joinPoint, dualWrite, route, targetDataSource, method, plan, args);
                 case PARALLEL:
-                    return executeParallel(joinPoint, dualWrite, sourceDataSource, targetDataSource, method, args);
+                    return executeParallel(joinPoint, dualWrite, sourceDataSource, targetDataSource, method, plan,
+                            args);
                 default:
                     return joinPoint.proceed();
             }
         } catch (Exception e) {
+            // 源库写入只执行一次：源库异常原样抛出；目标库写入失败已在各写入方式中按 rollbackOnFailure 处理
             log.error("双写执行失败", e);
-            if (dualWrite.rollbackOnFailure()) {
-                throw e;
-            }
-            // 不回滚，只记录错误
-            return joinPoint.proceed();
+            throw e;
         }
     }
     
@@ -125,24 +180,14 @@ public class DualWriteAspect {
     private Object executeSourceFirst(
             ProceedingJoinPoint joinPoint,
             DualWrite dualWrite,
-            DataSource sourceDataSource,
+            int route,
             DataSource targetDataSource,
             Method method,
+            DualWritePlan plan,
             Object[] args) throws Throwable {
         
         // 1. 检查是否应该写源库
-        String[] tables = dualWrite.tables();
-        boolean shouldWriteSource = true;
-        if (tables.length > 0) {
-            for (String table : tables) {
-                if (!configManager.shouldWriteSource(table)) {
-                    shouldWriteSource = false;
-                    break;
-                }
-            }
-        } else {
-            shouldWriteSource = configManager.shouldWriteSource(null);
-        }
+        boolean shouldWriteSource = (route & DualWriteConfigManager.RoutingTable.WRITE_SOURCE) != 0;
         
         // 2. 执行原方法（写源库，如果开关开启）
         final Object[] resultHolder = new Object[1];
@@ -157,28 +202,28 @@ public class DualWriteAspect {
         }
         
         // 3. 检查是否应该写目标库
-        boolean shouldWriteTarget = true;
-        if (tables.length > 0) {
-            for (String table : tables) {
-                if (!configManager.shouldWriteTarget(table)) {
-                    shouldWriteTarget = false;
-                    break;
-                }
-            }
-        } else {
-            shouldWriteTarget = configManager.shouldWriteTarget(null);
-        }
+        boolean shouldWriteTarget = (route & DualWriteConfigManager.RoutingTable.WRITE_TARGET) != 0;
         
         // 4. 写目标库（如果开关开启）
         if (shouldWriteTarget) {
-            if (dualWrite.async()) {
+            if (dualWrite.outbox()) {
+                // 发件箱写入
+                try {
+                    appendToOutbox(dualWrite, plan, args);
+                } catch (RuntimeException e) {
+                    if (dualWrite.rollbackOnFailure()) {
+                        throw e;
+                    }
+                    log.error("写入发件箱失败，表: {}", plan.getTableName(), e);
+                }
+            } else if (dualWrite.async()) {
                 // 异步写入
                 CompletableFuture.runAsync(() -> {
-                    writeToTarget(dualWrite, targetDataSource, method, args, resultHolder[0]);
+                    writeToTarget(targetDataSource, plan, args);
                 }, asyncExecutor);
             } else {
                 // 同步写入
-                writeToTargetWithRetry(dualWrite, targetDataSource, method, args, resultHolder[0]);
+                writeToTargetWithRetry(dualWrite, targetDataSource, plan, args);
             }
         } else {
             log.debug("写目标库开关已关闭，跳过目标库写入");
@@ -187,6 +232,44 @@ public class DualWriteAspect {
         return resultHolder[0];
     }
     
+    /**
+     * 在调用线程上绑定目标库语句并追加到发件箱；存在事务时在事务提交后追加，回滚的写入不会进入发件箱
+     */
+    private void appendToOutbox(DualWrite dualWrite, DualWritePlan plan, Object[] args) {
+        if (plan.isEmpty()) {
+            log.warn("无法确定目标库写入语句，跳过发件箱写入");
+            return;
+        }
+        List<DualWritePlan.BoundStatement> statements;
+        if (plan.isBatch()) {
+            statements = new ArrayList<>();
+            for (DualWritePlan.BoundBatch batch : plan.bindBatch(args, configManager.getBatchChunkSize())) {
+                statements.addAll(batch.toStatements());
+            }
+        } else {
+            statements = Collections.singletonList(plan.bind(args));
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            for (DualWritePlan.BoundStatement statement : statements) {
+                outbox.append(dualWrite.target(), plan.getTableName(), statement);
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    for (DualWritePlan.BoundStatement statement : statements) {
+                        outbox.append(dualWrite.target(), plan.getTableName(), statement);
+                    }
+                } catch (RuntimeException e) {
+                    // 源库已提交，不再影响业务
+                    log.error("源库提交后写入发件箱失败，表: {}", plan.getTableName(), e);
+                }
+            }
+        });
+    }
+    
     /**
      * 获取默认返回值
      */
@@ -213,44 +296,24 @@ public class DualWriteAspect {
     private Object executeTargetFirst(
             ProceedingJoinPoint joinPoint,
             DualWrite dualWrite,
-            DataSource sourceDataSource,
+            int route,
             DataSource targetDataSource,
             Method method,
+            DualWritePlan plan,
             Object[] args) throws Throwable {
         
         // 1. 检查是否应该写目标库
-        String[] tables = dualWrite.tables();
-        boolean shouldWriteTarget = true;
-        if (tables.length > 0) {
-            for (String table : tables) {
-                if (!configManager.shouldWriteTarget(table)) {
-                    shouldWriteTarget = false;
-                    break;
-                }
-            }
-        } else {
-            shouldWriteTarget = configManager.shouldWriteTarget(null);
-        }
+        boolean shouldWriteTarget = (route & DualWriteConfigManager.RoutingTable.WRITE_TARGET) != 0;
         
         // 2. 先写目标库（如果开关开启）
         if (shouldWriteTarget) {
-            writeToTargetWithRetry(dualWrite, targetDataSource, method, args, null);
+            writeToTargetWithRetry(dualWrite, targetDataSource, plan, args);
         } else {
             log.debug("写目标库开关已关闭，跳过目标库写入");
         }
         
         // 3. 检查是否应该写源库
-        boolean shouldWriteSource = true;
-        if (tables.length > 0) {
-            for (String table : tables) {
-                if (!configManager.shouldWriteSource(table)) {
-                    shouldWriteSource = false;
-                    break;
-                }
-            }
-        } else {
-            shouldWriteSource = configManager.shouldWriteSource(null);
-        }
+        boolean shouldWriteSource = (route & DualWriteConfigManager.RoutingTable.WRITE_SOURCE) != 0;
         
         // 4. 执行原方法（写源库，如果开关开启）
         if (shouldWriteSource) {
@@ -262,7 +325,9 @@ public class DualWriteAspect {
     }
     
     /**
-     * 并行写入
+     * 并行写入：目标库写入在线程池中执行，同时在调用线程上写源库，之后等待目标库写入（超时可配置）
+     * 目标库事务等源库写入返回后才提交，源库写入抛出异常时回滚；线程池拒绝时目标库写入在源库写入之后由调用线程执行
+     * 在调用方事务中时源库写入返回不代表已提交，改为事务提交后再写目标库（见 {@link #executeParallelAfterCommit}）
      */
     private Object executeParallel(
             ProceedingJoinPoint joinPoint,
@@ -270,697 +335,389 @@ public class DualWriteAspect {
             DataSource sourceDataSource,
             DataSource targetDataSource,
             Method method,
+            DualWritePlan plan,
             Object[] args) throws Throwable {
         
-        // 并行执行
-        CompletableFuture<Object> sourceFuture = CompletableFuture.supplyAsync(() -> {
-            try {
-                return joinPoint.proceed();
-            } catch (Throwable e) {
-                throw new RuntimeException(e);
-            }
-        });
-        
-        CompletableFuture<Void> targetFuture = CompletableFuture.runAsync(() -> {
-            writeToTargetWithRetry(dualWrite, targetDataSource, method, args, null);
-        });
-        
-        // 等待两个都完成
-        CompletableFuture.allOf(sourceFuture, targetFuture).join();
-        
-        return sourceFuture.get();
-    }
-    
-    /**
-     * 写入目标库（带重试）
-     */
-    private void writeToTargetWithRetry(
-            DualWrite dualWrite,
-            DataSource targetDataSource,
-            Method method,
-            Object[] args,
-            Object result) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            return executeParallelAfterCommit(joinPoint, dualWrite, targetDataSource, plan, args);
+        }
         
-        int retryTimes = dualWrite.retryTimes();
-        long retryInterval = dualWrite.retryInterval();
+        String tableName = plan.getTableName();
+        long start = System.nanoTime();
         
-        for (int i = 0; i <= retryTimes; i++) {
+        // 1. 目标库写入提交到线程池，写入后等待源库写入结果再提交或回滚
+        CompletableFuture<Boolean> sourceOutcome = new CompletableFuture<>();
+        Future<?> targetFuture = null;
+        boolean rejected = false;
+        if (!plan.isEmpty()) {
             try {
-                writeToTarget(dualWrite, targetDataSource, method, args, result);
-                return; // 成功，退出
-            } catch (Exception e) {
-                if (i == retryTimes) {
-                    log.error("写入目标库失败，已重试 {} 次", retryTimes, e);
-                    if (dualWrite.rollbackOnFailure()) {
-                        throw new RuntimeException("写入目标库失败", e);
-                    }
-                } else {
-                    log.warn("写入目标库失败，{}ms 后重试，剩余重试次数: {}", retryInterval, retryTimes - i, e);
-                    try {
-                        Thread.sleep(retryInterval);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        throw new RuntimeException("重试被中断", ie);
-                    }
-                }
+                targetFuture = parallelExecutor.submit(() -> {
+                    writeToTargetAfterSource(dualWrite, targetDataSource, plan, args, sourceOutcome);
+                    return null;
+                });
+            } catch (RejectedExecutionException e) {
+                rejected = true;
+                metrics.recordRejected(tableName);
+                log.warn("并行双写线程池已满，目标库写入改在调用线程执行，表: {}", tableName);
             }
         }
+        
+        // 2. 源库写入留在调用线程，保持调用方的事务绑定
+        long sourceStart = System.nanoTime();
+        Object result;
+        boolean sourceSucceeded = false;
+        try {
+            result = joinPoint.proceed();
+            sourceSucceeded = true;
+        } finally {
+            metrics.recordSource(tableName, System.nanoTime() - sourceStart);
+            sourceOutcome.complete(sourceSucceeded);
+        }
+        long sourceElapsed = System.nanoTime() - sourceStart;
+        
+        // 3. 等待目标库写入
+        if (rejected) {
+            timedWriteToTarget(dualWrite, targetDataSource, plan, args);
+        } else if (targetFuture != null) {
+            awaitTarget(dualWrite, targetFuture, tableName, start);
+        }
+        metrics.recordOverhead(tableName, System.nanoTime() - start - sourceElapsed);
+        return result;
     }
     
     /**
-     * 写入目标库
+     * 调用方事务中的并行写入：源库写入在调用线程上执行，事务提交后目标库写入提交到线程池（拒绝时在提交线程上执行），
+     * 事务回滚时不写目标库。目标库写入失败时源库已提交，只记录错误，rollbackOnFailure 不生效
      */
-    private void writeToTarget(
+    private Object executeParallelAfterCommit(
+            ProceedingJoinPoint joinPoint,
             DualWrite dualWrite,
             DataSource targetDataSource,
-            Method method,
-            Object[] args,
-            Object result) {
+            DualWritePlan plan,
+            Object[] args) throws Throwable {
         
+        String tableName = plan.getTableName();
+        long sourceStart = System.nanoTime();
+        Object result;
         try {
-            JdbcTemplate jdbcTemplate = new JdbcTemplate(targetDataSource);
-            
-            // 解析 SQL 语句（从方法名或参数推断）
-            String sql = parseSqlFromMethod(method, args, result);
-            
-            if (sql != null) {
-                // 执行 SQL
-                executeSql(jdbcTemplate, sql, args);
-                log.debug("成功写入目标库: {}", sql);
-            } else {
-                log.warn("无法解析 SQL，跳过双写");
-            }
-            
-        } catch (Exception e) {
-            log.error("写入目标库失败", e);
-            throw new RuntimeException("写入目标库失败", e);
-        }
-    }
-    
-    /**
-     * 从方法解析 SQL
-     * 支持 MyBatis Mapper、JPA Repository、实体类注解等多种方式
-     */
-    private String parseSqlFromMethod(Method method, Object[] args, Object result) {
-        String methodName = method.getName().toLowerCase();
-        
-        // 1. 尝试从 JPA Repository 解析
-        String sql = parseSqlFromJpa(method, args, result);
-        if (sql != null) {
-            return sql;
+            result = joinPoint.proceed();
+        } finally {
+            metrics.recordSource(tableName, System.nanoTime() - sourceStart);
         }
-        
-        // 2. 根据方法名推断 SQL 类型
-        if (methodName.contains("insert") || methodName.contains("save") || methodName.contains("add")) {
-            return parseInsertSql(method, args);
-        } else if (methodName.contains("update") || methodName.contains("modify")) {
-            return parseUpdateSql(method, args);
-        } else if (methodName.contains("delete") || methodName.contains("remove")) {
-            return parseDeleteSql(method, args);
+        if (plan.isEmpty()) {
+            return result;
         }
         
-        return null;
-    }
-    
-    /**
-     * 从 JPA Repository 解析 SQL
-     */
-    private String parseSqlFromJpa(Method method, Object[] args, Object result) {
-        try {
-            // 检查是否是 JPA Repository 方法
-            Class<?> declaringClass = method.getDeclaringClass();
-            
-            // 检查是否实现了 JpaRepository 或类似接口
-            boolean isJpaRepository = false;
-            for (Class<?> iface : declaringClass.getInterfaces()) {
-                String ifaceName = iface.getName();
-                if (ifaceName.contains("Repository") || 
-                    ifaceName.contains("JpaRepository") ||
-                    ifaceName.contains("CrudRepository")) {
-                    isJpaRepository = true;
-                    break;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                Runnable write = () -> {
+                    try {
+                        timedWriteToTarget(dualWrite, targetDataSource, plan, args);
+                    } catch (RuntimeException e) {
+                        log.error("源库提交后写入目标库失败，表: {}", tableName, e);
+                    }
+                };
+                try {
+                    parallelExecutor.execute(write);
+                } catch (RejectedExecutionException e) {
+                    metrics.recordRejected(tableName);
+                    write.run();
                 }
             }
-            
-            if (!isJpaRepository) {
-                return null;
-            }
-            
-            // 根据 JPA 方法名推断 SQL
-            String methodName = method.getName().toLowerCase();
-            Object entity = args.length > 0 ? args[0] : null;
-            
-            if (entity == null) {
-                return null;
-            }
-            
-            // 获取实体类信息
-            Class<?> entityClass = entity.getClass();
-            String tableName = getTableName(entityClass);
-            if (tableName == null) {
-                return null;
-            }
-            
-            // 根据方法名构建 SQL
-            if (methodName.contains("save") || methodName.contains("insert")) {
-                return parseInsertSqlFromEntity(entity);
-            } else if (methodName.contains("update") || methodName.contains("modify")) {
-                return parseUpdateSqlFromEntity(entity);
-            } else if (methodName.contains("delete") || methodName.contains("remove")) {
-                return parseDeleteSqlFromEntity(entity);
-            }
-            
-        } catch (Exception e) {
-            log.debug("从 JPA Repository 解析 SQL 失败", e);
-        }
-        
-        return null;
+        });
+        return result;
     }
     
     /**
-     * 解析 INSERT SQL
+     * 等待目标库写入完成，超时从提交时开始计算
      */
-    private String parseInsertSql(Method method, Object[] args) {
-        // 1. 尝试从 MyBatis Mapper 解析
-        String sql = parseSqlFromMyBatis(method, args, "INSERT");
-        if (sql != null) {
-            return sql;
-        }
-        
-        // 2. 尝试从实体类注解解析
-        if (args.length > 0 && args[0] != null) {
-            sql = parseInsertSqlFromEntity(args[0]);
-            if (sql != null) {
-                return sql;
+    private void awaitTarget(DualWrite dualWrite, Future<?> targetFuture, String tableName, long start) {
+        long timeoutMillis = configManager.getParallelTimeoutMillis();
+        try {
+            if (timeoutMillis > 0) {
+                long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis) - (System.nanoTime() - start);
+                targetFuture.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+            } else {
+                targetFuture.get();
             }
-        }
-        
-        // 3. 降级方案：根据方法参数推断
-        return buildInsertSqlFromArgs(method, args);
-    }
-    
-    /**
-     * 解析 UPDATE SQL
-     */
-    private String parseUpdateSql(Method method, Object[] args) {
-        // 1. 尝试从 MyBatis Mapper 解析
-        String sql = parseSqlFromMyBatis(method, args, "UPDATE");
-        if (sql != null) {
-            return sql;
-        }
-        
-        // 2. 尝试从实体类注解解析
-        if (args.length > 0 && args[0] != null) {
-            sql = parseUpdateSqlFromEntity(args[0]);
-            if (sql != null) {
-                return sql;
+        } catch (TimeoutException e) {
+            targetFuture.cancel(true);
+            metrics.recordTimeout(tableName);
+            log.error("等待目标库写入超时 {}ms，表: {}", timeoutMillis, tableName);
+            if (dualWrite.rollbackOnFailure()) {
+                throw new RuntimeException("写入目标库超时: " + tableName, e);
             }
-        }
-        
-        // 3. 降级方案：根据方法参数推断
-        return buildUpdateSqlFromArgs(method, args);
-    }
-    
-    /**
-     * 解析 DELETE SQL
-     */
-    private String parseDeleteSql(Method method, Object[] args) {
-        // 1. 尝试从 MyBatis Mapper 解析
-        String sql = parseSqlFromMyBatis(method, args, "DELETE");
-        if (sql != null) {
-            return sql;
-        }
-        
-        // 2. 尝试从实体类注解解析
-        if (args.length > 0 && args[0] != null) {
-            sql = parseDeleteSqlFromEntity(args[0]);
-            if (sql != null) {
-                return sql;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (!dualWrite.rollbackOnFailure()) {
+                // 源库已写入，不回滚时只记录错误
+                log.error("写入目标库失败，表: {}", tableName, cause);
+                return;
             }
+            throw cause instanceof RuntimeException ? (RuntimeException) cause
+                    : new RuntimeException("写入目标库失败", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            targetFuture.cancel(true);
+            throw new RuntimeException("等待目标库写入被中断", e);
         }
-        
-        // 3. 降级方案：根据方法参数推断
-        return buildDeleteSqlFromArgs(method, args);
     }
     
     /**
-     * 从 MyBatis Mapper 解析 SQL
+     * 并行模式的目标库写入（调用方不在事务中）：在目标库事务中执行语句（带重试），等源库写入返回后提交，
+     * 源库写入抛出异常时回滚。源库写入返回即已提交，目标库不会留下源库中不存在的记录；
+     * 调用方事务中的写入不走这里（源库返回后仍可能回滚，见 {@link #executeParallelAfterCommit}）。
+     * 记录的目标库耗时不含等待源库的时间
+     *
+     * @param sourceOutcome 源库写入是否成功（由调用线程在源库写入返回或抛出异常后完成）
      */
-    private String parseSqlFromMyBatis(Method method, Object[] args, String sqlType) {
-        try {
-            // 尝试获取 MyBatis SqlSessionFactory
-            if (applicationContext != null) {
+    private void writeToTargetAfterSource(
+            DualWrite dualWrite,
+            DataSource targetDataSource,
+            DualWritePlan plan,
+            Object[] args,
+            CompletableFuture<Boolean> sourceOutcome) throws Exception {
+        long start = System.nanoTime();
+        long waited = 0;
+        boolean written = false;
+        try (Connection conn = targetDataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                JdbcTemplate jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(conn, true));
+                written = writeToTargetWithRetry(dualWrite, () -> {
+                    try {
+                        writeToTarget(jdbcTemplate, plan, args);
+                    } catch (RuntimeException e) {
+                        // 重试前撤销本次已执行的语句
+                        rollbackQuietly(conn);
+                        throw e;
+                    }
+                });
+                
+                long waitStart = System.nanoTime();
+                boolean sourceSucceeded = sourceOutcome.get();
+                waited = System.nanoTime() - waitStart;
+                if (!written || !sourceSucceeded) {
+                    conn.rollback();
+                    if (written) {
+                        log.warn("源库写入失败，回滚目标库写入，表: {}", plan.getTableName());
+                    }
+                    return;
+                }
                 try {
-                    Class<?> sqlSessionFactoryClass = Class.forName("org.apache.ibatis.session.SqlSessionFactory");
-                    Object sqlSessionFactory = applicationContext.getBean(sqlSessionFactoryClass);
-                    
-                    // 获取 Mapper 接口
-                    Class<?> mapperClass = method.getDeclaringClass();
-                    // mapper 用于后续获取 SQL，这里先获取但不使用（避免警告）
-                    @SuppressWarnings("unused")
-                    Object mapper = applicationContext.getBean(mapperClass);
-                    
-                    // 通过 MyBatis 的 Configuration 获取 SQL
-                    Object configuration = sqlSessionFactoryClass.getMethod("getConfiguration").invoke(sqlSessionFactory);
-                    Class<?> configurationClass = Class.forName("org.apache.ibatis.session.Configuration");
-                    
-                    // 获取 MappedStatement
-                    String statementId = mapperClass.getName() + "." + method.getName();
-                    Object mappedStatement = configurationClass.getMethod("getMappedStatement", String.class)
-                            .invoke(configuration, statementId);
-                    
-                    if (mappedStatement != null) {
-                        Class<?> mappedStatementClass = Class.forName("org.apache.ibatis.mapping.MappedStatement");
-                        Object sqlSource = mappedStatementClass.getMethod("getSqlSource").invoke(mappedStatement);
-                        
-                        // 获取 BoundSql
-                        Class<?> sqlSourceClass = Class.forName("org.apache.ibatis.mapping.SqlSource");
-                        Object boundSql = sqlSourceClass.getMethod("getBoundSql", Object.class)
-                                .invoke(sqlSource, args.length > 0 ? args[0] : null);
-                        
-                        Class<?> boundSqlClass = Class.forName("org.apache.ibatis.mapping.BoundSql");
-                        String sql = (String) boundSqlClass.getMethod("getSql").invoke(boundSql);
-                        
-                        return sql;
+                    conn.commit();
+                } catch (SQLException e) {
+                    written = false;
+                    log.error("提交目标库写入失败，表: {}", plan.getTableName(), e);
+                    if (dualWrite.rollbackOnFailure()) {
+                        throw new RuntimeException("提交目标库写入失败: " + plan.getTableName(), e);
                     }
-                } catch (ClassNotFoundException e) {
-                    // MyBatis 未配置
-                } catch (Exception e) {
-                    log.debug("从 MyBatis 解析 SQL 失败", e);
                 }
+            } catch (Exception e) {
+                // 等待源库时超时取消（中断）或写入失败：连接归还前回滚
+                rollbackQuietly(conn);
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
             }
-        } catch (Exception e) {
-            log.debug("解析 MyBatis SQL 异常", e);
-        }
-        
-        return null;
-    }
-    
-    /**
-     * 从实体类注解解析 INSERT SQL
-     */
-    private String parseInsertSqlFromEntity(Object entity) {
-        try {
-            Class<?> entityClass = entity.getClass();
-            
-            // 获取表名（@Table 注解或类名）
-            String tableName = getTableName(entityClass);
-            if (tableName == null) {
-                return null;
-            }
-            
-            // 获取所有字段
-            List<FieldInfo> fields = getEntityFields(entityClass, entity);
-            if (fields.isEmpty()) {
-                return null;
-            }
-            
-            // 构建 INSERT SQL
-            StringBuilder sql = new StringBuilder("INSERT INTO ");
-            sql.append(tableName).append(" (");
-            
-            String columns = fields.stream()
-                    .map(FieldInfo::getColumnName)
-                    .collect(java.util.stream.Collectors.joining(", "));
-            sql.append(columns).append(") VALUES (");
-            
-            String placeholders = fields.stream()
-                    .map(f -> "?")
-                    .collect(java.util.stream.Collectors.joining(", "));
-            sql.append(placeholders).append(")");
-            
-            return sql.toString();
-        } catch (Exception e) {
-            log.debug("从实体类解析 INSERT SQL 失败", e);
-            return null;
+        } finally {
+            metrics.recordTarget(plan.getTableName(), System.nanoTime() - start - waited, written);
         }
     }
     
-    /**
-     * 从实体类注解解析 UPDATE SQL
-     */
-    private String parseUpdateSqlFromEntity(Object entity) {
+    private void rollbackQuietly(Connection conn) {
         try {
-            Class<?> entityClass = entity.getClass();
-            String tableName = getTableName(entityClass);
-            if (tableName == null) {
-                return null;
-            }
-            
-            List<FieldInfo> fields = getEntityFields(entityClass, entity);
-            List<String> primaryKeys = getPrimaryKeys(entityClass);
-            
-            if (primaryKeys.isEmpty()) {
-                log.warn("实体类 {} 没有主键，无法构建 UPDATE SQL", entityClass.getName());
-                return null;
-            }
-            
-            // 构建 UPDATE SQL
-            StringBuilder sql = new StringBuilder("UPDATE ");
-            sql.append(tableName).append(" SET ");
-            
-            String setClause = fields.stream()
-                    .filter(f -> !primaryKeys.contains(f.getColumnName()))
-                    .map(f -> f.getColumnName() + " = ?")
-                    .collect(java.util.stream.Collectors.joining(", "));
-            sql.append(setClause).append(" WHERE ");
-            
-            String whereClause = primaryKeys.stream()
-                    .map(key -> key + " = ?")
-                    .collect(java.util.stream.Collectors.joining(" AND "));
-            sql.append(whereClause);
-            
-            return sql.toString();
-        } catch (Exception e) {
-            log.debug("从实体类解析 UPDATE SQL 失败", e);
-            return null;
+            conn.rollback();
+        } catch (SQLException e) {
+            log.warn("回滚目标库写入失败", e);
         }
     }
     
     /**
-     * 从实体类注解解析 DELETE SQL
+     * 写入目标库（带重试）并记录耗时
      */
-    private String parseDeleteSqlFromEntity(Object entity) {
+    private void timedWriteToTarget(
+            DualWrite dualWrite,
+            DataSource targetDataSource,
+            DualWritePlan plan,
+            Object[] args) {
+        long start = System.nanoTime();
+        boolean success = false;
         try {
-            Class<?> entityClass = entity.getClass();
-            String tableName = getTableName(entityClass);
-            if (tableName == null) {
-                return null;
-            }
-            
-            List<String> primaryKeys = getPrimaryKeys(entityClass);
-            if (primaryKeys.isEmpty()) {
-                log.warn("实体类 {} 没有主键，无法构建 DELETE SQL", entityClass.getName());
-                return null;
-            }
-            
-            // 构建 DELETE SQL
-            StringBuilder sql = new StringBuilder("DELETE FROM ");
-            sql.append(tableName).append(" WHERE ");
-            
-            String whereClause = primaryKeys.stream()
-                    .map(key -> key + " = ?")
-                    .collect(java.util.stream.Collectors.joining(" AND "));
-            sql.append(whereClause);
-            
-            return sql.toString();
-        } catch (Exception e) {
-            log.debug("从实体类解析 DELETE SQL 失败", e);
-            return null;
-        }
-    }
-    
-    /**
-     * 从参数构建 INSERT SQL（降级方案）
-     */
-    private String buildInsertSqlFromArgs(Method method, Object[] args) {
-        // 简化实现：根据第一个参数推断表名
-        if (args.length > 0 && args[0] != null) {
-            String tableName = inferTableName(args[0].getClass());
-            if (tableName != null) {
-                // 简化：使用 REPLACE INTO（兼容 INSERT）
-                return "REPLACE INTO " + tableName + " VALUES (?)";
-            }
+            success = writeToTargetWithRetry(dualWrite, targetDataSource, plan, args);
+        } finally {
+            metrics.recordTarget(plan.getTableName(), System.nanoTime() - start, success);
         }
-        return null;
     }
     
     /**
-     * 从参数构建 UPDATE SQL（降级方案）
-     */
-    private String buildUpdateSqlFromArgs(Method method, Object[] args) {
-        if (args.length > 0 && args[0] != null) {
-            String tableName = inferTableName(args[0].getClass());
-            if (tableName != null) {
-                return "UPDATE " + tableName + " SET ? = ? WHERE id = ?";
-            }
-        }
-        return null;
-    }
-    
-    /**
-     * 从参数构建 DELETE SQL（降级方案）
+     * 写入目标库（带重试）
+     *
+     * @return 是否写入成功（重试后仍失败且不回滚时返回 false）
      */
-    private String buildDeleteSqlFromArgs(Method method, Object[] args) {
-        if (args.length > 0) {
-            // 假设第一个参数是 ID
-            String tableName = inferTableName(method.getDeclaringClass());
-            if (tableName != null) {
-                return "DELETE FROM " + tableName + " WHERE id = ?";
-            }
-        }
-        return null;
+    private boolean writeToTargetWithRetry(
+            DualWrite dualWrite,
+            DataSource targetDataSource,
+            DualWritePlan plan,
+            Object[] args) {
+        return writeToTargetWithRetry(dualWrite, () -> writeToTarget(targetDataSource, plan, args));
     }
     
     /**
-     * 获取表名
+     * 执行目标库写入（带重试）
+     *
+     * @return 是否写入成功（重试后仍失败且不回滚时返回 false）
      */
-    private String getTableName(Class<?> entityClass) {
-        // 尝试 @Table 注解
-        try {
-            Class<?> tableAnnotation = Class.forName("javax.persistence.Table");
-            @SuppressWarnings("unchecked")
-            Class<? extends java.lang.annotation.Annotation> annotationClass = 
-                    (Class<? extends java.lang.annotation.Annotation>) tableAnnotation;
-            java.lang.annotation.Annotation annotation = entityClass.getAnnotation(annotationClass);
-            if (annotation != null) {
-                String name = (String) tableAnnotation.getMethod("name").invoke(annotation);
-                if (name != null && !name.isEmpty()) {
-                    return name;
+    private boolean writeToTargetWithRetry(DualWrite dualWrite, Runnable write) {
+        int retryTimes = dualWrite.retryTimes();
+        long retryInterval = dualWrite.retryInterval();
+        
+        for (int i = 0; i <= retryTimes; i++) {
+            try {
+                write.run();
+                return true; // 成功，退出
+            } catch (Exception e) {
+                if (i == retryTimes) {
+                    log.error("写入目标库失败，已重试 {} 次", retryTimes, e);
+                    if (dualWrite.rollbackOnFailure()) {
+                        throw new RuntimeException("写入目标库失败", e);
+                    }
+                } else {
+                    log.warn("写入目标库失败，{}ms 后重试，剩余重试次数: {}", retryInterval, retryTimes - i, e);
+                    try {
+                        Thread.sleep(retryInterval);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException("重试被中断", ie);
+                    }
                 }
             }
-        } catch (Exception e) {
-            // 忽略
         }
-        
-        // 降级：从类名推断
-        return inferTableName(entityClass);
-    }
-    
-    /**
-     * 推断表名
-     */
-    private String inferTableName(Class<?> clazz) {
-        String className = clazz.getSimpleName();
-        // 移除 DO、Entity 等后缀
-        className = className.replaceAll("(DO|Entity|Model)$", "");
-        // 驼峰转下划线
-        return camelToUnderscore(className);
+        return false;
     }
     
     /**
-     * 驼峰转下划线
+     * 写入目标库
      */
-    private String camelToUnderscore(String str) {
-        return str.replaceAll("([a-z])([A-Z])", "$1_$2").toLowerCase();
+    private void writeToTarget(DataSource targetDataSource, DualWritePlan plan, Object[] args) {
+        writeToTarget(jdbcTemplates.computeIfAbsent(targetDataSource, JdbcTemplate::new), plan, args);
     }
     
     /**
-     * 获取实体类字段信息
+     * 使用指定的 JdbcTemplate 写入目标库（并行模式下绑定到目标库事务的连接）
      */
-    private List<FieldInfo> getEntityFields(Class<?> entityClass, Object entity) {
-        List<FieldInfo> fields = new java.util.ArrayList<>();
+    private void writeToTarget(JdbcTemplate jdbcTemplate, DualWritePlan plan, Object[] args) {
+        if (plan.isEmpty()) {
+            log.debug("无法解析 SQL，跳过双写");
+            return;
+        }
         
-        // 遍历所有字段
-        Class<?> currentClass = entityClass;
-        while (currentClass != null && currentClass != Object.class) {
-            for (java.lang.reflect.Field field : currentClass.getDeclaredFields()) {
-                // 跳过静态字段和序列化字段
-                if (java.lang.reflect.Modifier.isStatic(field.getModifiers()) ||
-                    field.getName().equals("serialVersionUID")) {
-                    continue;
-                }
-                
-                try {
-                    field.setAccessible(true);
-                    Object value = field.get(entity);
-                    
-                    // 获取列名
-                    String columnName = getColumnName(field);
-                    if (columnName != null) {
-                        fields.add(new FieldInfo(field.getName(), columnName, value));
-                    }
-                } catch (Exception e) {
-                    log.debug("获取字段值失败: {}", field.getName(), e);
-                }
-            }
-            currentClass = currentClass.getSuperclass();
+        if (plan.isBatch()) {
+            writeBatchToTarget(jdbcTemplate, plan, args);
+            return;
         }
         
-        return fields;
-    }
-    
-    /**
-     * 获取字段对应的列名
-     */
-    private String getColumnName(java.lang.reflect.Field field) {
-        // 尝试 @Column 注解
+        DualWritePlan.BoundStatement statement = null;
         try {
-            Class<?> columnAnnotation = Class.forName("javax.persistence.Column");
-            @SuppressWarnings("unchecked")
-            Class<? extends java.lang.annotation.Annotation> annotationClass = 
-                    (Class<? extends java.lang.annotation.Annotation>) columnAnnotation;
-            java.lang.annotation.Annotation annotation = field.getAnnotation(annotationClass);
-            if (annotation != null) {
-                String name = (String) columnAnnotation.getMethod("name").invoke(annotation);
-                if (name != null && !name.isEmpty()) {
-                    return name;
-                }
-            }
+            statement = plan.bind(args);
+            jdbcTemplate.update(statement.getSql(), statement.getParams());
+            log.debug("成功写入目标库: {}", statement.getSql());
         } catch (Exception e) {
-            // 忽略
+            String sql = statement == null ? null : statement.getSql();
+            log.error("写入目标库失败: {}", sql, e);
+            throw new RuntimeException("写入目标库失败: " + sql, e);
         }
-        
-        // 降级：使用字段名（驼峰转下划线）
-        return camelToUnderscore(field.getName());
     }
     
     /**
-     * 获取主键列表
+     * 批量写入目标库：集合参数按配置的批大小拆分，每批一次 JDBC 批处理（或一条多行语句）
      */
-    private List<String> getPrimaryKeys(Class<?> entityClass) {
-        List<String> primaryKeys = new java.util.ArrayList<>();
-        
-        // 遍历字段查找 @Id 注解
-        Class<?> currentClass = entityClass;
-        while (currentClass != null && currentClass != Object.class) {
-            for (java.lang.reflect.Field field : currentClass.getDeclaredFields()) {
-                try {
-                    Class<?> idAnnotation = Class.forName("javax.persistence.Id");
-                    @SuppressWarnings("unchecked")
-                    Class<? extends java.lang.annotation.Annotation> annotationClass = 
-                            (Class<? extends java.lang.annotation.Annotation>) idAnnotation;
-                    if (field.isAnnotationPresent(annotationClass)) {
-                        String columnName = getColumnName(field);
-                        if (columnName != null) {
-                            primaryKeys.add(columnName);
-                        } else {
-                            primaryKeys.add(camelToUnderscore(field.getName()));
-                        }
-                    }
-                } catch (Exception e) {
-                    // 忽略
+    private void writeBatchToTarget(JdbcTemplate jdbcTemplate, DualWritePlan plan, Object[] args) {
+        String sql = null;
+        try {
+            List<DualWritePlan.BoundBatch> batches = plan.bindBatch(args, configManager.getBatchChunkSize());
+            for (DualWritePlan.BoundBatch batch : batches) {
+                sql = batch.getSql();
+                if (batch.getRows().size() == 1) {
+                    jdbcTemplate.update(sql, batch.getRows().get(0));
+                } else {
+                    jdbcTemplate.batchUpdate(sql, batch.getRows());
                 }
             }
-            currentClass = currentClass.getSuperclass();
-        }
-        
-        // 如果没有找到 @Id，默认使用 id 字段
-        if (primaryKeys.isEmpty()) {
-            primaryKeys.add("id");
+            log.debug("成功批量写入目标库，表: {}, 批次数: {}", plan.getTableName(), batches.size());
+        } catch (Exception e) {
+            log.error("批量写入目标库失败: {}", sql, e);
+            throw new RuntimeException("批量写入目标库失败: " + sql, e);
         }
-        
-        return primaryKeys;
     }
     
     /**
-     * 字段信息
+     * 获取双写计划，首次调用时编译
      */
-    private static class FieldInfo {
-        private String fieldName;
-        private String columnName;
-        private Object value;
-        
-        public FieldInfo(String fieldName, String columnName, Object value) {
-            this.fieldName = fieldName;
-            this.columnName = columnName;
-            this.value = value;
+    private DualWritePlan getPlan(Method method, Object[] args) {
+        Class<?> argClass = args.length > 0 && args[0] != null ? args[0].getClass() : Void.class;
+        Map<Class<?>, DualWritePlan> methodPlans = plans.get(method);
+        if (methodPlans == null) {
+            methodPlans = plans.computeIfAbsent(method, key -> new ConcurrentHashMap<>());
         }
-        
-        @SuppressWarnings("unused")
-        public String getFieldName() { return fieldName; }
-        public String getColumnName() { return columnName; }
-        public Object getValue() { return value; }
+        DualWritePlan plan = methodPlans.get(argClass);
+        if (plan == null) {
+            plan = methodPlans.computeIfAbsent(argClass, key -> compilePlan(method, key));
+        }
+        return plan;
     }
     
-    /**
-     * 执行 SQL
-     */
-    private void executeSql(JdbcTemplate jdbcTemplate, String sql, Object[] args) {
+    private DualWritePlan compilePlan(Method method, Class<?> argClass) {
         try {
-            if (sql == null || sql.trim().isEmpty()) {
-                log.warn("SQL 为空，跳过执行");
-                return;
-            }
-            
-            // 根据 SQL 类型执行
-            String sqlUpper = sql.trim().toUpperCase();
-            if (sqlUpper.startsWith("INSERT") || sqlUpper.startsWith("REPLACE")) {
-                // INSERT 操作
-                if (args.length > 0 && args[0] != null) {
-                    // 如果是实体对象，提取字段值
-                    Object[] params = extractParamsFromEntity(args[0], sql);
-                    jdbcTemplate.update(sql, params);
-                } else {
-                    jdbcTemplate.update(sql, args);
-                }
-            } else if (sqlUpper.startsWith("UPDATE")) {
-                // UPDATE 操作
-                if (args.length > 0 && args[0] != null) {
-                    Object[] params = extractParamsFromEntity(args[0], sql);
-                    jdbcTemplate.update(sql, params);
-                } else {
-                    jdbcTemplate.update(sql, args);
-                }
-            } else if (sqlUpper.startsWith("DELETE")) {
-                // DELETE 操作
-                jdbcTemplate.update(sql, args);
+            DualWritePlan plan = DualWritePlan.compile(method, argClass == Void.class ? null : argClass,
+                    getSqlSessionFactory());
+            if (plan.isEmpty()) {
+                log.warn("无法解析 SQL，方法 {} 的双写将被跳过", method);
             } else {
-                // 其他操作
-                jdbcTemplate.update(sql, args);
+                log.info("编译双写计划: {}, 参数类型: {}, 目标表: {}", method, argClass.getName(), plan.getTableName());
             }
-            
-            log.debug("成功执行 SQL: {}", sql);
+            return plan;
         } catch (Exception e) {
-            log.error("执行 SQL 失败: {}", sql, e);
-            throw new RuntimeException("执行 SQL 失败: " + sql, e);
+            log.warn("编译双写计划失败，方法 {} 的双写将被跳过", method, e);
+            return DualWritePlan.NONE;
         }
     }
     
     /**
-     * 从实体对象提取参数
+     * 获取 MyBatis SqlSessionFactory，未配置 MyBatis 时返回 null
      */
-    private Object[] extractParamsFromEntity(Object entity, String sql) {
+    private Object getSqlSessionFactory() {
         try {
-            Class<?> entityClass = entity.getClass();
-            List<FieldInfo> fields = getEntityFields(entityClass, entity);
-            
-            // 根据 SQL 中的占位符数量提取参数
-            int placeholderCount = countPlaceholders(sql);
-            Object[] params = new Object[placeholderCount];
-            
-            int index = 0;
-            for (FieldInfo field : fields) {
-                if (index < placeholderCount) {
-                    params[index++] = field.getValue();
-                }
-            }
-            
-            return params;
+            Class<?> sqlSessionFactoryClass = Class.forName("org.apache.ibatis.session.SqlSessionFactory");
+            return applicationContext.getBean(sqlSessionFactoryClass);
+        } catch (ClassNotFoundException e) {
+            // MyBatis 未配置
+            return null;
         } catch (Exception e) {
-            log.error("从实体对象提取参数失败", e);
-            return new Object[0];
+            log.debug("获取 MyBatis SqlSessionFactory 失败", e);
+            return null;
         }
     }
     
     /**
-     * 统计 SQL 中的占位符数量
+     * 获取数据源
      */
-    private int countPlaceholders(String sql) {
-        int count = 0;
-        for (int i = 0; i < sql.length(); i++) {
-            if (sql.charAt(i) == '?') {
-                count++;
+    private DataSource getDataSource(String beanName, String type) {
+        String key = beanName == null ? "" : beanName;
+        DataSource dataSource = dataSources.get(key);
+        if (dataSource == null) {
+            dataSource = lookupDataSource(key, type);
+            if (dataSource != null) {
+                dataSources.put(key, dataSource);
             }
         }
-        return count;
+        return dataSource;
     }
     
-    /**
-     * 获取数据源
-     */
-    private DataSource getDataSource(String beanName, String type) {
-        if (beanName == null || beanName.isEmpty()) {
+    private DataSource lookupDataSource(String beanName, String type) {
+        if (beanName.isEmpty()) {
             // 使用默认数据源
             try {
                 return applicationContext.getBean(DataSource.class);
@@ -977,18 +734,4 @@ public class DualWriteAspect {
             return null;
         }
     }
-    
-    /**
-     * 获取方法
-     */
-    private Method getMethod(ProceedingJoinPoint joinPoint) throws NoSuchMethodException {
-        String methodName = joinPoint.getSignature().getName();
-        Class<?> targetClass = joinPoint.getTarget().getClass();
-        Class<?>[] parameterTypes = new Class[joinPoint.getArgs().length];
-        for (int i = 0; i < joinPoint.getArgs().length; i++) {
-            parameterTypes[i] = joinPoint.getArgs()[i].getClass();
-        }
-        return targetClass.getMethod(methodName, parameterTypes);
-    }
 }
-
@@ -7,19 +7,22 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 双写配置管理器
  * 基于配置中心动态控制双写功能
- * 
+ *
  * 功能特性：
  * 1. 从配置中心读取双写开关
  * 2. 支持按表动态开启/关闭双写
  * 3. 支持写源库/写目标库的独立控制
- * 4. 配置变更自动生效
+ * 4. 配置变更自动生效：全局开关和表级别开关组成不可变的路由表（见 {@link RoutingTable}），
+ *    变更时整体替换，读取方只做一次 volatile 读，不会看到加载了一半的配置
+ * 5. PARALLEL 模式目标库写入线程池大小、队列容量（启动时读取）和等待超时（动态生效）
+ * 6. 集合参数批量双写的每批元素数（动态生效）
  *
  * 12-31 18:56 这里就是从配置中心获得配置
  * @author lixiangyu
@@ -32,34 +35,19 @@ public class DualWriteConfigManager {
     private final DynamicConfigManager configManager;
     
     /**
-     * 双写开关（全局）
-     */
-    private volatile boolean dualWriteEnabled = false;
-    
-    /**
-     * 写源库开关（全局）
+     * 路由表（全局开关 + 表级别开关），配置变更时整体替换
      */
-    private volatile boolean writeSourceEnabled = true;
+    private volatile RoutingTable routing = RoutingTable.EMPTY;
     
     /**
-     * 写目标库开关（全局）
+     * PARALLEL 模式等待目标库写入的超时时间（毫秒），0 表示不超时
      */
-    private volatile boolean writeTargetEnabled = false;
+    private volatile long parallelTimeoutMillis = 3000;
     
     /**
-     * 表级别的双写开关（表名 -> 是否启用）
+     * 集合参数批量双写的每批元素数
      */
-    private final Map<String, Boolean> tableDualWriteMap = new ConcurrentHashMap<>();
-    
-    /**
-     * 表级别的写源库开关
-     */
-    private final Map<String, Boolean> tableWriteSourceMap = new ConcurrentHashMap<>();
-    
-    /**
-     * 表级别的写目标库开关
-     */
-    private final Map<String, Boolean> tableWriteTargetMap = new ConcurrentHashMap<>();
+    private volatile int batchChunkSize = 500;
     
     /**
      * 初始化配置
@@ -70,18 +58,28 @@ public class DualWriteConfigManager {
         
         // 监听配置变更
         configManager.addListener("dual.write.enabled", (key, newValue) -> {
-            dualWriteEnabled = Boolean.parseBoolean(newValue);
-            log.info("双写开关变更: {}", dualWriteEnabled);
+            updateGlobalFlag(RoutingTable.DUAL_WRITE, Boolean.parseBoolean(newValue));
+            log.info("双写开关变更: {}", Boolean.parseBoolean(newValue));
         });
         
         configManager.addListener("dual.write.writeSource.enabled", (key, newValue) -> {
-            writeSourceEnabled = Boolean.parseBoolean(newValue);
-            log.info("写源库开关变更: {}", writeSourceEnabled);
+            updateGlobalFlag(RoutingTable.WRITE_SOURCE, Boolean.parseBoolean(newValue));
+            log.info("写源库开关变更: {}", Boolean.parseBoolean(newValue));
         });
         
         configManager.addListener("dual.write.writeTarget.enabled", (key, newValue) -> {
-            writeTargetEnabled = Boolean.parseBoolean(newValue);
-            log.info("写目标库开关变更: {}", writeTargetEnabled);
+            updateGlobalFlag(RoutingTable.WRITE_TARGET, Boolean.parseBoolean(newValue));
+            log.info("写目标库开关变更: {}", Boolean.parseBoolean(newValue));
+        });
+        
+        configManager.addListener("dual.write.parallel.timeoutMillis", (key, newValue) -> {
+            parallelTimeoutMillis = parseTimeout(newValue);
+            log.info("并行双写超时变更: {}ms", parallelTimeoutMillis);
+        });
+        
+        configManager.addListener("dual.write.batch.chunkSize", (key, newValue) -> {
+            batchChunkSize = (int) parsePositive(newValue, batchChunkSize);
+            log.info("批量双写每批元素数变更: {}", batchChunkSize);
         });
         
         // 监听表级别的配置变更
@@ -93,37 +91,82 @@ public class DualWriteConfigManager {
     /**
      * 加载配置
      */
-    private void loadConfig() {
+    private synchronized void loadConfig() {
         // 全局开关
-        dualWriteEnabled = Boolean.parseBoolean(
-                configManager.getString("dual.write.enabled", "false"));
-        writeSourceEnabled = Boolean.parseBoolean(
-                configManager.getString("dual.write.writeSource.enabled", "true"));
-        writeTargetEnabled = Boolean.parseBoolean(
-                configManager.getString("dual.write.writeTarget.enabled", "false"));
+        int globalFlags = 0;
+        if (Boolean.parseBoolean(configManager.getString("dual.write.enabled", "false"))) {
+            globalFlags |= RoutingTable.DUAL_WRITE;
+        }
+        if (Boolean.parseBoolean(configManager.getString("dual.write.writeSource.enabled", "true"))) {
+            globalFlags |= RoutingTable.WRITE_SOURCE;
+        }
+        if (Boolean.parseBoolean(configManager.getString("dual.write.writeTarget.enabled", "false"))) {
+            globalFlags |= RoutingTable.WRITE_TARGET;
+        }
+        parallelTimeoutMillis = parseTimeout(configManager.getString("dual.write.parallel.timeoutMillis", "3000"));
+        batchChunkSize = (int) parsePositive(configManager.getString("dual.write.batch.chunkSize", "500"),
+                batchChunkSize);
         
         // 表级别配置
         String tablesConfig = configManager.getString("dual.write.tables", "");
-        loadTableConfig(tablesConfig);
+        routing = new RoutingTable(globalFlags, parseTableConfig(tablesConfig));
         
-        log.info("双写配置加载完成 - 全局开关: {}, 写源库: {}, 写目标库: {}", 
-                dualWriteEnabled, writeSourceEnabled, writeTargetEnabled);
+        log.info("双写配置加载完成 - 全局开关: {}, 写源库: {}, 写目标库: {}",
+                (globalFlags & RoutingTable.DUAL_WRITE) != 0, (globalFlags & RoutingTable.WRITE_SOURCE) != 0,
+                (globalFlags & RoutingTable.WRITE_TARGET) != 0);
     }
     
     /**
-     * 加载表级别配置
+     * 修改一个全局开关，保留表级别配置
+     */
+    private synchronized void updateGlobalFlag(int flag, boolean enabled) {
+        RoutingTable current = routing;
+        routing = current.withGlobalFlags(enabled ? current.globalFlags | flag : current.globalFlags & ~flag);
+    }
+    
+    private long parseTimeout(String value) {
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (RuntimeException e) {
+            log.warn("并行双写超时配置无效: {}，保持 {}ms", value, parallelTimeoutMillis);
+            return parallelTimeoutMillis;
+        }
+    }
+    
+    private long parsePositive(String value, long current) {
+        try {
+            long parsed = Long.parseLong(value.trim());
+            if (parsed > 0 && parsed <= Integer.MAX_VALUE) {
+                return parsed;
+            }
+        } catch (RuntimeException e) {
+            // 保持当前值
+        }
+        log.warn("批量双写每批元素数配置无效: {}，保持 {}", value, current);
+        return current;
+    }
+    
+    /**
+     * 加载表级别配置：整体替换表级别开关（配置为空时清除），保留全局开关
+     */
+    private synchronized void loadTableConfig(String tablesConfig) {
+        routing = new RoutingTable(routing.globalFlags, parseTableConfig(tablesConfig));
+        log.info("双写表级别配置变更，表数量: {}", routing.size);
+    }
+    
+    /**
+     * 解析表级别配置
      * 配置格式：table1:true:true,table2:true:false
      * 格式：表名:写源库:写目标库
+     *
+     * @return 表名 -> 开关位
      */
-    private void loadTableConfig(String tablesConfig) {
+    private Map<String, Integer> parseTableConfig(String tablesConfig) {
+        Map<String, Integer> tableFlags = new LinkedHashMap<>();
         if (tablesConfig == null || tablesConfig.trim().isEmpty()) {
-            return;
+            return tableFlags;
         }
         
-        tableDualWriteMap.clear();
-        tableWriteSourceMap.clear();
-        tableWriteTargetMap.clear();
-        
         String[] tableConfigs = tablesConfig.split(",");
         for (String tableConfig : tableConfigs) {
             String[] parts = tableConfig.trim().split(":");
@@ -132,13 +175,29 @@ public class DualWriteConfigManager {
                 boolean writeSource = Boolean.parseBoolean(parts[1].trim());
                 boolean writeTarget = Boolean.parseBoolean(parts[2].trim());
                 
-                tableWriteSourceMap.put(tableName, writeSource);
-                tableWriteTargetMap.put(tableName, writeTarget);
-                tableDualWriteMap.put(tableName, writeSource || writeTarget);
+                int flags = 0;
+                if (writeSource) {
+                    flags |= RoutingTable.WRITE_SOURCE;
+                }
+                if (writeTarget) {
+                    flags |= RoutingTable.WRITE_TARGET;
+                }
+                if (writeSource || writeTarget) {
+                    flags |= RoutingTable.DUAL_WRITE;
+                }
+                tableFlags.put(tableName, flags);
                 
                 log.debug("表 {} 双写配置: 写源库={}, 写目标库={}", tableName, writeSource, writeTarget);
             }
         }
+        return tableFlags;
+    }
+    
+    /**
+     * 获取当前路由表（不可变快照，一次调用内的多次判断应使用同一个快照）
+     */
+    public RoutingTable getRouting() {
+        return routing;
     }
     
     /**
@@ -148,14 +207,7 @@ public class DualWriteConfigManager {
      * @return 是否应该双写
      */
     public boolean shouldDualWrite(String tableName) {
-        // 1. 检查表级别配置
-        Boolean tableDualWrite = tableDualWriteMap.get(tableName);
-        if (tableDualWrite != null) {
-            return tableDualWrite;
-        }
-        
-        // 2. 检查全局配置
-        return dualWriteEnabled;
+        return (routing.flags(tableName) & RoutingTable.DUAL_WRITE) != 0;
     }
     
     /**
@@ -165,14 +217,7 @@ public class DualWriteConfigManager {
      * @return 是否应该写源库
      */
     public boolean shouldWriteSource(String tableName) {
-        // 1. 检查表级别配置
-        Boolean tableWriteSource = tableWriteSourceMap.get(tableName);
-        if (tableWriteSource != null) {
-            return tableWriteSource;
-        }
-        
-        // 2. 检查全局配置
-        return writeSourceEnabled;
+        return (routing.flags(tableName) & RoutingTable.WRITE_SOURCE) != 0;
     }
     
     /**
@@ -182,14 +227,7 @@ public class DualWriteConfigManager {
      * @return 是否应该写目标库
      */
     public boolean shouldWriteTarget(String tableName) {
-        // 1. 检查表级别配置
-        Boolean tableWriteTarget = tableWriteTargetMap.get(tableName);
-        if (tableWriteTarget != null) {
-            return tableWriteTarget;
-        }
-        
-        // 2. 检查全局配置
-        return writeTargetEnabled;
+        return (routing.flags(tableName) & RoutingTable.WRITE_TARGET) != 0;
     }
     
     /**
@@ -198,13 +236,148 @@ public class DualWriteConfigManager {
      * @return 表名集合
      */
     public Set<String> getDualWriteTables() {
-        Set<String> tables = new HashSet<>();
-        for (Map.Entry<String, Boolean> entry : tableDualWriteMap.entrySet()) {
-            if (entry.getValue()) {
-                tables.add(entry.getKey());
+        return routing.tablesWith(RoutingTable.DUAL_WRITE);
+    }
+    
+    /**
+     * PARALLEL 模式目标库写入线程池的线程数
+     */
+    public int getParallelPoolSize() {
+        return Math.max(1, configManager.getInteger("dual.write.parallel.poolSize",
+                Runtime.getRuntime().availableProcessors() * 2));
+    }
+    
+    /**
+     * PARALLEL 模式目标库写入线程池的队列容量，队列满时目标库写入在调用线程上执行
+     */
+    public int getParallelQueueCapacity() {
+        return Math.max(1, configManager.getInteger("dual.write.parallel.queueCapacity", 1000));
+    }
+    
+    /**
+     * PARALLEL 模式等待目标库写入的超时时间（毫秒），0 表示不超时
+     */
+    public long getParallelTimeoutMillis() {
+        return parallelTimeoutMillis;
+    }
+    
+    /**
+     * 集合参数批量双写的每批元素数
+     */
+    public int getBatchChunkSize() {
+        return batchChunkSize;
+    }
+    
+    /**
+     * 双写路由表
+     * 不可变：表名 -> 开关位 的开放寻址表（线性探测）加全局开关位，没有表级别配置的表使用全局开关
+     */
+    public static final class RoutingTable {
+        
+        /**
+         * 开关位：双写、写源库、写目标库
+         */
+        public static final int DUAL_WRITE = 1;
+        public static final int WRITE_SOURCE = 1 << 1;
+        public static final int WRITE_TARGET = 1 << 2;
+        
+        /**
+         * 默认配置：只写源库
+         */
+        static final RoutingTable EMPTY = new RoutingTable(WRITE_SOURCE, new LinkedHashMap<>());
+        
+        private final int globalFlags;
+        
+        /**
+         * 表名槽位（空槽为 null）和对应的开关位，长度为 2 的幂，装载因子不超过 0.5
+         */
+        private final String[] keys;
+        private final int[] flags;
+        private final int mask;
+        private final int size;
+        
+        RoutingTable(int globalFlags, Map<String, Integer> tableFlags) {
+            this.globalFlags = globalFlags;
+            this.size = tableFlags.size();
+            int capacity = Integer.highestOneBit(Math.max(1, size) * 2 - 1) << 1;
+            this.keys = new String[capacity];
+            this.flags = new int[capacity];
+            this.mask = capacity - 1;
+            for (Map.Entry<String, Integer> entry : tableFlags.entrySet()) {
+                int index = slot(entry.getKey());
+                while (keys[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = entry.getKey();
+                flags[index] = entry.getValue();
             }
         }
-        return tables;
+        
+        /**
+         * 共享表级别槽位，只替换全局开关位
+         */
+        private RoutingTable(RoutingTable table, int globalFlags) {
+            this.globalFlags = globalFlags;
+            this.keys = table.keys;
+            this.flags = table.flags;
+            this.mask = table.mask;
+            this.size = table.size;
+        }
+        
+        RoutingTable withGlobalFlags(int globalFlags) {
+            return new RoutingTable(this, globalFlags);
+        }
+        
+        private int slot(String tableName) {
+            int hash = tableName.hashCode();
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+        
+        /**
+         * 表的开关位，表名为 null 或没有表级别配置时返回全局开关位
+         */
+        public int flags(String tableName) {
+            if (tableName != null && size > 0) {
+                int index = slot(tableName);
+                String key;
+                while ((key = keys[index]) != null) {
+                    if (key.equals(tableName)) {
+                        return flags[index];
+                    }
+                    index = (index + 1) & mask;
+                }
+            }
+            return globalFlags;
+        }
+        
+        /**
+         * 一组表的开关位：任一表开启双写即双写，写源库/写目标库需要全部表开启；没有表时为全局开关位
+         */
+        public int route(String[] tableNames) {
+            if (tableNames == null || tableNames.length == 0) {
+                return globalFlags;
+            }
+            int any = 0;
+            int all = WRITE_SOURCE | WRITE_TARGET;
+            for (String tableName : tableNames) {
+                int tableFlags = flags(tableName);
+                any |= tableFlags;
+                all &= tableFlags;
+            }
+            return (any & DUAL_WRITE) | all;
+        }
+        
+        /**
+         * 开启了指定开关位的表
+         */
+        public Set<String> tablesWith(int flag) {
+            Set<String> tables = new HashSet<>();
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null && (flags[i] & flag) != 0) {
+                    tables.add(keys[i]);
+                }
+            }
+            return tables;
+        }
     }
 }
-
@@ -0,0 +1,900 @@
+package com.lixiangyu.common.migration;
+
+import com.lixiangyu.common.config.DynamicConfigManager;
+import lombok.Builder;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 双写发件箱
+ * {@code @DualWrite(outbox = true)} 时目标库写入不直接执行，而是在调用线程上绑定为 SQL + 参数后追加到本地持久化日志
+ * （见 {@link DualWriteOutboxLog}），由后台线程批量回放到目标库
+ *
+ * 功能特性：
+ * 1. 不阻塞、不丢失：追加只写本地映射内存，目标库慢或不可用时日志积压，重启后从检查点继续回放
+ * 2. 批量回放：一次读取 batchSize 条记录，按 目标数据源 + SQL 分组为 JDBC 批处理，每个目标数据源一个事务
+ * 3. 按键有序：同一 表+主键 的记录只会进入同一分组（保持日志顺序）；记录的键已在其他分组中时先执行已分组的语句，
+ *    无法确定主键的记录按表串行
+ * 4. 失败重试：回放失败时回滚并在后台线程上等待后重读同一批记录，业务线程不受影响
+ * 5. 死信：同一批次连续失败 maxAttempts 次（目标库连接类的暂时性错误不计）后逐条回放，仍然失败的记录
+ *    （约束冲突、目标数据源不存在等）和无法解码的记录移入 目录/dead-letter 下的死信日志，不再阻塞后续记录
+ * 6. 指标：积压记录数/字节数、最早未回放记录的等待时间、回放批次数、失败次数、死信记录数（见 {@link #getMetrics()}）
+ *
+ * 回放为至少一次：目标库提交后、检查点持久化前进程退出时，该批记录会在重启后再次回放；
+ * 实体 INSERT 回放时按目标库方言改写为幂等写入（见 {@link UpsertSqlBuilder}），再次回放不会主键冲突
+ *
+ * 配置（配置中心）：
+ * - dual.write.outbox.dir：日志目录，默认 工作目录/dual-write-outbox
+ * - dual.write.outbox.segmentSize：段文件大小（字节），默认 64MB
+ * - dual.write.outbox.batchSize：单次回放的最大记录数，默认 500
+ * - dual.write.outbox.forceIntervalMillis：刷盘间隔（毫秒），默认 10
+ * - dual.write.outbox.retryIntervalMillis：回放失败后的重试间隔（毫秒），默认 1000
+ * - dual.write.outbox.maxAttempts：批次连续失败多少次后逐条回放并移入死信日志，默认 5
+ *
+ * @author lixiangyu
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DualWriteOutbox {
+    
+    /**
+     * 关闭时等待回放线程结束的最长时间（毫秒）
+     */
+    private static final long CLOSE_TIMEOUT_MS = 10000;
+    
+    /**
+     * 死信日志目录（发件箱目录下）
+     */
+    private static final String DEAD_LETTER_DIR = "dead-letter";
+    
+    private final DynamicConfigManager configManager;
+    
+    private final ApplicationContext applicationContext;
+    
+    private volatile DualWriteOutboxLog outboxLog;
+    
+    /**
+     * 死信日志，首次出现死信记录时打开
+     */
+    private volatile DualWriteOutboxLog deadLetterLog;
+    
+    private File directory;
+    
+    private int segmentSize;
+    
+    private int batchSize;
+    
+    private long forceIntervalMillis;
+    
+    private long retryIntervalMillis;
+    
+    private int maxAttempts;
+    
+    private Thread flusher;
+    
+    private volatile boolean closed = false;
+    
+    /**
+     * 回放线程空闲等待时的通知对象
+     */
+    private final Object signal = new Object();
+    
+    private volatile boolean flusherIdle = false;
+    
+    /**
+     * 数据源缓存（Bean 名称 -> 数据源，空字符串为默认数据源）
+     */
+    private final Map<String, DataSource> dataSources = new ConcurrentHashMap<>();
+    
+    /**
+     * 目标数据源类型缓存（Bean 名称 -> 数据库类型），以及 目标数据源 + INSERT 语句 -> 幂等写入语句
+     */
+    private final Map<String, MigrationConfig.DataSourceConfig.DatabaseType> targetTypes = new ConcurrentHashMap<>();
+    private final Map<String, String> upsertSqls = new ConcurrentHashMap<>();
+    
+    private final AtomicLong appendedRecords = new AtomicLong();
+    private final AtomicLong flushedRecords = new AtomicLong();
+    private final AtomicLong flushedBatches = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong deadLetters = new AtomicLong();
+    
+    /**
+     * 正在回放的批次中第一条记录的追加时间，没有正在回放的批次时为 0
+     */
+    private volatile long oldestPendingAppendMillis;
+    
+    private volatile long lastFlushTime;
+    
+    private volatile String lastError;
+    
+    /**
+     * 启动时日志中有未回放的记录则立即开始回放，否则在首次追加时启动
+     */
+    @PostConstruct
+    public void init() {
+        File dir = new File(configManager.getString("dual.write.outbox.dir",
+                new File(System.getProperty("user.dir"), "dual-write-outbox").getPath()));
+        if (DualWriteOutboxLog.hasSegments(dir)) {
+            try {
+                start();
+            } catch (RuntimeException e) {
+                log.error("双写发件箱启动失败，目录: {}", dir, e);
+            }
+        }
+    }
+    
+    @PreDestroy
+    public void destroy() {
+        DualWriteOutboxLog current;
+        synchronized (this) {
+            closed = true;
+            current = outboxLog;
+        }
+        if (current == null) {
+            return;
+        }
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+        try {
+            flusher.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            current.close();
+            if (deadLetterLog != null) {
+                deadLetterLog.close();
+            }
+        } catch (IOException e) {
+            log.warn("关闭双写发件箱失败", e);
+        }
+        log.info("双写发件箱关闭，未回放记录数: {}", getBacklogRecords());
+    }
+    
+    /**
+     * 追加一条目标库写入
+     *
+     * @param target 目标数据源 Bean 名称（为空时使用默认数据源）
+     * @param tableName 目标表名
+     * @param statement 已绑定的语句
+     * @throws IllegalStateException 发件箱已关闭或写入本地日志失败
+     */
+    public void append(String target, String tableName, DualWritePlan.BoundStatement statement) {
+        DualWriteOutboxLog current = start();
+        try {
+            current.append(OutboxRecord.encode(System.currentTimeMillis(), target, tableName, statement));
+        } catch (IOException e) {
+            throw new IllegalStateException("写入双写发件箱失败", e);
+        }
+        appendedRecords.incrementAndGet();
+        if (flusherIdle) {
+            synchronized (signal) {
+                signal.notifyAll();
+            }
+        }
+    }
+    
+    /**
+     * 打开日志并启动回放线程（只执行一次）
+     */
+    private DualWriteOutboxLog start() {
+        DualWriteOutboxLog current = outboxLog;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("双写发件箱已关闭");
+            }
+            if (outboxLog != null) {
+                return outboxLog;
+            }
+            directory = new File(configManager.getString("dual.write.outbox.dir",
+                    new File(System.getProperty("user.dir"), "dual-write-outbox").getPath()));
+            segmentSize = configManager.getInteger("dual.write.outbox.segmentSize", 64 * 1024 * 1024);
+            batchSize = Math.max(1, configManager.getInteger("dual.write.outbox.batchSize", 500));
+            forceIntervalMillis = Math.max(1, configManager.getLong("dual.write.outbox.forceIntervalMillis", 10L));
+            retryIntervalMillis = Math.max(1, configManager.getLong("dual.write.outbox.retryIntervalMillis", 1000L));
+            maxAttempts = Math.max(1, configManager.getInteger("dual.write.outbox.maxAttempts", 5));
+            try {
+                current = new DualWriteOutboxLog(directory, segmentSize);
+            } catch (IOException e) {
+                throw new IllegalStateException("打开双写发件箱失败: " + directory, e);
+            }
+            flusher = new Thread(this::flushLoop, "DualWriteOutbox-flusher");
+            flusher.setDaemon(true);
+            flusher.setUncaughtExceptionHandler((thread, e) -> log.error("双写发件箱回放线程异常退出", e));
+            outboxLog = current;
+            flusher.start();
+            log.info("双写发件箱启动，目录: {}, 待回放记录数: {}", directory, current.getRecoveredRecords());
+            return current;
+        }
+    }
+    
+    /**
+     * 回放循环（回放线程）
+     */
+    private void flushLoop() {
+        DualWriteOutboxLog current = outboxLog;
+        long lastForce = System.currentTimeMillis();
+        // 当前批次连续失败的次数（暂时性错误不计），达到 maxAttempts 后逐条回放
+        int attempts = 0;
+        while (!closed) {
+            List<byte[]> payloads;
+            try {
+                long now = System.currentTimeMillis();
+                if (now - lastForce >= forceIntervalMillis) {
+                    current.force();
+                    lastForce = now;
+                }
+                payloads = current.read(batchSize);
+            } catch (RuntimeException e) {
+                // 刷盘或读取失败（磁盘错误等）：回放线程不退出，等待后从检查点重新读取
+                recordFailure(e);
+                log.error("读取双写发件箱失败，{}ms 后重试", retryIntervalMillis, e);
+                current.rewind();
+                sleepQuietly(retryIntervalMillis);
+                continue;
+            }
+            if (payloads.isEmpty()) {
+                awaitRecords();
+                continue;
+            }
+            
+            // 无法解码的记录（如参数类已不存在）重试也不会成功，随本批次提交时直接移入死信日志
+            List<OutboxRecord> records = new ArrayList<>(payloads.size());
+            List<byte[]> rejected = new ArrayList<>();
+            for (byte[] payload : payloads) {
+                try {
+                    records.add(OutboxRecord.decode(payload));
+                } catch (IOException | RuntimeException e) {
+                    log.error("双写发件箱记录无法解码", e);
+                    rejected.add(payload);
+                }
+            }
+            try {
+                if (!records.isEmpty()) {
+                    oldestPendingAppendMillis = records.get(0).appendMillis;
+                    if (attempts < maxAttempts) {
+                        apply(records);
+                    } else {
+                        rejected.addAll(applyIndividually(records));
+                    }
+                }
+                appendDeadLetters(rejected);
+                current.commit();
+                flushedRecords.addAndGet(payloads.size() - rejected.size());
+                flushedBatches.incrementAndGet();
+                lastFlushTime = System.currentTimeMillis();
+                oldestPendingAppendMillis = 0;
+                attempts = 0;
+            } catch (Exception e) {
+                if (!isTransient(e)) {
+                    attempts++;
+                }
+                recordFailure(e);
+                log.warn("双写发件箱回放失败，{}ms 后重试，记录数: {}, 连续失败次数: {}",
+                        retryIntervalMillis, payloads.size(), attempts, e);
+                current.rewind();
+                sleepQuietly(retryIntervalMillis);
+            }
+        }
+        try {
+            current.force();
+        } catch (RuntimeException e) {
+            log.warn("双写发件箱刷盘失败", e);
+        }
+    }
+    
+    private void recordFailure(Exception e) {
+        failures.incrementAndGet();
+        lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
+    }
+    
+    /**
+     * 逐条回放，隔离出批次中无法回放的记录；遇到暂时性错误时抛出，整批稍后重试
+     *
+     * @return 无法回放的记录
+     */
+    private List<byte[]> applyIndividually(List<OutboxRecord> records) throws SQLException {
+        List<byte[]> rejected = new ArrayList<>();
+        for (OutboxRecord record : records) {
+            try {
+                apply(Collections.singletonList(record));
+            } catch (SQLException | RuntimeException e) {
+                if (isTransient(e)) {
+                    throw e;
+                }
+                log.error("双写发件箱记录回放失败，移入死信日志，目标: {}, 表: {}, 行键: {}, SQL: {}",
+                        record.target, record.table, record.key, record.sql, e);
+                rejected.add(record.payload);
+            }
+        }
+        return rejected;
+    }
+    
+    /**
+     * 追加到死信日志并刷盘（格式与发件箱日志相同，可以原样重新追加）
+     */
+    private void appendDeadLetters(List<byte[]> payloads) throws IOException {
+        if (payloads.isEmpty()) {
+            return;
+        }
+        DualWriteOutboxLog current = deadLetterLog;
+        if (current == null) {
+            current = new DualWriteOutboxLog(new File(directory, DEAD_LETTER_DIR), segmentSize);
+            deadLetterLog = current;
+        }
+        for (byte[] payload : payloads) {
+            current.append(payload);
+        }
+        current.force();
+        deadLetters.addAndGet(payloads.size());
+        log.warn("双写发件箱 {} 条记录移入死信日志: {}", payloads.size(), new File(directory, DEAD_LETTER_DIR));
+    }
+    
+    /**
+     * 是否为暂时性错误（连接失败、连接池超时等），这类错误只重试，不计入失败次数
+     */
+    private static boolean isTransient(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientException || cause instanceof SQLRecoverableException) {
+                return true;
+            }
+            if (cause instanceof SQLException) {
+                String sqlState = ((SQLException) cause).getSQLState();
+                if (sqlState != null && sqlState.startsWith("08")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    private void awaitRecords() {
+        synchronized (signal) {
+            flusherIdle = true;
+            try {
+                signal.wait(forceIntervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                closed = true;
+            } finally {
+                flusherIdle = false;
+            }
+        }
+    }
+    
+    private void sleepQuietly(long millis) {
+        synchronized (signal) {
+            try {
+                // 关闭时被唤醒
+                signal.wait(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                closed = true;
+            }
+        }
+    }
+    
+    /**
+     * 回放一批记录：按 目标数据源 + SQL 分组批量执行，同一行键的记录保持日志顺序，每个目标数据源一个事务
+     */
+    private void apply(List<OutboxRecord> records) throws SQLException {
+        Map<String, Connection> connections = new LinkedHashMap<>();
+        try {
+            Batcher batcher = new Batcher(connections);
+            for (OutboxRecord record : records) {
+                batcher.add(record);
+            }
+            batcher.executePending();
+            for (Connection connection : connections.values()) {
+                connection.commit();
+            }
+        } catch (SQLException | RuntimeException e) {
+            for (Connection connection : connections.values()) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackError) {
+                    log.debug("回滚目标库事务失败", rollbackError);
+                }
+            }
+            throw e;
+        } finally {
+            for (Connection connection : connections.values()) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    log.debug("关闭目标库连接失败", e);
+                }
+            }
+        }
+    }
+    
+    /**
+     * 按分组累积记录，行键冲突时先执行已累积的分组
+     */
+    private final class Batcher {
+        private final Map<String, Connection> connections;
+        
+        /**
+         * 目标数据源 + SQL -> 分组（按首次出现的顺序）
+         */
+        private final Map<String, Group> pending = new LinkedHashMap<>();
+        
+        /**
+         * 行键 -> 所在分组
+         */
+        private final Map<String, Group> keyOwners = new HashMap<>();
+        
+        /**
+         * 表 -> 含有该表记录的分组；表 -> 含有无主键记录的分组（该表只能在这一个分组中）
+         */
+        private final Map<String, Set<Group>> tableGroups = new HashMap<>();
+        private final Map<String, Group> tableOwners = new HashMap<>();
+        
+        Batcher(Map<String, Connection> connections) {
+            this.connections = connections;
+        }
+        
+        void add(OutboxRecord record) throws SQLException {
+            String sql = record.columns == null ? record.sql : upsertSql(record);
+            String groupKey = record.target + '\n' + sql;
+            String tableKey = record.target + '\n' + (record.table == null ? "" : record.table);
+            String rowKey = record.key == null ? null : tableKey + '\n' + record.key;
+            Group group = pending.get(groupKey);
+            if (conflicts(group, tableKey, rowKey)) {
+                executePending();
+                group = null;
+            }
+            if (group == null) {
+                group = new Group(record.target, sql);
+                pending.put(groupKey, group);
+            }
+            group.rows.add(record.params);
+            tableGroups.computeIfAbsent(tableKey, key -> new HashSet<>()).add(group);
+            if (rowKey == null) {
+                tableOwners.put(tableKey, group);
+            } else {
+                keyOwners.put(rowKey, group);
+            }
+        }
+        
+        private boolean conflicts(Group group, String tableKey, String rowKey) {
+            Group tableOwner = tableOwners.get(tableKey);
+            if (tableOwner != null && tableOwner != group) {
+                return true;
+            }
+            if (rowKey == null) {
+                Set<Group> groups = tableGroups.get(tableKey);
+                return groups != null && (groups.size() > 1 || !groups.contains(group));
+            }
+            Group owner = keyOwners.get(rowKey);
+            return owner != null && owner != group;
+        }
+        
+        /**
+         * 实体 INSERT 按目标库方言改写为幂等写入（按 目标数据源 + 语句 缓存）
+         */
+        private String upsertSql(OutboxRecord record) throws SQLException {
+            String cacheKey = record.target + '\n' + record.sql;
+            String sql = upsertSqls.get(cacheKey);
+            if (sql == null) {
+                MigrationConfig.DataSourceConfig.DatabaseType databaseType = targetTypes.get(record.target);
+                if (databaseType == null) {
+                    databaseType = MigrationConfig.DataSourceConfig.DatabaseType.fromProductName(
+                            connection(record.target).getMetaData().getDatabaseProductName());
+                    targetTypes.put(record.target, databaseType);
+                }
+                sql = UpsertSqlBuilder.build(databaseType, record.table, record.columns, record.primaryKeys);
+                upsertSqls.put(cacheKey, sql);
+            }
+            return sql;
+        }
+        
+        private Connection connection(String target) throws SQLException {
+            Connection connection = connections.get(target);
+            if (connection == null) {
+                connection = getDataSource(target).getConnection();
+                connection.setAutoCommit(false);
+                connections.put(target, connection);
+            }
+            return connection;
+        }
+        
+        void executePending() throws SQLException {
+            for (Group group : pending.values()) {
+                Connection connection = connection(group.target);
+                try (PreparedStatement stmt = connection.prepareStatement(group.sql)) {
+                    for (Object[] row : group.rows) {
+                        for (int i = 0; i < row.length; i++) {
+                            StatementCreatorUtils.setParameterValue(stmt, i + 1, SqlTypeValue.TYPE_UNKNOWN, row[i]);
+                        }
+                        if (group.rows.size() > 1) {
+                            stmt.addBatch();
+                        }
+                    }
+                    if (group.rows.size() > 1) {
+                        stmt.executeBatch();
+                    } else {
+                        stmt.executeUpdate();
+                    }
+                }
+            }
+            pending.clear();
+            keyOwners.clear();
+            tableGroups.clear();
+            tableOwners.clear();
+        }
+    }
+    
+    /**
+     * 同一目标数据源、同一 SQL 的记录
+     */
+    private static final class Group {
+        private final String target;
+        private final String sql;
+        private final List<Object[]> rows = new ArrayList<>();
+        
+        Group(String target, String sql) {
+            this.target = target;
+            this.sql = sql;
+        }
+    }
+    
+    private DataSource getDataSource(String target) {
+        DataSource dataSource = dataSources.get(target);
+        if (dataSource == null) {
+            dataSource = target.isEmpty() ? applicationContext.getBean(DataSource.class)
+                    : applicationContext.getBean(target, DataSource.class);
+            dataSources.put(target, dataSource);
+        }
+        return dataSource;
+    }
+    
+    private long getBacklogRecords() {
+        DualWriteOutboxLog current = outboxLog;
+        long recovered = current == null ? 0 : current.getRecoveredRecords();
+        return Math.max(0, recovered + appendedRecords.get() - flushedRecords.get() - deadLetters.get());
+    }
+    
+    /**
+     * 获取发件箱指标
+     */
+    public OutboxMetrics getMetrics() {
+        DualWriteOutboxLog current = outboxLog;
+        long backlog = getBacklogRecords();
+        long oldest = oldestPendingAppendMillis;
+        return OutboxMetrics.builder()
+                .started(current != null)
+                .directory(directory == null ? null : directory.getPath())
+                .appendedRecords(appendedRecords.get())
+                .flushedRecords(flushedRecords.get())
+                .backlogRecords(backlog)
+                .backlogBytes(current == null ? 0 : current.getBacklogBytes())
+                .segments(current == null ? 0 : current.getSegmentCount())
+                .lagMillis(backlog > 0 && oldest > 0 ? System.currentTimeMillis() - oldest : 0)
+                .flushedBatches(flushedBatches.get())
+                .failures(failures.get())
+                .deadLetters(deadLetters.get())
+                .lastError(lastError)
+                .lastFlushTime(lastFlushTime)
+                .build();
+    }
+    
+    /**
+     * 发件箱指标
+     */
+    @Data
+    @Builder
+    public static class OutboxMetrics {
+        private boolean started;
+        private String directory;
+        
+        /**
+         * 本次启动以来追加 / 回放的记录数
+         */
+        private long appendedRecords;
+        private long flushedRecords;
+        
+        /**
+         * 未回放的记录数（含启动时恢复的记录）和日志字节数
+         */
+        private long backlogRecords;
+        private long backlogBytes;
+        private int segments;
+        
+        /**
+         * 正在回放的最早记录已等待的时间（毫秒），没有积压时为 0
+         */
+        private long lagMillis;
+        
+        private long flushedBatches;
+        private long failures;
+        
+        /**
+         * 本次启动以来移入死信日志的记录数
+         */
+        private long deadLetters;
+        
+        private String lastError;
+        private long lastFlushTime;
+    }
+    
+    /**
+     * 发件箱记录：追加时间、目标数据源、表、SQL、行键和参数，实体 INSERT 还记录列和主键（用于改写为幂等写入）
+     */
+    private static final class OutboxRecord {
+        private static final byte NULL = 0;
+        private static final byte STRING = 1;
+        private static final byte INTEGER = 2;
+        private static final byte LONG = 3;
+        private static final byte SHORT = 4;
+        private static final byte BYTE = 5;
+        private static final byte DOUBLE = 6;
+        private static final byte FLOAT = 7;
+        private static final byte BOOLEAN = 8;
+        private static final byte BIG_DECIMAL = 9;
+        private static final byte BIG_INTEGER = 10;
+        private static final byte TIMESTAMP = 11;
+        private static final byte SQL_DATE = 12;
+        private static final byte SQL_TIME = 13;
+        private static final byte DATE = 14;
+        private static final byte BYTES = 15;
+        private static final byte LOCAL_DATE_TIME = 16;
+        private static final byte LOCAL_DATE = 17;
+        private static final byte LOCAL_TIME = 18;
+        private static final byte SERIALIZED = 99;
+        
+        private long appendMillis;
+        private String target;
+        private String table;
+        private String sql;
+        private String key;
+        private Object[] params;
+        private List<String> columns;
+        private List<String> primaryKeys;
+        
+        /**
+         * 原始日志记录（移入死信日志时原样写入）
+         */
+        private byte[] payload;
+        
+        static byte[] encode(long appendMillis, String target, String table, DualWritePlan.BoundStatement statement)
+                throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(appendMillis);
+            writeString(out, target == null ? "" : target);
+            writeString(out, table);
+            writeString(out, statement.getSql());
+            writeString(out, statement.getKey() == null ? null : Arrays.deepToString(statement.getKey()));
+            Object[] params = statement.getParams();
+            out.writeInt(params.length);
+            for (Object param : params) {
+                writeValue(out, param);
+            }
+            writeString(out, statement.getColumns() == null ? null : String.join(",", statement.getColumns()));
+            writeString(out, statement.getPrimaryKeys() == null ? null : String.join(",", statement.getPrimaryKeys()));
+            out.flush();
+            return bytes.toByteArray();
+        }
+        
+        static OutboxRecord decode(byte[] payload) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            OutboxRecord record = new OutboxRecord();
+            record.appendMillis = in.readLong();
+            record.target = readString(in);
+            record.table = readString(in);
+            record.sql = readString(in);
+            record.key = readString(in);
+            record.params = new Object[in.readInt()];
+            for (int i = 0; i < record.params.length; i++) {
+                record.params[i] = readValue(in);
+            }
+            // 列和主键为后加的尾部字段，旧版本写入的记录没有
+            if (in.available() > 0) {
+                String columns = readString(in);
+                String primaryKeys = readString(in);
+                if (columns != null && primaryKeys != null) {
+                    record.columns = Arrays.asList(columns.split(","));
+                    record.primaryKeys = Arrays.asList(primaryKeys.split(","));
+                }
+            }
+            record.payload = payload;
+            return record;
+        }
+        
+        private static void writeString(DataOutputStream out, String value) throws IOException {
+            if (value == null) {
+                out.writeInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        
+        private static String readString(DataInputStream in) throws IOException {
+            int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        
+        private static void writeValue(DataOutputStream out, Object value) throws IOException {
+            if (value == null) {
+                out.writeByte(NULL);
+            } else if (value instanceof String) {
+                out.writeByte(STRING);
+                writeString(out, (String) value);
+            } else if (value instanceof Integer) {
+                out.writeByte(INTEGER);
+                out.writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                out.writeByte(LONG);
+                out.writeLong((Long) value);
+            } else if (value instanceof Short) {
+                out.writeByte(SHORT);
+                out.writeShort((Short) value);
+            } else if (value instanceof Byte) {
+                out.writeByte(BYTE);
+                out.writeByte((Byte) value);
+            } else if (value instanceof Double) {
+                out.writeByte(DOUBLE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof Float) {
+                out.writeByte(FLOAT);
+                out.writeFloat((Float) value);
+            } else if (value instanceof Boolean) {
+                out.writeByte(BOOLEAN);
+                out.writeBoolean((Boolean) value);
+            } else if (value instanceof BigDecimal) {
+                out.writeByte(BIG_DECIMAL);
+                writeString(out, value.toString());
+            } else if (value instanceof BigInteger) {
+                out.writeByte(BIG_INTEGER);
+                writeString(out, value.toString());
+            } else if (value instanceof java.sql.Timestamp) {
+                out.writeByte(TIMESTAMP);
+                out.writeLong(((java.sql.Timestamp) value).getTime());
+                out.writeInt(((java.sql.Timestamp) value).getNanos());
+            } else if (value instanceof java.sql.Date) {
+                out.writeByte(SQL_DATE);
+                out.writeLong(((java.sql.Date) value).getTime());
+            } else if (value instanceof java.sql.Time) {
+                out.writeByte(SQL_TIME);
+                out.writeLong(((java.sql.Time) value).getTime());
+            } else if (value instanceof java.util.Date) {
+                out.writeByte(DATE);
+                out.writeLong(((java.util.Date) value).getTime());
+            } else if (value instanceof byte[]) {
+                out.writeByte(BYTES);
+                out.writeInt(((byte[]) value).length);
+                out.write((byte[]) value);
+            } else if (value instanceof LocalDateTime) {
+                out.writeByte(LOCAL_DATE_TIME);
+                writeString(out, value.toString());
+            } else if (value instanceof LocalDate) {
+                out.writeByte(LOCAL_DATE);
+                writeString(out, value.toString());
+            } else if (value instanceof LocalTime) {
+                out.writeByte(LOCAL_TIME);
+                writeString(out, value.toString());
+            } else if (value instanceof Serializable) {
+                out.writeByte(SERIALIZED);
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream objectOut = new ObjectOutputStream(bytes)) {
+                    objectOut.writeObject(value);
+                }
+                out.writeInt(bytes.size());
+                bytes.writeTo(out);
+            } else {
+                throw new IOException("双写参数类型无法持久化: " + value.getClass().getName());
+            }
+        }
+        
+        private static Object readValue(DataInputStream in) throws IOException {
+            byte type = in.readByte();
+            switch (type) {
+                case NULL:
+                    return null;
+                case STRING:
+                    return readString(in);
+                case INTEGER:
+                    return in.readInt();
+                case LONG:
+                    return in.readLong();
+                case SHORT:
+                    return in.readShort();
+                case BYTE:
+                    return in.readByte();
+                case DOUBLE:
+                    return in.readDouble();
+                case FLOAT:
+                    return in.readFloat();
+                case BOOLEAN:
+                    return in.readBoolean();
+                case BIG_DECIMAL:
+                    return new BigDecimal(readString(in));
+                case BIG_INTEGER:
+                    return new BigInteger(readString(in));
+                case TIMESTAMP:
+                    java.sql.Timestamp timestamp = new java.sql.Timestamp(in.readLong());
+                    timestamp.setNanos(in.readInt());
+                    return timestamp;
+                case SQL_DATE:
+                    return new java.sql.Date(in.readLong());
+                case SQL_TIME:
+                    return new java.sql.Time(in.readLong());
+                case DATE:
+                    return new java.util.Date(in.readLong());
+                case BYTES:
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    return bytes;
+                case LOCAL_DATE_TIME:
+                    return LocalDateTime.parse(readString(in));
+                case LOCAL_DATE:
+                    return LocalDate.parse(readString(in));
+                case LOCAL_TIME:
+                    return LocalTime.parse(readString(in));
+                case SERIALIZED:
+                    byte[] serialized = new byte[in.readInt()];
+                    in.readFully(serialized);
+                    try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+                        return objectIn.readObject();
+                    } catch (ClassNotFoundException e) {
+                        throw new IOException("双写参数类型不存在", e);
+                    }
+                default:
+                    throw new IOException("未知的双写参数类型标记: " + type);
+            }
+        }
+    }
+}
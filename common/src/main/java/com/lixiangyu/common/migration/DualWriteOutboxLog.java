@@ -0,0 +1,395 @@
+package com.lixiangyu.common.migration;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * 双写发件箱日志
+ * 只追加的本地持久化队列：记录顺序写入内存映射的定长段文件，读取进度（检查点）单独持久化
+ *
+ * 功能特性：
+ * 1. 记录格式：[长度 int][CRC32 int][内容]，长度为 0 表示段内数据结束，段剩余空间不足时切换到新段
+ * 2. 持久化：写入映射内存后即对进程崩溃安全，{@link #force()} 把脏页刷到磁盘（由调用方按间隔批量调用）
+ * 3. 恢复：打开时从检查点开始扫描，按 CRC 找到最后一条完整记录，截断其后的残缺数据
+ * 4. 清理：检查点越过的段文件直接删除
+ *
+ * 追加线程安全；读取（{@link #read}、{@link #commit}）只能由一个消费线程调用
+ *
+ * @author lixiangyu
+ */
+@Slf4j
+public class DualWriteOutboxLog implements Closeable {
+    
+    private static final String SEGMENT_SUFFIX = ".seg";
+    
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    
+    /**
+     * 记录头：长度 + CRC32
+     */
+    private static final int HEADER_SIZE = 8;
+    
+    private final File directory;
+    
+    private final int segmentSize;
+    
+    /**
+     * 段号 -> 段（读取线程与追加线程共享，修改时持有 this 锁）
+     */
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    
+    /**
+     * 当前追加的段
+     */
+    private Segment active;
+    
+    /**
+     * 已追加的位置（对读取线程发布）
+     */
+    private volatile Position writePosition;
+    
+    /**
+     * 读取位置（只由读取线程访问）和已提交的检查点
+     */
+    private Position readPosition;
+    private volatile Position checkpoint;
+    
+    private final FileChannel checkpointChannel;
+    
+    /**
+     * 自上次 force 以来是否有新的追加
+     */
+    private volatile boolean dirty;
+    
+    /**
+     * 打开时检查点之后尚未消费的记录数
+     */
+    private final long recoveredRecords;
+    
+    /**
+     * @param directory 日志目录（不存在时创建）
+     * @param segmentSize 段文件大小（字节）
+     */
+    public DualWriteOutboxLog(File directory, int segmentSize) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("无法创建发件箱目录: " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.checkpointChannel = FileChannel.open(new File(directory, CHECKPOINT_FILE).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                long id = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                segments.put(id, new Segment(id, file, Math.max(segmentSize, (int) file.length())));
+            }
+        }
+        if (segments.isEmpty()) {
+            Segment first = new Segment(0, segmentFile(0), segmentSize);
+            segments.put(first.id, first);
+        }
+        
+        Position saved = readCheckpoint();
+        if (saved == null || !segments.containsKey(saved.segment)) {
+            saved = new Position(segments.firstKey(), 0);
+        }
+        // 检查点之前的段已消费
+        while (segments.firstKey() < saved.segment) {
+            segments.pollFirstEntry().getValue().delete();
+        }
+        this.checkpoint = saved;
+        this.readPosition = saved;
+        
+        // 从检查点扫描到末尾，统计未消费记录并定位追加位置
+        long pending = 0;
+        Position position = saved;
+        for (Segment segment : segments.tailMap(saved.segment, true).values()) {
+            int offset = segment.id == saved.segment ? saved.offset : 0;
+            while (true) {
+                int length = segment.validRecordLength(offset);
+                if (length <= 0) {
+                    break;
+                }
+                offset += HEADER_SIZE + length;
+                pending++;
+            }
+            position = new Position(segment.id, offset);
+        }
+        this.active = segments.lastEntry().getValue();
+        if (active.truncate(position.offset)) {
+            log.warn("发件箱段 {} 末尾有残缺记录，已截断到 {}", active.id, position.offset);
+        }
+        this.writePosition = position;
+        this.recoveredRecords = pending;
+    }
+    
+    /**
+     * 追加一条记录
+     *
+     * @throws IOException 记录超过段大小或创建段失败
+     */
+    public synchronized void append(byte[] payload) throws IOException {
+        int required = HEADER_SIZE + payload.length;
+        // 段末尾保留一个长度为 0 的结束标记
+        if (required + 4 > segmentSize) {
+            throw new IOException("发件箱记录过大: " + payload.length + " 字节，段大小: " + segmentSize);
+        }
+        Position position = writePosition;
+        if (position.offset + required + 4 > active.capacity) {
+            active.buffer.force();
+            Segment next = new Segment(active.id + 1, segmentFile(active.id + 1), segmentSize);
+            segments.put(next.id, next);
+            active = next;
+            position = new Position(next.id, 0);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        ByteBuffer buffer = active.buffer.duplicate();
+        buffer.position(position.offset + 4);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(payload);
+        // 长度最后写入，残缺记录的长度为 0 或 CRC 不匹配
+        active.buffer.putInt(position.offset, payload.length);
+        dirty = true;
+        writePosition = new Position(position.segment, position.offset + required);
+    }
+    
+    /**
+     * 从读取位置读取记录（不超过已追加的位置），读取位置随之前进，检查点不变
+     *
+     * @param maxRecords 最多读取的记录数
+     * @return 记录内容
+     */
+    public List<byte[]> read(int maxRecords) {
+        List<byte[]> records = new ArrayList<>();
+        Position end = writePosition;
+        Position position = readPosition;
+        while (records.size() < maxRecords && position.compareTo(end) < 0) {
+            Segment segment = segment(position.segment);
+            int length = position.offset + 4 <= segment.capacity ? segment.buffer.getInt(position.offset) : 0;
+            if (length <= 0) {
+                // 段内数据结束，转到下一个段
+                position = new Position(position.segment + 1, 0);
+                continue;
+            }
+            byte[] payload = new byte[length];
+            ByteBuffer buffer = segment.buffer.duplicate();
+            buffer.position(position.offset + HEADER_SIZE);
+            buffer.get(payload);
+            records.add(payload);
+            position = new Position(position.segment, position.offset + HEADER_SIZE + length);
+        }
+        readPosition = position;
+        return records;
+    }
+    
+    /**
+     * 回退读取位置到检查点（已读取的记录处理失败时重读）
+     */
+    public void rewind() {
+        readPosition = checkpoint;
+    }
+    
+    /**
+     * 持久化检查点为当前读取位置，删除已消费的段
+     */
+    public void commit() throws IOException {
+        Position position = readPosition;
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putLong(position.segment).putLong(position.offset).flip();
+        checkpointChannel.write(buffer, 0);
+        checkpointChannel.force(false);
+        checkpoint = position;
+        
+        synchronized (this) {
+            while (segments.firstKey() < position.segment) {
+                segments.pollFirstEntry().getValue().delete();
+            }
+        }
+    }
+    
+    /**
+     * 把追加的数据刷到磁盘
+     */
+    public void force() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        Segment segment;
+        synchronized (this) {
+            segment = active;
+        }
+        segment.buffer.force();
+    }
+    
+    /**
+     * 未消费的字节数（已追加位置 - 检查点，含段末尾未使用的空间）
+     */
+    public long getBacklogBytes() {
+        Position end = writePosition;
+        Position start = checkpoint;
+        return (end.segment - start.segment) * (long) segmentSize + end.offset - start.offset;
+    }
+    
+    public int getSegmentCount() {
+        synchronized (this) {
+            return segments.size();
+        }
+    }
+    
+    /**
+     * 打开时检查点之后尚未消费的记录数
+     */
+    public long getRecoveredRecords() {
+        return recoveredRecords;
+    }
+    
+    /**
+     * 目录中是否有尚未消费的记录（用于启动时决定是否需要回放）
+     */
+    public static boolean hasSegments(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        return files != null && files.length > 0;
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        active.buffer.force();
+        for (Segment segment : segments.values()) {
+            segment.channel.close();
+        }
+        checkpointChannel.close();
+    }
+    
+    private synchronized Segment segment(long id) {
+        Segment segment = segments.get(id);
+        if (segment == null) {
+            throw new IllegalStateException("发件箱段不存在: " + id);
+        }
+        return segment;
+    }
+    
+    private File segmentFile(long id) {
+        return new File(directory, String.format("%020d%s", id, SEGMENT_SUFFIX));
+    }
+    
+    private Position readCheckpoint() throws IOException {
+        if (checkpointChannel.size() < 16) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        checkpointChannel.read(buffer, 0);
+        buffer.flip();
+        return new Position(buffer.getLong(), (int) buffer.getLong());
+    }
+    
+    /**
+     * 日志位置（段号 + 段内偏移）
+     */
+    private static final class Position implements Comparable<Position> {
+        private final long segment;
+        private final int offset;
+        
+        Position(long segment, int offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+        
+        @Override
+        public int compareTo(Position other) {
+            int result = Long.compare(segment, other.segment);
+            return result != 0 ? result : Integer.compare(offset, other.offset);
+        }
+    }
+    
+    /**
+     * 段文件
+     */
+    private static final class Segment {
+        private final long id;
+        private final File file;
+        private final int capacity;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        
+        Segment(long id, File file, int capacity) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.capacity = capacity;
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+        
+        /**
+         * 偏移处完整记录的内容长度，没有记录或记录残缺时返回 0
+         */
+        int validRecordLength(int offset) {
+            if (offset + HEADER_SIZE > capacity) {
+                return 0;
+            }
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + HEADER_SIZE + length > capacity) {
+                return 0;
+            }
+            byte[] payload = new byte[length];
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(offset + HEADER_SIZE);
+            slice.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, length);
+            return (int) crc.getValue() == buffer.getInt(offset + 4) ? length : 0;
+        }
+        
+        /**
+         * 清零偏移之后的数据
+         *
+         * @return 是否有残缺数据被清除
+         */
+        boolean truncate(int offset) {
+            int dirtyFrom = -1;
+            for (int i = offset; i < capacity; i++) {
+                if (buffer.get(i) != 0) {
+                    dirtyFrom = i;
+                    break;
+                }
+            }
+            if (dirtyFrom < 0) {
+                return false;
+            }
+            // 追加只覆盖新记录占用的部分，残留字节需要清零，避免下次恢复时被误认为记录
+            for (int i = dirtyFrom; i < capacity; i++) {
+                buffer.put(i, (byte) 0);
+            }
+            buffer.force();
+            return true;
+        }
+        
+        void delete() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("关闭发件箱段失败: {}", file, e);
+            }
+            // 映射内存在缓冲区被回收时释放
+            if (!file.delete()) {
+                log.warn("删除发件箱段失败: {}", file);
+            }
+        }
+    }
+}
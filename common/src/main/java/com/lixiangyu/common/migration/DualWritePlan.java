@@ -0,0 +1,806 @@
+package com.lixiangyu.common.migration;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 双写执行计划
+ * 按 (方法, 首个参数类型) 编译一次：目标表、SQL 文本和参数提取器在编译时确定，
+ * 每次调用只剩缓存查找和参数绑定，不再重复解析 SQL、遍历实体字段
+ *
+ * 功能特性：
+ * 1. 解析顺序与原实现一致：JPA Repository -> 方法名推断（MyBatis MappedStatement -> 实体类注解 -> 参数降级）
+ * 2. 实体 SQL：按实体类生成 INSERT/UPDATE/DELETE，字段通过 MethodHandle 读取，参数顺序与占位符一一对应
+ *    （UPDATE 为 SET 列在前、主键在后，DELETE 为主键）
+ * 3. MyBatis：缓存 SqlSource 和参数名解析器，每次调用生成 BoundSql（支持动态 SQL），按参数映射取值
+ * 4. 无法解析 SQL 的方法编译为空计划，调用时直接跳过
+ * 5. 实体计划同时编译主键提取器，绑定结果带有行键（主键值），供发件箱按键保证回放顺序
+ * 6. 批量计划：首个参数为集合或数组时按批大小拆分（见 {@link #bindBatch}）。MyBatis 语句按子集合生成多行语句，
+ *    实体按元素类型生成单行语句，同一 SQL 的元素合并为一个 JDBC 批处理；元素为 ID 的删除方法按 id 删除
+ * 7. 无法从参数确定列的 INSERT/UPDATE 编译为空计划（不再生成 REPLACE INTO t VALUES (?) 这类无效语句）
+ *
+ * 计划不可变（批量计划的元素类型缓存除外，线程安全），可被多个线程共享
+ *
+ * @author lixiangyu
+ */
+@Slf4j
+public final class DualWritePlan {
+    
+    /**
+     * 无法解析 SQL 的空计划
+     */
+    public static final DualWritePlan NONE = new DualWritePlan(null, null, null, null, null, false, null);
+    
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    
+    /**
+     * 统一的访问器签名：(Object) -> Object
+     */
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    
+    /**
+     * 实体类 -> 映射（表名、列、主键、字段读取器）
+     */
+    private static final ClassValue<EntityMapping> ENTITY_MAPPINGS = new ClassValue<EntityMapping>() {
+        @Override
+        protected EntityMapping computeValue(Class<?> type) {
+            return new EntityMapping(type);
+        }
+    };
+    
+    private final String tableName;
+    
+    /**
+     * 静态 SQL（MyBatis 计划为 null，每次调用生成）
+     */
+    private final String sql;
+    
+    private final ParameterExtractor extractor;
+    
+    /**
+     * 主键值提取器，无法确定主键时为 null
+     */
+    private final ParameterExtractor keyExtractor;
+    
+    private final MyBatisStatement myBatisStatement;
+    
+    /**
+     * 首个参数是否为集合或数组（MyBatis 计划按子集合分批绑定）
+     */
+    private final boolean collectionArgument;
+    
+    /**
+     * 批量实体计划的元素计划，非批量实体计划为 null
+     */
+    private final ElementPlans elementPlans;
+    
+    /**
+     * 实体 INSERT 计划写入的列和主键（发件箱回放时按目标库方言改写为幂等写入），其他计划为 null
+     */
+    private final List<String> insertColumns;
+    private final List<String> insertPrimaryKeys;
+    
+    private DualWritePlan(String tableName, String sql, ParameterExtractor extractor, ParameterExtractor keyExtractor,
+                          MyBatisStatement myBatisStatement) {
+        this(tableName, sql, extractor, keyExtractor, myBatisStatement, false, null);
+    }
+    
+    private DualWritePlan(String tableName, String sql, ParameterExtractor extractor, ParameterExtractor keyExtractor,
+                          MyBatisStatement myBatisStatement, boolean collectionArgument, ElementPlans elementPlans) {
+        this(tableName, sql, extractor, keyExtractor, myBatisStatement, collectionArgument, elementPlans, null, null);
+    }
+    
+    private DualWritePlan(String tableName, String sql, ParameterExtractor extractor, ParameterExtractor keyExtractor,
+                          MyBatisStatement myBatisStatement, boolean collectionArgument, ElementPlans elementPlans,
+                          List<String> insertColumns, List<String> insertPrimaryKeys) {
+        this.tableName = tableName;
+        this.sql = sql;
+        this.extractor = extractor;
+        this.keyExtractor = keyExtractor;
+        this.myBatisStatement = myBatisStatement;
+        this.collectionArgument = collectionArgument;
+        this.elementPlans = elementPlans;
+        this.insertColumns = insertColumns;
+        this.insertPrimaryKeys = insertPrimaryKeys;
+    }
+    
+    /**
+     * 编译双写计划
+     *
+     * @param method 被拦截的方法
+     * @param argClass 首个参数的类型，没有参数或参数为 null 时为 null
+     * @param sqlSessionFactory MyBatis SqlSessionFactory，未配置 MyBatis 时为 null
+     * @return 双写计划，无法解析 SQL 时返回 {@link #NONE}
+     */
+    public static DualWritePlan compile(Method method, Class<?> argClass, Object sqlSessionFactory) {
+        String methodName = method.getName().toLowerCase(Locale.ROOT);
+        boolean collectionArgument = argClass != null && (Collection.class.isAssignableFrom(argClass)
+                || (argClass.isArray() && !argClass.getComponentType().isPrimitive()));
+        
+        // 1. JPA Repository：按实体类生成
+        if (isJpaRepository(method.getDeclaringClass()) && argClass != null) {
+            DualWritePlan plan = collectionArgument ? fromElements(methodName, method, argClass)
+                    : fromEntity(methodName, argClass);
+            if (plan != null) {
+                return plan;
+            }
+        }
+        
+        // 2. 根据方法名推断 SQL 类型
+        String sqlType;
+        if (methodName.contains("insert") || methodName.contains("save") || methodName.contains("add")) {
+            sqlType = "INSERT";
+        } else if (methodName.contains("update") || methodName.contains("modify")) {
+            sqlType = "UPDATE";
+        } else if (methodName.contains("delete") || methodName.contains("remove")) {
+            sqlType = "DELETE";
+        } else {
+            return NONE;
+        }
+        
+        // 2.1 MyBatis Mapper
+        if (sqlSessionFactory != null) {
+            MyBatisStatement statement = MyBatisStatement.resolve(sqlSessionFactory, method);
+            if (statement != null) {
+                String mapperName = method.getDeclaringClass().getSimpleName().replaceAll("(Mapper|Dao)$", "");
+                return new DualWritePlan(inferTableName(mapperName), null, null, null, statement, collectionArgument,
+                        null);
+            }
+        }
+        
+        // 2.2 实体类注解（集合参数按元素类型）
+        if (collectionArgument) {
+            DualWritePlan plan = fromElements(methodName, method, argClass);
+            return plan != null ? plan : NONE;
+        }
+        if (argClass != null) {
+            DualWritePlan plan = fromEntity(methodName, argClass);
+            if (plan != null) {
+                return plan;
+            }
+        }
+        
+        // 2.3 降级方案：根据方法参数推断
+        return fromArgs(sqlType, method, argClass);
+    }
+    
+    public boolean isEmpty() {
+        return this == NONE;
+    }
+    
+    /**
+     * 是否为批量计划（首个参数为集合或数组），批量计划通过 {@link #bindBatch} 绑定
+     */
+    public boolean isBatch() {
+        return collectionArgument || elementPlans != null;
+    }
+    
+    /**
+     * 目标表名（MyBatis 计划按 Mapper 接口名推断）
+     */
+    public String getTableName() {
+        return tableName;
+    }
+    
+    /**
+     * 按本次调用的参数生成语句
+     *
+     * @param args 方法参数
+     * @return SQL 和绑定参数
+     */
+    public BoundStatement bind(Object[] args) {
+        if (isBatch()) {
+            throw new IllegalStateException("批量计划需要通过 bindBatch 绑定");
+        }
+        if (myBatisStatement != null) {
+            return myBatisStatement.bind(args);
+        }
+        return new BoundStatement(sql, extractor.extract(args),
+                keyExtractor == null ? null : keyExtractor.extract(args), insertColumns, insertPrimaryKeys);
+    }
+    
+    /**
+     * 按本次调用的集合参数分批生成语句，空集合返回空列表
+     *
+     * @param args 方法参数，首个参数为集合或数组
+     * @param chunkSize 每批最多包含的元素数
+     * @return 按元素顺序排列的批次
+     */
+    public List<BoundBatch> bindBatch(Object[] args, int chunkSize) {
+        Object argument = args.length > 0 ? args[0] : null;
+        List<?> elements = argument == null ? Collections.emptyList()
+                : argument instanceof List ? (List<?>) argument
+                : argument instanceof Collection ? new ArrayList<>((Collection<?>) argument)
+                : Arrays.asList((Object[]) argument);
+        int size = Math.max(1, chunkSize);
+        List<BoundBatch> batches = new ArrayList<>();
+        if (elementPlans == null) {
+            // MyBatis：每批用子集合替换首个参数，生成一条多行语句
+            for (int from = 0; from < elements.size(); from += size) {
+                int to = Math.min(from + size, elements.size());
+                Object[] chunkArgs = args.clone();
+                chunkArgs[0] = argument instanceof Object[] ? Arrays.copyOfRange((Object[]) argument, from, to)
+                        : elements.subList(from, to);
+                BoundStatement statement = myBatisStatement.bind(chunkArgs);
+                BoundBatch batch = new BoundBatch(statement.getSql());
+                batch.add(statement.getParams(), null);
+                batches.add(batch);
+            }
+            return batches;
+        }
+        
+        // 实体：逐个元素绑定，连续的同一 SQL 合并为一批
+        BoundBatch current = null;
+        for (Object element : elements) {
+            if (element == null) {
+                continue;
+            }
+            DualWritePlan plan = elementPlans.get(element.getClass());
+            if (plan.isEmpty()) {
+                log.debug("无法确定元素类型 {} 的目标库语句，跳过", element.getClass().getName());
+                continue;
+            }
+            BoundStatement statement = plan.bind(new Object[]{element});
+            if (current == null || current.rows.size() >= size || !current.sql.equals(statement.getSql())) {
+                current = new BoundBatch(statement.getSql(), statement.getColumns(), statement.getPrimaryKeys());
+                batches.add(current);
+            }
+            current.add(statement.getParams(), statement.getKey());
+        }
+        return batches;
+    }
+    
+    /**
+     * 一批语句：同一 SQL 的多组绑定参数（一组时按单条语句执行）
+     */
+    public static final class BoundBatch {
+        private final String sql;
+        private final List<Object[]> rows = new ArrayList<>();
+        private final List<Object[]> keys = new ArrayList<>();
+        private final List<String> columns;
+        private final List<String> primaryKeys;
+        
+        BoundBatch(String sql) {
+            this(sql, null, null);
+        }
+        
+        BoundBatch(String sql, List<String> columns, List<String> primaryKeys) {
+            this.sql = sql;
+            this.columns = columns;
+            this.primaryKeys = primaryKeys;
+        }
+        
+        void add(Object[] params, Object[] key) {
+            rows.add(params);
+            keys.add(key);
+        }
+        
+        public String getSql() {
+            return sql;
+        }
+        
+        public List<Object[]> getRows() {
+            return rows;
+        }
+        
+        /**
+         * 每组参数对应的行键，无法确定时为 null
+         */
+        public List<Object[]> getKeys() {
+            return keys;
+        }
+        
+        /**
+         * 拆分为单条语句（发件箱按条追加）
+         */
+        public List<BoundStatement> toStatements() {
+            List<BoundStatement> statements = new ArrayList<>(rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                statements.add(new BoundStatement(sql, rows.get(i), keys.get(i), columns, primaryKeys));
+            }
+            return statements;
+        }
+    }
+    
+    /**
+     * 绑定后的语句
+     */
+    public static final class BoundStatement {
+        private final String sql;
+        private final Object[] params;
+        private final Object[] key;
+        private final List<String> columns;
+        private final List<String> primaryKeys;
+        
+        BoundStatement(String sql, Object[] params, Object[] key) {
+            this(sql, params, key, null, null);
+        }
+        
+        BoundStatement(String sql, Object[] params, Object[] key, List<String> columns, List<String> primaryKeys) {
+            this.sql = sql;
+            this.params = params;
+            this.key = key;
+            this.columns = columns;
+            this.primaryKeys = primaryKeys;
+        }
+        
+        public String getSql() {
+            return sql;
+        }
+        
+        public Object[] getParams() {
+            return params;
+        }
+        
+        /**
+         * 行键（主键值），无法确定时为 null
+         */
+        public Object[] getKey() {
+            return key;
+        }
+        
+        /**
+         * INSERT 语句写入的列（参数按此顺序绑定），用于按目标库方言改写为幂等写入；不是实体 INSERT 时为 null
+         */
+        public List<String> getColumns() {
+            return columns;
+        }
+        
+        /**
+         * INSERT 语句的主键列，不是实体 INSERT 或无法确定主键时为 null
+         */
+        public List<String> getPrimaryKeys() {
+            return primaryKeys;
+        }
+    }
+    
+    /**
+     * 参数提取器：方法参数 -> SQL 绑定参数
+     */
+    private interface ParameterExtractor {
+        Object[] extract(Object[] args);
+    }
+    
+    /**
+     * 是否是 JPA Repository 方法（声明类实现了 JpaRepository、CrudRepository 等接口）
+     */
+    private static boolean isJpaRepository(Class<?> declaringClass) {
+        for (Class<?> iface : declaringClass.getInterfaces()) {
+            if (iface.getName().contains("Repository")) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 按实体类生成计划，方法名无法识别、参数不是实体（JDK 类型）或实体没有可用字段时返回 null
+     */
+    private static DualWritePlan fromEntity(String methodName, Class<?> entityClass) {
+        if (entityClass.isArray() || entityClass.getName().startsWith("java.")) {
+            return null;
+        }
+        EntityMapping mapping = ENTITY_MAPPINGS.get(entityClass);
+        if (mapping.columns.isEmpty()) {
+            return null;
+        }
+        ParameterExtractor keyExtractor = mapping.extractor(mapping.primaryKeyIndexes());
+        if (methodName.contains("save") || methodName.contains("insert") || methodName.contains("add")) {
+            String sql = UpsertSqlBuilder.buildInsert(mapping.tableName, mapping.columns);
+            return new DualWritePlan(mapping.tableName, sql, mapping.extractor(mapping.allIndexes()), keyExtractor,
+                    null, false, null, mapping.columns,
+                    mapping.primaryKeys.isEmpty() ? null : mapping.primaryKeys);
+        } else if (methodName.contains("update") || methodName.contains("modify")) {
+            List<Integer> indexes = new ArrayList<>();
+            List<String> setColumns = new ArrayList<>();
+            for (int i = 0; i < mapping.columns.size(); i++) {
+                if (!mapping.primaryKeys.contains(mapping.columns.get(i))) {
+                    indexes.add(i);
+                    setColumns.add(mapping.columns.get(i));
+                }
+            }
+            if (setColumns.isEmpty()) {
+                return null;
+            }
+            indexes.addAll(mapping.primaryKeyIndexes());
+            String sql = "UPDATE " + mapping.tableName + " SET "
+                    + setColumns.stream().map(column -> column + " = ?").collect(Collectors.joining(", "))
+                    + " WHERE " + whereClause(mapping.primaryKeys);
+            return new DualWritePlan(mapping.tableName, sql, mapping.extractor(indexes), keyExtractor, null);
+        } else if (methodName.contains("delete") || methodName.contains("remove")) {
+            String sql = "DELETE FROM " + mapping.tableName + " WHERE " + whereClause(mapping.primaryKeys);
+            return new DualWritePlan(mapping.tableName, sql, keyExtractor, keyExtractor, null);
+        }
+        return null;
+    }
+    
+    /**
+     * 集合参数：按元素类型生成批量计划；静态可知的元素类型无法生成语句时返回 null
+     */
+    private static DualWritePlan fromElements(String methodName, Method method, Class<?> argClass) {
+        DualWritePlan idDelete = methodName.contains("delete") || methodName.contains("remove")
+                ? deleteById(method) : NONE;
+        ElementPlans elementPlans = new ElementPlans(methodName, idDelete);
+        Class<?> elementClass = elementClass(method, argClass);
+        String tableName = null;
+        if (elementClass != null) {
+            DualWritePlan elementPlan = elementPlans.get(elementClass);
+            if (elementPlan.isEmpty()) {
+                return null;
+            }
+            tableName = elementPlan.tableName;
+        }
+        return new DualWritePlan(tableName, null, null, null, null, true, elementPlans);
+    }
+    
+    /**
+     * 集合参数的元素类型（数组组件类型或首个参数的泛型实参），无法静态确定时返回 null
+     */
+    private static Class<?> elementClass(Method method, Class<?> argClass) {
+        Type type = argClass.isArray() ? argClass.getComponentType()
+                : method.getParameterCount() == 0 ? null : method.getGenericParameterTypes()[0];
+        if (type instanceof ParameterizedType) {
+            Type[] typeArguments = ((ParameterizedType) type).getActualTypeArguments();
+            type = typeArguments.length == 1 ? typeArguments[0] : null;
+            if (type instanceof ParameterizedType) {
+                type = ((ParameterizedType) type).getRawType();
+            }
+        }
+        return type instanceof Class && type != Object.class ? (Class<?>) type : null;
+    }
+    
+    /**
+     * 降级方案：根据方法参数推断
+     * 只有删除可以按 id 推断；INSERT/UPDATE 无法从非实体参数确定列，不生成语句
+     */
+    private static DualWritePlan fromArgs(String sqlType, Method method, Class<?> argClass) {
+        if ("DELETE".equals(sqlType)) {
+            return deleteById(method);
+        }
+        log.warn("无法从参数类型 {} 确定 {} 的列，方法: {}", argClass == null ? null : argClass.getName(), sqlType,
+                method);
+        return NONE;
+    }
+    
+    /**
+     * 假设第一个参数是 ID，按方法所在类推断表名
+     */
+    private static DualWritePlan deleteById(Method method) {
+        if (method.getParameterCount() == 0) {
+            return NONE;
+        }
+        String tableName = inferTableName(method.getDeclaringClass());
+        return new DualWritePlan(tableName, "DELETE FROM " + tableName + " WHERE id = ?",
+                args -> new Object[]{args[0]}, null, null);
+    }
+    
+    private static String whereClause(List<String> primaryKeys) {
+        return primaryKeys.stream().map(key -> key + " = ?").collect(Collectors.joining(" AND "));
+    }
+    
+    /**
+     * 推断表名：移除 DO、Entity、Model 后缀，驼峰转下划线
+     */
+    static String inferTableName(Class<?> clazz) {
+        return inferTableName(clazz.getSimpleName());
+    }
+    
+    private static String inferTableName(String className) {
+        return camelToUnderscore(className.replaceAll("(DO|Entity|Model)$", ""));
+    }
+    
+    private static String camelToUnderscore(String str) {
+        return str.replaceAll("([a-z])([A-Z])", "$1_$2").toLowerCase();
+    }
+    
+    /**
+     * 读取 javax.persistence 注解的 name 属性，注解不存在或为空时返回 null
+     */
+    private static String persistenceName(java.lang.reflect.AnnotatedElement element, String annotationName) {
+        Annotation annotation = findPersistenceAnnotation(element, annotationName);
+        if (annotation == null) {
+            return null;
+        }
+        try {
+            String name = (String) annotation.annotationType().getMethod("name").invoke(annotation);
+            return name == null || name.isEmpty() ? null : name;
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+    
+    private static Annotation findPersistenceAnnotation(java.lang.reflect.AnnotatedElement element,
+                                                        String annotationName) {
+        for (Annotation annotation : element.getAnnotations()) {
+            if (annotation.annotationType().getName().equals(annotationName)) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * 实体类映射：表名、列（字段声明顺序，子类在前）、主键列和字段读取器
+     */
+    private static final class EntityMapping {
+        private final String tableName;
+        private final List<String> columns = new ArrayList<>();
+        private final List<MethodHandle> getters = new ArrayList<>();
+        private final List<String> primaryKeys = new ArrayList<>();
+        
+        EntityMapping(Class<?> entityClass) {
+            String table = persistenceName(entityClass, "javax.persistence.Table");
+            this.tableName = table != null ? table : inferTableName(entityClass);
+            
+            Class<?> currentClass = entityClass;
+            while (currentClass != null && currentClass != Object.class) {
+                for (Field field : currentClass.getDeclaredFields()) {
+                    // 跳过静态字段和序列化字段
+                    if (Modifier.isStatic(field.getModifiers()) || field.getName().equals("serialVersionUID")) {
+                        continue;
+                    }
+                    MethodHandle getter;
+                    try {
+                        field.setAccessible(true);
+                        getter = LOOKUP.unreflectGetter(field).asType(GETTER_TYPE);
+                    } catch (IllegalAccessException | RuntimeException e) {
+                        log.debug("无法读取字段: {}.{}", currentClass.getName(), field.getName(), e);
+                        continue;
+                    }
+                    String column = persistenceName(field, "javax.persistence.Column");
+                    if (column == null) {
+                        column = camelToUnderscore(field.getName());
+                    }
+                    columns.add(column);
+                    getters.add(getter);
+                    if (findPersistenceAnnotation(field, "javax.persistence.Id") != null) {
+                        primaryKeys.add(column);
+                    }
+                }
+                currentClass = currentClass.getSuperclass();
+            }
+            // 如果没有找到 @Id，默认使用 id 字段
+            if (primaryKeys.isEmpty()) {
+                primaryKeys.add("id");
+            }
+        }
+        
+        List<Integer> allIndexes() {
+            List<Integer> indexes = new ArrayList<>(columns.size());
+            for (int i = 0; i < columns.size(); i++) {
+                indexes.add(i);
+            }
+            return indexes;
+        }
+        
+        /**
+         * 主键列对应的字段下标，实体没有该字段时为 -1（绑定 null）
+         */
+        List<Integer> primaryKeyIndexes() {
+            List<Integer> indexes = new ArrayList<>(primaryKeys.size());
+            for (String primaryKey : primaryKeys) {
+                indexes.add(columns.indexOf(primaryKey));
+            }
+            return indexes;
+        }
+        
+        /**
+         * 按字段下标从首个参数（实体）读取绑定参数
+         */
+        ParameterExtractor extractor(List<Integer> indexes) {
+            MethodHandle[] handles = new MethodHandle[indexes.size()];
+            for (int i = 0; i < handles.length; i++) {
+                int index = indexes.get(i);
+                handles[i] = index < 0 ? null : getters.get(index);
+            }
+            return args -> {
+                Object entity = args.length > 0 ? args[0] : null;
+                Object[] params = new Object[handles.length];
+                if (entity == null) {
+                    return params;
+                }
+                for (int i = 0; i < handles.length; i++) {
+                    params[i] = handles[i] == null ? null : get(handles[i], entity);
+                }
+                return params;
+            };
+        }
+    }
+    
+    /**
+     * 批量计划的元素计划：按元素的运行时类型编译并缓存
+     */
+    private static final class ElementPlans {
+        private final String methodName;
+        
+        /**
+         * 元素不是实体时的计划（删除方法按 id 删除，其余为空计划）
+         */
+        private final DualWritePlan fallback;
+        
+        private final Map<Class<?>, DualWritePlan> plans = new ConcurrentHashMap<>();
+        
+        ElementPlans(String methodName, DualWritePlan fallback) {
+            this.methodName = methodName;
+            this.fallback = fallback;
+        }
+        
+        DualWritePlan get(Class<?> elementClass) {
+            DualWritePlan plan = plans.get(elementClass);
+            if (plan == null) {
+                plan = plans.computeIfAbsent(elementClass, type -> {
+                    DualWritePlan entityPlan = fromEntity(methodName, type);
+                    return entityPlan != null ? entityPlan : fallback;
+                });
+            }
+            return plan;
+        }
+    }
+    
+    private static Object get(MethodHandle getter, Object target) {
+        try {
+            return (Object) getter.invokeExact(target);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * MyBatis 映射语句：缓存 SqlSource、参数名解析器和类型处理器注册表，
+     * 按 DefaultParameterHandler 的规则从参数对象取值
+     */
+    private static final class MyBatisStatement {
+        private final Object configuration;
+        private final Object sqlSource;
+        private final Object paramNameResolver;
+        private final Object typeHandlerRegistry;
+        
+        private MyBatisStatement(Object configuration, Object sqlSource, Object paramNameResolver,
+                                 Object typeHandlerRegistry) {
+            this.configuration = configuration;
+            this.sqlSource = sqlSource;
+            this.paramNameResolver = paramNameResolver;
+            this.typeHandlerRegistry = typeHandlerRegistry;
+        }
+        
+        /**
+         * 查找方法对应的 MappedStatement，不存在时返回 null
+         */
+        static MyBatisStatement resolve(Object sqlSessionFactory, Method method) {
+            try {
+                Handles handles = Handles.INSTANCE;
+                Object configuration = handles.getConfiguration.invoke(sqlSessionFactory);
+                String statementId = method.getDeclaringClass().getName() + "." + method.getName();
+                if (!(Boolean) handles.hasStatement.invoke(configuration, statementId)) {
+                    return null;
+                }
+                Object mappedStatement = handles.getMappedStatement.invoke(configuration, statementId);
+                Object sqlSource = handles.getSqlSource.invoke(mappedStatement);
+                Object paramNameResolver = handles.newParamNameResolver.invoke(configuration, method);
+                Object typeHandlerRegistry = handles.getTypeHandlerRegistry.invoke(configuration);
+                return new MyBatisStatement(configuration, sqlSource, paramNameResolver, typeHandlerRegistry);
+            } catch (Throwable e) {
+                log.debug("从 MyBatis 解析 SQL 失败: {}", method, e);
+                return null;
+            }
+        }
+        
+        BoundStatement bind(Object[] args) {
+            try {
+                Handles handles = Handles.INSTANCE;
+                Object parameter = handles.getNamedParams.invoke(paramNameResolver, args);
+                Object boundSql = handles.getBoundSql.invoke(sqlSource, parameter);
+                String sql = (String) handles.getSql.invoke(boundSql);
+                List<?> mappings = (List<?>) handles.getParameterMappings.invoke(boundSql);
+                Object[] params = new Object[mappings.size()];
+                Object metaObject = null;
+                for (int i = 0; i < params.length; i++) {
+                    String property = (String) handles.getProperty.invoke(mappings.get(i));
+                    if ((Boolean) handles.hasAdditionalParameter.invoke(boundSql, property)) {
+                        params[i] = handles.getAdditionalParameter.invoke(boundSql, property);
+                    } else if (parameter == null) {
+                        params[i] = null;
+                    } else if ((Boolean) handles.hasTypeHandler.invoke(typeHandlerRegistry, parameter.getClass())) {
+                        params[i] = parameter;
+                    } else {
+                        if (metaObject == null) {
+                            metaObject = handles.newMetaObject.invoke(configuration, parameter);
+                        }
+                        params[i] = handles.getValue.invoke(metaObject, property);
+                    }
+                }
+                return new BoundStatement(sql, params, null);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("生成 MyBatis 语句失败", e);
+            }
+        }
+        
+        /**
+         * MyBatis 方法句柄，首次使用时加载
+         */
+        private static final class Handles {
+            private static final Handles INSTANCE = new Handles();
+            
+            private final MethodHandle getConfiguration;
+            private final MethodHandle hasStatement;
+            private final MethodHandle getMappedStatement;
+            private final MethodHandle getSqlSource;
+            private final MethodHandle getTypeHandlerRegistry;
+            private final MethodHandle hasTypeHandler;
+            private final MethodHandle newMetaObject;
+            private final MethodHandle getValue;
+            private final MethodHandle newParamNameResolver;
+            private final MethodHandle getNamedParams;
+            private final MethodHandle getBoundSql;
+            private final MethodHandle getSql;
+            private final MethodHandle getParameterMappings;
+            private final MethodHandle hasAdditionalParameter;
+            private final MethodHandle getAdditionalParameter;
+            private final MethodHandle getProperty;
+            
+            private Handles() {
+                try {
+                    ClassLoader loader = DualWritePlan.class.getClassLoader();
+                    Class<?> factoryClass = Class.forName("org.apache.ibatis.session.SqlSessionFactory", false,
+                            loader);
+                    Class<?> configurationClass = Class.forName("org.apache.ibatis.session.Configuration", false,
+                            loader);
+                    Class<?> mappedStatementClass = Class.forName("org.apache.ibatis.mapping.MappedStatement", false,
+                            loader);
+                    Class<?> sqlSourceClass = Class.forName("org.apache.ibatis.mapping.SqlSource", false, loader);
+                    Class<?> boundSqlClass = Class.forName("org.apache.ibatis.mapping.BoundSql", false, loader);
+                    Class<?> mappingClass = Class.forName("org.apache.ibatis.mapping.ParameterMapping", false, loader);
+                    Class<?> registryClass = Class.forName("org.apache.ibatis.type.TypeHandlerRegistry", false, loader);
+                    Class<?> metaObjectClass = Class.forName("org.apache.ibatis.reflection.MetaObject", false, loader);
+                    Class<?> resolverClass = Class.forName("org.apache.ibatis.reflection.ParamNameResolver", false,
+                            loader);
+                    
+                    getConfiguration = LOOKUP.unreflect(factoryClass.getMethod("getConfiguration"));
+                    hasStatement = LOOKUP.unreflect(configurationClass.getMethod("hasStatement", String.class));
+                    getMappedStatement = LOOKUP.unreflect(
+                            configurationClass.getMethod("getMappedStatement", String.class));
+                    getSqlSource = LOOKUP.unreflect(mappedStatementClass.getMethod("getSqlSource"));
+                    getTypeHandlerRegistry = LOOKUP.unreflect(configurationClass.getMethod("getTypeHandlerRegistry"));
+                    hasTypeHandler = LOOKUP.unreflect(registryClass.getMethod("hasTypeHandler", Class.class));
+                    newMetaObject = LOOKUP.unreflect(configurationClass.getMethod("newMetaObject", Object.class));
+                    getValue = LOOKUP.unreflect(metaObjectClass.getMethod("getValue", String.class));
+                    newParamNameResolver = LOOKUP.unreflectConstructor(
+                            resolverClass.getConstructor(configurationClass, Method.class));
+                    getNamedParams = LOOKUP.unreflect(resolverClass.getMethod("getNamedParams", Object[].class));
+                    getBoundSql = LOOKUP.unreflect(sqlSourceClass.getMethod("getBoundSql", Object.class));
+                    getSql = LOOKUP.unreflect(boundSqlClass.getMethod("getSql"));
+                    getParameterMappings = LOOKUP.unreflect(boundSqlClass.getMethod("getParameterMappings"));
+                    hasAdditionalParameter = LOOKUP.unreflect(
+                            boundSqlClass.getMethod("hasAdditionalParameter", String.class));
+                    getAdditionalParameter = LOOKUP.unreflect(
+                            boundSqlClass.getMethod("getAdditionalParameter", String.class));
+                    getProperty = LOOKUP.unreflect(mappingClass.getMethod("getProperty"));
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("加载 MyBatis 类失败", e);
+                }
+            }
+        }
+    }
+}
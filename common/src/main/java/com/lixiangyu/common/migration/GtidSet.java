@@ -0,0 +1,111 @@
+package com.lixiangyu.common.migration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * GTID 集合
+ * 格式：uuid:1-100:105,uuid2:1-20，按 server uuid 维护有序、合并后的区间列表
+ *
+ * @author lixiangyu
+ */
+public class GtidSet {
+    
+    /**
+     * server uuid -> 区间列表（闭区间 [start, end]，按 start 有序且互不相邻）
+     */
+    private final Map<String, List<long[]>> intervals = new TreeMap<>();
+    
+    public GtidSet() {
+    }
+    
+    /**
+     * 解析 GTID 集合字符串（空串表示空集合）
+     */
+    public static GtidSet parse(String text) {
+        GtidSet set = new GtidSet();
+        if (text == null || text.trim().isEmpty()) {
+            return set;
+        }
+        for (String part : text.replace("\n", "").split(",")) {
+            String[] items = part.trim().split(":");
+            String uuid = items[0].toLowerCase();
+            for (int i = 1; i < items.length; i++) {
+                int dash = items[i].indexOf('-');
+                long start = Long.parseLong(dash < 0 ? items[i] : items[i].substring(0, dash));
+                long end = dash < 0 ? start : Long.parseLong(items[i].substring(dash + 1));
+                set.add(uuid, start, end);
+            }
+        }
+        return set;
+    }
+    
+    /**
+     * 加入一个事务的 GTID（uuid:transactionId）
+     */
+    public void add(String gtid) {
+        int colon = gtid.lastIndexOf(':');
+        long transactionId = Long.parseLong(gtid.substring(colon + 1).trim());
+        add(gtid.substring(0, colon).trim().toLowerCase(), transactionId, transactionId);
+    }
+    
+    private void add(String uuid, long start, long end) {
+        List<long[]> list = intervals.computeIfAbsent(uuid, k -> new ArrayList<>());
+        
+        // 绝大多数情况下事务号递增，直接扩展最后一个区间
+        if (!list.isEmpty()) {
+            long[] last = list.get(list.size() - 1);
+            if (start >= last[0] && start <= last[1] + 1) {
+                last[1] = Math.max(last[1], end);
+                return;
+            }
+        }
+        
+        List<long[]> merged = new ArrayList<>(list.size() + 1);
+        long[] current = new long[]{start, end};
+        boolean inserted = false;
+        for (long[] interval : list) {
+            if (interval[1] + 1 < current[0]) {
+                merged.add(interval);
+            } else if (current[1] + 1 < interval[0]) {
+                if (!inserted) {
+                    merged.add(current);
+                    inserted = true;
+                }
+                merged.add(interval);
+            } else {
+                current[0] = Math.min(current[0], interval[0]);
+                current[1] = Math.max(current[1], interval[1]);
+            }
+        }
+        if (!inserted) {
+            merged.add(current);
+        }
+        list.clear();
+        list.addAll(merged);
+    }
+    
+    public boolean isEmpty() {
+        return intervals.isEmpty();
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, List<long[]>> entry : intervals.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(entry.getKey());
+            for (long[] interval : entry.getValue()) {
+                sb.append(':').append(interval[0]);
+                if (interval[1] != interval[0]) {
+                    sb.append('-').append(interval[1]);
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
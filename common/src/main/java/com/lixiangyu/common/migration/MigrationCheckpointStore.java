@@ -0,0 +1,233 @@
+package com.lixiangyu.common.migration;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 迁移断点存储
+ * 以追加写日志的形式把分表、分片断点持久化到本地文件，任务重启后回放日志恢复每个分片最后提交的主键
+ *
+ * 日志格式（每行一条，制表符分隔，同一分片以最后一行为准）：
+ * 表名  分片序号  主键下界  主键上界  最后提交主键  已迁移记录数  是否完成  保存时间戳
+ *
+ * 分片序号约定：>= 0 为主键范围分片（首次迁移时写入全部分片的范围，重启后按相同范围续传），
+ * {@link #TABLE_CHUNK} 为整表完成标记
+ *
+ * @author lixiangyu
+ */
+@Slf4j
+public class MigrationCheckpointStore implements Closeable {
+    
+    /**
+     * 整表完成标记的分片序号
+     */
+    public static final int TABLE_CHUNK = -1;
+    
+    private static final String NULL_VALUE = "-";
+    
+    private final Path logFile;
+    
+    private final String taskId;
+    
+    private final MigrationTaskManager taskManager;
+    
+    /**
+     * 回放后的最新断点（表名 -> 分片序号 -> 断点）
+     */
+    private final Map<String, Map<Integer, MigrationTaskManager.MigrationCheckpoint>> checkpoints =
+            new ConcurrentHashMap<>();
+    
+    /**
+     * 回放日志时已存在断点的表（上次运行可能已写入部分记录）
+     */
+    private final Set<String> restoredTables = ConcurrentHashMap.newKeySet();
+    
+    private FileChannel channel;
+    
+    /**
+     * 打开断点存储并回放已有日志
+     *
+     * @param directory 断点目录
+     * @param checkpointId 断点标识（日志文件名），重启后使用相同标识才能续传
+     * @param taskId 当前任务ID（断点同步到 MigrationTaskManager）
+     * @param taskManager 任务管理器
+     */
+    public MigrationCheckpointStore(Path directory, String checkpointId, String taskId,
+                                    MigrationTaskManager taskManager) throws IOException {
+        this.logFile = directory.resolve(checkpointId + ".log");
+        this.taskId = taskId;
+        this.taskManager = taskManager;
+        
+        Files.createDirectories(directory);
+        int replayed = replay();
+        restoredTables.addAll(checkpoints.keySet());
+        this.channel = FileChannel.open(logFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (replayed > 0) {
+            log.info("回放迁移断点日志: {}, 断点数: {}", logFile, replayed);
+        }
+    }
+    
+    /**
+     * 获取分片断点
+     *
+     * @return 断点，不存在时返回 null
+     */
+    public MigrationTaskManager.MigrationCheckpoint get(String tableName, int chunkIndex) {
+        Map<Integer, MigrationTaskManager.MigrationCheckpoint> tableCheckpoints = checkpoints.get(tableName);
+        return tableCheckpoints == null ? null : tableCheckpoints.get(chunkIndex);
+    }
+    
+    /**
+     * 表是否已经完成迁移
+     */
+    public boolean isTableCompleted(String tableName) {
+        MigrationTaskManager.MigrationCheckpoint checkpoint = get(tableName, TABLE_CHUNK);
+        return checkpoint != null && checkpoint.isCompleted();
+    }
+    
+    /**
+     * 表是否存在断点（存在时不能清空目标表）
+     */
+    public boolean hasCheckpoints(String tableName) {
+        Map<Integer, MigrationTaskManager.MigrationCheckpoint> tableCheckpoints = checkpoints.get(tableName);
+        return tableCheckpoints != null && !tableCheckpoints.isEmpty();
+    }
+    
+    /**
+     * 表的断点是否从上次运行的日志中回放而来（本次运行新写入的分片计划不算）
+     * 这类表未完成的分片在最后提交主键之后可能已有上次写入、但未来得及记录断点的记录
+     */
+    public boolean isRestored(String tableName) {
+        return restoredTables.contains(tableName);
+    }
+    
+    /**
+     * 获取表的分片断点（按分片序号排序，不含整表完成标记）
+     */
+    public List<MigrationTaskManager.MigrationCheckpoint> getChunkCheckpoints(String tableName) {
+        Map<Integer, MigrationTaskManager.MigrationCheckpoint> tableCheckpoints = checkpoints.get(tableName);
+        if (tableCheckpoints == null) {
+            return new ArrayList<>();
+        }
+        return tableCheckpoints.values().stream()
+                .filter(checkpoint -> checkpoint.getChunkIndex() != TABLE_CHUNK)
+                .sorted(Comparator.comparing(MigrationTaskManager.MigrationCheckpoint::getChunkIndex))
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * 追加断点并刷盘
+     */
+    public synchronized void save(MigrationTaskManager.MigrationCheckpoint checkpoint) throws IOException {
+        if (checkpoint.getSaveTime() == null) {
+            checkpoint.setSaveTime(LocalDateTime.now());
+        }
+        String line = String.join("\t",
+                checkpoint.getTableName(),
+                String.valueOf(checkpoint.getChunkIndex()),
+                format(checkpoint.getLowerBound()),
+                format(checkpoint.getUpperBound()),
+                format(checkpoint.getLastKey()),
+                String.valueOf(checkpoint.getMigratedRecords()),
+                String.valueOf(checkpoint.isCompleted()),
+                String.valueOf(checkpoint.getSaveTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()))
+                + "\n";
+        
+        ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+        
+        put(checkpoint);
+        taskManager.saveCheckpoint(taskId, checkpoint);
+    }
+    
+    /**
+     * 任务成功后删除断点日志，下次使用相同标识时重新全量迁移
+     */
+    public synchronized void delete() throws IOException {
+        close();
+        Files.deleteIfExists(logFile);
+        checkpoints.clear();
+        log.info("迁移完成，删除断点日志: {}", logFile);
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            channel.close();
+        }
+    }
+    
+    /**
+     * 回放日志（进程在写入中途退出时最后一行可能不完整，直接忽略）
+     */
+    private int replay() throws IOException {
+        int count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(logFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                if (fields.length != 8) {
+                    log.warn("忽略不完整的断点记录: {}", line);
+                    continue;
+                }
+                try {
+                    put(MigrationTaskManager.MigrationCheckpoint.builder()
+                            .tableName(fields[0])
+                            .chunkIndex(Integer.parseInt(fields[1]))
+                            .lowerBound(parse(fields[2]))
+                            .upperBound(parse(fields[3]))
+                            .lastKey(parse(fields[4]))
+                            .position(NULL_VALUE.equals(fields[4]) ? null : fields[4])
+                            .migratedRecords(Long.parseLong(fields[5]))
+                            .completed(Boolean.parseBoolean(fields[6]))
+                            .saveTime(LocalDateTime.ofInstant(
+                                    Instant.ofEpochMilli(Long.parseLong(fields[7])), ZoneId.systemDefault()))
+                            .build());
+                    count++;
+                } catch (NumberFormatException e) {
+                    log.warn("忽略格式错误的断点记录: {}", line);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+        return count;
+    }
+    
+    private void put(MigrationTaskManager.MigrationCheckpoint checkpoint) {
+        checkpoints.computeIfAbsent(checkpoint.getTableName(), key -> new ConcurrentHashMap<>())
+                .put(checkpoint.getChunkIndex(), checkpoint);
+    }
+    
+    private String format(Long value) {
+        return value == null ? NULL_VALUE : value.toString();
+    }
+    
+    private Long parse(String value) {
+        return NULL_VALUE.equals(value) ? null : Long.valueOf(value);
+    }
+}
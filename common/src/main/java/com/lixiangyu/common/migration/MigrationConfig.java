@@ -76,6 +76,24 @@ public class MigrationConfig {
     @Builder.Default
     private boolean autoFixInconsistent = false;
     
+    /**
+     * 修复批量大小（每批不一致记录用一条多主键查询取回、一次批量写回）
+     */
+    @Builder.Default
+    private int repairBatchSize = 500;
+    
+    /**
+     * 单表修复并发数（同时处理的批次数）
+     */
+    @Builder.Default
+    private int repairThreads = 2;
+    
+    /**
+     * 修复 dry-run：只统计需要写回和删除的记录数，不修改目标表
+     */
+    @Builder.Default
+    private boolean repairDryRun = false;
+    
     /**
      * 是否启用断点续传
      */
@@ -88,6 +106,113 @@ public class MigrationConfig {
     @Builder.Default
     private int checkpointInterval = 10000;
     
+    /**
+     * 断点日志目录
+     */
+    @Builder.Default
+    private String checkpointDir = "migration-checkpoints";
+    
+    /**
+     * 断点标识（断点日志文件名），为空时使用任务ID；重启后使用相同标识才能从断点续传
+     */
+    private String checkpointId;
+    
+    /**
+     * 是否启用单表分片迁移（按主键范围切分大表，多线程并行复制）
+     */
+    @Builder.Default
+    private boolean enableChunking = false;
+    
+    /**
+     * 分片阈值（记录数），记录数达到该值的表才会按主键范围切分
+     */
+    @Builder.Default
+    private long chunkThreshold = 1000000L;
+    
+    /**
+     * 单表切分的分片数
+     */
+    @Builder.Default
+    private int chunkCount = 16;
+    
+    /**
+     * 单表分片并行度（同一张表同时复制的分片数上限）
+     */
+    @Builder.Default
+    private int chunkParallelism = 4;
+    
+    /**
+     * 源表读取模式：BUFFERED（驱动默认，一次性缓冲结果集）、STREAMING（逐行流式）、CURSOR（服务端游标）
+     */
+    @Builder.Default
+    private ReadMode readMode = ReadMode.BUFFERED;
+    
+    /**
+     * 游标读取模式下每次从服务端拉取的记录数
+     */
+    @Builder.Default
+    private int fetchSize = 1000;
+    
+    /**
+     * 是否启用读写流水线（读线程与写线程通过有界队列交接批次，源端读取与目标端写入并行）
+     */
+    @Builder.Default
+    private boolean enablePipeline = false;
+    
+    /**
+     * 流水线写线程数（每个写线程使用独立的目标库连接）
+     */
+    @Builder.Default
+    private int writerThreads = 2;
+    
+    /**
+     * 流水线队列容量（批次数），队列满时读线程阻塞
+     */
+    @Builder.Default
+    private int pipelineQueueCapacity = 8;
+    
+    /**
+     * 目标表批量写入策略，AUTO 根据目标库类型选择
+     */
+    @Builder.Default
+    private BulkWriteStrategy bulkWriteStrategy = BulkWriteStrategy.AUTO;
+    
+    /**
+     * 多值 INSERT 单条语句的字节数上限（需小于目标库的 max_allowed_packet）
+     */
+    @Builder.Default
+    private long maxPacketBytes = 4L * 1024 * 1024;
+    
+    /**
+     * 数据校验方式：CHECKSUM（分块校验和，按需下钻）、MERGE_JOIN（两端按主键排序流式归并比较）
+     */
+    @Builder.Default
+    private ValidationMode validationMode = ValidationMode.CHECKSUM;
+    
+    /**
+     * 数据校验分块的记录数（单列整型主键的表按源表主键顺序每隔该行数分块计算校验和）
+     */
+    @Builder.Default
+    private int validationChunkSize = DataValidator.DEFAULT_CHUNK_SIZE;
+    
+    /**
+     * 数据校验逐行比较阈值，校验和不一致的块记录数不超过该值时逐行比较，否则继续细分
+     */
+    @Builder.Default
+    private int validationLeafSize = DataValidator.DEFAULT_LEAF_SIZE;
+    
+    /**
+     * 数据校验并发表数（全局上限）
+     */
+    @Builder.Default
+    private int validationThreads = 4;
+    
+    /**
+     * 单表校验的并发查询数上限，>= 2 时源端与目标端的记录数统计并发执行
+     */
+    @Builder.Default
+    private int validationQueriesPerTable = 2;
+    
     /**
      * 迁移模式枚举
      */
@@ -108,6 +233,67 @@ public class MigrationConfig {
         MIXED
     }
     
+    /**
+     * 源表读取模式枚举
+     */
+    public enum ReadMode {
+        /**
+         * 驱动默认读取（MySQL 会将整个结果集缓冲到内存）
+         */
+        BUFFERED,
+        
+        /**
+         * 逐行流式读取（MySQL/MariaDB 使用 fetchSize = Integer.MIN_VALUE，其他数据库退化为游标读取）
+         */
+        STREAMING,
+        
+        /**
+         * 服务端游标读取（MySQL 自动开启 useCursorFetch，按 fetchSize 分批拉取）
+         * 仅对工厂创建的连接池自动开启；传入自定义 DataSource 时需在连接 URL 中设置 useCursorFetch=true，否则改用 STREAMING
+         */
+        CURSOR
+    }
+    
+    /**
+     * 数据校验方式枚举
+     */
+    public enum ValidationMode {
+        /**
+         * 分块校验和：单列整型主键按范围分块比较校验和，只对不一致的块逐行比较；其他主键逐条点查
+         */
+        CHECKSUM,
+        
+        /**
+         * 归并比较：两端各一个按主键排序的流式游标，单趟比较，任意主键均适用
+         */
+        MERGE_JOIN
+    }
+    
+    /**
+     * 批量写入策略枚举
+     */
+    public enum BulkWriteStrategy {
+        /**
+         * 根据目标库类型自动选择
+         */
+        AUTO,
+        
+        /**
+         * 单行 INSERT + JDBC 批处理
+         */
+        JDBC_BATCH,
+        
+        /**
+         * 多值 INSERT（按 maxPacketBytes 切分语句）
+         */
+        MULTI_ROW_INSERT,
+        
+        /**
+         * LOAD DATA LOCAL INFILE 内存流写入（仅 MySQL/MariaDB，需服务端开启 local_infile）
+         */
+        LOAD_DATA
+    }
+    
     /**
      * 数据源配置
      */
@@ -163,7 +349,31 @@ public class MigrationConfig {
             SQL_SERVER,
             H2,
             MARIADB,
-            OTHER
+            OTHER;
+            
+            /**
+             * 根据 JDBC 元数据中的数据库产品名称识别数据库类型
+             *
+             * @param productName DatabaseMetaData#getDatabaseProductName()
+             * @return 数据库类型，无法识别时返回 OTHER
+             */
+            public static DatabaseType fromProductName(String productName) {
+                String name = productName == null ? "" : productName.toLowerCase(java.util.Locale.ROOT);
+                if (name.contains("mariadb")) {
+                    return MARIADB;
+                } else if (name.contains("mysql")) {
+                    return MYSQL;
+                } else if (name.contains("postgresql")) {
+                    return POSTGRESQL;
+                } else if (name.contains("oracle")) {
+                    return ORACLE;
+                } else if (name.contains("sql server")) {
+                    return SQL_SERVER;
+                } else if (name.contains("h2")) {
+                    return H2;
+                }
+                return OTHER;
+            }
         }
         
         /**
@@ -0,0 +1,184 @@
+package com.lixiangyu.common.migration;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 迁移数据源工厂
+ * 为每个迁移任务创建独立的 HikariCP 连接池，任务结束后统一关闭
+ *
+ * 功能特性：
+ * 1. 连接池大小根据任务的并发复制数（表线程池 + 分片线程池）推算，避免每次 getConnection() 都重新建立 TCP/TLS/认证握手
+ * 2. MySQL/MariaDB 开启客户端预编译语句缓存
+ * 3. 目标库开启 rewriteBatchedStatements，批量插入合并为多值 INSERT
+ * 4. 只关闭由工厂创建的连接池，调用方传入的 DataSource 保持不变
+ *
+ * @author lixiangyu
+ */
+@Slf4j
+@Component
+public class MigrationDataSourceFactory {
+    
+    /**
+     * 连接池额外预留的连接数（表结构查询、记录数统计等短连接）
+     */
+    private static final int POOL_HEADROOM = 2;
+    
+    /**
+     * 预编译语句缓存条数
+     */
+    private static final String PREP_STMT_CACHE_SIZE = "250";
+    
+    /**
+     * 可缓存的 SQL 最大长度
+     */
+    private static final String PREP_STMT_CACHE_SQL_LIMIT = "2048";
+    
+    /**
+     * 由工厂创建、需要在任务结束时关闭的连接池
+     */
+    private final Set<DataSource> managedDataSources = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * 创建源库数据源
+     *
+     * @param taskId 任务ID（用于连接池命名）
+     * @param config 迁移配置
+     * @return 数据源
+     */
+    public DataSource createSourceDataSource(String taskId, MigrationConfig config) {
+        HikariConfig hikariConfig = buildHikariConfig(config.getSource(), "migration-source-" + shortId(taskId),
+                Math.max(concurrentCopies(config), validationConnections(config)) + POOL_HEADROOM);
+        if (hikariConfig == null) {
+            return config.getSource().getDataSource();
+        }
+        
+        if (config.getReadMode() == MigrationConfig.ReadMode.CURSOR && isMysqlFamily(hikariConfig.getJdbcUrl())) {
+            hikariConfig.addDataSourceProperty("useCursorFetch", "true");
+        }
+        return register(new HikariDataSource(hikariConfig));
+    }
+    
+    /**
+     * 创建目标库数据源
+     *
+     * @param taskId 任务ID（用于连接池命名）
+     * @param config 迁移配置
+     * @return 数据源
+     */
+    public DataSource createTargetDataSource(String taskId, MigrationConfig config) {
+        // 流水线模式下每个复制线程同时持有 writerThreads 个目标库连接
+        int writersPerCopy = config.isEnablePipeline() ? Math.max(1, config.getWriterThreads()) : 1;
+        HikariConfig hikariConfig = buildHikariConfig(config.getTarget(), "migration-target-" + shortId(taskId),
+                Math.max(concurrentCopies(config) * writersPerCopy, validationConnections(config)) + POOL_HEADROOM);
+        if (hikariConfig == null) {
+            return config.getTarget().getDataSource();
+        }
+        
+        if (isMysqlFamily(hikariConfig.getJdbcUrl())) {
+            hikariConfig.addDataSourceProperty("rewriteBatchedStatements", "true");
+            if (config.getBulkWriteStrategy() == MigrationConfig.BulkWriteStrategy.LOAD_DATA) {
+                hikariConfig.addDataSourceProperty("allowLoadLocalInfile", "true");
+            }
+        }
+        return register(new HikariDataSource(hikariConfig));
+    }
+    
+    /**
+     * 关闭数据源（仅关闭由工厂创建的连接池）
+     *
+     * @param dataSource 数据源
+     */
+    public void closeDataSource(DataSource dataSource) {
+        if (dataSource == null || !managedDataSources.remove(dataSource)) {
+            return;
+        }
+        
+        try {
+            ((HikariDataSource) dataSource).close();
+            log.info("关闭迁移连接池: {}", ((HikariDataSource) dataSource).getPoolName());
+        } catch (Exception e) {
+            log.warn("关闭迁移连接池失败", e);
+        }
+    }
+    
+    /**
+     * 构建连接池配置
+     *
+     * @return 连接池配置，配置中已提供 DataSource 时返回 null
+     */
+    private HikariConfig buildHikariConfig(MigrationConfig.DataSourceConfig dsConfig, String poolName, int poolSize) {
+        if (dsConfig.getDataSource() != null) {
+            return null;
+        }
+        
+        HikariConfig hikariConfig = new HikariConfig();
+        hikariConfig.setPoolName(poolName);
+        hikariConfig.setJdbcUrl(dsConfig.getUrl());
+        hikariConfig.setUsername(dsConfig.getUsername());
+        hikariConfig.setPassword(dsConfig.getPassword());
+        if (StringUtils.hasText(dsConfig.getDriverClassName())) {
+            hikariConfig.setDriverClassName(dsConfig.getDriverClassName());
+        }
+        
+        hikariConfig.setMaximumPoolSize(poolSize);
+        hikariConfig.setMinimumIdle(Math.min(poolSize, POOL_HEADROOM));
+        hikariConfig.setConnectionTimeout(30000L);
+        
+        if (isMysqlFamily(dsConfig.getUrl())) {
+            hikariConfig.addDataSourceProperty("cachePrepStmts", "true");
+            hikariConfig.addDataSourceProperty("prepStmtCacheSize", PREP_STMT_CACHE_SIZE);
+            hikariConfig.addDataSourceProperty("prepStmtCacheSqlLimit", PREP_STMT_CACHE_SQL_LIMIT);
+        }
+        
+        log.info("创建迁移连接池: {}, 最大连接数: {}", poolName, poolSize);
+        return hikariConfig;
+    }
+    
+    /**
+     * 复制阶段同时进行的复制数上限
+     * 表线程池（threadCount）上不分片的表直接复制，同时分片线程池（threadCount）上在复制其他表的分片，
+     * 两个线程池各自占满时同时有 2 × threadCount 个复制
+     */
+    private int concurrentCopies(MigrationConfig config) {
+        int threads = Math.max(1, config.getThreadCount());
+        return config.isEnableChunking() || config.isEnableCheckpoint() ? threads * 2 : threads;
+    }
+    
+    /**
+     * 数据校验阶段单端同时占用的连接数上限
+     * 每个校验线程比对时占用 1~2 个连接；开启自动修复时，校验线程在比对后修复本表，
+     * 最多 repairThreads 个批次同时各占用一个源库连接和一个目标库连接，其他校验线程此时仍在比对
+     */
+    private int validationConnections(MigrationConfig config) {
+        if (!config.isEnableValidation()) {
+            return 0;
+        }
+        int validationThreads = Math.max(1, config.getValidationThreads());
+        int connections = validationThreads * (config.getValidationQueriesPerTable() >= 2 ? 2 : 1);
+        if (config.isAutoFixInconsistent()) {
+            connections += validationThreads * Math.max(1, config.getRepairThreads());
+        }
+        return connections;
+    }
+    
+    private DataSource register(HikariDataSource dataSource) {
+        managedDataSources.add(dataSource);
+        return dataSource;
+    }
+    
+    private boolean isMysqlFamily(String url) {
+        return url != null && (url.startsWith("jdbc:mysql:") || url.startsWith("jdbc:mariadb:"));
+    }
+    
+    private String shortId(String taskId) {
+        return taskId.length() > 8 ? taskId.substring(0, 8) : taskId;
+    }
+}
@@ -182,6 +182,89 @@ public class MigrationResult {
          * 错误信息
          */
         private String errorMessage;
+        
+        /**
+         * 分片迁移详情（启用单表分片迁移时填充）
+         */
+        private List<ChunkMigrationDetail> chunkDetails;
+        
+        /**
+         * 读写流水线指标（启用流水线复制时填充，分片迁移时为各分片汇总）
+         */
+        private PipelineMetrics pipelineMetrics;
+    }
+    
+    /**
+     * 读写流水线指标
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PipelineMetrics {
+        /**
+         * 经过队列的批次数
+         */
+        private long batchCount;
+        
+        /**
+         * 最大队列深度（批次数）
+         */
+        private int maxQueueDepth;
+        
+        /**
+         * 读线程因队列已满（背压）阻塞的累计时间（毫秒）
+         */
+        private long readerBlockedMillis;
+        
+        /**
+         * 写线程因队列为空等待的累计时间（毫秒，多个写线程累加）
+         */
+        private long writerIdleMillis;
+    }
+    
+    /**
+     * 分片迁移详情
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ChunkMigrationDetail {
+        /**
+         * 分片序号
+         */
+        private Integer chunkIndex;
+        
+        /**
+         * 主键下界（包含）
+         */
+        private Long lowerBound;
+        
+        /**
+         * 主键上界（不包含，为空表示无上界）
+         */
+        private Long upperBound;
+        
+        /**
+         * 状态
+         */
+        private MigrationStatus status;
+        
+        /**
+         * 成功记录数
+         */
+        private Long successRecords;
+        
+        /**
+         * 耗时（毫秒）
+         */
+        private Long duration;
+        
+        /**
+         * 错误信息
+         */
+        private String errorMessage;
     }
     
     /**
@@ -250,6 +333,16 @@ public class MigrationResult {
          * 不一致的记录详情（可选）
          */
         private List<InconsistentRecord> inconsistentRecords;
+        
+        /**
+         * 自动修复时从源库写回的记录数（dry-run 时为计划写回数）
+         */
+        private Long repairedRecords;
+        
+        /**
+         * 自动修复时从目标表删除的多余记录数（dry-run 时为计划删除数）
+         */
+        private Long deletedRecords;
     }
     
     /**
@@ -269,6 +362,11 @@ public class MigrationResult {
          * 不一致的字段
          */
         private Map<String, FieldDifference> fieldDifferences;
+        
+        /**
+         * 是否为目标表独有的记录（源表中不存在该主键），自动修复只删除这类记录
+         */
+        private boolean targetOnly;
     }
     
     /**
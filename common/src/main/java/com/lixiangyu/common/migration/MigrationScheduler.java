@@ -165,7 +165,7 @@ public class MigrationScheduler {
             taskManager.registerTask(taskId, config);
             taskManager.updateTaskStatus(taskId, MigrationTaskManager.MigrationTaskInfo.TaskStatus.RUNNING);
             
-            MigrationResult result = migrationService.migrate(config);
+            MigrationResult result = migrationService.migrate(taskId, config);
             
             if (result.getStatus() == MigrationResult.MigrationStatus.SUCCESS) {
                 taskManager.updateTaskStatus(taskId, MigrationTaskManager.MigrationTaskInfo.TaskStatus.COMPLETED);
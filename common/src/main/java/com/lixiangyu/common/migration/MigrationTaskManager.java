@@ -4,6 +4,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -33,6 +35,11 @@ public class MigrationTaskManager {
      */
     private final Map<String, MigrationProgress> taskProgresses = new ConcurrentHashMap<>();
     
+    /**
+     * 分表、分片断点映射（Task ID -> 表名#分片序号 -> 断点信息）
+     */
+    private final Map<String, Map<String, MigrationCheckpoint>> taskCheckpoints = new ConcurrentHashMap<>();
+    
     /**
      * 注册迁移任务
      *
@@ -120,6 +127,48 @@ public class MigrationTaskManager {
         }
     }
     
+    /**
+     * 设置待校验表数（开始数据校验时调用）
+     *
+     * @param taskId 任务ID
+     * @param totalTables 待校验表数
+     */
+    public void startValidation(String taskId, int totalTables) {
+        MigrationProgress progress = taskProgresses.get(taskId);
+        if (progress != null) {
+            progress.setValidationTotalTables(totalTables);
+            progress.setValidatedTables(0);
+            progress.setInconsistentTables(0);
+            progress.setValidationProgress(0);
+            progress.setUpdateTime(LocalDateTime.now());
+        }
+    }
+    
+    /**
+     * 更新数据校验进度（每校验完一张表调用一次，可并发调用）
+     *
+     * @param taskId 任务ID
+     * @param tableName 刚完成校验的表名
+     * @param consistent 该表是否一致
+     */
+    public void updateValidationProgress(String taskId, String tableName, boolean consistent) {
+        MigrationProgress progress = taskProgresses.get(taskId);
+        if (progress != null) {
+            synchronized (progress) {
+                progress.setValidatedTables(progress.getValidatedTables() + 1);
+                if (!consistent) {
+                    progress.setInconsistentTables(progress.getInconsistentTables() + 1);
+                }
+                if (progress.getValidationTotalTables() > 0) {
+                    progress.setValidationProgress(
+                            (double) progress.getValidatedTables() / progress.getValidationTotalTables() * 100);
+                }
+                progress.setUpdateTime(LocalDateTime.now());
+            }
+            log.debug("更新校验进度，Task ID: {}, 表: {}, 一致: {}", taskId, tableName, consistent);
+        }
+    }
+    
     /**
      * 保存断点信息
      *
@@ -129,9 +178,14 @@ public class MigrationTaskManager {
     public void saveCheckpoint(String taskId, MigrationCheckpoint checkpoint) {
         MigrationTaskInfo taskInfo = taskInfos.get(taskId);
         if (taskInfo != null) {
+            if (checkpoint.getSaveTime() == null) {
+                checkpoint.setSaveTime(LocalDateTime.now());
+            }
             taskInfo.setCheckpoint(checkpoint);
-            log.debug("保存断点信息，Task ID: {}, 表: {}, 位置: {}", 
-                    taskId, checkpoint.getTableName(), checkpoint.getPosition());
+            taskCheckpoints.computeIfAbsent(taskId, key -> new ConcurrentHashMap<>())
+                    .put(checkpoint.getTableName() + "#" + checkpoint.getChunkIndex(), checkpoint);
+            log.debug("保存断点信息，Task ID: {}, 表: {}, 分片: {}, 位置: {}", 
+                    taskId, checkpoint.getTableName(), checkpoint.getChunkIndex(), checkpoint.getPosition());
         }
     }
     
@@ -143,14 +197,25 @@ public class MigrationTaskManager {
      * @return 断点信息
      */
     public MigrationCheckpoint getCheckpoint(String taskId, String tableName) {
-        MigrationTaskInfo taskInfo = taskInfos.get(taskId);
-        if (taskInfo != null && taskInfo.getCheckpoint() != null) {
-            MigrationCheckpoint checkpoint = taskInfo.getCheckpoint();
-            if (tableName.equals(checkpoint.getTableName())) {
-                return checkpoint;
+        MigrationCheckpoint latest = null;
+        for (MigrationCheckpoint checkpoint : getCheckpoints(taskId)) {
+            if (tableName.equals(checkpoint.getTableName())
+                    && (latest == null || checkpoint.getSaveTime().isAfter(latest.getSaveTime()))) {
+                latest = checkpoint;
             }
         }
-        return null;
+        return latest;
+    }
+    
+    /**
+     * 获取任务的全部分表、分片断点
+     *
+     * @param taskId 任务ID
+     * @return 断点列表
+     */
+    public List<MigrationCheckpoint> getCheckpoints(String taskId) {
+        Map<String, MigrationCheckpoint> checkpoints = taskCheckpoints.get(taskId);
+        return checkpoints == null ? new ArrayList<>() : new ArrayList<>(checkpoints.values());
     }
     
     /**
@@ -181,6 +246,7 @@ public class MigrationTaskManager {
     public void removeTask(String taskId) {
         taskInfos.remove(taskId);
         taskProgresses.remove(taskId);
+        taskCheckpoints.remove(taskId);
         log.info("删除迁移任务，Task ID: {}", taskId);
     }
     
@@ -222,6 +288,10 @@ public class MigrationTaskManager {
         private long completedRecords;
         private double tableProgress;    // 表进度百分比
         private double recordProgress;    // 记录进度百分比
+        private int validationTotalTables;    // 待校验表数
+        private int validatedTables;    // 已校验表数
+        private int inconsistentTables;    // 不一致表数
+        private double validationProgress;    // 校验进度百分比
         private LocalDateTime startTime;
         private LocalDateTime updateTime;
     }
@@ -237,6 +307,31 @@ public class MigrationTaskManager {
          */
         private String tableName;
         
+        /**
+         * 分片序号（-1 表示整表）
+         */
+        private int chunkIndex;
+        
+        /**
+         * 分片主键下界（包含）
+         */
+        private Long lowerBound;
+        
+        /**
+         * 分片主键上界（不包含，为空表示无上界）
+         */
+        private Long upperBound;
+        
+        /**
+         * 最后提交的主键
+         */
+        private Long lastKey;
+        
+        /**
+         * 分片（或整表）是否已完成
+         */
+        private boolean completed;
+        
         /**
          * 位置（主键值或偏移量）
          */
@@ -0,0 +1,401 @@
+package com.lixiangyu.common.migration;
+
+import com.lixiangyu.common.migration.operator.DatabaseOperator;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 轮询增量同步引擎（无 binlog 客户端时的降级方案）
+ * 按 (时间字段, 主键) 键集分页读取源表的变更，写入目标表
+ *
+ * 功能特性：
+ * 1. 键集分页：WHERE (time, pk) > (上次时间, 上次主键) ORDER BY time, pk，每页最多 batchSize 行，
+ *    同一时间戳的大量记录也不会遗漏或重复
+ * 2. 表间并行：每张表独立调度，由 pollThreads 个线程并发轮询
+ * 3. 自适应间隔：整页读满时立即继续，有变更时缩短间隔，空闲时加倍退避到 maxInterval
+ * 4. 持久化高水位：启用位点存储时，每页写入与该表的高水位在同一个目标库事务中提交，重启后继续
+ * 5. 幂等写入：按目标库方言使用 UPSERT（见 {@link UpsertSqlBuilder}），已同步过的记录再次变更时覆盖而不是主键冲突
+ *
+ * @author lixiangyu
+ */
+@Slf4j
+public class PollingSyncEngine {
+    
+    /**
+     * 主键值序列化分隔符
+     */
+    private static final String KEY_SEPARATOR = "\u0001";
+    
+    /**
+     * 没有持久化高水位时的起始回溯时间（毫秒）
+     */
+    private static final long INITIAL_LOOKBACK_MS = 3600000L;
+    
+    private final String name;
+    
+    private final DataSource sourceDataSource;
+    
+    private final DataSource targetDataSource;
+    
+    private final BinlogSchemaRegistry.TableStructureLoader loader;
+    
+    /**
+     * 高水位存储（为 null 时高水位只保存在内存中）
+     */
+    private final BinlogOffsetStore offsetStore;
+    
+    private final int threads;
+    
+    private final int batchSize;
+    
+    private final long minIntervalMillis;
+    
+    private final long maxIntervalMillis;
+    
+    private ScheduledExecutorService scheduler;
+    
+    /**
+     * 源库是否支持 LIMIT 子句（不支持时只依赖 setMaxRows）
+     */
+    private boolean supportsLimit;
+    
+    /**
+     * 目标库类型（决定写入使用的幂等写入语法）
+     */
+    private MigrationConfig.DataSourceConfig.DatabaseType targetType;
+    
+    private volatile boolean stopped = false;
+    
+    /**
+     * @param name 名称（用于线程命名）
+     * @param config 监听配置（数据源与轮询参数）
+     * @param loader 表结构加载器
+     * @param offsetStore 高水位存储，为 null 时不持久化
+     */
+    public PollingSyncEngine(String name, BinlogListener.BinlogListenerConfig config,
+                             BinlogSchemaRegistry.TableStructureLoader loader, BinlogOffsetStore offsetStore) {
+        this.name = name;
+        this.sourceDataSource = config.getSourceDataSource();
+        this.targetDataSource = config.getTargetDataSource();
+        this.loader = loader;
+        this.offsetStore = offsetStore;
+        this.threads = Math.max(1, config.getPollThreads());
+        this.batchSize = Math.max(1, config.getPollBatchSize());
+        this.minIntervalMillis = Math.max(1, config.getPollMinIntervalMillis());
+        this.maxIntervalMillis = Math.max(minIntervalMillis, config.getPollMaxIntervalMillis());
+    }
+    
+    /**
+     * 启动轮询
+     *
+     * @param tables 要同步的表
+     */
+    public void start(List<String> tables) throws SQLException {
+        Map<String, BinlogOffsetStore.PollingOffset> offsets = offsetStore == null
+                ? new java.util.HashMap<>() : offsetStore.loadPollingOffsets();
+        
+        try (Connection conn = targetDataSource.getConnection()) {
+            targetType = MigrationConfig.DataSourceConfig.DatabaseType
+                    .fromProductName(conn.getMetaData().getDatabaseProductName());
+        }
+        if (!UpsertSqlBuilder.supports(targetType)) {
+            log.warn("目标库类型无法识别，轮询同步使用普通 INSERT，已同步记录的更新会产生主键冲突: {}", name);
+        }
+        
+        List<TableState> states = new ArrayList<>();
+        try (Connection conn = sourceDataSource.getConnection()) {
+            MigrationConfig.DataSourceConfig.DatabaseType databaseType = MigrationConfig.DataSourceConfig.DatabaseType
+                    .fromProductName(conn.getMetaData().getDatabaseProductName());
+            supportsLimit = databaseType == MigrationConfig.DataSourceConfig.DatabaseType.MYSQL
+                    || databaseType == MigrationConfig.DataSourceConfig.DatabaseType.MARIADB
+                    || databaseType == MigrationConfig.DataSourceConfig.DatabaseType.POSTGRESQL
+                    || databaseType == MigrationConfig.DataSourceConfig.DatabaseType.H2;
+            
+            for (String tableName : tables) {
+                DatabaseOperator.TableStructure structure = loader.load(conn, tableName);
+                if (structure == null) {
+                    log.warn("表 {} 不存在，跳过轮询同步", tableName);
+                    continue;
+                }
+                String timeColumn = findTimeColumn(structure);
+                if (timeColumn == null) {
+                    log.warn("表 {} 没有时间字段，无法进行增量同步", tableName);
+                    continue;
+                }
+                if (structure.getPrimaryKeys() == null || structure.getPrimaryKeys().isEmpty()) {
+                    log.warn("表 {} 没有主键，无法按 (时间, 主键) 分页，跳过轮询同步", tableName);
+                    continue;
+                }
+                
+                TableState state = new TableState(structure, timeColumn);
+                BinlogOffsetStore.PollingOffset offset = offsets.get(tableName);
+                if (offset != null && offset.getLastTime() != null) {
+                    state.lastTime = offset.getLastTime();
+                    state.lastKey = decodeKey(offset.getLastKey(), state);
+                }
+                states.add(state);
+            }
+        }
+        
+        AtomicInteger threadIndex = new AtomicInteger();
+        scheduler = Executors.newScheduledThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "PollingSync-" + name + "-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (TableState state : states) {
+            scheduler.schedule(() -> poll(state), 0, TimeUnit.MILLISECONDS);
+        }
+        log.info("轮询增量同步启动: {}, 表数: {}, 线程数: {}", name, states.size(), threads);
+    }
+    
+    /**
+     * 停止轮询（等待进行中的一页处理完成）
+     */
+    public void stop() {
+        stopped = true;
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(30, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * 轮询一张表的一页并安排下一次轮询
+     */
+    private void poll(TableState state) {
+        if (stopped) {
+            return;
+        }
+        
+        long delay;
+        try {
+            int rows = pollPage(state);
+            if (rows >= batchSize) {
+                // 整页读满，积压未消化，立即继续
+                delay = 0;
+            } else if (rows > 0) {
+                state.interval = Math.max(minIntervalMillis, state.interval / 2);
+                delay = state.interval;
+            } else {
+                state.interval = Math.min(maxIntervalMillis, state.interval * 2);
+                delay = state.interval;
+            }
+        } catch (Exception e) {
+            log.error("轮询同步表 {} 失败", state.tableName, e);
+            state.interval = Math.min(maxIntervalMillis, state.interval * 2);
+            delay = state.interval;
+        }
+        
+        if (!stopped) {
+            try {
+                scheduler.schedule(() -> poll(state), delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // 停止过程中调度器已关闭
+            }
+        }
+    }
+    
+    /**
+     * 读取高水位之后的一页记录写入目标表，并前进高水位
+     *
+     * @return 读取的记录数
+     */
+    private int pollPage(TableState state) throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        try (Connection conn = sourceDataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(state.lastKey == null ? state.firstPageSql : state.nextPageSql)) {
+            stmt.setMaxRows(batchSize);
+            int paramIndex = 1;
+            stmt.setTimestamp(paramIndex++, state.lastTime);
+            if (state.lastKey != null) {
+                // (time > ?) OR (time = ? AND 主键元组 > ?)
+                stmt.setTimestamp(paramIndex++, state.lastTime);
+                for (int i = 0; i < state.keyIndexes.length; i++) {
+                    for (int j = 0; j <= i; j++) {
+                        stmt.setObject(paramIndex++, state.lastKey[j]);
+                    }
+                }
+            }
+            
+            int columnCount = state.columns.size();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Object[] row = new Object[columnCount];
+                    for (int i = 0; i < columnCount; i++) {
+                        row[i] = rs.getObject(i + 1);
+                    }
+                    row[state.timeIndex] = rs.getTimestamp(state.timeIndex + 1);
+                    rows.add(row);
+                }
+            }
+        }
+        
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        
+        Object[] last = rows.get(rows.size() - 1);
+        Timestamp lastTime = (Timestamp) last[state.timeIndex];
+        Object[] lastKey = new Object[state.keyIndexes.length];
+        for (int i = 0; i < lastKey.length; i++) {
+            lastKey[i] = last[state.keyIndexes[i]];
+        }
+        
+        try (Connection conn = targetDataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement stmt = conn.prepareStatement(state.writeSql)) {
+                    for (Object[] row : rows) {
+                        for (int i = 0; i < row.length; i++) {
+                            stmt.setObject(i + 1, row[i]);
+                        }
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+                if (offsetStore != null) {
+                    offsetStore.savePollingOffset(conn, state.tableName, lastTime, encodeKey(lastKey));
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+        
+        state.lastTime = lastTime;
+        state.lastKey = lastKey;
+        log.debug("轮询同步表 {} 完成一页，记录数: {}, 高水位: {}", state.tableName, rows.size(), lastTime);
+        return rows.size();
+    }
+    
+    /**
+     * 查找时间字段
+     */
+    private String findTimeColumn(DatabaseOperator.TableStructure structure) {
+        for (DatabaseOperator.TableColumn column : structure.getColumns()) {
+            String name = column.getName().toLowerCase();
+            if (name.contains("updatetime") || name.contains("update_time") ||
+                name.contains("modifytime") || name.contains("modify_time")) {
+                return column.getName();
+            }
+        }
+        return null;
+    }
+    
+    private String encodeKey(Object[] key) {
+        return java.util.Arrays.stream(key)
+                .map(value -> value == null ? "" : value.toString())
+                .collect(Collectors.joining(KEY_SEPARATOR));
+    }
+    
+    /**
+     * 按主键列的类型还原持久化的主键值
+     */
+    private Object[] decodeKey(String text, TableState state) {
+        if (text == null) {
+            return null;
+        }
+        String[] parts = text.split(KEY_SEPARATOR, -1);
+        if (parts.length != state.keyIndexes.length) {
+            log.warn("表 {} 的高水位主键与当前主键列数不一致，从高水位时间重新开始", state.tableName);
+            return null;
+        }
+        Object[] key = new Object[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            int type = state.columns.get(state.keyIndexes[i]).getType();
+            switch (type) {
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                case Types.BIGINT:
+                    key[i] = Long.parseLong(parts[i]);
+                    break;
+                case Types.DECIMAL:
+                case Types.NUMERIC:
+                    key[i] = new BigDecimal(parts[i]);
+                    break;
+                default:
+                    key[i] = parts[i];
+            }
+        }
+        return key;
+    }
+    
+    /**
+     * 单表轮询状态（同一张表同一时刻只有一个轮询在执行）
+     */
+    private class TableState {
+        private final String tableName;
+        private final List<DatabaseOperator.TableColumn> columns;
+        private final int timeIndex;
+        private final int[] keyIndexes;
+        private final String firstPageSql;
+        private final String nextPageSql;
+        private final String writeSql;
+        
+        private Timestamp lastTime = new Timestamp(System.currentTimeMillis() - INITIAL_LOOKBACK_MS);
+        private Object[] lastKey;
+        private long interval = minIntervalMillis;
+        
+        TableState(DatabaseOperator.TableStructure structure, String timeColumn) {
+            this.tableName = structure.getTableName();
+            this.columns = structure.getColumns();
+            List<String> columnNames = columns.stream()
+                    .map(DatabaseOperator.TableColumn::getName)
+                    .collect(Collectors.toList());
+            List<String> primaryKeys = structure.getPrimaryKeys();
+            this.timeIndex = columnNames.indexOf(timeColumn);
+            this.keyIndexes = primaryKeys.stream().mapToInt(columnNames::indexOf).toArray();
+            
+            String select = "SELECT " + String.join(", ", columnNames) + " FROM " + tableName + " WHERE ";
+            String orderBy = " ORDER BY " + timeColumn + ", " + String.join(", ", primaryKeys)
+                    + (supportsLimit ? " LIMIT " + batchSize : "");
+            
+            // 主键元组比较展开为 (k1 > ?) OR (k1 = ? AND k2 > ?) ...，不依赖行构造器语法
+            List<String> keyTerms = new ArrayList<>();
+            for (int i = 0; i < primaryKeys.size(); i++) {
+                StringBuilder term = new StringBuilder("(");
+                for (int j = 0; j < i; j++) {
+                    term.append(primaryKeys.get(j)).append(" = ? AND ");
+                }
+                term.append(primaryKeys.get(i)).append(" > ?)");
+                keyTerms.add(term.toString());
+            }
+            // 主键元组的参数按 keyTerms 的顺序绑定：第 i 项依次绑定 k1..ki
+            this.firstPageSql = select + timeColumn + " > ?" + orderBy;
+            this.nextPageSql = select + "(" + timeColumn + " > ? OR (" + timeColumn + " = ? AND ("
+                    + String.join(" OR ", keyTerms) + ")))" + orderBy;
+            this.writeSql = UpsertSqlBuilder.build(targetType, tableName, columnNames, primaryKeys);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.lixiangyu.common.migration;
+
+import com.lixiangyu.common.migration.MigrationConfig.DataSourceConfig.DatabaseType;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 幂等写入（UPSERT）语句生成器
+ * 按目标库方言生成"存在则更新、不存在则插入"的单行语句，参数按列顺序绑定，与普通 INSERT 完全相同
+ *
+ * 功能特性：
+ * 1. MySQL/MariaDB：INSERT ... ON DUPLICATE KEY UPDATE
+ * 2. PostgreSQL：INSERT ... ON CONFLICT (主键) DO UPDATE
+ * 3. H2：MERGE INTO ... KEY (主键)
+ * 4. Oracle/SQL Server：MERGE INTO ... USING ... ON (主键)
+ * 5. 无法识别的数据库或没有主键的表退化为普通 INSERT
+ *
+ * 语句与表结构一一对应，调用方应按表结构缓存生成结果
+ *
+ * @author lixiangyu
+ */
+public final class UpsertSqlBuilder {
+    
+    private UpsertSqlBuilder() {
+    }
+    
+    /**
+     * 目标库是否支持生成幂等写入语句
+     */
+    public static boolean supports(DatabaseType databaseType) {
+        return databaseType != null && databaseType != DatabaseType.OTHER;
+    }
+    
+    /**
+     * 生成单行幂等写入语句
+     *
+     * @param databaseType 目标库类型
+     * @param tableName 表名
+     * @param columns 写入的列（参数按此顺序绑定）
+     * @param primaryKeys 主键列（冲突判定列）
+     * @return 幂等写入语句；不支持的数据库或没有主键时返回普通 INSERT
+     */
+    public static String build(DatabaseType databaseType, String tableName, List<String> columns,
+                               List<String> primaryKeys) {
+        if (!supports(databaseType) || primaryKeys == null || primaryKeys.isEmpty()) {
+            return buildInsert(tableName, columns);
+        }
+        List<String> updateColumns = columns.stream()
+                .filter(column -> !containsIgnoreCase(primaryKeys, column))
+                .collect(Collectors.toList());
+        
+        switch (databaseType) {
+            case MYSQL:
+            case MARIADB:
+                return buildInsert(tableName, columns) + " ON DUPLICATE KEY UPDATE "
+                        + (updateColumns.isEmpty()
+                        ? primaryKeys.get(0) + " = " + primaryKeys.get(0)
+                        : updateColumns.stream()
+                                .map(column -> column + " = VALUES(" + column + ")")
+                                .collect(Collectors.joining(", ")));
+            case POSTGRESQL:
+                return buildInsert(tableName, columns) + " ON CONFLICT (" + String.join(", ", primaryKeys) + ") "
+                        + (updateColumns.isEmpty()
+                        ? "DO NOTHING"
+                        : "DO UPDATE SET " + updateColumns.stream()
+                                .map(column -> column + " = EXCLUDED." + column)
+                                .collect(Collectors.joining(", ")));
+            case H2:
+                return "MERGE INTO " + tableName + " (" + String.join(", ", columns) + ") KEY ("
+                        + String.join(", ", primaryKeys) + ") VALUES (" + placeholders(columns) + ")";
+            case ORACLE:
+                return buildMerge(tableName, "",
+                        "(SELECT " + columns.stream().map(column -> "? " + column).collect(Collectors.joining(", "))
+                                + " FROM DUAL) s",
+                        columns, primaryKeys, updateColumns, "");
+            case SQL_SERVER:
+                // HOLDLOCK 避免并发 MERGE 在判定与插入之间产生主键冲突
+                return buildMerge(tableName, " WITH (HOLDLOCK)",
+                        "(VALUES (" + placeholders(columns) + ")) AS s (" + String.join(", ", columns) + ")",
+                        columns, primaryKeys, updateColumns, ";");
+            default:
+                return buildInsert(tableName, columns);
+        }
+    }
+    
+    /**
+     * 普通 INSERT 语句
+     */
+    public static String buildInsert(String tableName, List<String> columns) {
+        return "INSERT INTO " + tableName + " (" + String.join(", ", columns) + ") VALUES ("
+                + placeholders(columns) + ")";
+    }
+    
+    private static String buildMerge(String tableName, String hint, String source, List<String> columns,
+                                     List<String> primaryKeys, List<String> updateColumns, String terminator) {
+        StringBuilder sql = new StringBuilder("MERGE INTO ").append(tableName).append(hint).append(" t USING ")
+                .append(source).append(" ON (")
+                .append(primaryKeys.stream().map(key -> "t." + key + " = s." + key)
+                        .collect(Collectors.joining(" AND ")))
+                .append(")");
+        if (!updateColumns.isEmpty()) {
+            sql.append(" WHEN MATCHED THEN UPDATE SET ")
+                    .append(updateColumns.stream().map(column -> "t." + column + " = s." + column)
+                            .collect(Collectors.joining(", ")));
+        }
+        sql.append(" WHEN NOT MATCHED THEN INSERT (").append(String.join(", ", columns)).append(") VALUES (")
+                .append(columns.stream().map(column -> "s." + column).collect(Collectors.joining(", ")))
+                .append(")").append(terminator);
+        return sql.toString();
+    }
+    
+    private static String placeholders(List<String> columns) {
+        return columns.stream().map(column -> "?").collect(Collectors.joining(", "));
+    }
+    
+    private static boolean containsIgnoreCase(List<String> values, String value) {
+        for (String candidate : values) {
+            if (candidate.equalsIgnoreCase(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
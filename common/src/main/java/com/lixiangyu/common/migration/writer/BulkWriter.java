@@ -0,0 +1,29 @@
+package com.lixiangyu.common.migration.writer;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 批量写入接口
+ * 将一批源表记录写入目标表，不同实现对应不同的写入方式：JDBC 批处理、多值 INSERT、LOAD DATA 等
+ *
+ * 注意：实现类持有目标库连接上的语句资源，但不负责关闭连接本身
+ *
+ * @author lixiangyu
+ */
+public interface BulkWriter extends AutoCloseable {
+    
+    /**
+     * 写入一批记录
+     *
+     * @param rows 记录列表，每条记录的值顺序与创建写入器时的列顺序一致；方法返回后调用方可以复用该列表
+     * @return 成功写入的记录数
+     */
+    long write(List<Object[]> rows) throws SQLException;
+    
+    /**
+     * 释放语句资源
+     */
+    @Override
+    void close() throws SQLException;
+}
@@ -0,0 +1,111 @@
+package com.lixiangyu.common.migration.writer;
+
+import com.lixiangyu.common.migration.MigrationConfig;
+import com.lixiangyu.common.migration.MigrationConfig.DataSourceConfig.DatabaseType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+
+/**
+ * 批量写入器工厂
+ * 根据配置的写入策略和目标库类型创建批量写入器
+ *
+ * AUTO 策略的选择规则：
+ * 1. MySQL/MariaDB/PostgreSQL/H2/SQL Server：多值 INSERT
+ * 2. Oracle 及其他数据库：JDBC 批处理（Oracle 不支持多值 VALUES）
+ * LOAD DATA 需要服务端开启 local_infile 和 MySQL Connector/J 驱动，只在显式配置时使用，驱动不支持时降级为多值 INSERT
+ *
+ * @author lixiangyu
+ */
+@Slf4j
+@Component
+public class BulkWriterFactory {
+    
+    /**
+     * 创建批量写入器
+     *
+     * @param conn 目标库连接
+     * @param databaseType 目标库类型
+     * @param tableName 表名
+     * @param columns 目标列（与写入记录的值顺序一致）
+     * @param config 迁移配置
+     * @return 批量写入器
+     */
+    public BulkWriter createWriter(Connection conn, DatabaseType databaseType,
+                                   String tableName, List<String> columns, MigrationConfig config) throws SQLException {
+        MigrationConfig.BulkWriteStrategy strategy = resolveStrategy(config.getBulkWriteStrategy(), databaseType);
+        switch (strategy) {
+            case MULTI_ROW_INSERT:
+                return createMultiRowWriter(conn, databaseType, tableName, columns, config);
+            
+            case LOAD_DATA:
+                if (databaseType != DatabaseType.MYSQL && databaseType != DatabaseType.MARIADB) {
+                    log.warn("目标库 {} 不支持 LOAD DATA，降级使用多值 INSERT，表: {}", databaseType, tableName);
+                    return createMultiRowWriter(conn, databaseType, tableName, columns, config);
+                }
+                BulkWriter multiRowWriter = createMultiRowWriter(conn, databaseType, tableName, columns, config);
+                try {
+                    return new LoadDataWriter(conn, tableName, columns, multiRowWriter);
+                } catch (SQLFeatureNotSupportedException e) {
+                    // 如 MariaDB Connector/J：没有 setLocalInfileInputStream 扩展接口
+                    log.warn("目标库驱动不支持 LOAD DATA 流式写入，降级使用多值 INSERT，表: {}, 原因: {}",
+                            tableName, e.getMessage());
+                    return multiRowWriter;
+                }
+            
+            case JDBC_BATCH:
+            default:
+                return new JdbcBatchWriter(conn, tableName, columns);
+        }
+    }
+    
+    /**
+     * 解析实际使用的写入策略
+     */
+    public MigrationConfig.BulkWriteStrategy resolveStrategy(
+            MigrationConfig.BulkWriteStrategy strategy, DatabaseType databaseType) {
+        if (strategy != null && strategy != MigrationConfig.BulkWriteStrategy.AUTO) {
+            return strategy;
+        }
+        if (databaseType == null) {
+            return MigrationConfig.BulkWriteStrategy.JDBC_BATCH;
+        }
+        switch (databaseType) {
+            case MYSQL:
+            case MARIADB:
+            case POSTGRESQL:
+            case H2:
+            case SQL_SERVER:
+                return MigrationConfig.BulkWriteStrategy.MULTI_ROW_INSERT;
+            default:
+                return MigrationConfig.BulkWriteStrategy.JDBC_BATCH;
+        }
+    }
+    
+    /**
+     * 按数据库的占位符和行数上限创建多值 INSERT 写入器
+     */
+    private BulkWriter createMultiRowWriter(Connection conn, DatabaseType databaseType,
+                                           String tableName, List<String> columns, MigrationConfig config) {
+        int maxParameters;
+        int maxRows;
+        switch (databaseType != null ? databaseType : DatabaseType.OTHER) {
+            case SQL_SERVER:
+                maxParameters = 2000;
+                maxRows = 1000;
+                break;
+            case POSTGRESQL:
+                maxParameters = 32767;
+                maxRows = Integer.MAX_VALUE;
+                break;
+            default:
+                maxParameters = 65535;
+                maxRows = Integer.MAX_VALUE;
+        }
+        return new MultiRowInsertWriter(conn, tableName, columns, config.getMaxPacketBytes(), maxParameters, maxRows);
+    }
+}
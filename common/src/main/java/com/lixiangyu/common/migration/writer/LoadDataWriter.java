@@ -0,0 +1,192 @@
+package com.lixiangyu.common.migration.writer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * LOAD DATA LOCAL INFILE 写入（仅 MySQL/MariaDB）
+ * 每批记录在内存中编码为制表符分隔的文本，通过 Connector/J 的 setLocalInfileInputStream 直接作为文件内容发送，不落临时文件
+ *
+ * 使用前提：
+ * 1. 目标连接开启 allowLoadLocalInfile=true（MigrationDataSourceFactory 在选择该策略时自动添加）
+ * 2. 目标服务端开启 local_infile
+ *
+ * 含二进制列（byte[]/Blob/Clob）的批次无法安全编码为文本，交给回退写入器处理；
+ * 驱动不是 MySQL Connector/J（如 MariaDB Connector/J）时构造抛出 SQLFeatureNotSupportedException，由工厂改用多值 INSERT。
+ * LOAD DATA LOCAL 把类型转换错误和主键冲突降级为警告并跳过该行，写入行数与批次行数不一致时抛出异常，不静默丢行
+ *
+ * @author lixiangyu
+ */
+@Slf4j
+public class LoadDataWriter implements BulkWriter {
+    
+    private static final String MYSQL_STATEMENT_CLASS = "com.mysql.cj.jdbc.JdbcStatement";
+    
+    private final String tableName;
+    private final String loadSql;
+    private final Statement stmt;
+    private final Object mysqlStmt;
+    private final Method setInputStreamMethod;
+    private final BulkWriter fallbackWriter;
+    
+    public LoadDataWriter(Connection conn, String tableName, List<String> columns, BulkWriter fallbackWriter)
+            throws SQLException {
+        this.tableName = tableName;
+        this.loadSql = "LOAD DATA LOCAL INFILE 'migration.tsv' INTO TABLE " + tableName
+                + " CHARACTER SET utf8mb4"
+                + " FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n'"
+                + " (" + String.join(", ", columns) + ")";
+        this.fallbackWriter = fallbackWriter;
+        this.stmt = conn.createStatement();
+        
+        // 使用反射调用驱动扩展接口，避免 common 模块直接依赖 MySQL 驱动
+        try {
+            Class<?> mysqlStatementClass = Class.forName(MYSQL_STATEMENT_CLASS);
+            if (!stmt.isWrapperFor(mysqlStatementClass)) {
+                throw new SQLFeatureNotSupportedException("目标连接不是 MySQL Connector/J 连接");
+            }
+            this.mysqlStmt = stmt.unwrap(mysqlStatementClass);
+            this.setInputStreamMethod = mysqlStatementClass.getMethod("setLocalInfileInputStream", InputStream.class);
+        } catch (ClassNotFoundException | NoSuchMethodException | SQLException e) {
+            stmt.close();
+            throw new SQLFeatureNotSupportedException("当前驱动不支持 LOAD DATA LOCAL INFILE 流式写入", e);
+        }
+    }
+    
+    @Override
+    public long write(List<Object[]> rows) throws SQLException {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        if (containsBinary(rows)) {
+            return fallbackWriter.write(rows);
+        }
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream(rows.size() * 128);
+        StringBuilder line = new StringBuilder(256);
+        for (Object[] row : rows) {
+            line.setLength(0);
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) {
+                    line.append('\t');
+                }
+                appendValue(line, row[i]);
+            }
+            line.append('\n');
+            byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+            out.write(bytes, 0, bytes.length);
+        }
+        
+        long affected;
+        try {
+            setInputStreamMethod.invoke(mysqlStmt, new ByteArrayInputStream(out.toByteArray()));
+            stmt.clearWarnings();
+            affected = stmt.executeUpdate(loadSql);
+        } catch (ReflectiveOperationException e) {
+            throw new SQLException("设置 LOAD DATA 输入流失败", e);
+        } finally {
+            try {
+                setInputStreamMethod.invoke(mysqlStmt, (Object) null);
+            } catch (ReflectiveOperationException e) {
+                log.debug("重置 LOAD DATA 输入流失败", e);
+            }
+        }
+        if (affected != rows.size()) {
+            // 被跳过的行（转换失败、主键冲突）只体现在警告中，整批失败交给调用方处理
+            throw new SQLException("LOAD DATA 写入行数与批次不一致，表: " + tableName + "，批次: " + rows.size()
+                    + "，写入: " + affected + describeWarnings());
+        }
+        return affected;
+    }
+    
+    /**
+     * 前几条警告（被跳过的行的原因）
+     */
+    private String describeWarnings() throws SQLException {
+        StringBuilder message = new StringBuilder();
+        SQLWarning warning = stmt.getWarnings();
+        for (int i = 0; warning != null && i < 3; i++, warning = warning.getNextWarning()) {
+            message.append(i == 0 ? "，警告: " : "; ").append(warning.getMessage());
+        }
+        return message.toString();
+    }
+    
+    private boolean containsBinary(List<Object[]> rows) {
+        for (Object[] row : rows) {
+            for (Object value : row) {
+                if (value instanceof byte[] || value instanceof Blob || value instanceof Clob) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 按 LOAD DATA 默认转义规则追加字段值，NULL 写为 \N
+     */
+    private void appendValue(StringBuilder line, Object value) {
+        if (value == null) {
+            line.append("\\N");
+            return;
+        }
+        
+        String text;
+        if (value instanceof Boolean) {
+            text = (Boolean) value ? "1" : "0";
+        } else if (value instanceof BigDecimal) {
+            text = ((BigDecimal) value).toPlainString();
+        } else if (value instanceof LocalDateTime) {
+            text = value.toString().replace('T', ' ');
+        } else {
+            text = value.toString();
+        }
+        
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\0':
+                    line.append("\\0");
+                    break;
+                default:
+                    line.append(c);
+            }
+        }
+    }
+    
+    @Override
+    public void close() throws SQLException {
+        try {
+            stmt.close();
+        } finally {
+            fallbackWriter.close();
+        }
+    }
+}
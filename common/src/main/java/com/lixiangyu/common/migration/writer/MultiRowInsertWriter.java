@@ -0,0 +1,167 @@
+package com.lixiangyu.common.migration.writer;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 多值 INSERT 写入
+ * 将一批记录拼成 INSERT INTO t (...) VALUES (...),(...),... 语句，每条语句一次网络往返
+ *
+ * 单条语句的行数同时受以下限制：
+ * 1. 估算的语句字节数不超过 maxPacketBytes（MySQL 的 max_allowed_packet）
+ * 2. 占位符数量不超过数据库上限（maxParameters）
+ * 3. 行数不超过数据库上限（maxRows，例如 SQL Server 的 VALUES 最多 1000 行）
+ *
+ * @author lixiangyu
+ */
+public class MultiRowInsertWriter implements BulkWriter {
+    
+    /**
+     * 最多缓存的预编译语句数（按行数区分）
+     */
+    private static final int MAX_CACHED_STATEMENTS = 8;
+    
+    /**
+     * 无法估算大小的值按该字节数估算
+     */
+    private static final int DEFAULT_VALUE_BYTES = 16;
+    
+    private final Connection conn;
+    private final String insertPrefix;
+    private final String rowPlaceholder;
+    private final int columnCount;
+    private final long maxPacketBytes;
+    private final int maxRowsPerStatement;
+    
+    /**
+     * 行数 -> 预编译语句
+     */
+    private final Map<Integer, PreparedStatement> statements = new HashMap<>();
+    
+    public MultiRowInsertWriter(Connection conn, String tableName, List<String> columns,
+                                long maxPacketBytes, int maxParameters, int maxRows) {
+        this.conn = conn;
+        this.columnCount = columns.size();
+        this.insertPrefix = "INSERT INTO " + tableName + " (" + String.join(", ", columns) + ") VALUES ";
+        
+        StringBuilder placeholder = new StringBuilder("(");
+        for (int i = 0; i < columnCount; i++) {
+            placeholder.append(i == 0 ? "?" : ", ?");
+        }
+        this.rowPlaceholder = placeholder.append(")").toString();
+        
+        this.maxPacketBytes = maxPacketBytes;
+        this.maxRowsPerStatement = Math.max(1, Math.min(maxRows, maxParameters / Math.max(1, columnCount)));
+    }
+    
+    @Override
+    public long write(List<Object[]> rows) throws SQLException {
+        long count = 0;
+        int start = 0;
+        long statementBytes = insertPrefix.length();
+        
+        for (int i = 0; i < rows.size(); i++) {
+            long rowBytes = estimateRowBytes(rows.get(i));
+            int rowsInStatement = i - start;
+            if (rowsInStatement > 0
+                    && (rowsInStatement >= maxRowsPerStatement || statementBytes + rowBytes > maxPacketBytes)) {
+                count += execute(rows, start, i);
+                start = i;
+                statementBytes = insertPrefix.length();
+            }
+            statementBytes += rowBytes;
+        }
+        
+        if (start < rows.size()) {
+            count += execute(rows, start, rows.size());
+        }
+        return count;
+    }
+    
+    /**
+     * 执行 [from, to) 范围内的记录
+     */
+    private long execute(List<Object[]> rows, int from, int to) throws SQLException {
+        int rowCount = to - from;
+        PreparedStatement stmt = statements.get(rowCount);
+        boolean cached = stmt != null;
+        if (!cached) {
+            stmt = conn.prepareStatement(buildSql(rowCount));
+            if (statements.size() < MAX_CACHED_STATEMENTS) {
+                statements.put(rowCount, stmt);
+                cached = true;
+            }
+        }
+        
+        try {
+            int index = 1;
+            for (int r = from; r < to; r++) {
+                for (Object value : rows.get(r)) {
+                    stmt.setObject(index++, value);
+                }
+            }
+            stmt.executeUpdate();
+            return rowCount;
+        } finally {
+            if (!cached) {
+                stmt.close();
+            }
+        }
+    }
+    
+    private String buildSql(int rowCount) {
+        StringBuilder sql = new StringBuilder(insertPrefix.length() + rowCount * (rowPlaceholder.length() + 2));
+        sql.append(insertPrefix);
+        for (int i = 0; i < rowCount; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(rowPlaceholder);
+        }
+        return sql.toString();
+    }
+    
+    /**
+     * 估算一行记录在语句中占用的字节数（字符串按 UTF-8 最坏情况 + 转义估算）
+     */
+    private long estimateRowBytes(Object[] row) {
+        long bytes = rowPlaceholder.length() + 2;
+        for (Object value : row) {
+            if (value == null) {
+                bytes += 4;
+            } else if (value instanceof CharSequence) {
+                bytes += ((CharSequence) value).length() * 4L + 2;
+            } else if (value instanceof byte[]) {
+                bytes += ((byte[]) value).length * 2L + 3;
+            } else if (value instanceof BigDecimal) {
+                bytes += ((BigDecimal) value).precision() + 2;
+            } else {
+                bytes += DEFAULT_VALUE_BYTES;
+            }
+        }
+        return bytes;
+    }
+    
+    @Override
+    public void close() throws SQLException {
+        SQLException first = null;
+        for (PreparedStatement stmt : statements.values()) {
+            try {
+                stmt.close();
+            } catch (SQLException e) {
+                if (first == null) {
+                    first = e;
+                }
+            }
+        }
+        statements.clear();
+        if (first != null) {
+            throw first;
+        }
+    }
+}
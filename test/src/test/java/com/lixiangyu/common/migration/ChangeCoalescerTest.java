@@ -0,0 +1,156 @@
+package com.lixiangyu.common.migration;
+
+import com.lixiangyu.common.migration.operator.DatabaseOperator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 行变更合并器测试类
+ * 输入为按 binlog 顺序的行变更（同一键只合并连续的变更），期望输出用 "类型 before/after" 描述，行写作 "主键:name"，无镜像写作 "-"
+ *
+ * @author lixiangyu
+ */
+class ChangeCoalescerTest {
+
+    private static final DatabaseOperator.TableStructure USER = structure("t_user", "id");
+
+    private static final DatabaseOperator.TableStructure LOG = structure("t_log");
+
+    static Stream<Arguments> cases() {
+        return Stream.of(
+                Arguments.of("单个变更原样输出",
+                        Arrays.asList(insert(1, "a")),
+                        Arrays.asList("INSERT -/1:a")),
+                Arguments.of("INSERT + UPDATE -> INSERT 最终镜像",
+                        Arrays.asList(insert(1, "a"), update(1, "a", "b"), update(1, "b", "c")),
+                        Arrays.asList("INSERT -/1:c")),
+                Arguments.of("INSERT + DELETE -> 无操作",
+                        Arrays.asList(insert(1, "a"), delete(1, "a")),
+                        Collections.emptyList()),
+                Arguments.of("INSERT + UPDATE + DELETE -> 无操作",
+                        Arrays.asList(insert(1, "a"), update(1, "a", "b"), delete(1, "b")),
+                        Collections.emptyList()),
+                Arguments.of("DELETE + INSERT -> DELETE 后 INSERT",
+                        Arrays.asList(delete(1, "a"), insert(1, "b")),
+                        Arrays.asList("DELETE 1:a/-", "INSERT -/1:b")),
+                Arguments.of("DELETE + INSERT + DELETE -> DELETE",
+                        Arrays.asList(delete(1, "a"), insert(1, "b"), delete(1, "b")),
+                        Arrays.asList("DELETE 1:a/-")),
+                Arguments.of("首个变更为 UPDATE：按最初的 before 定位，写入最终镜像",
+                        Arrays.asList(update(1, "a", "b"), update(1, "b", "c")),
+                        Arrays.asList("UPDATE 1:a/1:c")),
+                Arguments.of("首个变更为 UPDATE，之后 DELETE -> 按最初的 before 删除",
+                        Arrays.asList(update(1, "a", "b"), delete(1, "b")),
+                        Arrays.asList("DELETE 1:a/-")),
+                Arguments.of("首个变更为 UPDATE，之后 DELETE + INSERT -> DELETE 后 INSERT",
+                        Arrays.asList(update(1, "a", "b"), delete(1, "b"), insert(1, "c")),
+                        Arrays.asList("DELETE 1:a/-", "INSERT -/1:c")),
+                Arguments.of("修改主键的 UPDATE 为屏障：前后的变更分别合并",
+                        Arrays.asList(update(1, "a", "b"), update(1, "b", "c"), updateKey(1, 2, "c"),
+                                update(2, "c", "d"), update(2, "d", "e")),
+                        Arrays.asList("UPDATE 1:a/1:c", "UPDATE 1:c/2:c", "UPDATE 2:c/2:e")),
+                Arguments.of("屏障之后同一主键重新开始合并，不并入屏障之前的槽位",
+                        Arrays.asList(insert(1, "a"), updateKey(1, 2, "a"), insert(1, "b")),
+                        Arrays.asList("INSERT -/1:a", "UPDATE 1:a/2:a", "INSERT -/1:b")),
+                Arguments.of("没有主键的表不合并",
+                        Arrays.asList(change(BinlogApplier.ChangeType.INSERT, LOG, null, row(1, "a")),
+                                change(BinlogApplier.ChangeType.DELETE, LOG, row(1, "a"), null)),
+                        Arrays.asList("INSERT -/1:a", "DELETE 1:a/-")),
+                Arguments.of("键在其他键的变更之后再次出现时不并入之前的净变更，保持跨行顺序",
+                        Arrays.asList(insert(1, "a"), insert(2, "a"), update(1, "a", "b"), delete(3, "a")),
+                        Arrays.asList("INSERT -/1:a", "INSERT -/2:a", "UPDATE 1:a/1:b", "DELETE 3:a/-")),
+                Arguments.of("唯一值复用：另一行先释放该值，之后的 UPDATE 不能提前",
+                        Arrays.asList(update(1, "a", "b"), update(2, "v", "w"), update(1, "b", "v")),
+                        Arrays.asList("UPDATE 1:a/1:b", "UPDATE 2:v/2:w", "UPDATE 1:b/1:v")),
+                Arguments.of("隔开后的连续变更仍然合并",
+                        Arrays.asList(insert(1, "a"), insert(2, "a"), update(1, "a", "b"), update(1, "b", "c")),
+                        Arrays.asList("INSERT -/1:a", "INSERT -/2:a", "UPDATE 1:a/1:c"))
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("cases")
+    void testCoalesce(String name, List<BinlogApplier.RowChange> input, List<String> expected) {
+        ChangeCoalescer coalescer = new ChangeCoalescer();
+        coalescer.add(input);
+        assertEquals(input.size(), coalescer.getInputRows());
+        assertEquals(expected, describe(coalescer.drain()));
+    }
+
+    @Test
+    void testMergeAcrossTransactionsAndDrain() {
+        ChangeCoalescer coalescer = new ChangeCoalescer();
+        coalescer.add(Arrays.asList(insert(1, "a"), update(1, "a", "b")));
+        coalescer.add(Arrays.asList(update(1, "b", "c"), insert(2, "a")));
+        coalescer.add(Arrays.asList(delete(2, "a")));
+        assertEquals(5, coalescer.getInputRows());
+        assertEquals(Collections.singletonList("INSERT -/1:c"), describe(coalescer.drain()));
+
+        // drain 后清空，之前的槽位不再参与合并
+        assertTrue(coalescer.isEmpty());
+        assertEquals(0, coalescer.getInputRows());
+        coalescer.add(Arrays.asList(update(1, "b", "c")));
+        assertEquals(Arrays.asList("UPDATE 1:b/1:c"), describe(coalescer.drain()));
+    }
+
+    private static BinlogApplier.RowChange insert(int id, String name) {
+        return change(BinlogApplier.ChangeType.INSERT, USER, null, row(id, name));
+    }
+
+    private static BinlogApplier.RowChange update(int id, String before, String after) {
+        return change(BinlogApplier.ChangeType.UPDATE, USER, row(id, before), row(id, after));
+    }
+
+    private static BinlogApplier.RowChange updateKey(int before, int after, String name) {
+        return change(BinlogApplier.ChangeType.UPDATE, USER, row(before, name), row(after, name));
+    }
+
+    private static BinlogApplier.RowChange delete(int id, String name) {
+        return change(BinlogApplier.ChangeType.DELETE, USER, row(id, name), null);
+    }
+
+    private static BinlogApplier.RowChange change(BinlogApplier.ChangeType type,
+                                                  DatabaseOperator.TableStructure structure,
+                                                  Map<String, Object> before, Map<String, Object> after) {
+        return new BinlogApplier.RowChange(type, structure.getTableName(), structure, before, after);
+    }
+
+    private static Map<String, Object> row(int id, String name) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", id);
+        row.put("name", name);
+        return row;
+    }
+
+    private static DatabaseOperator.TableStructure structure(String tableName, String... primaryKeys) {
+        DatabaseOperator.TableStructure structure = new DatabaseOperator.TableStructure();
+        structure.setTableName(tableName);
+        structure.setPrimaryKeys(Arrays.asList(primaryKeys));
+        return structure;
+    }
+
+    private static List<String> describe(List<BinlogApplier.RowChange> changes) {
+        List<String> result = new ArrayList<>();
+        for (BinlogApplier.RowChange change : changes) {
+            result.add(change.getType() + " " + describe(change.getBefore()) + "/" + describe(change.getAfter()));
+        }
+        return result;
+    }
+
+    private static String describe(Map<String, Object> row) {
+        return row == null ? "-" : row.get("id") + ":" + row.get("name");
+    }
+}
@@ -0,0 +1,224 @@
+package com.lixiangyu.common.migration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 双写发件箱日志测试类
+ * 覆盖残缺记录截断、检查点恢复、段切换与删除
+ *
+ * @author lixiangyu
+ */
+class DualWriteOutboxLogTest {
+
+    /**
+     * 记录头：长度 + CRC32
+     */
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * 每条测试记录 8 + 20 字节，64 字节的段可以放两条（末尾保留 4 字节结束标记）
+     */
+    private static final int SMALL_SEGMENT = 64;
+
+    private static final int LARGE_SEGMENT = 4096;
+
+    @TempDir
+    File directory;
+
+    @Test
+    void testReadAppendedRecordsInOrder() throws IOException {
+        try (DualWriteOutboxLog outboxLog = new DualWriteOutboxLog(directory, LARGE_SEGMENT)) {
+            appendAll(outboxLog, 0, 3);
+            assertEquals(records(0, 3), decode(outboxLog.read(10)));
+            assertTrue(outboxLog.read(10).isEmpty());
+        }
+    }
+
+    @Test
+    void testRewindRereadsFromCheckpoint() throws IOException {
+        try (DualWriteOutboxLog outboxLog = new DualWriteOutboxLog(directory, LARGE_SEGMENT)) {
+            appendAll(outboxLog, 0, 5);
+            assertEquals(records(0, 2), decode(outboxLog.read(2)));
+            outboxLog.commit();
+            assertEquals(records(2, 4), decode(outboxLog.read(2)));
+
+            outboxLog.rewind();
+            assertEquals(records(2, 5), decode(outboxLog.read(10)));
+        }
+    }
+
+    @Test
+    void testResumeFromCheckpointAfterReopen() throws IOException {
+        try (DualWriteOutboxLog outboxLog = new DualWriteOutboxLog(directory, LARGE_SEGMENT)) {
+            appendAll(outboxLog, 0, 5);
+            outboxLog.read(2);
+            outboxLog.commit();
+            // 读取但未提交的记录在重启后重新回放
+            outboxLog.read(1);
+        }
+
+        try (DualWriteOutboxLog outboxLog = new DualWriteOutboxLog(directory, LARGE_SEGMENT)) {
+            assertEquals(3, outboxLog.getRecoveredRecords());
+            assertEquals(records(2, 5), decode(outboxLog.read(10)));
+            outboxLog.commit();
+        }
+
+        try (DualWriteOutboxLog outboxLog = new DualWriteOutboxLog(directory, LARGE_SEGMENT)) {
+            assertEquals(0, outboxLog.getRecoveredRecords());
+            assertTrue(outboxLog.read(10).isEmpty());
+        }
+    }
+
+    @Test
+    void testTruncateTornTail() throws IOException {
+        try (DualWriteOutboxLog outboxLog = new DualWriteOutboxLog(directory, LARGE_SEGMENT)) {
+            appendAll(outboxLog, 0, 3);
+        }
+        // 模拟写入一半时崩溃：长度已写入，内容和 CRC 不完整
+        int tail = 3 * (HEADER_SIZE + record(0).length());
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile(0), "rw")) {
+            file.seek(tail);
+            file.writeInt(20);
+            file.writeInt(12345);
+            file.write(new byte[]{1, 2, 3});
+        }
+
+        try (DualWriteOutboxLog outboxLog = new DualWriteOutboxLog(directory, LARGE_SEGMENT)) {
+            assertEquals(3, outboxLog.getRecoveredRecords());
+            // 截断后从残缺记录的位置继续追加
+            appendAll(outboxLog, 3, 4);
+            assertEquals(records(0, 4), decode(outboxLog.read(10)));
+        }
+
+        try (DualWriteOutboxLog outboxLog = new DualWriteOutboxLog(directory, LARGE_SEGMENT)) {
+            assertEquals(4, outboxLog.getRecoveredRecords());
+            assertEquals(records(0, 4), decode(outboxLog.read(10)));
+        }
+    }
+
+    @Test
+    void testRecoverFromCorruptedLastRecord() throws IOException {
+        try (DualWriteOutboxLog outboxLog = new DualWriteOutboxLog(directory, LARGE_SEGMENT)) {
+            appendAll(outboxLog, 0, 3);
+            outboxLog.read(1);
+            outboxLog.commit();
+        }
+        // 最后一条记录的内容只写入了一部分，CRC 不匹配
+        int lastPayload = 2 * (HEADER_SIZE + record(0).length()) + HEADER_SIZE;
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile(0), "rw")) {
+            file.seek(lastPayload + 5);
+            file.write(0);
+        }
+
+        try (DualWriteOutboxLog outboxLog = new DualWriteOutboxLog(directory, LARGE_SEGMENT)) {
+            assertEquals(1, outboxLog.getRecoveredRecords());
+            assertEquals(records(1, 2), decode(outboxLog.read(10)));
+            appendAll(outboxLog, 3, 4);
+            assertEquals(records(3, 4), decode(outboxLog.read(10)));
+        }
+    }
+
+    @Test
+    void testReadAcrossSegments() throws IOException {
+        try (DualWriteOutboxLog outboxLog = new DualWriteOutboxLog(directory, SMALL_SEGMENT)) {
+            appendAll(outboxLog, 0, 5);
+            assertEquals(3, outboxLog.getSegmentCount());
+            assertEquals(records(0, 3), decode(outboxLog.read(3)));
+            assertEquals(records(3, 5), decode(outboxLog.read(10)));
+        }
+
+        try (DualWriteOutboxLog outboxLog = new DualWriteOutboxLog(directory, SMALL_SEGMENT)) {
+            assertEquals(5, outboxLog.getRecoveredRecords());
+            assertEquals(records(0, 5), decode(outboxLog.read(10)));
+        }
+    }
+
+    @Test
+    void testCommitDeletesConsumedSegments() throws IOException {
+        try (DualWriteOutboxLog outboxLog = new DualWriteOutboxLog(directory, SMALL_SEGMENT)) {
+            appendAll(outboxLog, 0, 5);
+            assertEquals(3, segmentFiles());
+
+            // 检查点仍在第一个段内，不删除
+            outboxLog.read(1);
+            outboxLog.commit();
+            assertEquals(3, segmentFiles());
+
+            outboxLog.read(3);
+            outboxLog.commit();
+            assertEquals(2, outboxLog.getSegmentCount());
+            assertFalse(segmentFile(0).exists());
+
+            outboxLog.read(10);
+            outboxLog.commit();
+            assertEquals(1, outboxLog.getSegmentCount());
+            assertEquals(1, segmentFiles());
+            assertTrue(segmentFile(2).exists());
+        }
+
+        try (DualWriteOutboxLog outboxLog = new DualWriteOutboxLog(directory, SMALL_SEGMENT)) {
+            assertEquals(0, outboxLog.getRecoveredRecords());
+            appendAll(outboxLog, 5, 6);
+            assertEquals(records(5, 6), decode(outboxLog.read(10)));
+        }
+    }
+
+    @Test
+    void testRejectRecordLargerThanSegment() throws IOException {
+        try (DualWriteOutboxLog outboxLog = new DualWriteOutboxLog(directory, SMALL_SEGMENT)) {
+            assertThrows(IOException.class, () -> outboxLog.append(new byte[SMALL_SEGMENT]));
+            assertTrue(DualWriteOutboxLog.hasSegments(directory));
+        }
+    }
+
+    private void appendAll(DualWriteOutboxLog outboxLog, int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            outboxLog.append(record(i).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private File segmentFile(long id) {
+        return new File(directory, String.format("%020d.seg", id));
+    }
+
+    private int segmentFiles() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".seg"));
+        return files == null ? 0 : files.length;
+    }
+
+    /**
+     * 定长 20 字节的测试记录
+     */
+    private static String record(int index) {
+        return String.format("outbox-record-%06d", index);
+    }
+
+    private static List<String> records(int from, int to) {
+        List<String> records = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            records.add(record(i));
+        }
+        return records;
+    }
+
+    private static List<String> decode(List<byte[]> payloads) {
+        List<String> records = new ArrayList<>();
+        for (byte[] payload : payloads) {
+            records.add(new String(payload, StandardCharsets.UTF_8));
+        }
+        return records;
+    }
+}
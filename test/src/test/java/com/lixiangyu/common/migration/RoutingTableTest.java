@@ -0,0 +1,117 @@
+package com.lixiangyu.common.migration;
+
+import com.lixiangyu.common.migration.DualWriteConfigManager.RoutingTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 双写路由表测试类
+ * 覆盖线性探测冲突、没有表级别配置时回退到全局开关、多表路由的合并规则
+ *
+ * @author lixiangyu
+ */
+class RoutingTableTest {
+
+    private static final int SOURCE_ONLY = RoutingTable.DUAL_WRITE | RoutingTable.WRITE_SOURCE;
+    private static final int TARGET_ONLY = RoutingTable.DUAL_WRITE | RoutingTable.WRITE_TARGET;
+    private static final int BOTH = RoutingTable.DUAL_WRITE | RoutingTable.WRITE_SOURCE | RoutingTable.WRITE_TARGET;
+
+    /**
+     * 全局开关：只写源库，不双写
+     */
+    private static final int GLOBAL = RoutingTable.WRITE_SOURCE;
+
+    /**
+     * hashCode 相同的表名（"Aa" 与 "BB" 的 hashCode 相同），4 个表时落在 8 个槽位的最后一个，探测时回绕到表头
+     */
+    private static final String[] COLLIDING = {"AaAa", "AaBB", "BBAa", "BBBB"};
+
+    @Test
+    void testCollidingTableNames() {
+        assertEquals(COLLIDING[0].hashCode(), COLLIDING[3].hashCode());
+        Map<String, Integer> tableFlags = new LinkedHashMap<>();
+        tableFlags.put(COLLIDING[0], SOURCE_ONLY);
+        tableFlags.put(COLLIDING[1], TARGET_ONLY);
+        tableFlags.put(COLLIDING[2], BOTH);
+        tableFlags.put(COLLIDING[3], 0);
+        RoutingTable routing = new RoutingTable(GLOBAL, tableFlags);
+
+        for (Map.Entry<String, Integer> entry : tableFlags.entrySet()) {
+            assertEquals(entry.getValue().intValue(), routing.flags(entry.getKey()), entry.getKey());
+        }
+    }
+
+    @Test
+    void testMissingTableFallsBackToGlobalFlags() {
+        Map<String, Integer> tableFlags = new LinkedHashMap<>();
+        tableFlags.put(COLLIDING[0], BOTH);
+        tableFlags.put(COLLIDING[1], BOTH);
+        tableFlags.put(COLLIDING[2], BOTH);
+        RoutingTable routing = new RoutingTable(GLOBAL, tableFlags);
+
+        // 探测越过冲突的槽位后遇到空槽
+        assertEquals(GLOBAL, routing.flags(COLLIDING[3]));
+        assertEquals(GLOBAL, routing.flags("t_order"));
+        assertEquals(GLOBAL, routing.flags(null));
+
+        RoutingTable empty = new RoutingTable(TARGET_ONLY, new LinkedHashMap<>());
+        assertEquals(TARGET_ONLY, empty.flags("t_order"));
+        assertEquals(TARGET_ONLY, empty.flags(null));
+        assertEquals(GLOBAL, RoutingTable.EMPTY.flags("t_order"));
+    }
+
+    @Test
+    void testWithGlobalFlagsKeepsTableFlags() {
+        Map<String, Integer> tableFlags = new LinkedHashMap<>();
+        tableFlags.put("t_user", TARGET_ONLY);
+        RoutingTable routing = new RoutingTable(GLOBAL, tableFlags).withGlobalFlags(BOTH);
+
+        assertEquals(TARGET_ONLY, routing.flags("t_user"));
+        assertEquals(BOTH, routing.flags("t_order"));
+    }
+
+    @Test
+    void testRouteFoldsTableFlags() {
+        Map<String, Integer> tableFlags = new LinkedHashMap<>();
+        tableFlags.put("t_user", SOURCE_ONLY);
+        tableFlags.put("t_order", BOTH);
+        tableFlags.put("t_item", TARGET_ONLY);
+        tableFlags.put("t_log", 0);
+        RoutingTable routing = new RoutingTable(GLOBAL, tableFlags);
+
+        // 没有表时使用全局开关位
+        assertEquals(GLOBAL, routing.route(null));
+        assertEquals(GLOBAL, routing.route(new String[0]));
+        assertEquals(BOTH, routing.route(new String[]{"t_order"}));
+
+        // 任一表双写即双写，写源库/写目标库需要全部表开启
+        assertEquals(SOURCE_ONLY, routing.route(new String[]{"t_user", "t_order"}));
+        assertEquals(RoutingTable.DUAL_WRITE, routing.route(new String[]{"t_user", "t_item"}));
+        assertEquals(RoutingTable.DUAL_WRITE, routing.route(new String[]{"t_log", "t_order"}));
+
+        // 没有表级别配置的表按全局开关位参与合并
+        assertEquals(SOURCE_ONLY, routing.route(new String[]{"t_order", "t_missing"}));
+        assertEquals(SOURCE_ONLY, routing.route(new String[]{"t_order", null}));
+        assertEquals(GLOBAL, routing.route(new String[]{"t_missing"}));
+    }
+
+    @Test
+    void testTablesWith() {
+        Map<String, Integer> tableFlags = new LinkedHashMap<>();
+        tableFlags.put("t_user", SOURCE_ONLY);
+        tableFlags.put("t_order", BOTH);
+        tableFlags.put("t_log", 0);
+        RoutingTable routing = new RoutingTable(GLOBAL, tableFlags);
+
+        assertEquals(new HashSet<>(Arrays.asList("t_user", "t_order")), routing.tablesWith(RoutingTable.DUAL_WRITE));
+        assertEquals(new HashSet<>(Arrays.asList("t_order")), routing.tablesWith(RoutingTable.WRITE_TARGET));
+        assertTrue(RoutingTable.EMPTY.tablesWith(RoutingTable.DUAL_WRITE).isEmpty());
+    }
+}
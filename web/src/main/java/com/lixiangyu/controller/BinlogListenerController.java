@@ -1,6 +1,7 @@
 package com.lixiangyu.controller;
 
 import com.lixiangyu.common.migration.BinlogListener;
+import com.lixiangyu.common.migration.CdcMetrics;
 import com.lixiangyu.common.util.Result;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -63,7 +64,7 @@ public class BinlogListenerController {
     }
     
     /**
-     * 查询监听状态
+     * 查询监听状态（失败的任务已断开源库连接，状态为 FAILED，停止后从位点重新启动）
      */
     @GetMapping("/status/{taskId}")
     public Result<Map<String, Object>> getStatus(@PathVariable String taskId) {
@@ -71,9 +72,24 @@ public class BinlogListenerController {
         Map<String, Object> status = new HashMap<>();
         status.put("taskId", taskId);
         status.put("running", running);
+        // RUNNING / STOPPED / FAILED，任务不存在时为 null
+        status.put("state", binlogListener.getState(taskId));
+        status.put("failure", binlogListener.getFailure(taskId));
         return Result.success(status);
     }
     
+    /**
+     * 查询监听指标（吞吐、队列深度、同步延迟、最近提交位点、每表写入延迟和错误计数）
+     */
+    @GetMapping("/metrics/{taskId}")
+    public Result<CdcMetrics.Snapshot> getMetrics(@PathVariable String taskId) {
+        CdcMetrics.Snapshot metrics = binlogListener.getMetrics(taskId);
+        if (metrics == null) {
+            return Result.fail("监听任务不存在: " + taskId);
+        }
+        return Result.success(metrics);
+    }
+    
     /**
      * Binlog 监听请求
      */
@@ -1,6 +1,7 @@
 package com.lixiangyu.controller;
 
 import com.lixiangyu.common.migration.CanalListener;
+import com.lixiangyu.common.migration.CdcMetrics;
 import com.lixiangyu.common.util.Result;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -77,6 +78,18 @@ public class CanalListenerController {
         return Result.success(status);
     }
     
+    /**
+     * 查询监听指标（吞吐、队列深度、同步延迟、最近提交位点、每表写入延迟和错误计数）
+     */
+    @GetMapping("/metrics/{taskId}")
+    public Result<CdcMetrics.Snapshot> getMetrics(@PathVariable String taskId) {
+        CdcMetrics.Snapshot metrics = canalListener.getMetrics(taskId);
+        if (metrics == null) {
+            return Result.fail("监听任务不存在: " + taskId);
+        }
+        return Result.success(metrics);
+    }
+    
     /**
      * Canal 监听请求
      */
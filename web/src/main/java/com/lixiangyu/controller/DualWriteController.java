@@ -0,0 +1,41 @@
+package com.lixiangyu.controller;
+
+import com.lixiangyu.common.migration.DualWriteMetrics;
+import com.lixiangyu.common.migration.DualWriteOutbox;
+import com.lixiangyu.common.util.Result;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * 双写控制器
+ * 提供双写运行状态的查询接口
+ *
+ * @author lixiangyu
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/migration/dual-write")
+@RequiredArgsConstructor
+public class DualWriteController {
+    
+    private final DualWriteOutbox dualWriteOutbox;
+    
+    private final DualWriteMetrics dualWriteMetrics;
+    
+    /**
+     * 查询发件箱指标（积压记录数/字节数、回放延迟、批次数、失败次数和死信记录数）
+     */
+    @GetMapping("/outbox/metrics")
+    public Result<DualWriteOutbox.OutboxMetrics> getOutboxMetrics() {
+        return Result.success(dualWriteOutbox.getMetrics());
+    }
+    
+    /**
+     * 查询并行双写指标（每表源库/目标库/额外等待的延迟分位数，超时、拒绝和失败次数，线程池队列深度）
+     */
+    @GetMapping("/parallel/metrics")
+    public Result<DualWriteMetrics.Snapshot> getParallelMetrics() {
+        return Result.success(dualWriteMetrics.snapshot());
+    }
+}
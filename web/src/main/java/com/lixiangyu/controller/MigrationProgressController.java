@@ -6,6 +6,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 /**
  * 迁移进度查询控制器
  * 提供迁移任务进度查询接口
@@ -58,5 +60,13 @@ public class MigrationProgressController {
         }
         return Result.success(checkpoint);
     }
+    
+    /**
+     * 查询任务的全部分表、分片断点
+     */
+    @GetMapping("/checkpoints/{taskId}")
+    public Result<List<MigrationTaskManager.MigrationCheckpoint>> getCheckpoints(@PathVariable String taskId) {
+        return Result.success(taskManager.getCheckpoints(taskId));
+    }
 }
 